@@ -0,0 +1,119 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * CompileBenchmark.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the per-call overhead of compiling, using a stub executable
+ * that exits immediately (requires a Unix shell).
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompileBenchmark {
+
+  /** the directory for the stub and the document. */
+  protected File m_Dir;
+
+  /** the document. */
+  protected String m_Document;
+
+  /** the LaTeX compiler. */
+  protected LaTeX m_LaTeX;
+
+  /** the BibTeX compiler. */
+  protected BibTeX m_BibTeX;
+
+  /**
+   * Creates the stub executable and the document.
+   *
+   * @throws Exception	if writing fails
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    File	stub;
+
+    m_Dir      = Files.createTempDirectory("compilebench").toFile();
+    stub       = new File(m_Dir, "stub.sh");
+    Files.write(stub.toPath(), "#!/bin/sh\nexit 0\n".getBytes(StandardCharsets.UTF_8));
+    stub.setExecutable(true);
+    m_Document = new File(m_Dir, "paper.tex").getPath();
+    Files.write(new File(m_Document).toPath(), "\\documentclass{article}\n".getBytes(StandardCharsets.UTF_8));
+
+    m_LaTeX = new LaTeX();
+    m_LaTeX.setExecutable(stub.getPath());
+    m_BibTeX = new BibTeX();
+    m_BibTeX.setExecutable(stub.getPath());
+  }
+
+  /**
+   * Removes the stub and the document again.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    for (File file: m_Dir.listFiles())
+      file.delete();
+    m_Dir.delete();
+  }
+
+  /**
+   * Compiles with the LaTeX compiler.
+   *
+   * @return		the result
+   */
+  @Benchmark
+  public String compileLaTeX() {
+    return m_LaTeX.compile(m_Document);
+  }
+
+  /**
+   * Compiles with the BibTeX compiler.
+   *
+   * @return		the result
+   */
+  @Benchmark
+  public String compileBibTeX() {
+    return m_BibTeX.compile(m_Document);
+  }
+}
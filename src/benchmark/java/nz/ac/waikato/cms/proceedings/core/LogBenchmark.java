@@ -0,0 +1,175 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * LogBenchmark.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the analysis of LaTeX logs on synthetic logs of various sizes.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LogBenchmark {
+
+  /** the size of the log: small (10KB), medium (1MB), large (50MB). */
+  @Param({"small", "medium", "large"})
+  public String size;
+
+  /** the directory for the log. */
+  protected File m_Dir;
+
+  /** the tex document. */
+  protected String m_Document;
+
+  /** the compiler to use. */
+  protected LaTeX m_LaTeX;
+
+  /**
+   * Returns the number of bytes for the size.
+   *
+   * @return		the number of bytes
+   */
+  protected long getNumBytes() {
+    switch (size) {
+      case "small":
+	return 10L * 1024;
+      case "medium":
+	return 1024L * 1024;
+      case "large":
+	return 50L * 1024 * 1024;
+      default:
+	throw new IllegalStateException("Unhandled size: " + size);
+    }
+  }
+
+  /**
+   * Generates the synthetic log, with typical messages of a paper with
+   * many figures. The rerun message and the output summary are at the end,
+   * like in real logs.
+   *
+   * @throws Exception	if writing fails
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    long	written;
+    int		i;
+    String[]	lines;
+
+    m_Dir      = Files.createTempDirectory("logbench").toFile();
+    m_Document = new File(m_Dir, "paper.tex").getPath();
+    lines      = new String[]{
+      "(./figures/plot.pdf, id=123, 361.35pt x 289.08pt)",
+      "<use ./figures/plot.pdf>",
+      "Overfull \\hbox (12.3456pt too wide) in paragraph at lines 120--125",
+      "[]\\OT1/cmr/m/n/10 Some text that did not fit into the line and now sticks out into the margin of the",
+      "",
+      "LaTeX Warning: Reference `fig:missing' on page 3 undefined on input line 200.",
+      "",
+      "LaTeX Font Info:    External font `cmex10' loaded for size",
+      "(Font)              <7> on input line 210.",
+      "[3] [4 <./figures/photo.jpg>]",
+    };
+    written = 0;
+    i       = 0;
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(m_Dir, "paper.log")), StandardCharsets.ISO_8859_1))) {
+      writer.write("This is pdfTeX, Version 3.141592653-2.6-1.40.25 (TeX Live 2023) (preloaded format=pdflatex)\n");
+      while (written < getNumBytes()) {
+	writer.write(lines[i]);
+	writer.write('\n');
+	written += lines[i].length() + 1;
+	i = (i + 1) % lines.length;
+      }
+      writer.write("LaTeX Warning: Label(s) may have changed. Rerun to get cross-references right.\n");
+      writer.write("Output written on paper.pdf (12 pages, 3456789 bytes).\n");
+    }
+
+    m_LaTeX = new LaTeX();
+  }
+
+  /**
+   * Removes the log again.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    for (File file: m_Dir.listFiles())
+      file.delete();
+    m_Dir.delete();
+  }
+
+  /**
+   * Checks the log for fatal errors with a regular expression.
+   *
+   * @return		the result
+   */
+  @Benchmark
+  public boolean checkLog() {
+    return m_LaTeX.checkLog(m_Document, ".*Emergency stop.*");
+  }
+
+  /**
+   * Checks the log for rerun requests, without cached report.
+   *
+   * @return		the result
+   */
+  @Benchmark
+  public boolean requiresRecompile() {
+    return new LaTeX().requiresRecompile(m_Document);
+  }
+
+  /**
+   * Checks the log for rerun requests, using the cached report of the
+   * unchanged log.
+   *
+   * @return		the result
+   */
+  @Benchmark
+  public boolean requiresRecompileCached() {
+    return m_LaTeX.requiresRecompile(m_Document);
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * YamlBenchmark.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yaml.snakeyaml.DumperOptions.FlowStyle;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.nodes.Tag;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the yaml round trip of compilers and documents.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class YamlBenchmark {
+
+  /** the number of entries. */
+  @Param({"10", "1000", "100000"})
+  public int entries;
+
+  /** the compilers. */
+  protected Compilers m_Compilers;
+
+  /** the documents. */
+  protected Documents m_Documents;
+
+  /**
+   * Returns a yaml instance that can load large configurations.
+   *
+   * @return		the yaml instance
+   */
+  protected Yaml newYaml() {
+    LoaderOptions	options;
+
+    options = new LoaderOptions();
+    options.setCodePointLimit(Integer.MAX_VALUE);
+    return new Yaml(options);
+  }
+
+  /**
+   * Generates the compilers and documents.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    int		i;
+    LaTeX	latex;
+    Document	doc;
+
+    m_Compilers = new Compilers();
+    m_Documents = new Documents();
+    for (i = 0; i < entries; i++) {
+      latex = new LaTeX();
+      latex.setName("pdflatex-" + i);
+      latex.setExecutable("/usr/bin/pdflatex");
+      latex.setOptions(new String[]{"-interaction=nonstopmode", "-halt-on-error"});
+      m_Compilers.add(latex);
+
+      doc = new Document();
+      doc.setCompiler("pdflatex");
+      doc.setFile("/data/proceedings/papers/" + i + "/paper.tex");
+      doc.setSupplemental(i % 10 == 0);
+      m_Documents.add(doc);
+    }
+  }
+
+  /**
+   * Dumps and restores the compilers.
+   *
+   * @return		the restored compilers
+   */
+  @Benchmark
+  public Compilers compilersRoundTrip() {
+    Yaml	yaml;
+    String	s;
+
+    yaml = newYaml();
+    s    = yaml.dumpAs(m_Compilers.toYaml(), Tag.SEQ, FlowStyle.BLOCK);
+    return Compilers.fromYaml((List) yaml.load(s));
+  }
+
+  /**
+   * Dumps and restores the documents.
+   *
+   * @return		the restored documents
+   */
+  @Benchmark
+  public Documents documentsRoundTrip() {
+    Yaml	yaml;
+    String	s;
+
+    yaml = newYaml();
+    s    = yaml.dumpAs(m_Documents.toYaml(), Tag.SEQ, FlowStyle.BLOCK);
+    return Documents.fromYaml((List) yaml.load(s));
+  }
+
+  /**
+   * Writes and reads the compilers entry by entry.
+   *
+   * @return		the restored compilers
+   * @throws IOException	if streaming fails
+   */
+  @Benchmark
+  public Compilers compilersStreamingRoundTrip() throws IOException {
+    StringWriter	writer;
+
+    writer = new StringWriter();
+    m_Compilers.write(writer);
+    return Compilers.read(new StringReader(writer.toString()));
+  }
+
+  /**
+   * Writes and reads the documents entry by entry.
+   *
+   * @return		the restored documents
+   * @throws IOException	if streaming fails
+   */
+  @Benchmark
+  public Documents documentsStreamingRoundTrip() throws IOException {
+    StringWriter	writer;
+
+    writer = new StringWriter();
+    m_Documents.write(writer);
+    return Documents.read(new StringReader(writer.toString()));
+  }
+}
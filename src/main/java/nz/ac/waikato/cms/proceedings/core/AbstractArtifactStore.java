@@ -0,0 +1,69 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * AbstractArtifactStore.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Ancestor for stores of build artifacts, addressed by the hash of the
+ * inputs they were built from.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ * @see ArtifactCache
+ */
+public abstract class AbstractArtifactStore {
+
+  /** the pattern for valid keys (hex hashes). */
+  public final static Pattern KEY = Pattern.compile("[0-9a-f]{16,128}");
+
+  /**
+   * Checks whether the key is a valid hex hash.
+   *
+   * @param key		the key to check
+   * @throws IOException	if invalid
+   */
+  public static void checkKey(String key) throws IOException {
+    if ((key == null) || !KEY.matcher(key).matches())
+      throw new IOException("Invalid artifact key: " + key);
+  }
+
+  /**
+   * Retrieves the artifact.
+   *
+   * @param key		the key of the artifact
+   * @param target	the file to write the artifact to
+   * @return		true if found, false if not in store
+   * @throws IOException	if retrieval fails
+   */
+  public abstract boolean fetch(String key, File target) throws IOException;
+
+  /**
+   * Stores the artifact.
+   *
+   * @param key		the key of the artifact
+   * @param source	the file with the artifact
+   * @throws IOException	if storing fails
+   */
+  public abstract void store(String key, File source) throws IOException;
+}
@@ -22,10 +22,18 @@ package nz.ac.waikato.cms.proceedings.core;
 
 import nz.ac.waikato.cms.core.FileUtils;
 import nz.ac.waikato.cms.core.Utils;
+import nz.ac.waikato.cms.proceedings.core.CompileHandle.Termination;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Specification for a compiler.
@@ -36,6 +44,18 @@ import java.util.Map;
 public abstract class AbstractCompiler
   implements YamlObject<Map<String,Object>> {
 
+  /** the default number of output lines to keep. */
+  public final static int DEFAULT_MAX_OUTPUT_LINES = 50;
+
+  /** the maximum number of msec to wait for the output to be drained after process finished. */
+  public final static long DRAIN_TIMEOUT = 5000;
+
+  /** the interval in msec for sampling cpu/memory of a running process. */
+  public final static long SAMPLE_INTERVAL = 100;
+
+  /** the interval in msec for the first sample, doubling up to {@link #SAMPLE_INTERVAL}. */
+  public final static long MIN_SAMPLE_INTERVAL = 5;
+
   /** the name of the compiler. */
   protected String m_Name;
   
@@ -45,6 +65,28 @@ public abstract class AbstractCompiler
   /** the additional options. */
   protected String[] m_Options;
 
+  /** the maximum number of output lines to keep for error messages. */
+  protected int m_MaxOutputLines;
+
+  /** the listener for the process output, can be null. */
+  protected OutputListener m_OutputListener;
+
+  /** the time limit in seconds for a single invocation, &lt;= 0 for none. */
+  protected int m_Timeout;
+
+  /** the controller deciding when processes may start, can be null. */
+  protected AdmissionController m_AdmissionController;
+
+  /** the timestamp of the executable when it was last validated successfully, 0 if not validated. */
+  protected volatile long m_ValidatedModified;
+
+  /**
+   * Initializes the compiler.
+   */
+  protected AbstractCompiler() {
+    m_MaxOutputLines = DEFAULT_MAX_OUTPUT_LINES;
+  }
+
   /**
    * Sets the name.
    *
@@ -69,7 +111,8 @@ public abstract class AbstractCompiler
    * @param value	the executable
    */
   public void setExecutable(String value) {
-    m_Executable = value;
+    m_Executable        = value;
+    m_ValidatedModified = 0;
     if ((m_Executable != null) && (m_Name == null))
       m_Name = FileUtils.replaceExtension(new File(m_Executable).getName(), "");
   }
@@ -102,23 +145,119 @@ public abstract class AbstractCompiler
   }
 
   /**
-   * Performs checks before compiling the document.
+   * Sets the time limit for a single invocation of the compiler.
    *
-   * @param document	the document to compile
-   * @return		null if successful, otherwise error message
+   * @param value	the limit in seconds, &lt;= 0 for none
    */
-  protected String check(String document) {
+  public void setTimeout(int value) {
+    m_Timeout = value;
+  }
+
+  /**
+   * Returns the time limit for a single invocation of the compiler.
+   *
+   * @return		the limit in seconds, &lt;= 0 for none
+   */
+  public int getTimeout() {
+    return m_Timeout;
+  }
+
+  /**
+   * Sets the maximum number of output lines to keep for error messages.
+   *
+   * @param value	the number of lines
+   */
+  public void setMaxOutputLines(int value) {
+    m_MaxOutputLines = value;
+  }
+
+  /**
+   * Returns the maximum number of output lines to keep for error messages.
+   *
+   * @return		the number of lines
+   */
+  public int getMaxOutputLines() {
+    return m_MaxOutputLines;
+  }
+
+  /**
+   * Sets the listener that receives the process output as it gets generated.
+   *
+   * @param value	the listener, null to turn off
+   */
+  public void setOutputListener(OutputListener value) {
+    m_OutputListener = value;
+  }
+
+  /**
+   * Returns the listener that receives the process output.
+   *
+   * @return		the listener, null if none
+   */
+  public OutputListener getOutputListener() {
+    return m_OutputListener;
+  }
+
+  /**
+   * Sets the controller that decides when processes may start, based on
+   * the available CPU and memory.
+   *
+   * @param value	the controller, null to start processes immediately
+   */
+  public void setAdmissionController(AdmissionController value) {
+    m_AdmissionController = value;
+  }
+
+  /**
+   * Returns the controller that decides when processes may start.
+   *
+   * @return		the controller, null if starting processes immediately
+   */
+  public AdmissionController getAdmissionController() {
+    return m_AdmissionController;
+  }
+
+  /**
+   * Validates the executable. A successful validation is cached until the
+   * timestamp of the executable changes.
+   *
+   * @return		null if valid, otherwise error message
+   */
+  public String validate() {
     File	file;
+    long	modified;
 
     if (m_Executable == null)
       return "No executable defined!";
-    file = new File(m_Executable);
+    file     = new File(m_Executable);
+    modified = file.lastModified();
+    if ((modified != 0) && (modified == m_ValidatedModified))
+      return null;
+
     if (!file.exists())
       return "Executable does not exist: " + file;
     if (file.isDirectory())
       return "Executable points to a directory: " + file;
     if (!file.canExecute())
       return "Executable cannot be executed: " + file;
+    m_ValidatedModified = modified;
+
+    return null;
+  }
+
+  /**
+   * Performs checks before compiling the document.
+   *
+   * @param document	the document to compile
+   * @return		null if successful, otherwise error message
+   */
+  protected String check(String document) {
+    String	result;
+    File	file;
+
+    result = validate();
+    if (result != null)
+      return result;
 
     file = new File(document);
     if (!file.exists())
@@ -129,13 +268,290 @@ public abstract class AbstractCompiler
     return null;
   }
 
+  /**
+   * Checks a line of output while the process is still running.
+   * Derived classes can return a reason for aborting the compile early,
+   * eg when a fatal error was reported.
+   *
+   * @param line	the line of output
+   * @param stderr	whether from stderr or stdout
+   * @return		null if ok to continue, otherwise the reason for aborting
+   */
+  protected String checkOutput(String line, boolean stderr) {
+    return null;
+  }
+
+  /**
+   * Returns the file that the process writes its progress to besides its
+   * output, eg a log file. The file gets followed while the process is
+   * running, with each line checked by {@link #checkOutput(String, boolean)}.
+   * Default implementation returns null.
+   *
+   * @param document	the document being compiled
+   * @return		the file, null if none
+   */
+  protected File getProgressFile(String document) {
+    return null;
+  }
+
+  /**
+   * Starts a thread for draining the output stream of a process.
+   *
+   * @param document	the document being compiled
+   * @param stream	the stream to drain
+   * @param stderr	whether stderr or stdout
+   * @param buffer	the buffer for the output
+   * @param handle	the handle of the compile
+   * @return		the started thread
+   */
+  protected Thread drain(String document, InputStream stream, boolean stderr, OutputBuffer buffer, CompileHandle handle) {
+    Thread	result;
+
+    result = new Thread(
+      new StreamDrainer(this, document, stream, stderr, buffer, m_OutputListener, handle),
+      getName() + "-" + (stderr ? "stderr" : "stdout"));
+    result.setDaemon(true);
+    result.start();
+
+    return result;
+  }
+
+  /**
+   * Hook for updating the environment of the process before it gets
+   * started. Default implementation does nothing.
+   *
+   * @param document	the document being compiled
+   * @param env		the environment to update
+   */
+  protected void updateEnvironment(String document, Map<String,String> env) {
+  }
+
+  /**
+   * Runs a helper tool (eg for querying its version) and returns the first
+   * line of its output. The output goes to a temporary file rather than a
+   * pipe, so the time limit applies regardless of what the tool writes.
+   *
+   * @param dir		the working directory, null for the current one
+   * @param stderr	whether to include stderr in the output or discard it
+   * @param timeout	the time limit in msec
+   * @param command	the command-line
+   * @return		the first line (trimmed), null if the tool failed, didn't
+   * 			finish in time or didn't output anything
+   * @throws Exception	if executing fails
+   */
+  public static String readFirstLine(File dir, boolean stderr, long timeout, String... command) throws Exception {
+    String		result;
+    ProcessBuilder	pb;
+    Process		process;
+    Path		output;
+
+    result  = null;
+    process = null;
+    output  = Files.createTempFile("proceedings-", ".out");
+    try {
+      pb = new ProcessBuilder(command).directory(dir).redirectOutput(output.toFile());
+      if (stderr)
+	pb.redirectErrorStream(true);
+      else
+	pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+      process = pb.start();
+      process.getOutputStream().close();
+      if (process.waitFor(timeout, TimeUnit.MILLISECONDS) && (process.exitValue() == 0)) {
+	try (BufferedReader reader = Files.newBufferedReader(output, StandardCharsets.UTF_8)) {
+	  result = reader.readLine();
+	}
+	if (result != null)
+	  result = result.trim();
+      }
+    }
+    finally {
+      if (process != null)
+	CompileHandle.destroy(process);
+      Files.deleteIfExists(output);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the original file of the document, for keys and labels that
+   * have to stay the same across builds (the compiled file may be a staged
+   * copy in a temporary directory).
+   *
+   * @param document	the document being compiled
+   * @param handle	the handle of the compile
+   * @return		the original file, the document itself if not set on the handle
+   * @see		CompileHandle#getDocument()
+   */
+  protected String getOriginal(String document, CompileHandle handle) {
+    if (handle.getDocument() != null)
+      return handle.getDocument();
+    return document;
+  }
+
+  /**
+   * Executes the process, once the admission controller (if any) permits
+   * it to start.
+   *
+   * @param document	the document being compiled
+   * @param args	the command-line
+   * @param dir		the working directory
+   * @param buffer	the buffer for the output
+   * @param handle	the handle of the compile
+   * @return		null if successful, otherwise error message (incl output)
+   * @see		#launch(String, List, File, OutputBuffer, CompileHandle)
+   */
+  protected String execute(String document, List<String> args, File dir, OutputBuffer buffer, CompileHandle handle) {
+    String		result;
+    String		key;
+    long		reserved;
+    int			numMetrics;
+    CompileMetrics	metrics;
+
+    if (m_AdmissionController == null)
+      return launch(document, args, dir, buffer, handle);
+
+    key = AdmissionController.key(getName(), getOriginal(document, handle));
+    try {
+      reserved = m_AdmissionController.acquire(key, handle);
+    }
+    catch (InterruptedException e) {
+      handle.cancel();
+      Thread.currentThread().interrupt();
+      reserved = -1;
+    }
+    if (reserved == -1)
+      return "Failed to execute: " + Utils.flatten(args, " ") + "\n" + handle.getReason();
+
+    numMetrics = handle.getMetrics().size();
+    try {
+      result = launch(document, args, dir, buffer, handle);
+    }
+    finally {
+      metrics = null;
+      if (handle.getMetrics().size() > numMetrics)
+	metrics = handle.getLastMetrics();
+      m_AdmissionController.release(key, reserved, metrics);
+    }
+
+    return result;
+  }
+
+  /**
+   * Starts the process and waits for it to finish. Both output streams
+   * get drained concurrently, with the most recent lines being stored in
+   * the buffer. The process (including its children) gets killed if the
+   * time limit is exceeded, the compile is cancelled or
+   * {@link #checkOutput(String, boolean)} reports a reason for aborting
+   * (for the output or the lines of the progress file, see
+   * {@link #getProgressFile(String)}).
+   *
+   * @param document	the document being compiled
+   * @param args	the command-line
+   * @param dir		the working directory
+   * @param buffer	the buffer for the output
+   * @param handle	the handle of the compile
+   * @return		null if successful, otherwise error message (incl output)
+   */
+  protected String launch(String document, List<String> args, File dir, OutputBuffer buffer, CompileHandle handle) {
+    String		result;
+    ProcessBuilder	pb;
+    Process		proc;
+    Thread		stdout;
+    Thread		stderr;
+    File		progress;
+    FileTailer		tailer;
+    long		timeout;
+    long		start;
+    long		interval;
+    int			code;
+    CompileMetrics	metrics;
+
+    result  = null;
+    metrics = new CompileMetrics(getName(), getOriginal(document, handle));
+    start   = System.currentTimeMillis();
+    pb      = new ProcessBuilder(args);
+    pb.directory(dir);
+    updateEnvironment(document, pb.environment());
+    progress = getProgressFile(document);
+    tailer   = (progress == null) ? null : new FileTailer(this, progress, handle);
+    try {
+      proc = pb.start();
+      handle.setProcess(proc);
+      try {
+	// no interactive input available, tools should fail rather than wait
+	proc.getOutputStream().close();
+	stdout  = drain(document, proc.getInputStream(), false, buffer, handle);
+	stderr  = drain(document, proc.getErrorStream(), true, buffer, handle);
+	timeout = handle.remaining(m_Timeout * 1000L);
+	if (timeout > 0)
+	  timeout += System.currentTimeMillis();
+	// poll rather than block, so cpu/memory can be sampled while running;
+	// short intervals first, so quick invocations get sampled as well
+	interval = MIN_SAMPLE_INTERVAL;
+	while (!proc.waitFor(interval, TimeUnit.MILLISECONDS)) {
+	  ProcessSampler.sample(proc, metrics);
+	  interval = Math.min(interval * 2, SAMPLE_INTERVAL);
+	  if (tailer != null)
+	    tailer.poll();
+	  if ((timeout > 0) && (System.currentTimeMillis() >= timeout)) {
+	    handle.terminate(Termination.TIMEOUT, "Timeout exceeded");
+	    break;
+	  }
+	}
+	code = proc.waitFor();
+	// descendants may still be around, eg if detached from the process
+	ProcessSampler.sample(proc, metrics);
+	metrics.setExitCode(code);
+	stdout.join(DRAIN_TIMEOUT);
+	stderr.join(DRAIN_TIMEOUT);
+      }
+      finally {
+	handle.setProcess(null);
+	metrics.setWallTime(System.currentTimeMillis() - start);
+	metrics.setTermination(handle.getTermination());
+	handle.addMetrics(metrics);
+      }
+      if (handle.isTerminated())
+	result = handle.getReason();
+      else if (code != 0)
+	result = "Process exited with: " + code;
+    }
+    catch (InterruptedException e) {
+      handle.cancel();
+      Thread.currentThread().interrupt();
+      result = handle.getReason();
+    }
+    catch (Exception e) {
+      result = Utils.throwableToString(e);
+    }
+
+    if (result != null)
+      result = "Failed to execute: " + Utils.flatten(args, " ") + "\n" + result + toOutput(buffer);
+
+    return result;
+  }
+
+  /**
+   * Returns the output stored in the buffer for inclusion in error messages.
+   *
+   * @param buffer	the buffer to use
+   * @return		the output, empty string if none
+   */
+  protected String toOutput(OutputBuffer buffer) {
+    if (buffer.getCount() == 0)
+      return "";
+    return "\nOutput:\n" + buffer.getTail();
+  }
+
   /**
    * Compiles the specified document.
    *
    * @param document	the document to compile
+   * @param handle	the handle of the compile
    * @return		null if successful, otherwise error message
    */
-  protected abstract String doCompile(String document);
+  protected abstract String doCompile(String document, CompileHandle handle);
 
   /**
    * Compiles the specified document.
@@ -144,11 +560,25 @@ public abstract class AbstractCompiler
    * @return		null if successful, otherwise error message
    */
   public String compile(String document) {
+    return compile(document, new CompileHandle());
+  }
+
+  /**
+   * Compiles the specified document.
+   *
+   * @param document	the document to compile
+   * @param handle	the handle for cancelling the compile
+   * @return		null if successful, otherwise error message
+   */
+  public String compile(String document, CompileHandle handle) {
     String	result;
 
+    if (handle.isTerminated())
+      return handle.getReason();
+
     result = check(document);
     if (result == null)
-      result = doCompile(document);
+      result = doCompile(document, handle);
 
     return result;
   }
@@ -176,10 +606,54 @@ public abstract class AbstractCompiler
     result.put("executable", getExecutable());
     if (getOptions() != null)
       result.put("options", getOptions());
+    if (getTimeout() > 0)
+      result.put("timeout", getTimeout());
 
     return result;
   }
 
+  /**
+   * Turns the yaml value into a string array. Sequences are loaded as lists
+   * by yaml, not as arrays.
+   *
+   * @param value	the value to convert
+   * @return		the array, null if value is null
+   */
+  protected static String[] toStringArray(Object value) {
+    List	list;
+    String[]	result;
+    int		i;
+
+    if (value == null)
+      return null;
+    if (value instanceof String[])
+      return (String[]) value;
+    if (value instanceof List) {
+      list   = (List) value;
+      result = new String[list.size()];
+      for (i = 0; i < list.size(); i++)
+	result[i] = "" + list.get(i);
+      return result;
+    }
+
+    return new String[]{"" + value};
+  }
+
+  /**
+   * Initializes the compiler from the map representation.
+   * Derived classes with additional options need to override this method.
+   *
+   * @param value	the map representation
+   */
+  protected void initFromYaml(Map<String,Object> value) {
+    setExecutable((String) value.get("executable"));
+    setName((String) value.get("name"));
+    if (value.containsKey("options"))
+      setOptions(toStringArray(value.get("options")));
+    if (value.containsKey("timeout"))
+      setTimeout(((Number) value.get("timeout")).intValue());
+  }
+
   /**
    * Restores the compiler from the map representation.
    *
@@ -196,17 +670,18 @@ public abstract class AbstractCompiler
     if (!value.containsKey("executable"))
       return null;
 
-    try {
-      result = (AbstractCompiler) Class.forName((String) value.get("class")).newInstance();
-    }
-    catch (Exception e) {
-      return null;
+    result = CompilerRegistry.newInstance((String) value.get("class"));
+    if (result == null) {
+      // compiler type not registered as service
+      try {
+	result = (AbstractCompiler) Class.forName((String) value.get("class")).getDeclaredConstructor().newInstance();
+      }
+      catch (Exception e) {
+	return null;
+      }
     }
 
-    result.setExecutable((String) value.get("executable"));
-    result.setName((String) value.get("name"));
-    if (value.containsKey("options"))
-      result.setOptions((String[]) value.get("options"));
+    result.initFromYaml(value);
 
     return result;
   }
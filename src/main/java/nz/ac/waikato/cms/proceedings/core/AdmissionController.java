@@ -0,0 +1,385 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * AdmissionController.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.proceedings.core.CompileHandle.Termination;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides when compiler processes may start, to keep the machine busy
+ * without triggering the OOM killer. The number of processes in flight is
+ * capped by the CPU limit; beyond that, a process only starts if its
+ * expected peak memory fits both within the memory limit (minus the
+ * reservations of the running processes) and within the memory that is
+ * currently available. A process is always admitted if nothing else is
+ * running, so that large documents still get built.
+ * <br>
+ * The expected peak memory is learned per compiler and document from the
+ * previous runs (and persisted in the build history, if set). Processes
+ * that got killed (eg by the OOM killer) have their estimate doubled.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ * @see SystemResources
+ */
+public class AdmissionController {
+
+  /** the default peak memory for processes without history (256MB). */
+  public final static long DEFAULT_ESTIMATE = 256L * 1024L * 1024L;
+
+  /** the default fraction of the memory limit to keep free. */
+  public final static double DEFAULT_HEADROOM = 0.1;
+
+  /** the interval in msec for re-checking the available memory while waiting. */
+  public final static long POLL_INTERVAL = 250;
+
+  /** the exit code of processes killed with SIGKILL. */
+  public final static int EXIT_KILLED = 128 + 9;
+
+  /** the weight of the most recent peak memory, if lower than the recorded one. */
+  public final static double SMOOTHING = 0.5;
+
+  /** the resources. */
+  protected SystemResources m_Resources;
+
+  /** the maximum number of processes in flight, &lt;= 0 for CPU limit. */
+  protected int m_MaxProcesses;
+
+  /** the fraction of the memory limit to keep free. */
+  protected double m_Headroom;
+
+  /** the peak memory to assume for processes without history. */
+  protected long m_DefaultEstimate;
+
+  /** the build history for persisting the peak memory, null if not persisted. */
+  protected BuildHistory m_History;
+
+  /** the learned peak memory (key - bytes). */
+  protected Map<String,Long> m_Peaks;
+
+  /** the OOM kills of the cgroup accounted for so far, -1 if not available. */
+  protected long m_OOMKills;
+
+  /** the number of processes in flight. */
+  protected int m_Running;
+
+  /** the memory reserved by the processes in flight. */
+  protected long m_Reserved;
+
+  /**
+   * Initializes the controller with the resources of the system.
+   */
+  public AdmissionController() {
+    this(new SystemResources());
+  }
+
+  /**
+   * Initializes the controller.
+   *
+   * @param resources	the resources to use
+   */
+  public AdmissionController(SystemResources resources) {
+    m_Resources       = resources;
+    m_MaxProcesses    = -1;
+    m_Headroom        = DEFAULT_HEADROOM;
+    m_DefaultEstimate = DEFAULT_ESTIMATE;
+    m_Peaks           = new HashMap<>();
+    m_OOMKills        = resources.getOOMKills();
+  }
+
+  /**
+   * Returns the resources.
+   *
+   * @return		the resources
+   */
+  public SystemResources getResources() {
+    return m_Resources;
+  }
+
+  /**
+   * Sets the maximum number of processes in flight.
+   *
+   * @param value	the maximum, &lt;= 0 to use the CPU limit
+   */
+  public void setMaxProcesses(int value) {
+    m_MaxProcesses = value;
+  }
+
+  /**
+   * Returns the maximum number of processes in flight.
+   *
+   * @return		the maximum, &lt;= 0 if using the CPU limit
+   */
+  public int getMaxProcesses() {
+    return m_MaxProcesses;
+  }
+
+  /**
+   * Sets the fraction of the memory limit to keep free.
+   *
+   * @param value	the fraction (0-1)
+   */
+  public void setHeadroom(double value) {
+    m_Headroom = value;
+  }
+
+  /**
+   * Returns the fraction of the memory limit to keep free.
+   *
+   * @return		the fraction (0-1)
+   */
+  public double getHeadroom() {
+    return m_Headroom;
+  }
+
+  /**
+   * Sets the peak memory to assume for processes without history.
+   *
+   * @param value	the memory in bytes
+   */
+  public void setDefaultEstimate(long value) {
+    m_DefaultEstimate = value;
+  }
+
+  /**
+   * Returns the peak memory to assume for processes without history.
+   *
+   * @return		the memory in bytes
+   */
+  public long getDefaultEstimate() {
+    return m_DefaultEstimate;
+  }
+
+  /**
+   * Sets the build history for persisting the peak memory.
+   *
+   * @param value	the history, null to only learn in memory
+   */
+  public synchronized void setHistory(BuildHistory value) {
+    m_History = value;
+  }
+
+  /**
+   * Returns the build history for persisting the peak memory.
+   *
+   * @return		the history, null if only learning in memory
+   */
+  public synchronized BuildHistory getHistory() {
+    return m_History;
+  }
+
+  /**
+   * Returns the key for the compiler process.
+   *
+   * @param compiler	the name of the compiler
+   * @param document	the document being compiled
+   * @return		the key
+   */
+  public static String key(String compiler, String document) {
+    return compiler + ":" + new File(document).getAbsolutePath();
+  }
+
+  /**
+   * Returns the maximum number of processes in flight.
+   *
+   * @return		the maximum
+   */
+  protected int determineMaxProcesses() {
+    if (m_MaxProcesses > 0)
+      return m_MaxProcesses;
+    return Math.max(1, (int) Math.ceil(m_Resources.getCPULimit()));
+  }
+
+  /**
+   * Returns the recorded peak memory of the process.
+   *
+   * @param key		the key of the process
+   * @return		the memory in bytes, -1 if not recorded
+   */
+  protected synchronized long recorded(String key) {
+    if (m_Peaks.containsKey(key))
+      return m_Peaks.get(key);
+    if (m_History != null)
+      return m_History.getMemory(key);
+    return -1;
+  }
+
+  /**
+   * Returns the expected peak memory of the process.
+   *
+   * @param key		the key of the process
+   * @return		the memory in bytes
+   */
+  public synchronized long estimate(String key) {
+    long	result;
+
+    result = recorded(key);
+    if (result <= 0)
+      result = m_DefaultEstimate;
+
+    return result;
+  }
+
+  /**
+   * Checks whether a process with the expected peak memory can start.
+   *
+   * @param estimate	the expected peak memory in bytes
+   * @return		true if the process can start
+   */
+  protected boolean isAdmissible(long estimate) {
+    long	limit;
+    long	available;
+    long	headroom;
+
+    if (m_Running == 0)
+      return true;
+    if (m_Running >= determineMaxProcesses())
+      return false;
+
+    limit = m_Resources.getMemoryLimit();
+    if (limit <= 0)
+      return true;
+    headroom = Math.round(limit * m_Headroom);
+    if (m_Reserved + estimate > limit - headroom)
+      return false;
+    available = m_Resources.getAvailableMemory();
+    if ((available > -1) && (estimate > available - headroom))
+      return false;
+
+    return true;
+  }
+
+  /**
+   * Waits until the process can start and reserves its expected peak
+   * memory. Must be followed by a call to
+   * {@link #release(String, long, CompileMetrics)}.
+   *
+   * @param key		the key of the process
+   * @param handle	the handle of the compile, stops waiting if terminated
+   * @return		the reserved memory in bytes, -1 if the compile got terminated while waiting
+   * @throws InterruptedException	if interrupted while waiting
+   */
+  public synchronized long acquire(String key, CompileHandle handle) throws InterruptedException {
+    long	result;
+
+    result = estimate(key);
+    while (!isAdmissible(result)) {
+      if (handle.isTerminated())
+	return -1;
+      wait(POLL_INTERVAL);
+    }
+    m_Running++;
+    m_Reserved += result;
+
+    return result;
+  }
+
+  /**
+   * Releases the reservation of the finished process and learns its peak
+   * memory.
+   *
+   * @param key		the key of the process
+   * @param reserved	the reserved memory, as returned by {@link #acquire(String, CompileHandle)}
+   * @param metrics	the metrics of the process, null if it failed to start
+   */
+  public synchronized void release(String key, long reserved, CompileMetrics metrics) {
+    m_Running--;
+    m_Reserved -= reserved;
+    if (metrics != null)
+      learn(key, metrics);
+    notifyAll();
+  }
+
+  /**
+   * Checks whether the process got killed by the OOM killer. Processes
+   * killed by the build itself (timeout, fatal error, cancel) exit with the
+   * same code, so they are excluded. If the cgroup reports OOM kills, a
+   * kill must have been recorded that isn't accounted for yet.
+   *
+   * @param metrics	the metrics of the process
+   * @return		true if considered killed due to memory
+   */
+  protected synchronized boolean isOOMKilled(CompileMetrics metrics) {
+    long	kills;
+
+    if (metrics.getExitCode() != EXIT_KILLED)
+      return false;
+    if ((metrics.getTermination() != null) && (metrics.getTermination() != Termination.NONE))
+      return false;
+
+    kills = m_Resources.getOOMKills();
+    if ((kills == -1) || (m_OOMKills == -1))
+      return true;
+    if (kills <= m_OOMKills)
+      return false;
+    // one kill per process, concurrent kills get accounted for by the other processes
+    m_OOMKills++;
+
+    return true;
+  }
+
+  /**
+   * Learns the peak memory of the process. Lower peaks than recorded get
+   * smoothed, higher ones replace the recorded value. Processes that got
+   * killed by the OOM killer double their recorded peak memory.
+   *
+   * @param key		the key of the process
+   * @param metrics	the metrics of the process
+   */
+  protected synchronized void learn(String key, CompileMetrics metrics) {
+    long	peak;
+    long	previous;
+
+    previous = recorded(key);
+    peak     = metrics.getPeakRSS();
+    if (isOOMKilled(metrics))
+      peak = Math.max(peak, estimate(key)) * 2;
+    if (peak <= 0)
+      return;
+    if ((previous > 0) && (peak < previous))
+      peak = Math.round(SMOOTHING * peak + (1.0 - SMOOTHING) * previous);
+    m_Peaks.put(key, peak);
+    if (m_History != null)
+      m_History.updateMemory(key, peak);
+  }
+
+  /**
+   * Returns the number of processes in flight.
+   *
+   * @return		the number of processes
+   */
+  public synchronized int getNumRunning() {
+    return m_Running;
+  }
+
+  /**
+   * Returns a short description of the state.
+   *
+   * @return		the description
+   */
+  @Override
+  public synchronized String toString() {
+    return "running=" + m_Running + ", reserved=" + m_Reserved + ", max-processes=" + determineMaxProcesses() + ", " + m_Resources;
+  }
+}
@@ -0,0 +1,373 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * ArtifactCache.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.core.FileUtils;
+import nz.ac.waikato.cms.core.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Content-addressed cache for the outputs of compiles. The key of an
+ * artifact combines the content hashes of the document and the files it
+ * depends on (with paths relative to the document, so that checkouts in
+ * different locations share artifacts) with the identity of the compiler:
+ * its configuration (incl the preamble of its format) and the version
+ * reported by the executable, as well as the identity of the auxiliary
+ * compilers (BibTeX, figure converter).
+ * <br>
+ * Artifacts (zip files with the outputs) are looked up in the local store
+ * first, then in the remote one. Artifacts retrieved from the remote store
+ * get added to the local one.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class ArtifactCache {
+
+  /** the version of the key layout, change to invalidate all artifacts. */
+  public final static String KEY_VERSION = "artifact-2";
+
+  /** the option for querying the version of an executable. */
+  public final static String VERSION_OPTION = "--version";
+
+  /** the time in msec to wait for the version of an executable. */
+  public final static long VERSION_TIMEOUT = 10000;
+
+  /** the versions of the executables (executable and timestamp - version). */
+  protected final static Map<String,String> VERSIONS = new HashMap<>();
+
+  /** all compilers, for the auxiliary ones, null to ignore them. */
+  protected Compilers m_Compilers;
+
+  /** the local store, null if none. */
+  protected LocalArtifactStore m_Local;
+
+  /** the remote store, null if none. */
+  protected AbstractArtifactStore m_Remote;
+
+  /** the extensions of the outputs to cache. */
+  protected String[] m_Outputs;
+
+  /** the scanner for determining the dependencies. */
+  protected DependencyScanner m_Scanner;
+
+  /** the index of the dependencies, null to always scan. */
+  protected DependencyIndex m_Index;
+
+  /**
+   * Initializes the cache.
+   *
+   * @param local	the local store, null for none
+   * @param remote	the remote store, null for none
+   */
+  public ArtifactCache(LocalArtifactStore local, AbstractArtifactStore remote) {
+    m_Local   = local;
+    m_Remote  = remote;
+    m_Outputs = Sandbox.DEFAULT_COPY_BACK.clone();
+    m_Scanner = new DependencyScanner();
+  }
+
+  /**
+   * Returns the local store.
+   *
+   * @return		the store, null if none
+   */
+  public LocalArtifactStore getLocal() {
+    return m_Local;
+  }
+
+  /**
+   * Returns the remote store.
+   *
+   * @return		the store, null if none
+   */
+  public AbstractArtifactStore getRemote() {
+    return m_Remote;
+  }
+
+  /**
+   * Sets the extensions of the outputs to cache.
+   *
+   * @param value	the extensions (incl dot)
+   */
+  public void setOutputs(String[] value) {
+    m_Outputs = value;
+  }
+
+  /**
+   * Returns the extensions of the outputs to cache.
+   *
+   * @return		the extensions (incl dot)
+   */
+  public String[] getOutputs() {
+    return m_Outputs;
+  }
+
+  /**
+   * Sets all the compilers, for including the configuration of the
+   * auxiliary compilers (BibTeX, figure converter) in the key.
+   *
+   * @param value	the compilers, null to ignore auxiliary compilers
+   */
+  public void setCompilers(Compilers value) {
+    m_Compilers = value;
+  }
+
+  /**
+   * Returns all the compilers.
+   *
+   * @return		the compilers, null if auxiliary compilers are ignored
+   */
+  public Compilers getCompilers() {
+    return m_Compilers;
+  }
+
+  /**
+   * Sets the index to obtain the dependencies from, rather than scanning
+   * all files of a document each time.
+   *
+   * @param value	the index, null to always scan
+   */
+  public void setIndex(DependencyIndex value) {
+    m_Index = value;
+  }
+
+  /**
+   * Returns the index to obtain the dependencies from.
+   *
+   * @return		the index, null if always scanning
+   */
+  public DependencyIndex getIndex() {
+    return m_Index;
+  }
+
+  /**
+   * Returns the version of the executable, ie the first line output when
+   * called with {@link #VERSION_OPTION}. Versions are cached as long as
+   * the executable doesn't change.
+   *
+   * @param executable	the executable
+   * @return		the version, empty string if not available
+   */
+  public static String version(String executable) {
+    String		result;
+    String		key;
+
+    key = executable + "\t" + new File(executable).lastModified();
+    synchronized(VERSIONS) {
+      result = VERSIONS.get(key);
+    }
+    if (result != null)
+      return result;
+
+    result = "";
+    try {
+      result = AbstractCompiler.readFirstLine(null, true, VERSION_TIMEOUT, executable, VERSION_OPTION);
+      if (result == null) {
+	System.err.println("Executable didn't output its version: " + executable);
+	result = "";
+      }
+    }
+    catch (Exception e) {
+      System.err.println("Failed to determine version of: " + executable + "\n" + Utils.throwableToString(e));
+    }
+
+    synchronized(VERSIONS) {
+      VERSIONS.put(key, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Computes the key of the artifact for the document.
+   *
+   * @param document	the document
+   * @param compiler	the compiler used for the document
+   * @return		the key
+   * @throws IOException	if reading of the inputs fails
+   */
+  public String key(Document document, AbstractCompiler compiler) throws IOException {
+    MessageDigest	digest;
+    List<File>		files;
+    File		dir;
+
+    if (m_Index != null)
+      files = m_Index.update(document.getFile());
+    else
+      files = m_Scanner.scan(document.getFile());
+    dir    = new File(document.getFile()).getAbsoluteFile().getParentFile();
+    digest = Digests.newDigest();
+    Digests.update(digest, KEY_VERSION);
+    Digests.update(digest, BuildProtocol.relativize(dir, new File(document.getFile())));
+    Digests.update(digest, compiler, m_Compilers);
+    Digests.update(digest, version(compiler.getExecutable()));
+    if (m_Compilers != null) {
+      for (AbstractCompiler aux: m_Compilers.getAuxiliary(compiler)) {
+	if (aux.getExecutable() != null)
+	  Digests.update(digest, version(aux.getExecutable()));
+      }
+    }
+    for (File file: files) {
+      Digests.update(digest, BuildProtocol.relativize(dir, file));
+      Digests.update(digest, Digests.hash(file));
+    }
+
+    return Digests.toHex(digest.digest());
+  }
+
+  /**
+   * Packs the outputs of the document into a zip file.
+   *
+   * @param document	the document
+   * @param target	the zip file to create
+   * @return		whether any outputs were present
+   * @throws IOException	if packing fails
+   */
+  protected boolean pack(Document document, File target) throws IOException {
+    boolean	result;
+    File	output;
+
+    result = false;
+    try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(target.toPath()))) {
+      zip.setLevel(Deflater.BEST_SPEED);
+      for (String ext: m_Outputs) {
+	output = new File(FileUtils.replaceExtension(new File(document.getFile()).getAbsolutePath(), ext));
+	if (!output.isFile())
+	  continue;
+	zip.putNextEntry(new ZipEntry(ext));
+	Files.copy(output.toPath(), zip);
+	zip.closeEntry();
+	result = true;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Unpacks the outputs next to the document. Each output gets written to
+   * a temporary file first, which then replaces the original.
+   *
+   * @param source	the zip file
+   * @param document	the document
+   * @throws IOException	if unpacking fails
+   */
+  protected void unpack(File source, Document document) throws IOException {
+    ZipEntry	entry;
+    Path	target;
+    Path	tmp;
+
+    try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(source.toPath()))) {
+      while ((entry = zip.getNextEntry()) != null) {
+	if (!Arrays.asList(m_Outputs).contains(entry.getName()))
+	  throw new IOException("Unexpected entry in artifact: " + entry.getName());
+	target = new File(FileUtils.replaceExtension(new File(document.getFile()).getAbsolutePath(), entry.getName())).toPath();
+	tmp    = target.resolveSibling(target.getFileName() + ".tmp");
+	try (OutputStream out = Files.newOutputStream(tmp)) {
+	  zip.transferTo(out);
+	}
+	Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+    }
+  }
+
+  /**
+   * Restores the outputs of the document from the cache.
+   *
+   * @param key		the key of the artifact
+   * @param document	the document
+   * @return		true if restored, false if not cached
+   */
+  public boolean restore(String key, Document document) {
+    boolean	result;
+    File	tmp;
+
+    result = false;
+    tmp    = null;
+    try {
+      tmp = Files.createTempFile("artifact-", ".zip").toFile();
+      if ((m_Local != null) && m_Local.fetch(key, tmp)) {
+	result = true;
+      }
+      else if ((m_Remote != null) && m_Remote.fetch(key, tmp)) {
+	result = true;
+	if (m_Local != null)
+	  m_Local.store(key, tmp);
+      }
+      if (result)
+	unpack(tmp, document);
+    }
+    catch (Exception e) {
+      System.err.println("Failed to restore artifact " + key + " of: " + document.getFile() + "\n" + Utils.throwableToString(e));
+      result = false;
+    }
+    finally {
+      if ((tmp != null) && !tmp.delete())
+	tmp.deleteOnExit();
+    }
+
+    return result;
+  }
+
+  /**
+   * Stores the outputs of the document in the cache.
+   *
+   * @param key		the key of the artifact
+   * @param document	the document
+   */
+  public void store(String key, Document document) {
+    File	tmp;
+
+    tmp = null;
+    try {
+      tmp = Files.createTempFile("artifact-", ".zip").toFile();
+      if (!pack(document, tmp))
+	return;
+      if (m_Local != null)
+	m_Local.store(key, tmp);
+      if (m_Remote != null)
+	m_Remote.store(key, tmp);
+    }
+    catch (Exception e) {
+      System.err.println("Failed to store artifact " + key + " of: " + document.getFile() + "\n" + Utils.throwableToString(e));
+    }
+    finally {
+      if ((tmp != null) && !tmp.delete())
+	tmp.deleteOnExit();
+    }
+  }
+}
@@ -0,0 +1,312 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * ArtifactServer.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.Namespace;
+import nz.ac.waikato.cms.core.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal HTTP server for sharing a {@link LocalArtifactStore} with
+ * {@link HttpArtifactStore}s on other machines, eg for CI runs. Also serves
+ * as local stand-in for a remote cache when testing.
+ * <br>
+ * Listens on the loopback interface by default. Listening on other
+ * interfaces requires a token, which clients have to send as bearer token
+ * (see {@link HttpArtifactStore#setToken(String)}), as otherwise anyone on
+ * the network could store artifacts.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class ArtifactServer {
+
+  /** the default port. */
+  public final static int DEFAULT_PORT = 9754;
+
+  /** the header with the token. */
+  public final static String HEADER_AUTHORIZATION = "Authorization";
+
+  /** the scheme of the token in the header. */
+  public final static String BEARER = "Bearer ";
+
+  /** the store to serve. */
+  protected LocalArtifactStore m_Store;
+
+  /** the port to listen on, 0 for any free port. */
+  protected int m_Port;
+
+  /** the address to listen on, null for loopback. */
+  protected String m_Bind;
+
+  /** the token that clients must send, null if none required. */
+  protected String m_Token;
+
+  /** the HTTP server. */
+  protected HttpServer m_Server;
+
+  /** the threads handling the requests. */
+  protected ExecutorService m_Executor;
+
+  /**
+   * Initializes the server.
+   *
+   * @param store	the store to serve
+   * @param port	the port to listen on, 0 for any free port
+   */
+  public ArtifactServer(LocalArtifactStore store, int port) {
+    m_Store = store;
+    m_Port  = port;
+  }
+
+  /**
+   * Sets the address to listen on. Listening on other than the loopback
+   * interface requires a token.
+   *
+   * @param value	the address (eg 0.0.0.0 for all interfaces), null for loopback
+   */
+  public void setBind(String value) {
+    m_Bind = value;
+  }
+
+  /**
+   * Returns the address to listen on.
+   *
+   * @return		the address, null for loopback
+   */
+  public String getBind() {
+    return m_Bind;
+  }
+
+  /**
+   * Sets the token that clients must send.
+   *
+   * @param value	the token, null if none required
+   */
+  public void setToken(String value) {
+    m_Token = value;
+  }
+
+  /**
+   * Returns the token that clients must send.
+   *
+   * @return		the token, null if none required
+   */
+  public String getToken() {
+    return m_Token;
+  }
+
+  /**
+   * Returns the URL of the running server.
+   *
+   * @return		the URL, null if not running
+   */
+  public String getURL() {
+    String	host;
+
+    if (m_Server == null)
+      return null;
+    if (m_Server.getAddress().getAddress().isAnyLocalAddress())
+      host = InetAddress.getLoopbackAddress().getHostAddress();
+    else
+      host = m_Server.getAddress().getAddress().getHostAddress();
+    if (host.contains(":"))
+      host = "[" + host + "]";
+
+    return "http://" + host + ":" + m_Server.getAddress().getPort() + "/";
+  }
+
+  /**
+   * Returns whether the request carries the required token.
+   *
+   * @param exchange	the exchange
+   * @return		true if accepted
+   */
+  protected boolean isAuthorized(HttpExchange exchange) {
+    String	header;
+
+    if (m_Token == null)
+      return true;
+    header = exchange.getRequestHeaders().getFirst(HEADER_AUTHORIZATION);
+    if ((header == null) || !header.startsWith(BEARER))
+      return false;
+
+    return BuildProtocol.authenticate(m_Token, header.substring(BEARER.length()).trim());
+  }
+
+  /**
+   * Sends the response without body. Consumes the request body first,
+   * otherwise the connection gets reset rather than kept alive.
+   *
+   * @param exchange	the exchange
+   * @param code	the status code
+   * @throws IOException	if sending fails
+   */
+  protected void respond(HttpExchange exchange, int code) throws IOException {
+    exchange.getRequestBody().close();
+    exchange.sendResponseHeaders(code, -1);
+    exchange.close();
+  }
+
+  /**
+   * Handles a request.
+   *
+   * @param exchange	the exchange
+   * @throws IOException	if handling fails
+   */
+  protected void handle(HttpExchange exchange) throws IOException {
+    String	key;
+    Path	tmp;
+
+    if (!isAuthorized(exchange)) {
+      respond(exchange, HttpURLConnection.HTTP_UNAUTHORIZED);
+      return;
+    }
+    key = exchange.getRequestURI().getPath().substring(1);
+    if (!AbstractArtifactStore.KEY.matcher(key).matches()) {
+      respond(exchange, HttpURLConnection.HTTP_BAD_REQUEST);
+      return;
+    }
+
+    tmp = Files.createTempFile("artifact-", LocalArtifactStore.TMP);
+    try {
+      switch (exchange.getRequestMethod()) {
+	case "GET":
+	  exchange.getRequestBody().close();
+	  if (!m_Store.fetch(key, tmp.toFile())) {
+	    respond(exchange, HttpURLConnection.HTTP_NOT_FOUND);
+	    return;
+	  }
+	  exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, Files.size(tmp));
+	  try (OutputStream out = exchange.getResponseBody()) {
+	    Files.copy(tmp, out);
+	  }
+	  break;
+
+	case "PUT":
+	  try (InputStream in = exchange.getRequestBody()) {
+	    Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+	  }
+	  m_Store.store(key, tmp.toFile());
+	  respond(exchange, HttpURLConnection.HTTP_NO_CONTENT);
+	  break;
+
+	default:
+	  respond(exchange, HttpURLConnection.HTTP_BAD_METHOD);
+      }
+    }
+    finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Starts the server.
+   *
+   * @throws IOException	if the server cannot be started, eg listening on
+   * 			the network without a token
+   */
+  public void start() throws IOException {
+    InetAddress	address;
+
+    address = (m_Bind == null) ? InetAddress.getLoopbackAddress() : InetAddress.getByName(m_Bind);
+    if (!address.isLoopbackAddress() && (m_Token == null))
+      throw new IOException("A token is required when listening on other than loopback: " + m_Bind);
+    m_Server = HttpServer.create(new InetSocketAddress(address, m_Port), 0);
+    m_Server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+	try {
+	  ArtifactServer.this.handle(exchange);
+	}
+	catch (IOException e) {
+	  System.err.println("Failed to handle request: " + exchange.getRequestURI() + "\n" + Utils.throwableToString(e));
+	  throw e;
+	}
+      }
+    });
+    m_Executor = Executors.newCachedThreadPool();
+    m_Server.setExecutor(m_Executor);
+    m_Server.start();
+  }
+
+  /**
+   * Stops the server.
+   */
+  public void stop() {
+    if (m_Server == null)
+      return;
+    m_Server.stop(0);
+    m_Executor.shutdownNow();
+    m_Server = null;
+  }
+
+  /**
+   * Serves a store from the commandline.
+   *
+   * @param args	the commandline options, use -h for help
+   * @throws Exception	if the server cannot be started
+   */
+  public static void main(String[] args) throws Exception {
+    ArgumentParser parser = ArgumentParsers.newArgumentParser(ArtifactServer.class.getName());
+    parser.description("Serves a directory of build artifacts via HTTP.");
+    parser.addArgument("--dir").dest("dir").required(true).help("the directory of the artifact store");
+    parser.addArgument("--max-size").dest("maxsize").type(Long.class).setDefault(LocalArtifactStore.DEFAULT_MAX_SIZE / 1024 / 1024).help("the maximum size of the store in MB, <= 0 for unbounded");
+    parser.addArgument("--port").dest("port").type(Integer.class).setDefault(DEFAULT_PORT).help("the port to listen on");
+    parser.addArgument("--bind").dest("bind").help("the address to listen on, eg 0.0.0.0 for all interfaces (requires a token); defaults to loopback");
+    parser.addArgument("--token-file").dest("tokenfile").help("the file with the token that clients must send");
+    Namespace ns;
+    try {
+      ns = parser.parseArgs(args);
+    }
+    catch (ArgumentParserException e) {
+      parser.handleError(e);
+      System.exit(1);
+      return;
+    }
+
+    ArtifactServer server = new ArtifactServer(
+      new LocalArtifactStore(new File(ns.getString("dir")), ns.getLong("maxsize") * 1024 * 1024), ns.getInt("port"));
+    server.setBind(ns.getString("bind"));
+    if (ns.getString("tokenfile") != null)
+      server.setToken(BuildProtocol.readToken(new File(ns.getString("tokenfile"))));
+    server.start();
+    System.err.println("Serving artifacts at " + server.getURL());
+  }
+}
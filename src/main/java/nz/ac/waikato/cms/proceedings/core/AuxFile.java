@@ -0,0 +1,162 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * AuxFile.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.core.FileUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Helper methods for the .aux files generated by LaTeX.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class AuxFile {
+
+  /** the prefix for citations. */
+  public final static String CITATION = "\\citation{";
+
+  /** the prefix for the bibliography databases. */
+  public final static String BIBDATA = "\\bibdata{";
+
+  /** the prefix for the bibliography style. */
+  public final static String BIBSTYLE = "\\bibstyle{";
+
+  /** the prefix for included aux files. */
+  public final static String INPUT = "\\@input{";
+
+  /**
+   * Returns the aux file associated with the document.
+   *
+   * @param document	the tex document
+   * @return		the aux file
+   */
+  public static File getAuxFile(String document) {
+    return new File(FileUtils.replaceExtension(document, ".aux"));
+  }
+
+  /**
+   * Returns the argument of the command at the start of the line.
+   *
+   * @param line	the line to process
+   * @param prefix	the command, including the opening brace
+   * @return		the argument, null if line doesn't start with the command
+   */
+  public static String getArgument(String line, String prefix) {
+    int		end;
+
+    if (!line.startsWith(prefix))
+      return null;
+    end = line.lastIndexOf('}');
+    if (end < prefix.length())
+      return null;
+
+    return line.substring(prefix.length(), end);
+  }
+
+  /**
+   * Collects the bibliography related lines (\citation, \bibdata, \bibstyle),
+   * following included aux files.
+   *
+   * @param aux		the aux file to read
+   * @param lines	for collecting the lines
+   * @param visited	the aux files that were already read
+   * @throws IOException	if reading fails
+   */
+  protected static void readBibLines(File aux, List<String> lines, Set<File> visited) throws IOException {
+    String	line;
+    String	input;
+
+    if (!aux.isFile() || !visited.add(aux.getAbsoluteFile()))
+      return;
+
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(aux), StandardCharsets.ISO_8859_1))) {
+      while ((line = reader.readLine()) != null) {
+	if (line.startsWith(CITATION) || line.startsWith(BIBDATA) || line.startsWith(BIBSTYLE)) {
+	  lines.add(line);
+	}
+	else {
+	  input = getArgument(line, INPUT);
+	  if (input != null)
+	    readBibLines(new File(aux.getParentFile(), input), lines, visited);
+	}
+      }
+    }
+  }
+
+  /**
+   * Returns the bibliography related lines (\citation, \bibdata, \bibstyle),
+   * following included aux files.
+   *
+   * @param aux		the aux file to read
+   * @return		the lines, empty if the file doesn't exist
+   * @throws IOException	if reading fails
+   */
+  public static List<String> readBibLines(File aux) throws IOException {
+    List<String>	result;
+
+    result = new ArrayList<>();
+    readBibLines(aux, result, new HashSet<File>());
+
+    return result;
+  }
+
+  /**
+   * Returns whether any of the lines define the bibliography databases.
+   *
+   * @param lines	the bibliography related lines
+   * @return		true if \bibdata present
+   */
+  public static boolean hasBibData(List<String> lines) {
+    for (String line: lines) {
+      if (line.startsWith(BIBDATA))
+	return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the hash of the bibliography related lines.
+   *
+   * @param lines	the lines to hash
+   * @return		the hash
+   */
+  public static String hash(List<String> lines) {
+    MessageDigest	digest;
+
+    digest = Digests.newDigest();
+    for (String line: lines)
+      Digests.update(digest, line);
+
+    return Digests.toHex(digest.digest());
+  }
+}
@@ -0,0 +1,564 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * BibIndex.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Index of the entries of a .bib file, keyed by citation key, for writing
+ * the subset of entries that a document cites. Each file gets parsed only
+ * once and shared across all documents (see {@link #get(File)}) until it
+ * changes. The number and total size of the shared indices is bounded, the
+ * least recently used ones get dropped first. Only the positions of the
+ * entries are kept in the index, the content is held as bytes on the heap
+ * or, for large files, memory mapped. Large files get mapped from a private
+ * snapshot, as an in-place write truncating the .bib file would otherwise
+ * make accessing the mapped content fail.
+ * <br>
+ * Like BibTeX, citation keys are case-insensitive and the first entry with
+ * a key wins. @string and @preamble entries are always included in
+ * subsets, @comment entries never.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class BibIndex {
+
+  /** the size in bytes from which files get memory mapped rather than read. */
+  public final static long MMAP_THRESHOLD = 8L * 1024L * 1024L;
+
+  /** the pattern for the crossref field. */
+  public final static Pattern CROSSREF = Pattern.compile("(?i)\\bcrossref\\s*=\\s*[{\"]\\s*([^}\"\\s]+)\\s*[}\"]");
+
+  /** the maximum number of shared indices. */
+  public final static int MAX_INDICES = 16;
+
+  /** the maximum total size in bytes of the files of the shared indices. */
+  public final static long MAX_INDICES_SIZE = 512L * 1024L * 1024L;
+
+  /** the shared indices (canonical path - index), in access order. */
+  protected final static Map<String,BibIndex> INDICES = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** the indexed file. */
+  protected File m_File;
+
+  /** the timestamp of the file when indexed. */
+  protected long m_Modified;
+
+  /** the size of the file when indexed. */
+  protected long m_Size;
+
+  /** the content of the file. */
+  protected ByteBuffer m_Content;
+
+  /** whether the content is memory mapped. */
+  protected boolean m_Mapped;
+
+  /** the position of the entries (lower case key - entry number). */
+  protected Map<String,Integer> m_Keys;
+
+  /** the offsets of the entries. */
+  protected int[] m_Offsets;
+
+  /** the lengths of the entries. */
+  protected int[] m_Lengths;
+
+  /** the number of entries. */
+  protected int m_Count;
+
+  /** the offset/length pairs of the @string and @preamble entries. */
+  protected List<int[]> m_Macros;
+
+  /** the content hash, computed on demand. */
+  protected String m_Hash;
+
+  /**
+   * Indexes the file.
+   *
+   * @param file	the .bib file
+   * @throws IOException	if reading fails
+   */
+  public BibIndex(File file) throws IOException {
+    m_File     = file.getAbsoluteFile();
+    m_Modified = m_File.lastModified();
+    m_Size     = m_File.length();
+    m_Keys     = new HashMap<>();
+    m_Offsets  = new int[64];
+    m_Lengths  = new int[64];
+    m_Macros   = new ArrayList<>();
+    load();
+    parse();
+  }
+
+  /**
+   * Drops the least recently used shared indices until within the limits.
+   * The most recently used one is always kept. Must be called while
+   * holding the lock of the indices.
+   *
+   * @see		#MAX_INDICES
+   * @see		#MAX_INDICES_SIZE
+   */
+  protected static void evict() {
+    Iterator<BibIndex>	iter;
+    long		size;
+
+    size = 0;
+    for (BibIndex index: INDICES.values())
+      size += index.m_Size;
+
+    iter = INDICES.values().iterator();
+    while ((INDICES.size() > 1) && ((INDICES.size() > MAX_INDICES) || (size > MAX_INDICES_SIZE))) {
+      size -= iter.next().m_Size;
+      iter.remove();
+    }
+  }
+
+  /**
+   * Returns the shared index for the file, (re-)indexing it if necessary.
+   * A stale index gets replaced.
+   *
+   * @param file	the .bib file
+   * @return		the index
+   * @throws IOException	if indexing fails
+   */
+  public static BibIndex get(File file) throws IOException {
+    String	key;
+    BibIndex	result;
+
+    key = file.getCanonicalPath();
+    synchronized(INDICES) {
+      result = INDICES.get(key);
+      if ((result == null) || result.isStale()) {
+	result = new BibIndex(file);
+	INDICES.put(key, result);
+	evict();
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Loads the content of the file, memory mapping large files. These get
+   * copied to a temporary file first, which gets mapped and then deleted
+   * (the mapping stays valid), ie changes to the .bib file don't affect the
+   * mapped content.
+   *
+   * @throws IOException	if reading fails
+   */
+  protected void load() throws IOException {
+    Path	snapshot;
+
+    if (m_Size > Integer.MAX_VALUE)
+      throw new IOException("File too large for indexing: " + m_File);
+
+    if (m_Size < MMAP_THRESHOLD) {
+      m_Content = ByteBuffer.wrap(Files.readAllBytes(m_File.toPath()));
+      m_Mapped  = false;
+    }
+    else {
+      snapshot = Files.createTempFile("bibindex-", ".bib");
+      try {
+	Files.copy(m_File.toPath(), snapshot, StandardCopyOption.REPLACE_EXISTING);
+	try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+	  m_Content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+	}
+      }
+      finally {
+	try {
+	  Files.deleteIfExists(snapshot);
+	}
+	catch (IOException e) {
+	  // still mapped on some platforms
+	  snapshot.toFile().deleteOnExit();
+	}
+      }
+      m_Mapped = true;
+    }
+  }
+
+  /**
+   * Returns the position of the delimiter closing the entry.
+   *
+   * @param start	the position of the opening delimiter
+   * @return		the position of the closing delimiter, the end of the content if unterminated
+   */
+  protected int findEnd(int start) {
+    int		i;
+    int		depth;
+    byte	close;
+    byte	b;
+
+    close = (m_Content.get(start) == '{') ? (byte) '}' : (byte) ')';
+    depth = 0;
+    for (i = start + 1; i < m_Content.limit(); i++) {
+      b = m_Content.get(i);
+      if ((depth == 0) && (b == close))
+	return i;
+      if (b == '{')
+	depth++;
+      else if (b == '}')
+	depth--;
+    }
+
+    return m_Content.limit() - 1;
+  }
+
+  /**
+   * Returns the content as string.
+   *
+   * @param offset	the start
+   * @param length	the number of bytes
+   * @return		the string (ISO-8859-1 to keep bytes)
+   */
+  protected String text(int offset, int length) {
+    byte[]	bytes;
+
+    bytes = new byte[length];
+    for (int i = 0; i < length; i++)
+      bytes[i] = m_Content.get(offset + i);
+
+    return new String(bytes, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Adds the entry.
+   *
+   * @param key		the citation key
+   * @param offset	the start of the entry
+   * @param length	the length of the entry
+   */
+  protected void add(String key, int offset, int length) {
+    key = key.toLowerCase();
+    if (m_Keys.containsKey(key))
+      return;
+    if (m_Count == m_Offsets.length) {
+      m_Offsets = Arrays.copyOf(m_Offsets, m_Count * 2);
+      m_Lengths = Arrays.copyOf(m_Lengths, m_Count * 2);
+    }
+    m_Keys.put(key, m_Count);
+    m_Offsets[m_Count] = offset;
+    m_Lengths[m_Count] = length;
+    m_Count++;
+  }
+
+  /**
+   * Indexes the entries. Text outside of entries is ignored, like BibTeX
+   * does.
+   */
+  protected void parse() {
+    int		pos;
+    int		at;
+    int		open;
+    int		end;
+    int		comma;
+    int		limit;
+    String	type;
+    byte	b;
+
+    limit = m_Content.limit();
+    pos   = 0;
+    while (pos < limit) {
+      // locate start of entry
+      at = -1;
+      for (; pos < limit; pos++) {
+	if (m_Content.get(pos) == '@') {
+	  at = pos;
+	  break;
+	}
+      }
+      if (at == -1)
+	break;
+
+      // type
+      pos = at + 1;
+      while ((pos < limit) && Character.isLetter(m_Content.get(pos)))
+	pos++;
+      type = text(at + 1, pos - at - 1).toLowerCase();
+      while ((pos < limit) && Character.isWhitespace(m_Content.get(pos)))
+	pos++;
+      if ((pos >= limit) || type.isEmpty() || ((m_Content.get(pos) != '{') && (m_Content.get(pos) != '(')))
+	continue;
+      open = pos;
+      end  = findEnd(open);
+      pos  = end + 1;
+
+      switch (type) {
+	case "comment":
+	  break;
+	case "string":
+	case "preamble":
+	  m_Macros.add(new int[]{at, end - at + 1});
+	  break;
+	default:
+	  comma = open + 1;
+	  while (comma < end) {
+	    b = m_Content.get(comma);
+	    if (b == ',')
+	      break;
+	    comma++;
+	  }
+	  type = text(open + 1, comma - open - 1).trim();
+	  if (!type.isEmpty())
+	    add(type, at, end - at + 1);
+      }
+    }
+  }
+
+  /**
+   * Returns the indexed file.
+   *
+   * @return		the file
+   */
+  public File getFile() {
+    return m_File;
+  }
+
+  /**
+   * Returns whether the file changed since it got indexed.
+   *
+   * @return		true if changed
+   */
+  public boolean isStale() {
+    return (m_File.lastModified() != m_Modified) || (m_File.length() != m_Size);
+  }
+
+  /**
+   * Returns whether the content is memory mapped.
+   *
+   * @return		true if mapped
+   */
+  public boolean isMapped() {
+    return m_Mapped;
+  }
+
+  /**
+   * Returns the number of entries (excluding @string and @preamble).
+   *
+   * @return		the number of entries
+   */
+  public int size() {
+    return m_Count;
+  }
+
+  /**
+   * Returns whether the index contains an entry with the key.
+   *
+   * @param key		the citation key (case-insensitive)
+   * @return		true if present
+   */
+  public boolean contains(String key) {
+    return m_Keys.containsKey(key.toLowerCase());
+  }
+
+  /**
+   * Returns the bytes of the content.
+   *
+   * @param offset	the start
+   * @param length	the number of bytes
+   * @return		the bytes
+   */
+  protected byte[] bytes(int offset, int length) {
+    byte[]	result;
+    ByteBuffer	buffer;
+
+    result = new byte[length];
+    // duplicate, as position isn't thread-safe
+    buffer = m_Content.duplicate();
+    buffer.position(offset);
+    buffer.get(result);
+
+    return result;
+  }
+
+  /**
+   * Returns the entry.
+   *
+   * @param key		the citation key (case-insensitive)
+   * @return		the bytes of the entry, null if not present
+   */
+  public byte[] getEntry(String key) {
+    Integer	index;
+
+    index = m_Keys.get(key.toLowerCase());
+    if (index == null)
+      return null;
+
+    return bytes(m_Offsets[index], m_Lengths[index]);
+  }
+
+  /**
+   * Returns the @string and @preamble entries.
+   *
+   * @return		the bytes of the entries
+   */
+  public List<byte[]> getMacros() {
+    List<byte[]>	result;
+
+    result = new ArrayList<>();
+    for (int[] macro: m_Macros)
+      result.add(bytes(macro[0], macro[1]));
+
+    return result;
+  }
+
+  /**
+   * Returns the hash of the content.
+   *
+   * @return		the hash
+   */
+  public synchronized String getHash() {
+    MessageDigest	digest;
+
+    if (m_Hash == null) {
+      digest = Digests.newDigest();
+      digest.update(m_Content.duplicate());
+      m_Hash = Digests.toHex(digest.digest());
+    }
+
+    return m_Hash;
+  }
+
+  /**
+   * Returns the key of the entry that the entry cross-references.
+   *
+   * @param entry	the bytes of the entry
+   * @return		the key, null if none
+   */
+  public static String getCrossref(byte[] entry) {
+    Matcher	matcher;
+
+    matcher = CROSSREF.matcher(new String(entry, StandardCharsets.ISO_8859_1));
+    if (matcher.find())
+      return matcher.group(1);
+
+    return null;
+  }
+
+  /**
+   * Returns the first entry with the key across the indices.
+   *
+   * @param indices	the indices to search, in order
+   * @param key		the citation key
+   * @return		the entry, null if not found
+   */
+  protected static byte[] find(List<BibIndex> indices, String key) {
+    byte[]	result;
+
+    for (BibIndex index: indices) {
+      result = index.getEntry(key);
+      if (result != null)
+	return result;
+    }
+
+    return null;
+  }
+
+  /**
+   * Writes the subset of the entries that are cited (plus the entries they
+   * cross-reference) as .bib content. All @string and @preamble entries get
+   * written first; cross-referenced entries get written after the entries
+   * referencing them, as required by BibTeX.
+   *
+   * @param indices	the indices, in the order of the databases
+   * @param keys	the cited keys
+   * @param out		the stream to write to
+   * @return		the keys that weren't found
+   * @throws IOException	if writing fails
+   */
+  public static Set<String> subset(List<BibIndex> indices, Collection<String> keys, OutputStream out) throws IOException {
+    Set<String>		result;
+    Set<String>		cited;
+    Set<String>		targets;
+    Map<String,byte[]>	entries;
+    byte[]		entry;
+    String		crossref;
+
+    result  = new LinkedHashSet<>();
+    cited   = new LinkedHashSet<>();
+    targets = new LinkedHashSet<>();
+    entries = new HashMap<>();
+    for (String key: keys)
+      cited.add(key.toLowerCase());
+
+    for (String key: cited) {
+      entry = find(indices, key);
+      if (entry == null) {
+	result.add(key);
+	continue;
+      }
+      entries.put(key, entry);
+      crossref = getCrossref(entry);
+      if (crossref != null)
+	targets.add(crossref.toLowerCase());
+    }
+    for (String key: targets) {
+      if (!entries.containsKey(key)) {
+	entry = find(indices, key);
+	if (entry != null)
+	  entries.put(key, entry);
+      }
+    }
+
+    for (BibIndex index: indices) {
+      for (byte[] macro: index.getMacros()) {
+	out.write(macro);
+	out.write('\n');
+      }
+    }
+    for (String key: cited) {
+      if (entries.containsKey(key) && !targets.contains(key)) {
+	out.write(entries.get(key));
+	out.write('\n');
+      }
+    }
+    for (String key: targets) {
+      if (entries.containsKey(key)) {
+	out.write(entries.get(key));
+	out.write('\n');
+      }
+    }
+
+    return result;
+  }
+}
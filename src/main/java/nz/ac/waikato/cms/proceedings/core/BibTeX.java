@@ -24,12 +24,24 @@ import nz.ac.waikato.cms.core.FileUtils;
 import nz.ac.waikato.cms.core.Utils;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * BibTeX compiler.
+ * BibTeX compiler. Skips running BibTeX if neither the bibliography
+ * related lines of the .aux file, nor the .bib/.bst files they reference
+ * have changed since the last successful run and the .bbl file exists.
+ * Files that aren't next to the .aux file get located via kpsewhich; if a
+ * file cannot be located, BibTeX always runs. The fingerprint of the last
+ * run gets stored in a sidecar file.
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  * @version $Revision$
@@ -38,43 +50,338 @@ public class BibTeX
   extends AbstractCompiler {
 
   /**
-   * Compiles the specified document.
+   * Factory for BibTeX compilers.
+   */
+  public static class Factory
+    implements CompilerFactory {
+
+    /**
+     * Returns the type of compiler that this factory creates.
+     *
+     * @return		the compiler class
+     */
+    @Override
+    public Class<? extends AbstractCompiler> getCompilerClass() {
+      return BibTeX.class;
+    }
+
+    /**
+     * Creates a new instance of the compiler.
+     *
+     * @return		the compiler
+     */
+    @Override
+    public AbstractCompiler newInstance() {
+      return new BibTeX();
+    }
+  }
+
+  /** the extension of the sidecar file with the fingerprint of the last run. */
+  public final static String BIBHASH = ".bibhash";
+
+  /** the executable for locating files in the TeX distribution. */
+  public final static String KPSEWHICH = "kpsewhich";
+
+  /** the maximum time in msec to wait for kpsewhich. */
+  public final static int KPSEWHICH_TIMEOUT = 5000;
+
+  /** the files located via kpsewhich (directory/executable/name - path, empty if not found), see {@link #clearLocated()}. */
+  protected final static Map<String,String> LOCATED = new HashMap<>();
+
+  /**
+   * Returns the kpsewhich executable, taken from the directory of the
+   * BibTeX executable if present.
    *
-   * @param document	the document to compile
-   * @return		null if successful, otherwise error message
+   * @return		the executable
    */
-  @Override
-  protected String doCompile(String document) {
+  protected String getKpsewhich() {
+    File	file;
+
+    if ((m_Executable != null) && (new File(m_Executable).getParentFile() != null)) {
+      file = new File(new File(m_Executable).getParentFile(), KPSEWHICH);
+      if (file.isFile())
+	return file.getPath();
+    }
+
+    return KPSEWHICH;
+  }
+
+  /**
+   * Clears the files located via kpsewhich, eg at the start of a build, so
+   * that changes in the TeX distribution get picked up.
+   */
+  public static void clearLocated() {
+    synchronized(LOCATED) {
+      LOCATED.clear();
+    }
+  }
+
+  /**
+   * Locates the file in the TeX distribution via kpsewhich. Results are
+   * cached until {@link #clearLocated()} gets called.
+   *
+   * @param dir		the directory to run kpsewhich in
+   * @param name	the name of the file, incl extension
+   * @return		the file, null if not found
+   */
+  protected File kpsewhich(File dir, String name) {
     String		result;
-    ProcessBuilder	pb;
-    List<String>	args;
-    Process		proc;
-    int			code;
+    String		executable;
+    String		key;
+
+    executable = getKpsewhich();
+    key        = dir + "\t" + executable + "\t" + name;
+    synchronized(LOCATED) {
+      result = LOCATED.get(key);
+    }
+    if (result != null)
+      return result.isEmpty() ? null : new File(result);
+
+    try {
+      result = readFirstLine(dir, false, KPSEWHICH_TIMEOUT, executable, name);
+      if ((result == null) || result.isEmpty())
+	result = "";
+      else if (!new File(result).isAbsolute())
+	result = new File(dir, result).getAbsolutePath();
+    }
+    catch (Exception e) {
+      result = "";
+    }
+
+    synchronized(LOCATED) {
+      LOCATED.put(key, result);
+    }
+
+    return result.isEmpty() ? null : new File(result);
+  }
+
+  /**
+   * Returns the file referenced in the aux file: either next to the aux
+   * file or located in the TeX distribution via kpsewhich.
+   *
+   * @param dir		the directory of the aux file
+   * @param name	the name of the file, with or without extension
+   * @param ext		the extension to add
+   * @return		the file, doesn't exist if it couldn't be located
+   */
+  protected File locate(File dir, String name, String ext) {
+    File	result;
+    File	located;
+
+    name   = name.trim();
+    result = new File(dir, name.toLowerCase().endsWith(ext) ? name : name + ext);
+    if (!result.isFile()) {
+      located = kpsewhich(dir, result.getName());
+      if (located != null)
+	result = located;
+    }
+
+    return result;
+  }
+
+  /**
+   * Adds the file referenced in the aux file to the digest, ie its name and
+   * its content hash.
+   *
+   * @param digest	the digest to update
+   * @param dir		the directory of the aux file
+   * @param name	the name of the file, without extension
+   * @param ext		the extension to add
+   * @return		false if the file could not be located
+   * @throws IOException	if reading of the file fails
+   */
+  protected boolean update(MessageDigest digest, File dir, String name, String ext) throws IOException {
+    File	file;
+
+    name = name.trim();
+    file = locate(dir, name, ext);
+    if (!file.isFile())
+      return false;
+    Digests.update(digest, name);
+    Digests.update(digest, file);
+
+    return true;
+  }
+
+  /**
+   * Computes the fingerprint of the inputs of BibTeX: the configuration of
+   * the compiler, the bibliography related lines of the aux file and the
+   * .bib/.bst files they reference.
+   *
+   * @param aux		the aux file
+   * @return		the fingerprint, null if the aux file defines no bibliography
+   * 			or a referenced file could not be located (ie BibTeX has to run)
+   * @throws IOException	if reading fails
+   */
+  public String fingerprint(File aux) throws IOException {
+    MessageDigest	digest;
+    List<String>	lines;
+    String		arg;
 
-    result = null;
+    lines = AuxFile.readBibLines(aux);
+    if (!AuxFile.hasBibData(lines))
+      return null;
 
+    digest = Digests.newDigest();
+    Digests.update(digest, this);
+    for (String line: lines) {
+      Digests.update(digest, line);
+      arg = AuxFile.getArgument(line, AuxFile.BIBDATA);
+      if (arg != null) {
+	for (String name: arg.split(",")) {
+	  if (!update(digest, aux.getAbsoluteFile().getParentFile(), name, ".bib"))
+	    return null;
+	}
+      }
+      arg = AuxFile.getArgument(line, AuxFile.BIBSTYLE);
+      if (arg != null) {
+	if (!update(digest, aux.getAbsoluteFile().getParentFile(), arg, ".bst"))
+	  return null;
+      }
+    }
+
+    return Digests.toHex(digest.digest());
+  }
+
+  /**
+   * Returns the sidecar file with the fingerprint of the last run.
+   *
+   * @param aux		the aux file
+   * @return		the sidecar file
+   */
+  public static File getSidecar(File aux) {
+    return new File(FileUtils.replaceExtension(aux.getPath(), BIBHASH));
+  }
+
+  /**
+   * Reads the fingerprint of the last run.
+   *
+   * @param aux		the aux file
+   * @return		the fingerprint, null if not available
+   */
+  protected String readSidecar(File aux) {
+    File	sidecar;
+
+    sidecar = getSidecar(aux);
+    if (!sidecar.isFile())
+      return null;
+    try {
+      return new String(Files.readAllBytes(sidecar.toPath()), StandardCharsets.UTF_8).trim();
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Writes the fingerprint of the last run, via a temporary file.
+   *
+   * @param aux		the aux file
+   * @param fingerprint	the fingerprint, null to remove the sidecar file
+   */
+  protected void writeSidecar(File aux, String fingerprint) {
+    File	sidecar;
+    File	tmp;
+
+    sidecar = getSidecar(aux);
+    try {
+      if (fingerprint == null) {
+	Files.deleteIfExists(sidecar.toPath());
+	return;
+      }
+      tmp = new File(sidecar.getPath() + ".tmp");
+      Files.write(tmp.toPath(), (fingerprint + "\n").getBytes(StandardCharsets.UTF_8));
+      Files.move(tmp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      System.err.println("Failed to update: " + sidecar + "\n" + Utils.throwableToString(e));
+    }
+  }
+
+  /**
+   * Returns the aux file for the document.
+   *
+   * @param document	the tex or aux document
+   * @return		the aux file
+   */
+  protected String toAux(String document) {
     if (!document.toLowerCase().endsWith(".aux"))
       document = FileUtils.replaceExtension(document, ".aux");
+    return document;
+  }
+
+  /**
+   * Checks whether the .bbl file of the document is up-to-date, ie the
+   * inputs of BibTeX haven't changed since the last successful run.
+   *
+   * @param document	the tex or aux document
+   * @return		true if up-to-date
+   */
+  public boolean isUpToDate(String document) {
+    File	aux;
+    String	fingerprint;
+
+    aux = new File(toAux(document));
+    if (!new File(FileUtils.replaceExtension(aux.getPath(), ".bbl")).isFile())
+      return false;
+    try {
+      fingerprint = fingerprint(aux);
+    }
+    catch (IOException e) {
+      return false;
+    }
+
+    return (fingerprint != null) && fingerprint.equals(readSidecar(aux));
+  }
+
+  /**
+   * Runs BibTeX on the aux file.
+   *
+   * @param aux		the aux file
+   * @param handle	the handle of the compile
+   * @return		null if successful, otherwise error message
+   */
+  protected String run(String aux, CompileHandle handle) {
+    List<String>	args;
+    OutputBuffer	buffer;
 
     args = new ArrayList<>();
     args.add(m_Executable);
     if (m_Options != null)
       args.addAll(Arrays.asList(m_Options));
-    args.add(document);
-    pb = new ProcessBuilder(args);
-    pb.directory(new File(document).getParentFile());
+    args.add(aux);
+    buffer = new OutputBuffer(m_MaxOutputLines);
+    return execute(aux, args, new File(aux).getParentFile(), buffer, handle);
+  }
+
+  /**
+   * Compiles the specified document, unless the .bbl file is up-to-date.
+   *
+   * @param document	the document to compile
+   * @param handle	the handle of the compile
+   * @return		null if successful, otherwise error message
+   */
+  @Override
+  protected String doCompile(String document, CompileHandle handle) {
+    String		result;
+    String		fingerprint;
+    File		aux;
+
+    result   = null;
+    document = toAux(document);
+    aux      = new File(document);
+
     try {
-      proc = pb.start();
-      code = proc.waitFor();
-      if (code != 0)
-	result = "Process exited with: " + code;
+      fingerprint = fingerprint(aux);
     }
-    catch (Exception e) {
-      result = Utils.throwableToString(e);
+    catch (IOException e) {
+      fingerprint = null;
     }
+    if ((fingerprint != null) && fingerprint.equals(readSidecar(aux)) && new File(FileUtils.replaceExtension(document, ".bbl")).isFile())
+      return null;
 
-    if (result != null)
-      result = "Failed to execute: " + Utils.flatten(args, " ") + "\n" + result;
+    result = run(document, handle);
+    writeSidecar(aux, (result == null) ? fingerprint : null);
 
     return result;
   }
@@ -0,0 +1,331 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * BuildCache.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.core.FileUtils;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Persistent cache of the input fingerprints that documents were last
+ * built from, for skipping documents that haven't changed.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class BuildCache {
+
+  /** the key for the fingerprint. */
+  public final static String KEY_FINGERPRINT = "fingerprint";
+
+  /** the key for the size of the pdf. */
+  public final static String KEY_PDF_SIZE = "pdf-size";
+
+  /** the key for the timestamp of the pdf. */
+  public final static String KEY_PDF_MODIFIED = "pdf-modified";
+
+  /** the key for the start page that the pdf was compiled with. */
+  public final static String KEY_PAGE_OFFSET = "page-offset";
+
+  /** the file to store the cache in. */
+  protected File m_File;
+
+  /** the scanner for determining the dependencies. */
+  protected DependencyScanner m_Scanner;
+
+  /** the index of the dependencies, null to always scan. */
+  protected DependencyIndex m_Index;
+
+  /** all compilers, for the auxiliary ones, null to ignore them. */
+  protected Compilers m_Compilers;
+
+  /** the entries (absolute document path - entry). */
+  protected Map<String,Map<String,Object>> m_Entries;
+
+  /**
+   * Initializes the cache.
+   *
+   * @param file	the file to store the cache in
+   */
+  public BuildCache(File file) {
+    m_File    = file;
+    m_Scanner = new DependencyScanner();
+    m_Entries = new HashMap<>();
+  }
+
+  /**
+   * Returns the file the cache is stored in.
+   *
+   * @return		the file
+   */
+  public File getFile() {
+    return m_File;
+  }
+
+  /**
+   * Sets all the compilers, for including the configuration of the
+   * auxiliary compilers (BibTeX, figure converter) in the fingerprint.
+   *
+   * @param value	the compilers, null to ignore auxiliary compilers
+   */
+  public void setCompilers(Compilers value) {
+    m_Compilers = value;
+  }
+
+  /**
+   * Returns all the compilers.
+   *
+   * @return		the compilers, null if auxiliary compilers are ignored
+   */
+  public Compilers getCompilers() {
+    return m_Compilers;
+  }
+
+  /**
+   * Sets the index to obtain the dependencies from, rather than scanning
+   * all files of a document each time.
+   *
+   * @param value	the index, null to always scan
+   */
+  public void setIndex(DependencyIndex value) {
+    m_Index = value;
+  }
+
+  /**
+   * Returns the index to obtain the dependencies from.
+   *
+   * @return		the index, null if always scanning
+   */
+  public DependencyIndex getIndex() {
+    return m_Index;
+  }
+
+  /**
+   * Returns the key for the document.
+   *
+   * @param document	the document
+   * @return		the key
+   */
+  protected String key(Document document) {
+    return new File(document.getFile()).getAbsolutePath();
+  }
+
+  /**
+   * Returns the output file of the document.
+   *
+   * @param document	the document
+   * @return		the pdf
+   */
+  public File getOutput(Document document) {
+    return new File(FileUtils.replaceExtension(document.getFile(), ".pdf"));
+  }
+
+  /**
+   * Computes the fingerprint of the inputs of the document: the document,
+   * the files it depends on, the configuration of the compiler (incl the
+   * preamble of its format) and of the auxiliary compilers.
+   *
+   * @param document	the document
+   * @param compiler	the compiler used for the document
+   * @return		the fingerprint
+   * @throws IOException	if reading of the inputs fails
+   */
+  public String fingerprint(Document document, AbstractCompiler compiler) throws IOException {
+    return fingerprint(document, compiler, m_Compilers, m_Index, m_Scanner);
+  }
+
+  /**
+   * Computes the fingerprint of the inputs of the document: the document,
+   * the files it depends on, the configuration of the compiler (incl the
+   * preamble of its format) and of the auxiliary compilers.
+   *
+   * @param document	the document
+   * @param compiler	the compiler used for the document
+   * @param compilers	all compilers, for the auxiliary ones, null to ignore them
+   * @param index	the index of the dependencies, null to scan
+   * @param scanner	the scanner for determining the dependencies if no index
+   * @return		the fingerprint
+   * @throws IOException	if reading of the inputs fails
+   */
+  public static String fingerprint(Document document, AbstractCompiler compiler, Compilers compilers, DependencyIndex index, DependencyScanner scanner) throws IOException {
+    MessageDigest	digest;
+    List<File>		files;
+
+    if (index != null)
+      files = index.update(document.getFile());
+    else
+      files = scanner.scan(document.getFile());
+    digest = Digests.newDigest();
+    Digests.update(digest, compiler, compilers);
+    for (File file: files) {
+      Digests.update(digest, file.getPath());
+      Digests.update(digest, file);
+    }
+
+    return Digests.toHex(digest.digest());
+  }
+
+  /**
+   * Checks whether the document was built from the same inputs and its
+   * output hasn't changed since.
+   *
+   * @param document	the document to check
+   * @param fingerprint	the current fingerprint of the inputs
+   * @return		true if up-to-date
+   */
+  public synchronized boolean isUpToDate(Document document, String fingerprint) {
+    Map<String,Object>	entry;
+    File		pdf;
+
+    entry = m_Entries.get(key(document));
+    if (entry == null)
+      return false;
+    if (!fingerprint.equals(entry.get(KEY_FINGERPRINT)))
+      return false;
+
+    pdf = getOutput(document);
+    if (!pdf.isFile())
+      return false;
+
+    return (pdf.length() == ((Number) entry.get(KEY_PDF_SIZE)).longValue())
+      && (pdf.lastModified() == ((Number) entry.get(KEY_PDF_MODIFIED)).longValue());
+  }
+
+  /**
+   * Checks whether the document was built from the same inputs with the
+   * page counter set to the specified start page, and its output hasn't
+   * changed since.
+   *
+   * @param document	the document to check
+   * @param fingerprint	the current fingerprint of the inputs
+   * @param page	the start page
+   * @return		true if up-to-date
+   */
+  public synchronized boolean isUpToDate(Document document, String fingerprint, int page) {
+    Map<String,Object>	entry;
+
+    if (!isUpToDate(document, fingerprint))
+      return false;
+
+    entry = m_Entries.get(key(document));
+    return (entry.get(KEY_PAGE_OFFSET) instanceof Number) && (((Number) entry.get(KEY_PAGE_OFFSET)).intValue() == page);
+  }
+
+  /**
+   * Records a successful build of the document with the page counter set
+   * to the specified start page.
+   *
+   * @param document	the document that was built
+   * @param fingerprint	the fingerprint of the inputs
+   * @param page	the start page
+   */
+  public synchronized void update(Document document, String fingerprint, int page) {
+    update(document, fingerprint);
+    if (m_Entries.containsKey(key(document)))
+      m_Entries.get(key(document)).put(KEY_PAGE_OFFSET, page);
+  }
+
+  /**
+   * Records a successful build of the document.
+   *
+   * @param document	the document that was built
+   * @param fingerprint	the fingerprint of the inputs
+   */
+  public synchronized void update(Document document, String fingerprint) {
+    Map<String,Object>	entry;
+    File		pdf;
+
+    pdf = getOutput(document);
+    if (!pdf.isFile()) {
+      remove(document);
+      return;
+    }
+
+    entry = new HashMap<>();
+    entry.put(KEY_FINGERPRINT, fingerprint);
+    entry.put(KEY_PDF_SIZE, pdf.length());
+    entry.put(KEY_PDF_MODIFIED, pdf.lastModified());
+    m_Entries.put(key(document), entry);
+  }
+
+  /**
+   * Removes the document from the cache.
+   *
+   * @param document	the document to remove
+   */
+  public synchronized void remove(Document document) {
+    m_Entries.remove(key(document));
+  }
+
+  /**
+   * Loads the cache from disk, if the file exists.
+   *
+   * @throws IOException	if loading fails
+   */
+  public synchronized void load() throws IOException {
+    Object	loaded;
+
+    m_Entries.clear();
+    if (!m_File.exists())
+      return;
+
+    try (Reader reader = new InputStreamReader(new FileInputStream(m_File), StandardCharsets.UTF_8)) {
+      loaded = new Yaml().load(reader);
+    }
+    catch (Exception e) {
+      throw new IOException("Failed to load build cache: " + m_File, e);
+    }
+    if (loaded instanceof Map)
+      m_Entries.putAll((Map<String,Map<String,Object>>) loaded);
+  }
+
+  /**
+   * Saves the cache to disk. Writes to a temporary file first, which then
+   * replaces the cache file.
+   *
+   * @throws IOException	if saving fails
+   */
+  public synchronized void save() throws IOException {
+    File	tmp;
+
+    tmp = new File(m_File.getPath() + ".tmp");
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+      new Yaml().dump(new TreeMap<>(m_Entries), writer);
+    }
+    Files.move(tmp.toPath(), m_File.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+}
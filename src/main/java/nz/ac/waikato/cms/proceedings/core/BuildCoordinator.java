@@ -0,0 +1,921 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * BuildCoordinator.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.Namespace;
+import nz.ac.waikato.cms.core.FileUtils;
+import nz.ac.waikato.cms.core.Utils;
+import nz.ac.waikato.cms.proceedings.core.CompileHandle.Termination;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Distributes the compiles of the documents across {@link BuildWorker}s,
+ * which connect via sockets and pull jobs. Each job contains the document,
+ * the files it depends on, its auxiliary files from previous builds and the
+ * configuration of the compilers. The outputs get copied back next to the
+ * document.
+ * <br>
+ * Jobs get handed out largest first. Jobs of workers that disconnect or
+ * stop sending heartbeats get re-dispatched (up to a maximum number of
+ * attempts). Idle workers steal jobs that have been running for too long
+ * by compiling a speculative copy, the first result wins.
+ * <br>
+ * Executables and preamble formats referenced by the compilers need to be
+ * available under the same paths on the workers.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class BuildCoordinator {
+
+  /** the default maximum number of attempts per document. */
+  public final static int DEFAULT_MAX_ATTEMPTS = 3;
+
+  /** the default time in msec after which idle workers steal a running job. */
+  public final static int DEFAULT_STEAL_AFTER = 30000;
+
+  /**
+   * A document to compile.
+   */
+  protected static class Job {
+
+    /** the position of the document. */
+    protected int m_Index;
+
+    /** the document. */
+    protected Document m_Document;
+
+    /** the fingerprint of the inputs, null if not caching. */
+    protected String m_Fingerprint;
+
+    /** the estimated size. */
+    protected long m_Estimate;
+
+    /** the number of dispatches (excluding speculative ones). */
+    protected int m_Attempts;
+
+    /** the number of workers currently compiling the job. */
+    protected int m_Running;
+
+    /** when the job got dispatched. */
+    protected long m_Started;
+
+    /** whether a result has been accepted. */
+    protected boolean m_Done;
+
+    /**
+     * Initializes the job.
+     *
+     * @param index	the position of the document
+     * @param document	the document
+     * @param estimate	the estimated size
+     */
+    protected Job(int index, Document document, long estimate) {
+      m_Index    = index;
+      m_Document = document;
+      m_Estimate = estimate;
+    }
+  }
+
+  /** the documents to build. */
+  protected Documents m_Documents;
+
+  /** the available compilers. */
+  protected Compilers m_Compilers;
+
+  /** the port to listen on, 0 for any free port. */
+  protected int m_Port;
+
+  /** the address to listen on, null for loopback. */
+  protected String m_Bind;
+
+  /** the token that workers must send, null if none required. */
+  protected String m_Token;
+
+  /** the number of workers to start within this JVM. */
+  protected int m_NumLocalWorkers;
+
+  /** the maximum number of LaTeX passes per document. */
+  protected int m_MaxPasses;
+
+  /** the maximum number of attempts per document. */
+  protected int m_MaxAttempts;
+
+  /** the time in msec after which idle workers steal a running job, &lt;= 0 to disable. */
+  protected int m_StealAfter;
+
+  /** the build cache, null if not used. */
+  protected BuildCache m_BuildCache;
+
+  /** for determining the files to send. */
+  protected DependencyScanner m_Scanner;
+
+  /** the compilers as yaml. */
+  protected String m_CompilersYaml;
+
+  /** the jobs. */
+  protected List<Job> m_Jobs;
+
+  /** the jobs waiting for a worker. */
+  protected PriorityQueue<Job> m_Queue;
+
+  /** the results. */
+  protected BuildResult[] m_Results;
+
+  /** the number of jobs without accepted result. */
+  protected int m_Remaining;
+
+  /** the number of connections so far. */
+  protected int m_NumConnections;
+
+  /** the number of open connections. */
+  protected int m_NumActive;
+
+  /** the server socket. */
+  protected ServerSocket m_Server;
+
+  /** the workers within this JVM. */
+  protected List<BuildWorker> m_LocalWorkers;
+
+  /**
+   * Initializes the coordinator.
+   */
+  public BuildCoordinator() {
+    m_Documents    = new Documents();
+    m_Compilers    = new Compilers();
+    m_Port         = BuildProtocol.DEFAULT_PORT;
+    m_MaxPasses    = PassDriver.DEFAULT_MAX_PASSES;
+    m_MaxAttempts  = DEFAULT_MAX_ATTEMPTS;
+    m_StealAfter   = DEFAULT_STEAL_AFTER;
+    m_Scanner      = new DependencyScanner();
+    m_LocalWorkers = new ArrayList<>();
+  }
+
+  /**
+   * Sets the documents to build.
+   *
+   * @param value	the documents
+   */
+  public void setDocuments(Documents value) {
+    m_Documents = value;
+  }
+
+  /**
+   * Returns the documents to build.
+   *
+   * @return		the documents
+   */
+  public Documents getDocuments() {
+    return m_Documents;
+  }
+
+  /**
+   * Sets the available compilers.
+   *
+   * @param value	the compilers
+   */
+  public void setCompilers(Compilers value) {
+    m_Compilers = value;
+  }
+
+  /**
+   * Returns the available compilers.
+   *
+   * @return		the compilers
+   */
+  public Compilers getCompilers() {
+    return m_Compilers;
+  }
+
+  /**
+   * Sets the port to listen on.
+   *
+   * @param value	the port, 0 for any free port
+   */
+  public void setPort(int value) {
+    m_Port = value;
+  }
+
+  /**
+   * Returns the port to listen on.
+   *
+   * @return		the port, 0 for any free port
+   */
+  public int getPort() {
+    return m_Port;
+  }
+
+  /**
+   * Sets the address to listen on. Listening on other than the loopback
+   * interface should be combined with a token.
+   *
+   * @param value	the address (eg 0.0.0.0 for all interfaces), null for loopback
+   */
+  public void setBind(String value) {
+    m_Bind = value;
+  }
+
+  /**
+   * Returns the address to listen on.
+   *
+   * @return		the address, null for loopback
+   */
+  public String getBind() {
+    return m_Bind;
+  }
+
+  /**
+   * Sets the token that workers must send when connecting.
+   *
+   * @param value	the token, null if none required
+   */
+  public void setToken(String value) {
+    m_Token = value;
+  }
+
+  /**
+   * Returns the token that workers must send when connecting.
+   *
+   * @return		the token, null if none required
+   */
+  public String getToken() {
+    return m_Token;
+  }
+
+  /**
+   * Sets the number of workers to start within this JVM, connecting via
+   * localhost.
+   *
+   * @param value	the number of workers
+   */
+  public void setNumLocalWorkers(int value) {
+    m_NumLocalWorkers = value;
+  }
+
+  /**
+   * Returns the number of workers to start within this JVM.
+   *
+   * @return		the number of workers
+   */
+  public int getNumLocalWorkers() {
+    return m_NumLocalWorkers;
+  }
+
+  /**
+   * Sets the maximum number of LaTeX passes per document.
+   *
+   * @param value	the maximum
+   */
+  public void setMaxPasses(int value) {
+    m_MaxPasses = value;
+  }
+
+  /**
+   * Returns the maximum number of LaTeX passes per document.
+   *
+   * @return		the maximum
+   */
+  public int getMaxPasses() {
+    return m_MaxPasses;
+  }
+
+  /**
+   * Sets the maximum number of attempts per document, ie how often a
+   * document gets dispatched after workers failed.
+   *
+   * @param value	the maximum
+   */
+  public void setMaxAttempts(int value) {
+    m_MaxAttempts = value;
+  }
+
+  /**
+   * Returns the maximum number of attempts per document.
+   *
+   * @return		the maximum
+   */
+  public int getMaxAttempts() {
+    return m_MaxAttempts;
+  }
+
+  /**
+   * Sets the time after which idle workers steal a running job.
+   *
+   * @param value	the time in msec, &lt;= 0 to disable
+   */
+  public void setStealAfter(int value) {
+    m_StealAfter = value;
+  }
+
+  /**
+   * Returns the time after which idle workers steal a running job.
+   *
+   * @return		the time in msec, &lt;= 0 to disable
+   */
+  public int getStealAfter() {
+    return m_StealAfter;
+  }
+
+  /**
+   * Sets the build cache to use for skipping up-to-date documents.
+   *
+   * @param value	the cache, null for none
+   */
+  public void setBuildCache(BuildCache value) {
+    m_BuildCache = value;
+  }
+
+  /**
+   * Returns the build cache.
+   *
+   * @return		the cache, null if none
+   */
+  public BuildCache getBuildCache() {
+    return m_BuildCache;
+  }
+
+  /**
+   * Returns the port the coordinator is listening on.
+   *
+   * @return		the port, -1 if not listening
+   */
+  public int getLocalPort() {
+    if (m_Server == null)
+      return -1;
+    return m_Server.getLocalPort();
+  }
+
+  /**
+   * Returns the files to send for the document: the files it depends on
+   * and the auxiliary files from previous builds.
+   *
+   * @param document	the document
+   * @return		the files
+   * @throws IOException	if scanning fails
+   */
+  protected List<File> sources(Document document) throws IOException {
+    List<File>	result;
+    File	file;
+
+    result = m_Scanner.scan(document.getFile());
+    for (String ext: Sandbox.GENERATED) {
+      file = new File(FileUtils.replaceExtension(new File(document.getFile()).getAbsolutePath(), ext));
+      if (file.isFile() && !result.contains(file))
+	result.add(file);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the next job for a worker.
+   *
+   * @return		the job, null if none available at the moment
+   */
+  protected synchronized Job next() {
+    Job		result;
+    long	now;
+
+    now    = System.currentTimeMillis();
+    result = m_Queue.poll();
+    if ((result == null) && (m_StealAfter > 0)) {
+      for (Job job: m_Jobs) {
+	if (job.m_Done || (job.m_Running != 1) || (now - job.m_Started < m_StealAfter))
+	  continue;
+	if ((result == null) || (job.m_Started < result.m_Started))
+	  result = job;
+      }
+      if (result != null)
+	System.err.println("Stealing: " + result.m_Document.getFile());
+    }
+    if (result == null)
+      return null;
+
+    if (result.m_Running == 0) {
+      result.m_Started = now;
+      result.m_Attempts++;
+    }
+    result.m_Running++;
+
+    return result;
+  }
+
+  /**
+   * Returns whether all jobs have a result.
+   *
+   * @return		true if finished
+   */
+  protected synchronized boolean isFinished() {
+    return (m_Remaining == 0);
+  }
+
+  /**
+   * Claims the result of a job for a worker that finished it.
+   *
+   * @param job		the job
+   * @return		true if the first result, false if another worker was faster
+   */
+  protected synchronized boolean claim(Job job) {
+    job.m_Running--;
+    if (job.m_Done)
+      return false;
+    job.m_Done = true;
+    return true;
+  }
+
+  /**
+   * Records the result of a claimed job.
+   *
+   * @param job		the job
+   * @param result	the result
+   */
+  protected synchronized void finish(Job job, BuildResult result) {
+    job.m_Done = true;
+    m_Results[job.m_Index] = result;
+    m_Remaining--;
+    if (m_BuildCache != null) {
+      if (result.isSuccess())
+	m_BuildCache.update(job.m_Document, job.m_Fingerprint);
+      else
+	m_BuildCache.remove(job.m_Document);
+    }
+    notifyAll();
+  }
+
+  /**
+   * Handles a worker that failed to deliver a result for the job, either
+   * re-dispatching or failing it.
+   *
+   * @param job		the job
+   * @param reason	why the worker failed
+   */
+  protected synchronized void failed(Job job, String reason) {
+    job.m_Running--;
+    if (job.m_Done || (job.m_Running > 0))
+      return;
+    if (job.m_Attempts < m_MaxAttempts) {
+      System.err.println("Re-dispatching " + job.m_Document.getFile() + ": " + reason);
+      m_Queue.add(job);
+      return;
+    }
+    finish(job, new BuildResult(
+      job.m_Index, job.m_Document, "Failed after " + job.m_Attempts + " attempt(s): " + reason,
+      System.currentTimeMillis() - job.m_Started));
+  }
+
+  /**
+   * Sends the job to the worker.
+   *
+   * @param out		the stream to send to
+   * @param job		the job
+   * @param files	the files to send
+   * @throws IOException	if sending fails
+   */
+  protected void send(DataOutputStream out, Job job, List<File> files) throws IOException {
+    File	root;
+
+    root = BuildProtocol.commonRoot(files);
+    out.writeUTF(BuildProtocol.JOB);
+    out.writeInt(job.m_Index);
+    BuildProtocol.writeString(out, m_CompilersYaml);
+    out.writeUTF(job.m_Document.getCompiler());
+    out.writeUTF(BuildProtocol.relativize(root, new File(job.m_Document.getFile())));
+    out.writeInt(job.m_Document.getTimeout());
+    out.writeInt(m_MaxPasses);
+    BuildProtocol.writeFiles(out, root, files);
+    out.flush();
+  }
+
+  /**
+   * Receives the result of the job from the worker. The outputs only get
+   * moved in place if no other worker delivered a result before. Only the
+   * outputs of the document (see {@link Sandbox#DEFAULT_COPY_BACK}) are
+   * accepted.
+   *
+   * @param in		the stream to read from
+   * @param job		the job
+   * @param root	the directory the outputs are relative to
+   * @param suffix	the suffix for the temporary files
+   * @throws IOException	if receiving fails
+   */
+  protected void receive(DataInputStream in, Job job, File root, String suffix) throws IOException {
+    int			id;
+    String		error;
+    long		duration;
+    Termination		termination;
+    List<String>	warnings;
+    Map<File,File>	outputs;
+    Set<File>		allowed;
+    BuildResult		result;
+    int			count;
+    int			i;
+
+    id = in.readInt();
+    if (id != job.m_Index)
+      throw new IOException("Expected result for job " + job.m_Index + ", received: " + id);
+    error       = BuildProtocol.readString(in);
+    duration    = in.readLong();
+    termination = Termination.valueOf(in.readUTF());
+    warnings    = new ArrayList<>();
+    count       = in.readInt();
+    for (i = 0; i < count; i++)
+      warnings.add(BuildProtocol.readString(in));
+    allowed     = new HashSet<>();
+    for (String ext: Sandbox.DEFAULT_COPY_BACK)
+      allowed.add(new File(FileUtils.replaceExtension(new File(job.m_Document.getFile()).getAbsolutePath(), ext)).toPath().normalize().toFile());
+    outputs     = BuildProtocol.readFiles(in, root, suffix, allowed);
+    if (!claim(job)) {
+      BuildProtocol.discard(outputs);
+      return;
+    }
+    try {
+      BuildProtocol.commit(outputs);
+    }
+    catch (IOException e) {
+      BuildProtocol.discard(outputs);
+      if (error == null)
+	error = "Failed to store outputs: " + Utils.throwableToString(e);
+    }
+    result = new BuildResult(job.m_Index, job.m_Document, error, duration);
+    result.setTermination(termination);
+    result.setWarnings(warnings);
+    finish(job, result);
+  }
+
+  /**
+   * Serves a worker until all jobs have a result or the worker fails.
+   *
+   * @param socket	the connection to the worker
+   * @param suffix	the suffix for temporary files
+   */
+  protected void serve(Socket socket, String suffix) {
+    DataInputStream	in;
+    DataOutputStream	out;
+    String		name;
+    String		cmd;
+    Job			job;
+    List<File>		files;
+
+    name = socket.getRemoteSocketAddress().toString();
+    job  = null;
+    try {
+      socket.setSoTimeout(BuildProtocol.HEARTBEAT_TIMEOUT);
+      in  = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      cmd = in.readUTF();
+      if (!cmd.equals(BuildProtocol.HELLO))
+	throw new IOException("Expected " + BuildProtocol.HELLO + ", received: " + cmd);
+      name = in.readUTF();
+      if (!BuildProtocol.authenticate(m_Token, BuildProtocol.readString(in))) {
+	System.err.println("Worker '" + name + "' (" + socket.getRemoteSocketAddress() + ") failed to authenticate!");
+	return;
+      }
+      while (true) {
+	cmd = in.readUTF();
+	if (!cmd.equals(BuildProtocol.READY))
+	  throw new IOException("Expected " + BuildProtocol.READY + ", received: " + cmd);
+	if (isFinished()) {
+	  out.writeUTF(BuildProtocol.DONE);
+	  out.flush();
+	  return;
+	}
+	job = next();
+	if (job == null) {
+	  out.writeUTF(BuildProtocol.WAIT);
+	  out.flush();
+	  continue;
+	}
+	try {
+	  files = sources(job.m_Document);
+	}
+	catch (IOException e) {
+	  if (claim(job))
+	    finish(job, new BuildResult(job.m_Index, job.m_Document, "Failed to collect files: " + Utils.throwableToString(e), 0));
+	  job = null;
+	  out.writeUTF(BuildProtocol.WAIT);
+	  out.flush();
+	  continue;
+	}
+	send(out, job, files);
+	while ((cmd = in.readUTF()).equals(BuildProtocol.ALIVE))
+	  ;
+	if (!cmd.equals(BuildProtocol.RESULT))
+	  throw new IOException("Expected " + BuildProtocol.RESULT + ", received: " + cmd);
+	receive(in, job, BuildProtocol.commonRoot(files), suffix);
+	job = null;
+      }
+    }
+    catch (Exception e) {
+      if (job != null)
+	failed(job, "Worker '" + name + "' failed: " + e);
+    }
+    finally {
+      try {
+	socket.close();
+      }
+      catch (IOException e) {
+	// ignored
+      }
+      synchronized(this) {
+	m_NumActive--;
+	notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Accepts connections from workers until the server socket gets closed.
+   */
+  protected void accept() {
+    Socket		socket;
+    Thread		thread;
+    int			num;
+
+    while (!m_Server.isClosed()) {
+      try {
+	socket = m_Server.accept();
+      }
+      catch (IOException e) {
+	if (!m_Server.isClosed())
+	  System.err.println("Failed to accept connection!\n" + Utils.throwableToString(e));
+	continue;
+      }
+      synchronized(this) {
+	m_NumConnections++;
+	m_NumActive++;
+	num = m_NumConnections;
+      }
+      final Socket fSocket = socket;
+      final String suffix = ".worker" + num + ".tmp";
+      thread = new Thread("coordinator-" + num) {
+	@Override
+	public void run() {
+	  serve(fSocket, suffix);
+	}
+      };
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Starts the workers within this JVM.
+   */
+  protected void startLocalWorkers() {
+    BuildWorker	worker;
+    Thread	thread;
+    String	host;
+    int		i;
+
+    if (m_Server.getInetAddress().isAnyLocalAddress())
+      host = InetAddress.getLoopbackAddress().getHostAddress();
+    else
+      host = m_Server.getInetAddress().getHostAddress();
+    for (i = 0; i < m_NumLocalWorkers; i++) {
+      worker = new BuildWorker(host, m_Server.getLocalPort());
+      worker.setName("local-" + (i + 1));
+      worker.setToken(m_Token);
+      m_LocalWorkers.add(worker);
+      thread = new Thread(worker, worker.getName());
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Sets up the jobs for the documents that need building.
+   */
+  protected void initJobs() {
+    Document		document;
+    AbstractCompiler	compiler;
+    Job			job;
+    int			i;
+
+    m_Results = new BuildResult[m_Documents.size()];
+    m_Jobs    = new ArrayList<>();
+    m_Queue   = new PriorityQueue<>(new Comparator<Job>() {
+      @Override
+      public int compare(Job o1, Job o2) {
+	int result = Long.compare(o2.m_Estimate, o1.m_Estimate);
+	if (result == 0)
+	  result = Integer.compare(o1.m_Index, o2.m_Index);
+	return result;
+      }
+    });
+    m_Remaining = 0;
+
+    for (i = 0; i < m_Documents.size(); i++) {
+      document = m_Documents.get(i);
+      compiler = m_Compilers.find(document.getCompiler());
+      if (compiler == null) {
+	m_Results[i] = new BuildResult(i, document, "Unknown compiler: " + document.getCompiler(), 0);
+	continue;
+      }
+      job = new Job(i, document, BuildHistory.size(document));
+      if (m_BuildCache != null) {
+	try {
+	  job.m_Fingerprint = m_BuildCache.fingerprint(document, compiler);
+	  if (m_BuildCache.isUpToDate(document, job.m_Fingerprint)) {
+	    m_Results[i] = new BuildResult(i, document, null, 0, true);
+	    continue;
+	  }
+	}
+	catch (Exception e) {
+	  m_Results[i] = new BuildResult(i, document, Utils.throwableToString(e), 0);
+	  continue;
+	}
+      }
+      m_Jobs.add(job);
+      m_Queue.add(job);
+      m_Remaining++;
+    }
+  }
+
+  /**
+   * Builds all the documents, waiting for workers to connect and compile
+   * them.
+   *
+   * @return		the results, in the order of the documents
+   * @throws IOException	if the server socket cannot be opened
+   */
+  public BuildResults build() throws IOException {
+    BuildResults	result;
+    StringWriter	writer;
+    Thread		acceptor;
+    long		end;
+    int			i;
+
+    result = new BuildResults();
+
+    if (m_BuildCache != null) {
+      m_BuildCache.setCompilers(m_Compilers);
+      try {
+	m_BuildCache.load();
+      }
+      catch (Exception e) {
+	System.err.println("Failed to load build cache, performing full build!\n" + Utils.throwableToString(e));
+      }
+    }
+
+    writer = new StringWriter();
+    m_Compilers.write(writer);
+    m_CompilersYaml = writer.toString();
+
+    initJobs();
+    m_NumConnections = 0;
+    m_NumActive      = 0;
+    m_Server         = new ServerSocket(m_Port, 50, (m_Bind == null) ? InetAddress.getLoopbackAddress() : InetAddress.getByName(m_Bind));
+    if (!m_Server.getInetAddress().isLoopbackAddress() && (m_Token == null))
+      System.err.println("Warning: accepting workers from the network without requiring a token!");
+    acceptor = new Thread("coordinator-accept") {
+      @Override
+      public void run() {
+	accept();
+      }
+    };
+    acceptor.setDaemon(true);
+    acceptor.start();
+    startLocalWorkers();
+    System.err.println("Waiting for workers on " + m_Server.getInetAddress().getHostAddress() + ":" + m_Server.getLocalPort() + "...");
+
+    try {
+      synchronized(this) {
+	while (m_Remaining > 0)
+	  wait();
+      }
+      // give connected workers the chance to ask for another job and disconnect
+      m_Server.close();
+      end = System.currentTimeMillis() + BuildProtocol.HEARTBEAT_INTERVAL;
+      synchronized(this) {
+	while ((m_NumActive > 0) && (System.currentTimeMillis() < end))
+	  wait(Math.max(1, end - System.currentTimeMillis()));
+      }
+    }
+    catch (InterruptedException e) {
+      synchronized(this) {
+	for (Job job: m_Jobs) {
+	  if (!job.m_Done)
+	    finish(job, new BuildResult(job.m_Index, job.m_Document, "Build interrupted", 0));
+	}
+      }
+      for (BuildWorker worker: m_LocalWorkers)
+	worker.stop();
+    }
+    finally {
+      m_Server.close();
+      m_LocalWorkers.clear();
+    }
+
+    for (i = 0; i < m_Results.length; i++)
+      result.add(m_Results[i]);
+
+    if (m_BuildCache != null) {
+      try {
+	m_BuildCache.save();
+      }
+      catch (Exception e) {
+	System.err.println("Failed to save build cache: " + m_BuildCache.getFile() + "\n" + Utils.throwableToString(e));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Builds the documents from the commandline.
+   *
+   * @param args	the commandline options, use -h for help
+   * @throws Exception	if loading of the configuration fails
+   */
+  public static void main(String[] args) throws Exception {
+    ArgumentParser parser = ArgumentParsers.newArgumentParser(BuildCoordinator.class.getName());
+    parser.description("Builds the documents of the proceedings on workers (see " + BuildWorker.class.getName() + ").");
+    parser.addArgument("--compilers").dest("compilers").required(true).help("the yaml file with the compilers");
+    parser.addArgument("--documents").dest("documents").required(true).help("the yaml file with the documents");
+    parser.addArgument("--cache").dest("cache").help("the yaml file for the build cache, enables incremental builds");
+    parser.addArgument("--report").dest("report").help("the prefix for the JSON (.json) and Prometheus (.prom) build reports");
+    parser.addArgument("--port").dest("port").type(Integer.class).setDefault(BuildProtocol.DEFAULT_PORT).help("the port to listen on for workers, 0 for any free port");
+    parser.addArgument("--bind").dest("bind").help("the address to listen on for workers, eg 0.0.0.0 for all interfaces; defaults to loopback");
+    parser.addArgument("--token-file").dest("tokenfile").help("the file with the token that workers must send, recommended when not listening on loopback");
+    parser.addArgument("--local").dest("local").type(Integer.class).setDefault(0).help("the number of workers to start in this process");
+    parser.addArgument("--max-attempts").dest("maxattempts").type(Integer.class).setDefault(DEFAULT_MAX_ATTEMPTS).help("the maximum number of times a document gets dispatched after workers failed");
+    parser.addArgument("--steal-after").dest("stealafter").type(Integer.class).setDefault(DEFAULT_STEAL_AFTER).help("the time in msec after which idle workers compile a copy of a running job, <= 0 to disable");
+    parser.addArgument("--max-passes").dest("maxpasses").type(Integer.class).setDefault(PassDriver.DEFAULT_MAX_PASSES).help("the maximum number of LaTeX passes per document");
+    Namespace ns;
+    try {
+      ns = parser.parseArgs(args);
+    }
+    catch (ArgumentParserException e) {
+      parser.handleError(e);
+      System.exit(1);
+      return;
+    }
+
+    BuildCoordinator coordinator = new BuildCoordinator();
+    try (Reader reader = new FileReader(ns.getString("compilers"))) {
+      coordinator.setCompilers(Compilers.read(reader));
+    }
+    try (Reader reader = new FileReader(ns.getString("documents"))) {
+      coordinator.setDocuments(Documents.read(reader));
+    }
+    if (ns.getString("cache") != null)
+      coordinator.setBuildCache(new BuildCache(new File(ns.getString("cache"))));
+    coordinator.setPort(ns.getInt("port"));
+    coordinator.setBind(ns.getString("bind"));
+    if (ns.getString("tokenfile") != null)
+      coordinator.setToken(BuildProtocol.readToken(new File(ns.getString("tokenfile"))));
+    coordinator.setNumLocalWorkers(ns.getInt("local"));
+    coordinator.setMaxAttempts(ns.getInt("maxattempts"));
+    coordinator.setStealAfter(ns.getInt("stealafter"));
+    coordinator.setMaxPasses(ns.getInt("maxpasses"));
+    BuildResults results = coordinator.build();
+    System.out.println(results.toSummary());
+    if (ns.getString("report") != null) {
+      BuildReport report = new BuildReport(results);
+      report.writeJSON(new File(ns.getString("report") + ".json"));
+      report.writePrometheus(new File(ns.getString("report") + ".prom"));
+    }
+    if (!results.isSuccess())
+      System.exit(1);
+  }
+}
@@ -0,0 +1,1202 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * BuildEngine.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.Namespace;
+import nz.ac.waikato.cms.core.Utils;
+import nz.ac.waikato.cms.proceedings.core.BuildGraph.Task;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Builds all the documents of the proceedings, compiling independent
+ * documents in parallel on a bounded pool of worker threads. The build is
+ * modelled as a graph of steps (preamble formats, documents, table of
+ * contents, page offsets, volume), which gets scheduled longest critical path first
+ * using the durations of previous builds.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class BuildEngine {
+
+  /** the prefix for the names of document steps. */
+  public final static String DOCUMENT_PREFIX = "document:";
+
+  /** the prefix for the names of preamble format steps. */
+  public final static String FORMAT_PREFIX = "format:";
+
+  /** the name of the table of contents step. */
+  public final static String STEP_TOC = "toc";
+
+  /** the prefix for the names of the page offset steps of the documents. */
+  public final static String OFFSET_PREFIX = "offset:";
+
+  /** the name of the volume step. */
+  public final static String STEP_VOLUME = "volume";
+
+  /** the documents to build. */
+  protected Documents m_Documents;
+
+  /** the available compilers. */
+  protected Compilers m_Compilers;
+
+  /** the number of worker threads, &lt;= 0 for number of available processors. */
+  protected int m_NumThreads;
+
+  /** the maximum number of LaTeX passes per document. */
+  protected int m_MaxPasses;
+
+  /** the cache for incremental builds, null if always compiling. */
+  protected BuildCache m_BuildCache;
+
+  /** the cache of compile outputs, null if not used. */
+  protected ArtifactCache m_ArtifactCache;
+
+  /** the controller deciding when compiler processes may start, null if not used. */
+  protected AdmissionController m_AdmissionController;
+
+  /** the sandbox for staging the documents, null if compiling in place. */
+  protected Sandbox m_Sandbox;
+
+  /** the index of the dependencies of the documents, null to always scan. */
+  protected DependencyIndex m_DependencyIndex;
+
+  /** the durations of previous builds for scheduling, null if not recorded. */
+  protected BuildHistory m_BuildHistory;
+
+  /** the journal for resuming interrupted builds, null if not used. */
+  protected BuildJournal m_BuildJournal;
+
+  /** the tex file for the table of contents to generate, null if none. */
+  protected File m_TOC;
+
+  /** the tex file for the volume to assemble, null if none. */
+  protected File m_Volume;
+
+  /** the layout of the volume from the last table of contents (file of document - entry). */
+  protected Map<String,VolumeEntry> m_Layout;
+
+  /** the handles of the running compiles (index of document - handle). */
+  protected Map<Integer,CompileHandle> m_Handles;
+
+  /** the handles of the running steps other than documents (step - handle). */
+  protected Map<String,CompileHandle> m_StepHandles;
+
+  /** whether the build got cancelled. */
+  protected volatile boolean m_Cancelled;
+
+  /**
+   * Initializes the engine.
+   */
+  public BuildEngine() {
+    m_Documents   = new Documents();
+    m_Compilers   = new Compilers();
+    m_NumThreads  = -1;
+    m_MaxPasses   = PassDriver.DEFAULT_MAX_PASSES;
+    m_Layout      = new ConcurrentHashMap<>();
+    m_Handles     = new ConcurrentHashMap<>();
+    m_StepHandles = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Sets the documents to build.
+   *
+   * @param value	the documents
+   */
+  public void setDocuments(Documents value) {
+    m_Documents = value;
+  }
+
+  /**
+   * Returns the documents to build.
+   *
+   * @return		the documents
+   */
+  public Documents getDocuments() {
+    return m_Documents;
+  }
+
+  /**
+   * Sets the compilers to use.
+   *
+   * @param value	the compilers
+   */
+  public void setCompilers(Compilers value) {
+    m_Compilers = value;
+  }
+
+  /**
+   * Returns the compilers to use.
+   *
+   * @return		the compilers
+   */
+  public Compilers getCompilers() {
+    return m_Compilers;
+  }
+
+  /**
+   * Sets the number of worker threads.
+   *
+   * @param value	the number of threads, &lt;= 0 for number of available processors
+   */
+  public void setNumThreads(int value) {
+    m_NumThreads = value;
+  }
+
+  /**
+   * Returns the number of worker threads.
+   *
+   * @return		the number of threads, &lt;= 0 for number of available processors
+   */
+  public int getNumThreads() {
+    return m_NumThreads;
+  }
+
+  /**
+   * Sets the maximum number of LaTeX passes per document.
+   *
+   * @param value	the maximum
+   */
+  public void setMaxPasses(int value) {
+    m_MaxPasses = value;
+  }
+
+  /**
+   * Returns the maximum number of LaTeX passes per document.
+   *
+   * @return		the maximum
+   */
+  public int getMaxPasses() {
+    return m_MaxPasses;
+  }
+
+  /**
+   * Sets the cache to use for incremental builds. Documents whose inputs
+   * and output haven't changed since the last build get skipped.
+   *
+   * @param value	the cache, null to always compile
+   */
+  public void setBuildCache(BuildCache value) {
+    m_BuildCache = value;
+  }
+
+  /**
+   * Returns the cache used for incremental builds.
+   *
+   * @return		the cache, null if always compiling
+   */
+  public BuildCache getBuildCache() {
+    return m_BuildCache;
+  }
+
+  /**
+   * Sets the cache of compile outputs. Documents whose outputs are cached
+   * get restored from the cache rather than compiled.
+   *
+   * @param value	the cache, null to always compile
+   */
+  public void setArtifactCache(ArtifactCache value) {
+    m_ArtifactCache = value;
+  }
+
+  /**
+   * Returns the cache of compile outputs.
+   *
+   * @return		the cache, null if always compiling
+   */
+  public ArtifactCache getArtifactCache() {
+    return m_ArtifactCache;
+  }
+
+  /**
+   * Sets the controller that decides when compiler processes may start,
+   * based on the available CPU and memory. Peak memory gets recorded in
+   * the build history, if set.
+   *
+   * @param value	the controller, null to start processes immediately
+   */
+  public void setAdmissionController(AdmissionController value) {
+    m_AdmissionController = value;
+  }
+
+  /**
+   * Returns the controller that decides when compiler processes may start.
+   *
+   * @return		the controller, null if starting processes immediately
+   */
+  public AdmissionController getAdmissionController() {
+    return m_AdmissionController;
+  }
+
+  /**
+   * Sets the sandbox for staging the documents on local storage.
+   *
+   * @param value	the sandbox, null to compile documents in place
+   */
+  public void setSandbox(Sandbox value) {
+    m_Sandbox = value;
+  }
+
+  /**
+   * Returns the sandbox for staging the documents on local storage.
+   *
+   * @return		the sandbox, null if compiling documents in place
+   */
+  public Sandbox getSandbox() {
+    return m_Sandbox;
+  }
+
+  /**
+   * Sets the index of the dependencies of the documents, which gets
+   * updated incrementally rather than scanning all files of all documents.
+   *
+   * @param value	the index, null to always scan
+   */
+  public void setDependencyIndex(DependencyIndex value) {
+    m_DependencyIndex = value;
+  }
+
+  /**
+   * Returns the index of the dependencies of the documents.
+   *
+   * @return		the index, null if always scanning
+   */
+  public DependencyIndex getDependencyIndex() {
+    return m_DependencyIndex;
+  }
+
+  /**
+   * Sets the history of build durations, used for scheduling the longest
+   * running documents first.
+   *
+   * @param value	the history, null to not record durations
+   */
+  public void setBuildHistory(BuildHistory value) {
+    m_BuildHistory = value;
+  }
+
+  /**
+   * Returns the history of build durations.
+   *
+   * @return		the history, null if not recording durations
+   */
+  public BuildHistory getBuildHistory() {
+    return m_BuildHistory;
+  }
+
+  /**
+   * Sets the journal of the document compiles. An interrupted build resumes
+   * from the journal, skipping the documents that were completed already.
+   *
+   * @param value	the journal, null to not keep one
+   */
+  public void setBuildJournal(BuildJournal value) {
+    m_BuildJournal = value;
+  }
+
+  /**
+   * Returns the journal of the document compiles.
+   *
+   * @return		the journal, null if not kept
+   */
+  public BuildJournal getBuildJournal() {
+    return m_BuildJournal;
+  }
+
+  /**
+   * Sets the tex file for the table of contents, generated once all
+   * documents have been built.
+   *
+   * @param value	the file, null for none
+   */
+  public void setTOC(File value) {
+    m_TOC = value;
+  }
+
+  /**
+   * Returns the tex file for the table of contents.
+   *
+   * @return		the file, null if none
+   */
+  public File getTOC() {
+    return m_TOC;
+  }
+
+  /**
+   * Sets the tex file for the volume, assembled once all documents (and
+   * the table of contents) have been built.
+   *
+   * @param value	the file, null for none
+   */
+  public void setVolume(File value) {
+    m_Volume = value;
+  }
+
+  /**
+   * Returns the tex file for the volume.
+   *
+   * @return		the file, null if none
+   */
+  public File getVolume() {
+    return m_Volume;
+  }
+
+  /**
+   * Returns the actual number of worker threads to use.
+   *
+   * @return		the number of threads
+   */
+  protected int determineNumThreads() {
+    int		result;
+
+    result = m_NumThreads;
+    if (result <= 0)
+      result = Runtime.getRuntime().availableProcessors();
+    if (result > m_Documents.size())
+      result = m_Documents.size();
+    if (result < 1)
+      result = 1;
+
+    return result;
+  }
+
+  /**
+   * Compiles a single document. LaTeX documents get compiled repeatedly
+   * (interleaved with BibTeX, if available) until their auxiliary files
+   * reach a fixed point.
+   *
+   * @param file	the file to compile (the document's file or its staged copy)
+   * @param compiler	the compiler to use
+   * @param handle	the handle of the compile
+   * @return		null if successful, otherwise error message
+   */
+  protected String compile(String file, AbstractCompiler compiler, CompileHandle handle) {
+    PassDriver	driver;
+    BibTeX	bibtex;
+    String	name;
+
+    if (!(compiler instanceof LaTeX))
+      return compiler.compile(file, handle);
+
+    name   = ((LaTeX) compiler).getBibTeX();
+    bibtex = m_Compilers.findBibTeX((LaTeX) compiler);
+    if ((name != null) && (bibtex == null))
+      return "Unknown BibTeX compiler: " + name;
+
+    driver = new PassDriver();
+    driver.setLaTeX((LaTeX) compiler);
+    driver.setBibTeX(bibtex);
+    driver.setFigureConverter(m_Compilers.find(FigureConverter.class));
+    driver.setMaxPasses(m_MaxPasses);
+    return driver.run(file, handle).getError();
+  }
+
+  /**
+   * Compiles a single document with the TeX code executed first, eg for
+   * setting the page counter. An additional pass is performed if LaTeX
+   * requests a rerun.
+   *
+   * @param file	the file to compile (the document's file or its staged copy)
+   * @param compiler	the compiler to use
+   * @param code	the TeX code to execute first, null for a regular compile
+   * @param handle	the handle of the compile
+   * @return		null if successful, otherwise error message
+   * @see		#compile(String, AbstractCompiler, CompileHandle)
+   */
+  protected String compile(String file, AbstractCompiler compiler, String code, CompileHandle handle) {
+    String	result;
+    LaTeX	latex;
+
+    if (code == null)
+      return compile(file, compiler, handle);
+    if (!(compiler instanceof LaTeX))
+      return "Not a LaTeX compiler: " + compiler.getName();
+
+    latex  = (LaTeX) compiler;
+    result = latex.compile(file, code, handle);
+    if ((result == null) && latex.requiresRecompile(file))
+      result = latex.compile(file, code, handle);
+
+    return result;
+  }
+
+  /**
+   * Compiles a single document, in the sandbox if one is set.
+   *
+   * @param document	the document to compile
+   * @param compiler	the compiler to use
+   * @param handle	the handle of the compile
+   * @return		null if successful, otherwise error message
+   * @throws Exception	if staging fails
+   */
+  protected String compile(Document document, AbstractCompiler compiler, CompileHandle handle) throws Exception {
+    return compile(document, compiler, null, handle);
+  }
+
+  /**
+   * Compiles a single document, in the sandbox if one is set.
+   *
+   * @param document	the document to compile
+   * @param compiler	the compiler to use
+   * @param code	the TeX code to execute first, null for a regular compile
+   * @param handle	the handle of the compile
+   * @return		null if successful, otherwise error message
+   * @throws Exception	if staging fails
+   */
+  protected String compile(Document document, AbstractCompiler compiler, String code, CompileHandle handle) throws Exception {
+    String	result;
+    String	staged;
+
+    if (m_Sandbox == null)
+      return compile(document.getFile(), compiler, code, handle);
+
+    staged = m_Sandbox.stage(document.getFile());
+    try {
+      result = compile(staged, compiler, code, handle);
+      m_Sandbox.copyBack(staged, document.getFile());
+    }
+    finally {
+      m_Sandbox.remove(staged);
+    }
+
+    return result;
+  }
+
+  /**
+   * Builds a single document.
+   *
+   * @param index	the position of the document
+   * @param document	the document to build
+   * @return		the result
+   */
+  protected BuildResult build(int index, Document document) {
+    BuildResult		result;
+    String		error;
+    long		start;
+    AbstractCompiler	compiler;
+    String		fingerprint;
+    String		artifact;
+    CompileHandle	handle;
+
+    start  = System.currentTimeMillis();
+    handle = new CompileHandle();
+    handle.setDocument(document.getFile());
+    handle.setTimeout(document.getTimeout() * 1000L);
+    m_Handles.put(index, handle);
+    if (m_Cancelled)
+      handle.cancel();
+    try {
+      compiler = m_Compilers.find(document.getCompiler());
+      if (compiler == null) {
+	error = "Unknown compiler: " + document.getCompiler();
+      }
+      else {
+	fingerprint = null;
+	if (m_BuildCache != null) {
+	  fingerprint = m_BuildCache.fingerprint(document, compiler);
+	  if (m_BuildCache.isUpToDate(document, fingerprint))
+	    return new BuildResult(index, document, null, System.currentTimeMillis() - start, true);
+	}
+	else if (m_BuildJournal != null)
+	  fingerprint = BuildCache.fingerprint(document, compiler, m_Compilers, m_DependencyIndex, new DependencyScanner());
+	if (m_BuildJournal != null) {
+	  // completed before the previous build got interrupted
+	  if (m_BuildJournal.isCompleted(document, fingerprint)) {
+	    if (m_BuildCache != null)
+	      m_BuildCache.update(document, fingerprint);
+	    return new BuildResult(index, document, null, System.currentTimeMillis() - start, true);
+	  }
+	}
+	artifact = null;
+	if (m_ArtifactCache != null) {
+	  artifact = m_ArtifactCache.key(document, compiler);
+	  if (m_ArtifactCache.restore(artifact, document)) {
+	    if (m_BuildCache != null)
+	      m_BuildCache.update(document, fingerprint);
+	    return new BuildResult(index, document, null, System.currentTimeMillis() - start, true);
+	  }
+	}
+	// only journal actual compiles, restores aren't worth resuming
+	if (m_BuildJournal != null)
+	  m_BuildJournal.started(document);
+	error = compile(document, compiler, handle);
+	if ((error == null) && (artifact != null))
+	  m_ArtifactCache.store(artifact, document);
+	if (m_BuildCache != null) {
+	  if (error == null)
+	    m_BuildCache.update(document, fingerprint);
+	  else
+	    m_BuildCache.remove(document);
+	}
+	if (m_BuildJournal != null)
+	  m_BuildJournal.completed(document, fingerprint, error == null, System.currentTimeMillis() - start);
+      }
+    }
+    catch (Exception e) {
+      error = Utils.throwableToString(e);
+    }
+    finally {
+      m_Handles.remove(index);
+    }
+
+    result = new BuildResult(index, document, error, System.currentTimeMillis() - start);
+    result.setTermination(handle.getTermination());
+    result.setMetrics(handle.getMetrics());
+    result.setWarnings(handle.getWarnings());
+
+    return result;
+  }
+
+  /**
+   * Returns the handle of the running compile of the specified document.
+   *
+   * @param index	the position of the document
+   * @return		the handle, null if document is not being compiled
+   */
+  public CompileHandle getHandle(int index) {
+    return m_Handles.get(index);
+  }
+
+  /**
+   * Cancels the build of the specified document, if running.
+   *
+   * @param index	the position of the document
+   */
+  public void cancel(int index) {
+    CompileHandle	handle;
+
+    handle = m_Handles.get(index);
+    if (handle != null)
+      handle.cancel();
+  }
+
+  /**
+   * Cancels the build, killing all running compiles. Documents that haven't
+   * been started yet get reported as cancelled.
+   */
+  public void cancel() {
+    m_Cancelled = true;
+    for (CompileHandle handle: m_Handles.values())
+      handle.cancel();
+    for (CompileHandle handle: m_StepHandles.values())
+      handle.cancel();
+  }
+
+  /**
+   * Estimates the duration of a step.
+   *
+   * @param step	the name of the step
+   * @param size	the size of the inputs in bytes
+   * @return		the estimate in msec
+   */
+  protected long estimate(String step, long size) {
+    if (m_BuildHistory == null)
+      return size;
+    return m_BuildHistory.estimate(step, size);
+  }
+
+  /**
+   * Returns the total size of the document and the files it depends on.
+   *
+   * @param document	the document
+   * @return		the size in bytes
+   */
+  protected long size(Document document) {
+    if (m_DependencyIndex == null)
+      return BuildHistory.size(document);
+
+    try {
+      return BuildHistory.size(m_DependencyIndex.update(document.getFile()));
+    }
+    catch (Exception e) {
+      return new File(document.getFile()).length();
+    }
+  }
+
+  /**
+   * Estimates the duration of building a document.
+   *
+   * @param document	the document
+   * @return		the estimate in msec
+   */
+  protected long estimate(Document document) {
+    if (m_BuildHistory == null)
+      return size(document);
+    return m_BuildHistory.estimate(BuildHistory.key(document), size(document));
+  }
+
+  /**
+   * Executes a step that isn't tied to a single document, recording its
+   * duration.
+   *
+   * @param step	the name of the step
+   * @param work	the work to perform, returns null if successful, otherwise error message
+   * @return		null if successful, otherwise error message
+   */
+  protected String executeStep(String step, Function<CompileHandle,String> work) {
+    String		result;
+    CompileHandle	handle;
+    long		start;
+
+    start  = System.currentTimeMillis();
+    handle = new CompileHandle();
+    m_StepHandles.put(step, handle);
+    if (m_Cancelled)
+      handle.cancel();
+    try {
+      if (handle.isTerminated())
+	result = handle.getReason();
+      else
+	result = work.apply(handle);
+    }
+    catch (Exception e) {
+      result = Utils.throwableToString(e);
+    }
+    finally {
+      m_StepHandles.remove(step);
+    }
+
+    if ((result == null) && (m_BuildHistory != null))
+      m_BuildHistory.update(step, System.currentTimeMillis() - start, -1);
+
+    return result;
+  }
+
+  /**
+   * Generates the table of contents and compiles it as front matter.
+   * Records the layout of the volume for the page offsets of the documents.
+   *
+   * @param handle	the handle of the step
+   * @return		null if successful, otherwise error message
+   */
+  protected String writeTOC(CompileHandle handle) {
+    FrontMatter	front;
+    String	result;
+
+    if (m_Compilers.find(LaTeX.class) == null)
+      return "No LaTeX compiler defined!";
+
+    m_Layout.clear();
+    front = new FrontMatter();
+    front.getAssembler().setLaTeX(m_Compilers.find(LaTeX.class));
+    result = front.generate(m_Documents, m_TOC, handle);
+    if (result != null)
+      return result;
+
+    try {
+      for (VolumeEntry entry: front.collect(m_Documents))
+	m_Layout.put(entry.getDocument().getFile(), entry);
+    }
+    catch (Exception e) {
+      result = "Failed to determine layout of volume!\n" + Utils.throwableToString(e);
+    }
+
+    return result;
+  }
+
+  /**
+   * Recompiles the document with the page counter set to its start page in
+   * the volume, using its own compiler (and the sandbox, if set). Skipped
+   * if the document was already compiled with its current start page
+   * (according to the build cache) or isn't part of the volume.
+   *
+   * @param document	the document
+   * @param handle	the handle of the step
+   * @return		null if successful, otherwise error message
+   */
+  protected String applyPageOffset(Document document, CompileHandle handle) {
+    VolumeEntry		entry;
+    AbstractCompiler	compiler;
+    String		fingerprint;
+    String		result;
+
+    entry = m_Layout.get(document.getFile());
+    if (entry == null)
+      return null;
+    compiler = m_Compilers.find(document.getCompiler());
+    if (compiler == null)
+      return "Unknown compiler: " + document.getCompiler();
+
+    handle.setDocument(document.getFile());
+    handle.setTimeout(document.getTimeout() * 1000L);
+    try {
+      fingerprint = null;
+      if (m_BuildCache != null) {
+	fingerprint = m_BuildCache.fingerprint(document, compiler);
+	if (m_BuildCache.isUpToDate(document, fingerprint, entry.getStartPage()))
+	  return null;
+      }
+      result = compile(document, compiler, new FrontMatter().getPageOffsetCode(entry), handle);
+      if (m_BuildCache != null) {
+	if (result == null)
+	  m_BuildCache.update(document, fingerprint, entry.getStartPage());
+	else
+	  m_BuildCache.remove(document);
+      }
+    }
+    catch (Exception e) {
+      result = "Failed to apply page offset: " + document.getFile() + "\n" + Utils.throwableToString(e);
+    }
+
+    return result;
+  }
+
+  /**
+   * Assembles the volume, including the front matter (if any).
+   *
+   * @param handle	the handle of the step
+   * @return		null if successful, otherwise error message
+   */
+  protected String assembleVolume(CompileHandle handle) {
+    VolumeAssembler	assembler;
+
+    assembler = new VolumeAssembler();
+    assembler.setLaTeX(m_Compilers.find(LaTeX.class));
+    if (m_TOC != null)
+      assembler.setFrontMatter(new FrontMatter().getFrontMatter(m_TOC));
+    return assembler.assemble(m_Documents, m_Volume, handle);
+  }
+
+  /**
+   * Creates the graph of the build: the preamble formats (shared by all
+   * documents using the same compiler), the documents, and the table of
+   * contents, page offsets and volume (depending on all documents being
+   * built, in that order). The page offsets are applied per document, as
+   * the layout of the volume can shift any of them.
+   *
+   * @param results	for storing the results of the documents
+   * @param targets	the positions of the documents to build
+   * @return		the graph
+   */
+  protected BuildGraph createGraph(final BuildResult[] results, List<Integer> targets) {
+    BuildGraph		result;
+    Map<String,Task>	formats;
+    List<Task>		documents;
+    AbstractCompiler	compiler;
+    Task		format;
+    Task		task;
+    Task		toc;
+    List<Task>		offsets;
+
+    result    = new BuildGraph();
+    formats   = new HashMap<>();
+    documents = new ArrayList<>();
+    offsets   = new ArrayList<>();
+
+    for (int i: targets) {
+      final int index = i;
+      final Document doc = m_Documents.get(i);
+      task = result.addTask(DOCUMENT_PREFIX + i, estimate(doc), new Callable<String>() {
+	@Override
+	public String call() throws Exception {
+	  results[index] = build(index, doc);
+	  if ((m_BuildHistory != null) && results[index].isSuccess() && !results[index].isSkipped())
+	    m_BuildHistory.update(BuildHistory.key(doc), results[index].getDuration(), size(doc));
+	  return results[index].isSuccess() ? null : "" + results[index].getError();
+	}
+      });
+      documents.add(task);
+
+      compiler = m_Compilers.find(doc.getCompiler());
+      if (!(compiler instanceof LaTeX) || (((LaTeX) compiler).getFormat() == null))
+	continue;
+      format = formats.get(compiler.getName());
+      if (format == null) {
+	final PreambleFormat fmt = ((LaTeX) compiler).getFormat();
+	final String name = FORMAT_PREFIX + compiler.getName();
+	format = result.addTask(name, estimate(name, fmt.getPreamble().length()), new Callable<String>() {
+	  @Override
+	  public String call() throws Exception {
+	    return executeStep(name, new Function<CompileHandle,String>() {
+	      @Override
+	      public String apply(CompileHandle handle) {
+		return fmt.prepare(handle);
+	      }
+	    });
+	  }
+	});
+	formats.put(compiler.getName(), format);
+      }
+      result.addDependency(task, format);
+    }
+
+    toc = null;
+    if (m_TOC != null) {
+      toc = result.addTask(STEP_TOC, estimate(STEP_TOC, 0), new Callable<String>() {
+	@Override
+	public String call() throws Exception {
+	  return executeStep(STEP_TOC, new Function<CompileHandle,String>() {
+	    @Override
+	    public String apply(CompileHandle handle) {
+	      return writeTOC(handle);
+	    }
+	  });
+	}
+      });
+      for (Task document: documents)
+	result.addDependency(toc, document);
+    }
+
+    if (toc != null) {
+      for (int i = 0; i < m_Documents.size(); i++) {
+	final Document doc = m_Documents.get(i);
+	final String name = OFFSET_PREFIX + i;
+	task = result.addTask(name, estimate(doc), new Callable<String>() {
+	  @Override
+	  public String call() throws Exception {
+	    return executeStep(name, new Function<CompileHandle,String>() {
+	      @Override
+	      public String apply(CompileHandle handle) {
+		return applyPageOffset(doc, handle);
+	      }
+	    });
+	  }
+	});
+	result.addDependency(task, toc);
+	offsets.add(task);
+      }
+    }
+
+    if (m_Volume != null) {
+      task = result.addTask(STEP_VOLUME, estimate(STEP_VOLUME, 0), new Callable<String>() {
+	@Override
+	public String call() throws Exception {
+	  return executeStep(STEP_VOLUME, new Function<CompileHandle,String>() {
+	    @Override
+	    public String apply(CompileHandle handle) {
+	      return assembleVolume(handle);
+	    }
+	  });
+	}
+      });
+      for (Task document: documents)
+	result.addDependency(task, document);
+      for (Task offset: offsets)
+	result.addDependency(task, offset);
+    }
+
+    return result;
+  }
+
+  /**
+   * Creates the thread pool for the workers.
+   *
+   * @param numThreads	the number of threads
+   * @return		the pool
+   */
+  protected ExecutorService createPool(int numThreads) {
+    final AtomicInteger	count;
+
+    count = new AtomicInteger();
+    return Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+	Thread result = new Thread(r, "build-worker-" + count.incrementAndGet());
+	result.setDaemon(true);
+	return result;
+      }
+    });
+  }
+
+  /**
+   * Builds all the documents.
+   *
+   * @return		the results, in the order of the documents
+   */
+  public BuildResults build() {
+    return build(null);
+  }
+
+  /**
+   * Builds the specified documents, followed by the table of contents and
+   * volume (if set).
+   *
+   * @param indices	the positions of the documents to build, null for all
+   * @return		the results of the built documents, in the order of the documents
+   */
+  public BuildResults build(Collection<Integer> indices) {
+    BuildResults	result;
+    BuildResult[]	results;
+    List<Integer>	targets;
+    BuildGraph		graph;
+    ExecutorService	pool;
+    Map<String,String>	outcome;
+    int			i;
+
+    result  = new BuildResults();
+    targets = new ArrayList<>();
+    for (i = 0; i < m_Documents.size(); i++) {
+      if ((indices == null) || indices.contains(i))
+	targets.add(i);
+    }
+    if (targets.isEmpty())
+      return result;
+
+    // the TeX distribution may have changed since the last build
+    BibTeX.clearLocated();
+
+    if (m_DependencyIndex != null) {
+      try {
+	m_DependencyIndex.load();
+      }
+      catch (Exception e) {
+	System.err.println("Failed to load dependency index, rescanning all files!\n" + Utils.throwableToString(e));
+      }
+    }
+
+    if (m_ArtifactCache != null) {
+      m_ArtifactCache.setIndex(m_DependencyIndex);
+      m_ArtifactCache.setCompilers(m_Compilers);
+    }
+
+    if (m_Sandbox != null)
+      m_Sandbox.setIndex(m_DependencyIndex);
+
+    if (m_BuildCache != null) {
+      m_BuildCache.setIndex(m_DependencyIndex);
+      m_BuildCache.setCompilers(m_Compilers);
+      try {
+	m_BuildCache.load();
+      }
+      catch (Exception e) {
+	System.err.println("Failed to load build cache, performing full build!\n" + Utils.throwableToString(e));
+      }
+    }
+
+    if (m_BuildHistory != null) {
+      try {
+	m_BuildHistory.load();
+      }
+      catch (Exception e) {
+	System.err.println("Failed to load build history, estimating durations from sizes!\n" + Utils.throwableToString(e));
+      }
+    }
+
+    if (m_BuildJournal != null) {
+      try {
+	m_BuildJournal.open();
+	if (!m_BuildJournal.getCompleted().isEmpty() || !m_BuildJournal.getInterrupted().isEmpty())
+	  System.err.println("Resuming interrupted build: " + m_BuildJournal.getCompleted().size() + " document(s) compiled, "
+	    + m_BuildJournal.getInterrupted().size() + " interrupted");
+      }
+      catch (Exception e) {
+	System.err.println("Failed to open build journal, not resuming!\n" + Utils.throwableToString(e));
+      }
+    }
+
+    if (m_AdmissionController != null) {
+      m_AdmissionController.setHistory(m_BuildHistory);
+      for (AbstractCompiler compiler: m_Compilers)
+	compiler.setAdmissionController(m_AdmissionController);
+    }
+
+    for (Map.Entry<String,String> entry: m_Compilers.validate().entrySet())
+      System.err.println("Invalid compiler '" + entry.getKey() + "': " + entry.getValue());
+
+    m_Cancelled = false;
+    results     = new BuildResult[m_Documents.size()];
+    graph       = createGraph(results, targets);
+    pool        = createPool(determineNumThreads());
+    try {
+      outcome = new DAGScheduler(pool, determineNumThreads()).execute(graph);
+    }
+    finally {
+      pool.shutdownNow();
+    }
+
+    for (int index: targets) {
+      if (results[index] == null)
+	results[index] = new BuildResult(index, m_Documents.get(index), outcome.get(DOCUMENT_PREFIX + index), 0);
+      result.add(results[index]);
+    }
+    for (BuildGraph.Task task: graph.getTasks()) {
+      if (!task.getName().startsWith(DOCUMENT_PREFIX))
+	result.addStep(task.getName(), outcome.get(task.getName()));
+    }
+
+    if (m_BuildCache != null) {
+      try {
+	m_BuildCache.save();
+      }
+      catch (Exception e) {
+	System.err.println("Failed to save build cache: " + m_BuildCache.getFile() + "\n" + Utils.throwableToString(e));
+      }
+    }
+
+    if (m_DependencyIndex != null) {
+      try {
+	m_DependencyIndex.save();
+      }
+      catch (Exception e) {
+	System.err.println("Failed to save dependency index: " + m_DependencyIndex.getFile() + "\n" + Utils.throwableToString(e));
+      }
+    }
+
+    if (m_BuildHistory != null) {
+      try {
+	m_BuildHistory.prune();
+	m_BuildHistory.save();
+      }
+      catch (Exception e) {
+	System.err.println("Failed to save build history: " + m_BuildHistory.getFile() + "\n" + Utils.throwableToString(e));
+      }
+    }
+
+    // build ran to completion, the next one starts afresh
+    if (m_BuildJournal != null) {
+      try {
+	if (!m_Cancelled)
+	  m_BuildJournal.reset();
+      }
+      catch (Exception e) {
+	System.err.println("Failed to reset build journal: " + m_BuildJournal.getFile() + "\n" + Utils.throwableToString(e));
+      }
+      finally {
+	m_BuildJournal.close();
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Builds the documents from the commandline.
+   *
+   * @param args	the commandline options, use -h for help
+   * @throws Exception	if loading of the configuration fails
+   */
+  public static void main(String[] args) throws Exception {
+    ArgumentParser parser = ArgumentParsers.newArgumentParser(BuildEngine.class.getName());
+    parser.description("Builds the documents of the proceedings.");
+    parser.addArgument("--compilers").dest("compilers").required(true).help("the yaml file with the compilers");
+    parser.addArgument("--documents").dest("documents").required(true).help("the yaml file with the documents");
+    parser.addArgument("--cache").dest("cache").help("the yaml file for the build cache, enables incremental builds");
+    parser.addArgument("--artifacts").dest("artifacts").help("the directory of the local cache of compile outputs, shareable between builds");
+    parser.addArgument("--artifacts-max-size").dest("artifactsmaxsize").type(Long.class).setDefault(LocalArtifactStore.DEFAULT_MAX_SIZE / 1024 / 1024).help("the maximum size of the local cache of compile outputs in MB, <= 0 for unbounded");
+    parser.addArgument("--artifacts-url").dest("artifactsurl").help("the URL of the remote cache of compile outputs (see " + ArtifactServer.class.getName() + ")");
+    parser.addArgument("--artifacts-token-file").dest("artifactstokenfile").help("the file with the token to send to the remote cache");
+    parser.addArgument("--sandbox").dest("sandbox").nargs("?").setConst(Sandbox.defaultRoot().getPath()).help("compiles the documents staged in the directory, defaults to " + Sandbox.DEFAULT_ROOT + " or the temp directory if no directory supplied");
+    parser.addArgument("--index").dest("index").help("the yaml file for the dependency index, avoids rescanning unchanged files");
+    parser.addArgument("--journal").dest("journal").help("the file for the journal of the document compiles, resumes interrupted builds");
+    parser.addArgument("--history").dest("history").help("the yaml file for recording build durations, used for scheduling");
+    parser.addArgument("--report").dest("report").help("the prefix for the JSON (.json) and Prometheus (.prom) build reports");
+    parser.addArgument("--toc").dest("toc").help("the tex file for the table of contents to generate");
+    parser.addArgument("--volume").dest("volume").help("the tex file for the volume to assemble");
+    parser.addArgument("--watch").dest("watch").action(Arguments.storeTrue()).help("keeps watching the files of the documents after the build, rebuilding affected documents on change");
+    parser.addArgument("--debounce").dest("debounce").type(Integer.class).setDefault(BuildWatcher.DEFAULT_DEBOUNCE).help("the time in msec without further changes to wait for before rebuilding");
+    parser.addArgument("--admission").dest("admission").action(Arguments.storeTrue()).help("starts compiler processes only when the CPU and memory limits (cgroup, /proc/meminfo) permit, learning their peak memory");
+    parser.addArgument("--max-processes").dest("maxprocesses").type(Integer.class).setDefault(-1).help("the maximum number of compiler processes in flight with admission control, <= 0 for the CPU limit");
+    parser.addArgument("--memory-headroom").dest("memoryheadroom").type(Double.class).setDefault(AdmissionController.DEFAULT_HEADROOM).help("the fraction of the memory limit to keep free with admission control");
+    parser.addArgument("--threads").dest("threads").type(Integer.class).setDefault(-1).help("the number of worker threads, <= 0 for number of processors");
+    parser.addArgument("--max-passes").dest("maxpasses").type(Integer.class).setDefault(PassDriver.DEFAULT_MAX_PASSES).help("the maximum number of LaTeX passes per document");
+    Namespace ns;
+    try {
+      ns = parser.parseArgs(args);
+    }
+    catch (ArgumentParserException e) {
+      parser.handleError(e);
+      System.exit(1);
+      return;
+    }
+
+    BuildEngine engine = new BuildEngine();
+    try (Reader reader = new FileReader(ns.getString("compilers"))) {
+      engine.setCompilers(Compilers.read(reader));
+    }
+    try (Reader reader = new FileReader(ns.getString("documents"))) {
+      engine.setDocuments(Documents.read(reader));
+    }
+    if (ns.getString("cache") != null)
+      engine.setBuildCache(new BuildCache(new File(ns.getString("cache"))));
+    if ((ns.getString("artifacts") != null) || (ns.getString("artifactsurl") != null)) {
+      HttpArtifactStore remote = null;
+      if (ns.getString("artifactsurl") != null) {
+	remote = new HttpArtifactStore(ns.getString("artifactsurl"));
+	if (ns.getString("artifactstokenfile") != null)
+	  remote.setToken(BuildProtocol.readToken(new File(ns.getString("artifactstokenfile"))));
+      }
+      engine.setArtifactCache(new ArtifactCache(
+	(ns.getString("artifacts") == null) ? null : new LocalArtifactStore(new File(ns.getString("artifacts")), ns.getLong("artifactsmaxsize") * 1024 * 1024),
+	remote));
+    }
+    if (ns.getString("sandbox") != null)
+      engine.setSandbox(new Sandbox(new File(ns.getString("sandbox"))));
+    if (ns.getString("index") != null)
+      engine.setDependencyIndex(new DependencyIndex(new File(ns.getString("index"))));
+    if (ns.getString("journal") != null)
+      engine.setBuildJournal(new BuildJournal(new File(ns.getString("journal"))));
+    if (ns.getString("history") != null)
+      engine.setBuildHistory(new BuildHistory(new File(ns.getString("history"))));
+    if (ns.getString("toc") != null)
+      engine.setTOC(new File(ns.getString("toc")));
+    if (ns.getString("volume") != null)
+      engine.setVolume(new File(ns.getString("volume")));
+    if (ns.getBoolean("admission")) {
+      AdmissionController admission = new AdmissionController();
+      admission.setMaxProcesses(ns.getInt("maxprocesses"));
+      admission.setHeadroom(ns.getDouble("memoryheadroom"));
+      engine.setAdmissionController(admission);
+    }
+    engine.setNumThreads(ns.getInt("threads"));
+    engine.setMaxPasses(ns.getInt("maxpasses"));
+    BuildResults results = engine.build();
+    System.out.println(results.toSummary());
+    if (ns.getString("report") != null) {
+      BuildReport report = new BuildReport(results);
+      report.writeJSON(new File(ns.getString("report") + ".json"));
+      report.writePrometheus(new File(ns.getString("report") + ".prom"));
+    }
+    if (ns.getBoolean("watch")) {
+      final BuildWatcher watcher = new BuildWatcher(engine);
+      watcher.setDebounce(ns.getInt("debounce"));
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+	@Override
+	public void run() {
+	  watcher.stop();
+	}
+      });
+      System.err.println("Watching for changes...");
+      watcher.run();
+      return;
+    }
+    if (!results.isSuccess())
+      System.exit(1);
+  }
+}
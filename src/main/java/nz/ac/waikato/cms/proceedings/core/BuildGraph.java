@@ -0,0 +1,301 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * BuildGraph.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Directed acyclic graph of build steps, eg preparing a preamble format,
+ * compiling the documents and assembling the volume. Each task has an
+ * estimated duration, from which the length of the critical path starting
+ * at the task gets computed, ie the time it takes at least until all the
+ * tasks depending on it are finished.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class BuildGraph {
+
+  /**
+   * A single step of the build.
+   */
+  public static class Task {
+
+    /** the unique name of the task. */
+    protected String m_Name;
+
+    /** the position in which the task was added. */
+    protected int m_Index;
+
+    /** the estimated duration in msec. */
+    protected long m_Estimate;
+
+    /** the work to perform, returns null if successful, otherwise error message. */
+    protected Callable<String> m_Work;
+
+    /** the tasks this task depends on. */
+    protected List<Task> m_Dependencies;
+
+    /** the tasks depending on this one. */
+    protected List<Task> m_Dependents;
+
+    /** the length of the critical path starting at this task in msec. */
+    protected long m_CriticalPath;
+
+    /**
+     * Initializes the task.
+     *
+     * @param name	the unique name
+     * @param index	the position of the task
+     * @param estimate	the estimated duration in msec
+     * @param work	the work to perform
+     */
+    protected Task(String name, int index, long estimate, Callable<String> work) {
+      m_Name         = name;
+      m_Index        = index;
+      m_Estimate     = Math.max(0, estimate);
+      m_Work         = work;
+      m_Dependencies = new ArrayList<>();
+      m_Dependents   = new ArrayList<>();
+    }
+
+    /**
+     * Returns the name of the task.
+     *
+     * @return		the name
+     */
+    public String getName() {
+      return m_Name;
+    }
+
+    /**
+     * Returns the position in which the task was added.
+     *
+     * @return		the position
+     */
+    public int getIndex() {
+      return m_Index;
+    }
+
+    /**
+     * Returns the estimated duration.
+     *
+     * @return		the duration in msec
+     */
+    public long getEstimate() {
+      return m_Estimate;
+    }
+
+    /**
+     * Returns the work to perform.
+     *
+     * @return		the work, returns null if successful, otherwise error message
+     */
+    public Callable<String> getWork() {
+      return m_Work;
+    }
+
+    /**
+     * Returns the tasks this task depends on.
+     *
+     * @return		the tasks
+     */
+    public List<Task> getDependencies() {
+      return Collections.unmodifiableList(m_Dependencies);
+    }
+
+    /**
+     * Returns the tasks that depend on this task.
+     *
+     * @return		the tasks
+     */
+    public List<Task> getDependents() {
+      return Collections.unmodifiableList(m_Dependents);
+    }
+
+    /**
+     * Returns the length of the critical path starting at this task.
+     *
+     * @return		the length in msec
+     * @see		BuildGraph#computeCriticalPaths()
+     */
+    public long getCriticalPath() {
+      return m_CriticalPath;
+    }
+
+    /**
+     * Returns a short string representation.
+     *
+     * @return		the representation
+     */
+    public String toString() {
+      return m_Name + " (estimate=" + m_Estimate + "ms, critical path=" + m_CriticalPath + "ms)";
+    }
+  }
+
+  /** the tasks (name - task). */
+  protected Map<String,Task> m_Tasks;
+
+  /**
+   * Initializes the graph.
+   */
+  public BuildGraph() {
+    m_Tasks = new LinkedHashMap<>();
+  }
+
+  /**
+   * Adds a task.
+   *
+   * @param name	the unique name of the task
+   * @param estimate	the estimated duration in msec
+   * @param work	the work to perform
+   * @return		the task
+   * @throws IllegalArgumentException	if a task with the name already exists
+   */
+  public Task addTask(String name, long estimate, Callable<String> work) {
+    Task	result;
+
+    if (m_Tasks.containsKey(name))
+      throw new IllegalArgumentException("Task already exists: " + name);
+
+    result = new Task(name, m_Tasks.size(), estimate, work);
+    m_Tasks.put(name, result);
+
+    return result;
+  }
+
+  /**
+   * Returns the task with the specified name.
+   *
+   * @param name	the name of the task
+   * @return		the task, null if not found
+   */
+  public Task getTask(String name) {
+    return m_Tasks.get(name);
+  }
+
+  /**
+   * Returns all the tasks, in the order they were added.
+   *
+   * @return		the tasks
+   */
+  public List<Task> getTasks() {
+    return new ArrayList<>(m_Tasks.values());
+  }
+
+  /**
+   * Returns the number of tasks.
+   *
+   * @return		the number of tasks
+   */
+  public int size() {
+    return m_Tasks.size();
+  }
+
+  /**
+   * Adds a dependency between two tasks.
+   *
+   * @param task	the task that depends on the other one
+   * @param dependency	the task that needs to finish first
+   */
+  public void addDependency(Task task, Task dependency) {
+    if (task.m_Dependencies.contains(dependency))
+      return;
+    task.m_Dependencies.add(dependency);
+    dependency.m_Dependents.add(task);
+  }
+
+  /**
+   * Returns the tasks in topological order, ie every task comes after all
+   * of its dependencies.
+   *
+   * @return		the tasks
+   * @throws IllegalStateException	if the graph contains a cycle
+   */
+  public List<Task> sort() {
+    List<Task>		result;
+    Map<Task,Integer>	pending;
+    Deque<Task>		ready;
+    Task		task;
+    List<String>	cycle;
+
+    result  = new ArrayList<>();
+    pending = new HashMap<>();
+    ready   = new ArrayDeque<>();
+    for (Task t: m_Tasks.values()) {
+      pending.put(t, t.m_Dependencies.size());
+      if (t.m_Dependencies.isEmpty())
+	ready.add(t);
+    }
+
+    while (!ready.isEmpty()) {
+      task = ready.poll();
+      result.add(task);
+      for (Task dependent: task.m_Dependents) {
+	pending.put(dependent, pending.get(dependent) - 1);
+	if (pending.get(dependent) == 0)
+	  ready.add(dependent);
+      }
+    }
+
+    if (result.size() < m_Tasks.size()) {
+      cycle = new ArrayList<>();
+      for (Task t: m_Tasks.values()) {
+	if (pending.get(t) > 0)
+	  cycle.add(t.getName());
+      }
+      throw new IllegalStateException("Build graph contains a cycle: " + cycle);
+    }
+
+    return result;
+  }
+
+  /**
+   * Computes for each task the length of the critical path starting at
+   * it: its own estimate plus the longest critical path of the tasks
+   * depending on it.
+   *
+   * @throws IllegalStateException	if the graph contains a cycle
+   */
+  public void computeCriticalPaths() {
+    List<Task>	sorted;
+    Task	task;
+    long	longest;
+    int		i;
+
+    sorted = sort();
+    for (i = sorted.size() - 1; i >= 0; i--) {
+      task    = sorted.get(i);
+      longest = 0;
+      for (Task dependent: task.m_Dependents)
+	longest = Math.max(longest, dependent.m_CriticalPath);
+      task.m_CriticalPath = task.m_Estimate + longest;
+    }
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * BuildHistory.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Persistent record of how long build steps took in previous builds, for
+ * estimating their durations when scheduling. Durations get smoothed across
+ * builds. Steps without history are estimated from the size of their inputs,
+ * using the average msec per byte of the recorded steps. Also records the
+ * peak memory of compiler processes, for admission control.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class BuildHistory {
+
+  /** the key for the duration. */
+  public final static String KEY_DURATION = "duration";
+
+  /** the key for the size of the inputs. */
+  public final static String KEY_SIZE = "size";
+
+  /** the key for the peak memory. */
+  public final static String KEY_MEMORY = "memory";
+
+  /** the weight of the most recent duration. */
+  public final static double SMOOTHING = 0.5;
+
+  /** the file to store the history in. */
+  protected File m_File;
+
+  /** the entries (step - entry). */
+  protected Map<String,Map<String,Object>> m_Entries;
+
+  /**
+   * Initializes the history.
+   *
+   * @param file	the file to store the history in
+   */
+  public BuildHistory(File file) {
+    m_File    = file;
+    m_Entries = new HashMap<>();
+  }
+
+  /**
+   * Returns the file the history is stored in.
+   *
+   * @return		the file
+   */
+  public File getFile() {
+    return m_File;
+  }
+
+  /**
+   * Returns the key for the document.
+   *
+   * @param document	the document
+   * @return		the key
+   */
+  public static String key(Document document) {
+    return new File(document.getFile()).getAbsolutePath();
+  }
+
+  /**
+   * Returns the total size of the document and the files it depends on.
+   *
+   * @param document	the document
+   * @return		the size in bytes, 0 if it cannot be determined
+   */
+  public static long size(Document document) {
+    try {
+      return size(new DependencyScanner().scan(document.getFile()));
+    }
+    catch (Exception e) {
+      return new File(document.getFile()).length();
+    }
+  }
+
+  /**
+   * Returns the total size of the files.
+   *
+   * @param files	the files
+   * @return		the size in bytes
+   */
+  public static long size(List<File> files) {
+    long	result;
+
+    result = 0;
+    for (File file: files)
+      result += file.length();
+
+    return result;
+  }
+
+  /**
+   * Returns the numeric value of the entry.
+   *
+   * @param entry	the entry
+   * @param key		the key of the value
+   * @return		the value, -1 if not available
+   */
+  protected static long getValue(Map<String,Object> entry, String key) {
+    if (entry.get(key) instanceof Number)
+      return ((Number) entry.get(key)).longValue();
+    return -1;
+  }
+
+  /**
+   * Returns the recorded duration of the step.
+   *
+   * @param step	the step
+   * @return		the duration in msec, -1 if not recorded
+   */
+  public synchronized long getDuration(String step) {
+    if (!m_Entries.containsKey(step))
+      return -1;
+    return getValue(m_Entries.get(step), KEY_DURATION);
+  }
+
+  /**
+   * Estimates the duration of a step.
+   *
+   * @param step	the step
+   * @param size	the size of the inputs of the step in bytes
+   * @return		the estimated duration in msec; if nothing has been
+   * 			recorded yet, the size is returned as relative estimate
+   */
+  public synchronized long estimate(String step, long size) {
+    long	duration;
+    long	totalDuration;
+    long	totalSize;
+
+    duration = getDuration(step);
+    if (duration > -1)
+      return duration;
+
+    totalDuration = 0;
+    totalSize     = 0;
+    for (Map<String,Object> entry: m_Entries.values()) {
+      if ((getValue(entry, KEY_DURATION) > -1) && (getValue(entry, KEY_SIZE) > 0)) {
+	totalDuration += getValue(entry, KEY_DURATION);
+	totalSize     += getValue(entry, KEY_SIZE);
+      }
+    }
+    if (totalSize == 0)
+      return size;
+
+    return Math.round((double) size * totalDuration / totalSize);
+  }
+
+  /**
+   * Estimates the duration of building the document.
+   *
+   * @param document	the document
+   * @return		the estimated duration in msec
+   * @see		#estimate(String, long)
+   */
+  public long estimate(Document document) {
+    return estimate(key(document), size(document));
+  }
+
+  /**
+   * Records the duration of a step.
+   *
+   * @param step	the step
+   * @param duration	the duration in msec
+   * @param size	the size of the inputs of the step in bytes, -1 if unknown
+   */
+  public synchronized void update(String step, long duration, long size) {
+    Map<String,Object>	entry;
+    long		previous;
+
+    previous = getDuration(step);
+    if (previous > -1)
+      duration = Math.round(SMOOTHING * duration + (1.0 - SMOOTHING) * previous);
+    entry = entry(step);
+    entry.put(KEY_DURATION, duration);
+    if (size > -1)
+      entry.put(KEY_SIZE, size);
+    else
+      entry.remove(KEY_SIZE);
+  }
+
+  /**
+   * Returns the entry of the step, creating it if necessary.
+   *
+   * @param step	the step
+   * @return		the entry
+   */
+  protected Map<String,Object> entry(String step) {
+    Map<String,Object>	result;
+
+    result = m_Entries.get(step);
+    if (result == null) {
+      result = new HashMap<>();
+      m_Entries.put(step, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the recorded peak memory of the step.
+   *
+   * @param step	the step
+   * @return		the peak memory in bytes, -1 if not recorded
+   */
+  public synchronized long getMemory(String step) {
+    if (!m_Entries.containsKey(step))
+      return -1;
+    return getValue(m_Entries.get(step), KEY_MEMORY);
+  }
+
+  /**
+   * Records the peak memory of the step.
+   *
+   * @param step	the step
+   * @param memory	the peak memory in bytes
+   */
+  public synchronized void updateMemory(String step, long memory) {
+    entry(step).put(KEY_MEMORY, memory);
+  }
+
+  /**
+   * Removes the peak memory recorded for processes whose document no longer
+   * exists (see {@link AdmissionController#key(String, String)}), eg
+   * removed papers or copies in temporary directories.
+   */
+  public synchronized void prune() {
+    Iterator<Map.Entry<String,Map<String,Object>>>	iter;
+    Map.Entry<String,Map<String,Object>>		entry;
+    int							pos;
+
+    iter = m_Entries.entrySet().iterator();
+    while (iter.hasNext()) {
+      entry = iter.next();
+      if (!entry.getValue().containsKey(KEY_MEMORY))
+	continue;
+      pos = entry.getKey().indexOf(':');
+      if ((pos == -1) || new File(entry.getKey().substring(pos + 1)).exists())
+	continue;
+      entry.getValue().remove(KEY_MEMORY);
+      if (entry.getValue().isEmpty())
+	iter.remove();
+    }
+  }
+
+  /**
+   * Records the duration of building the document.
+   *
+   * @param document	the document
+   * @param duration	the duration in msec
+   */
+  public void update(Document document, long duration) {
+    update(key(document), duration, size(document));
+  }
+
+  /**
+   * Loads the history from disk, if the file exists.
+   *
+   * @throws IOException	if loading fails
+   */
+  public synchronized void load() throws IOException {
+    Object	loaded;
+
+    m_Entries.clear();
+    if (!m_File.exists())
+      return;
+
+    try (Reader reader = new InputStreamReader(new FileInputStream(m_File), StandardCharsets.UTF_8)) {
+      loaded = new Yaml().load(reader);
+    }
+    catch (Exception e) {
+      throw new IOException("Failed to load build history: " + m_File, e);
+    }
+    if (loaded instanceof Map)
+      m_Entries.putAll((Map<String,Map<String,Object>>) loaded);
+  }
+
+  /**
+   * Saves the history to disk. Writes to a temporary file first, which then
+   * replaces the history file.
+   *
+   * @throws IOException	if saving fails
+   */
+  public synchronized void save() throws IOException {
+    File	tmp;
+
+    tmp = new File(m_File.getPath() + ".tmp");
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+      new Yaml().dump(new TreeMap<>(m_Entries), writer);
+    }
+    Files.move(tmp.toPath(), m_File.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+}
@@ -0,0 +1,485 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * BuildJournal.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.core.FileUtils;
+import nz.ac.waikato.cms.core.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the document compiles of a build, for resuming a
+ * build that got interrupted (eg the JVM died) rather than starting over.
+ * Each record gets written with a single write and synced to disk before
+ * the build continues. Records consist of length, CRC32 checksum and
+ * payload, so that a record torn by a crash gets detected (and truncated)
+ * when replaying the journal.
+ * <br>
+ * A document counts as completed if it was compiled successfully, its pdf
+ * hasn't changed since and the fingerprint of its inputs is still the
+ * same. The journal gets reset once a build runs to completion.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class BuildJournal {
+
+  /**
+   * A completed compile.
+   */
+  public static class Step {
+
+    /** the document key. */
+    protected String m_Key;
+
+    /** whether the compile was successful. */
+    protected boolean m_Success;
+
+    /** the duration in msec. */
+    protected long m_Duration;
+
+    /** the fingerprint of the inputs, empty if not available. */
+    protected String m_Fingerprint;
+
+    /** the size of the pdf, -1 if none. */
+    protected long m_PdfSize;
+
+    /** the timestamp of the pdf, -1 if none. */
+    protected long m_PdfModified;
+
+    /**
+     * Returns the document key.
+     *
+     * @return		the key
+     */
+    public String getKey() {
+      return m_Key;
+    }
+
+    /**
+     * Returns whether the compile was successful.
+     *
+     * @return		true if successful
+     */
+    public boolean isSuccess() {
+      return m_Success;
+    }
+
+    /**
+     * Returns the duration of the compile.
+     *
+     * @return		the duration in msec
+     */
+    public long getDuration() {
+      return m_Duration;
+    }
+
+    /**
+     * Returns the fingerprint of the inputs.
+     *
+     * @return		the fingerprint, empty if not available
+     */
+    public String getFingerprint() {
+      return m_Fingerprint;
+    }
+  }
+
+  /** the magic number at the start of the file. */
+  public final static int MAGIC = 0x424a4e31;
+
+  /** the type of record for a started compile. */
+  public final static byte TYPE_STARTED = 1;
+
+  /** the type of record for a completed compile. */
+  public final static byte TYPE_COMPLETED = 2;
+
+  /** the maximum size of a record payload. */
+  public final static int MAX_RECORD = 64 * 1024;
+
+  /** the file to store the journal in. */
+  protected File m_File;
+
+  /** the channel for appending, null if not open. */
+  protected FileChannel m_Channel;
+
+  /** the completed compiles (document key - step). */
+  protected Map<String,Step> m_Completed;
+
+  /** the compiles that were started but not completed. */
+  protected Set<String> m_Interrupted;
+
+  /**
+   * Initializes the journal.
+   *
+   * @param file	the file to store the journal in
+   */
+  public BuildJournal(File file) {
+    m_File        = file;
+    m_Completed   = new HashMap<>();
+    m_Interrupted = new LinkedHashSet<>();
+  }
+
+  /**
+   * Returns the file the journal is stored in.
+   *
+   * @return		the file
+   */
+  public File getFile() {
+    return m_File;
+  }
+
+  /**
+   * Returns the key for the document.
+   *
+   * @param document	the document
+   * @return		the key
+   */
+  public static String key(Document document) {
+    return new File(document.getFile()).getAbsolutePath();
+  }
+
+  /**
+   * Returns the output file of the document.
+   *
+   * @param document	the document
+   * @return		the pdf
+   */
+  public static File getOutput(Document document) {
+    return new File(FileUtils.replaceExtension(document.getFile(), ".pdf"));
+  }
+
+  /**
+   * Applies the record to the state.
+   *
+   * @param payload	the payload of the record
+   * @throws BufferUnderflowException	if the payload is incomplete
+   */
+  protected void apply(ByteBuffer payload) {
+    byte	type;
+    String	key;
+    Step	step;
+
+    type = payload.get();
+    payload.getLong();  // timestamp
+    key  = readString(payload);
+    if (type == TYPE_STARTED) {
+      m_Interrupted.add(key);
+      m_Completed.remove(key);
+    }
+    else if (type == TYPE_COMPLETED) {
+      step               = new Step();
+      step.m_Key         = key;
+      step.m_Success     = (payload.get() != 0);
+      step.m_Duration    = payload.getLong();
+      step.m_Fingerprint = readString(payload);
+      step.m_PdfSize     = payload.getLong();
+      step.m_PdfModified = payload.getLong();
+      m_Interrupted.remove(key);
+      m_Completed.put(key, step);
+    }
+  }
+
+  /**
+   * Writes the string as length-prefixed UTF-8.
+   *
+   * @param out		the stream to write to
+   * @param value	the string
+   * @throws IOException	if writing fails or string too long
+   */
+  protected static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[]	bytes;
+
+    bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > 0xffff)
+      throw new IOException("String too long: " + bytes.length);
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+   *
+   * @param buffer	the buffer to read from
+   * @return		the string
+   */
+  protected static String readString(ByteBuffer buffer) {
+    byte[]	bytes;
+
+    bytes = new byte[buffer.getShort() & 0xffff];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Replays the journal and opens it for appending. A torn or corrupt tail
+   * (eg from a crash while writing) gets truncated.
+   *
+   * @throws IOException	if reading or opening fails
+   */
+  public synchronized void open() throws IOException {
+    ByteBuffer	content;
+    ByteBuffer	payload;
+    CRC32	crc;
+    int		length;
+    int		checksum;
+    int		valid;
+
+    close();
+    m_Completed.clear();
+    m_Interrupted.clear();
+
+    valid = 0;
+    if (m_File.exists()) {
+      content = ByteBuffer.wrap(Files.readAllBytes(m_File.toPath()));
+      if ((content.remaining() >= 4) && (content.getInt() != MAGIC))
+	throw new IOException("Not a build journal: " + m_File);
+      valid = content.position();
+      while (content.remaining() >= 8) {
+	length   = content.getInt();
+	checksum = content.getInt();
+	if ((length <= 0) || (length > MAX_RECORD) || (length > content.remaining()))
+	  break;
+	payload = content.slice();
+	payload.limit(length);
+	crc = new CRC32();
+	crc.update(payload.duplicate());
+	if ((int) crc.getValue() != checksum)
+	  break;
+	try {
+	  apply(payload);
+	}
+	catch (BufferUnderflowException e) {
+	  break;
+	}
+	content.position(content.position() + length);
+	valid = content.position();
+      }
+      if (valid < content.limit())
+	System.err.println("Truncating incomplete build journal: " + m_File + " (" + (content.limit() - valid) + " bytes)");
+    }
+
+    m_Channel = FileChannel.open(m_File.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    if (valid < 4) {
+      m_Channel.truncate(0);
+      m_Channel.write(ByteBuffer.allocate(4).putInt(0, MAGIC));
+      m_Channel.force(true);
+    }
+    else if (valid < m_Channel.size()) {
+      m_Channel.truncate(valid);
+      m_Channel.force(true);
+    }
+    m_Channel.position(m_Channel.size());
+  }
+
+  /**
+   * Returns whether the journal is open.
+   *
+   * @return		true if open
+   */
+  public synchronized boolean isOpen() {
+    return (m_Channel != null);
+  }
+
+  /**
+   * Appends the record and syncs it to disk.
+   *
+   * @param payload	the payload of the record
+   * @throws IOException	if writing fails
+   */
+  protected void append(byte[] payload) throws IOException {
+    ByteBuffer	record;
+    CRC32	crc;
+
+    crc = new CRC32();
+    crc.update(payload);
+    record = ByteBuffer.allocate(8 + payload.length);
+    record.putInt(payload.length);
+    record.putInt((int) crc.getValue());
+    record.put(payload);
+    record.flip();
+    while (record.hasRemaining())
+      m_Channel.write(record);
+    // file size is included, as required for reading the data back
+    m_Channel.force(false);
+  }
+
+  /**
+   * Records that the compile of the document started.
+   *
+   * @param document	the document
+   */
+  public synchronized void started(Document document) {
+    ByteArrayOutputStream	bytes;
+    DataOutputStream		out;
+
+    if (m_Channel == null)
+      return;
+
+    try {
+      bytes = new ByteArrayOutputStream();
+      out   = new DataOutputStream(bytes);
+      out.writeByte(TYPE_STARTED);
+      out.writeLong(System.currentTimeMillis());
+      writeString(out, key(document));
+      out.flush();
+      append(bytes.toByteArray());
+    }
+    catch (IOException e) {
+      System.err.println("Failed to write to build journal: " + m_File + "\n" + Utils.throwableToString(e));
+    }
+    m_Interrupted.add(key(document));
+    m_Completed.remove(key(document));
+  }
+
+  /**
+   * Records that the compile of the document completed.
+   *
+   * @param document	the document
+   * @param fingerprint	the fingerprint of the inputs, null if not available
+   * @param success	whether the compile was successful
+   * @param duration	the duration in msec
+   */
+  public synchronized void completed(Document document, String fingerprint, boolean success, long duration) {
+    ByteArrayOutputStream	bytes;
+    DataOutputStream		out;
+    Step			step;
+    File			pdf;
+
+    if (m_Channel == null)
+      return;
+
+    pdf                = getOutput(document);
+    step               = new Step();
+    step.m_Key         = key(document);
+    step.m_Success     = success;
+    step.m_Duration    = duration;
+    step.m_Fingerprint = (fingerprint == null) ? "" : fingerprint;
+    step.m_PdfSize     = pdf.isFile() ? pdf.length() : -1;
+    step.m_PdfModified = pdf.isFile() ? pdf.lastModified() : -1;
+    try {
+      bytes = new ByteArrayOutputStream();
+      out   = new DataOutputStream(bytes);
+      out.writeByte(TYPE_COMPLETED);
+      out.writeLong(System.currentTimeMillis());
+      writeString(out, step.m_Key);
+      out.writeByte(step.m_Success ? 1 : 0);
+      out.writeLong(step.m_Duration);
+      writeString(out, step.m_Fingerprint);
+      out.writeLong(step.m_PdfSize);
+      out.writeLong(step.m_PdfModified);
+      out.flush();
+      append(bytes.toByteArray());
+    }
+    catch (IOException e) {
+      System.err.println("Failed to write to build journal: " + m_File + "\n" + Utils.throwableToString(e));
+    }
+    m_Interrupted.remove(step.m_Key);
+    m_Completed.put(step.m_Key, step);
+  }
+
+  /**
+   * Returns whether the document was compiled successfully already, its
+   * pdf is unchanged and the inputs are still the same. Without
+   * fingerprints, the document never counts as completed.
+   *
+   * @param document	the document to check
+   * @param fingerprint	the current fingerprint of the inputs, null if not available
+   * @return		true if completed
+   */
+  public synchronized boolean isCompleted(Document document, String fingerprint) {
+    Step	step;
+    File	pdf;
+
+    step = m_Completed.get(key(document));
+    if ((step == null) || !step.m_Success)
+      return false;
+    if ((fingerprint == null) || !fingerprint.equals(step.m_Fingerprint))
+      return false;
+
+    pdf = getOutput(document);
+    return pdf.isFile() && (pdf.length() == step.m_PdfSize) && (pdf.lastModified() == step.m_PdfModified);
+  }
+
+  /**
+   * Returns the completed compiles.
+   *
+   * @return		the compiles
+   */
+  public synchronized List<Step> getCompleted() {
+    return new ArrayList<>(m_Completed.values());
+  }
+
+  /**
+   * Returns the keys of the documents whose compile was started but never
+   * completed.
+   *
+   * @return		the document keys
+   */
+  public synchronized List<String> getInterrupted() {
+    return new ArrayList<>(m_Interrupted);
+  }
+
+  /**
+   * Empties the journal, eg once the build ran to completion.
+   *
+   * @throws IOException	if truncating fails
+   */
+  public synchronized void reset() throws IOException {
+    m_Completed.clear();
+    m_Interrupted.clear();
+    if (m_Channel == null)
+      return;
+    m_Channel.truncate(4);
+    m_Channel.position(4);
+    m_Channel.force(true);
+  }
+
+  /**
+   * Closes the journal.
+   */
+  public synchronized void close() {
+    if (m_Channel == null)
+      return;
+    try {
+      m_Channel.close();
+    }
+    catch (IOException e) {
+      // ignored
+    }
+    m_Channel = null;
+  }
+}
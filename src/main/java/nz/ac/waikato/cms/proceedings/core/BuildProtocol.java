@@ -0,0 +1,340 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * BuildProtocol.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The socket protocol between {@link BuildCoordinator} and
+ * {@link BuildWorker}. Workers pull jobs:
+ * <pre>
+ * worker: HELLO name token
+ * worker: READY                  coordinator: JOB job | WAIT | DONE
+ * worker: ALIVE (repeatedly while compiling)
+ * worker: RESULT result
+ * </pre>
+ * Commands are UTF strings, files are transferred with paths relative to
+ * the root of the job. The token is a shared secret (can be null) that the
+ * coordinator may require; note that it gets sent in plain text.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class BuildProtocol {
+
+  /** the default port of the coordinator. */
+  public final static int DEFAULT_PORT = 9753;
+
+  /** the interval in msec in which busy workers send heartbeats. */
+  public final static int HEARTBEAT_INTERVAL = 2000;
+
+  /** the time in msec without any message after which a worker is considered dead. */
+  public final static int HEARTBEAT_TIMEOUT = 5 * HEARTBEAT_INTERVAL;
+
+  /** the maximum size of a single transferred file or string. */
+  public final static long MAX_SIZE = Integer.MAX_VALUE;
+
+  /** worker introduces itself. */
+  public final static String HELLO = "HELLO";
+
+  /** worker is ready for a job. */
+  public final static String READY = "READY";
+
+  /** coordinator sends a job. */
+  public final static String JOB = "JOB";
+
+  /** coordinator has no job right now, worker should ask again later. */
+  public final static String WAIT = "WAIT";
+
+  /** coordinator has no more jobs, worker should disconnect. */
+  public final static String DONE = "DONE";
+
+  /** worker is still busy. */
+  public final static String ALIVE = "ALIVE";
+
+  /** worker sends the result of a job. */
+  public final static String RESULT = "RESULT";
+
+  /**
+   * Writes a string that may be longer than 64K or null.
+   *
+   * @param out		the stream to write to
+   * @param value	the string, can be null
+   * @throws IOException	if writing fails
+   */
+  public static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[]	data;
+
+    out.writeBoolean(value != null);
+    if (value == null)
+      return;
+    data = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(data.length);
+    out.write(data);
+  }
+
+  /**
+   * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+   *
+   * @param in		the stream to read from
+   * @return		the string, can be null
+   * @throws IOException	if reading fails
+   */
+  public static String readString(DataInputStream in) throws IOException {
+    byte[]	data;
+    int		len;
+
+    if (!in.readBoolean())
+      return null;
+    len = in.readInt();
+    if (len < 0)
+      throw new IOException("Invalid string length: " + len);
+    data = new byte[len];
+    in.readFully(data);
+
+    return new String(data, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Checks the token sent by a worker, in constant time.
+   *
+   * @param expected	the token required by the coordinator, null if none required
+   * @param received	the token sent by the worker, can be null
+   * @return		true if accepted
+   */
+  public static boolean authenticate(String expected, String received) {
+    if (expected == null)
+      return true;
+    if (received == null)
+      return false;
+    return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), received.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Reads the token from the file (first line, trimmed).
+   *
+   * @param file	the file with the token
+   * @return		the token
+   * @throws IOException	if reading fails or the file is empty
+   */
+  public static String readToken(File file) throws IOException {
+    List<String>	lines;
+
+    lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    if (lines.isEmpty() || lines.get(0).trim().isEmpty())
+      throw new IOException("No token in file: " + file);
+
+    return lines.get(0).trim();
+  }
+
+  /**
+   * Resolves the relative path within the root, ensuring that it doesn't
+   * point outside of it.
+   *
+   * @param root	the root directory
+   * @param relative	the relative path, using forward slashes
+   * @return		the file
+   * @throws IOException	if the path is absolute or outside the root
+   */
+  public static File resolve(File root, String relative) throws IOException {
+    Path	base;
+    Path	result;
+
+    base   = root.getAbsoluteFile().toPath().normalize();
+    result = base.resolve(relative.replace('/', File.separatorChar)).normalize();
+    if (new File(relative).isAbsolute() || !result.startsWith(base) || result.equals(base))
+      throw new IOException("Invalid path: " + relative);
+
+    return result.toFile();
+  }
+
+  /**
+   * Returns the path of the file relative to the root, using forward slashes.
+   *
+   * @param root	the root directory
+   * @param file	the file within the root
+   * @return		the relative path
+   */
+  public static String relativize(File root, File file) {
+    return root.getAbsoluteFile().toPath().normalize().relativize(file.getAbsoluteFile().toPath().normalize()).toString().replace(File.separatorChar, '/');
+  }
+
+  /**
+   * Returns the deepest directory containing all the files.
+   *
+   * @param files	the files
+   * @return		the directory
+   */
+  public static File commonRoot(List<File> files) {
+    Path	result;
+    Path	dir;
+
+    result = null;
+    for (File file: files) {
+      dir = file.getAbsoluteFile().toPath().normalize().getParent();
+      if (result == null) {
+	result = dir;
+	continue;
+      }
+      while (!dir.startsWith(result))
+	result = result.getParent();
+    }
+
+    return result.toFile();
+  }
+
+  /**
+   * Writes the files.
+   *
+   * @param out		the stream to write to
+   * @param root	the root directory the files get written relative to
+   * @param files	the files to write
+   * @throws IOException	if reading or writing fails
+   */
+  public static void writeFiles(DataOutputStream out, File root, List<File> files) throws IOException {
+    out.writeInt(files.size());
+    for (File file: files) {
+      out.writeUTF(relativize(root, file));
+      out.writeLong(file.length());
+      try (InputStream in = Files.newInputStream(file.toPath())) {
+	copy(in, out, file.length());
+      }
+    }
+  }
+
+  /**
+   * Reads files into temporary files, which need to get moved to their
+   * target location or removed by the caller.
+   *
+   * @param in		the stream to read from
+   * @param root	the root directory to place the files in
+   * @param suffix	the suffix for the temporary files
+   * @return		the files (target - temporary file)
+   * @throws IOException	if reading or writing fails
+   */
+  public static Map<File,File> readFiles(DataInputStream in, File root, String suffix) throws IOException {
+    return readFiles(in, root, suffix, null);
+  }
+
+  /**
+   * Reads files into temporary files, which need to get moved to their
+   * target location or removed by the caller.
+   *
+   * @param in		the stream to read from
+   * @param root	the root directory to place the files in
+   * @param suffix	the suffix for the temporary files
+   * @param allowed	the files that may be written (absolute, normalized), null for any within the root
+   * @return		the files (target - temporary file)
+   * @throws IOException	if reading or writing fails, or a file is not allowed
+   */
+  public static Map<File,File> readFiles(DataInputStream in, File root, String suffix, Set<File> allowed) throws IOException {
+    Map<File,File>	result;
+    int			count;
+    int			i;
+    File		target;
+    File		tmp;
+    long		len;
+
+    result = new LinkedHashMap<>();
+    count  = in.readInt();
+    try {
+      for (i = 0; i < count; i++) {
+	target = resolve(root, in.readUTF());
+	if ((allowed != null) && !allowed.contains(target))
+	  throw new IOException("File not allowed: " + target);
+	len    = in.readLong();
+	if ((len < 0) || (len > MAX_SIZE))
+	  throw new IOException("Invalid file size: " + len);
+	tmp = new File(target.getPath() + suffix);
+	Files.createDirectories(target.getParentFile().toPath());
+	try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+	  copy(in, out, len);
+	}
+	result.put(target, tmp);
+      }
+    }
+    catch (IOException e) {
+      discard(result);
+      throw e;
+    }
+
+    return result;
+  }
+
+  /**
+   * Moves the temporary files to their target locations.
+   *
+   * @param files	the files (target - temporary file)
+   * @throws IOException	if moving fails
+   */
+  public static void commit(Map<File,File> files) throws IOException {
+    for (Map.Entry<File,File> entry: files.entrySet())
+      Files.move(entry.getValue().toPath(), entry.getKey().toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Removes the temporary files.
+   *
+   * @param files	the files (target - temporary file)
+   */
+  public static void discard(Map<File,File> files) {
+    for (File tmp: files.values()) {
+      if (tmp.exists() && !tmp.delete())
+	System.err.println("Failed to delete temporary file: " + tmp);
+    }
+  }
+
+  /**
+   * Copies the specified number of bytes.
+   *
+   * @param in		the stream to read from
+   * @param out		the stream to write to
+   * @param len		the number of bytes
+   * @throws IOException	if the input ends prematurely or writing fails
+   */
+  protected static void copy(InputStream in, OutputStream out, long len) throws IOException {
+    byte[]	buffer;
+    int		read;
+
+    buffer = new byte[Digests.BUFFER_SIZE];
+    while (len > 0) {
+      read = in.read(buffer, 0, (int) Math.min(buffer.length, len));
+      if (read == -1)
+	throw new IOException("Unexpected end of stream, missing bytes: " + len);
+      out.write(buffer, 0, read);
+      len -= read;
+    }
+  }
+}
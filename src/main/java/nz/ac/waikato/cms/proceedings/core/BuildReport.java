@@ -0,0 +1,343 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * BuildReport.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+/**
+ * Turns build results and their compile metrics into machine-readable
+ * reports: JSON for archiving/comparing builds and the Prometheus text
+ * format for scraping (eg via the node exporter's textfile collector).
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class BuildReport {
+
+  /** the prefix for the Prometheus metrics. */
+  public final static String PREFIX = "proceedings_";
+
+  /** the results to report on. */
+  protected BuildResults m_Results;
+
+  /** the time the report was generated (msec since epoch). */
+  protected long m_Timestamp;
+
+  /**
+   * Initializes the report.
+   *
+   * @param results	the results to report on
+   */
+  public BuildReport(BuildResults results) {
+    m_Results   = results;
+    m_Timestamp = System.currentTimeMillis();
+  }
+
+  /**
+   * Returns the results.
+   *
+   * @return		the results
+   */
+  public BuildResults getResults() {
+    return m_Results;
+  }
+
+  /**
+   * Escapes the string for use in JSON.
+   *
+   * @param s		the string to escape
+   * @return		the quoted and escaped string, null if s is null
+   */
+  protected static String quoteJSON(String s) {
+    StringBuilder	result;
+    char		c;
+    int			i;
+
+    if (s == null)
+      return "null";
+
+    result = new StringBuilder("\"");
+    for (i = 0; i < s.length(); i++) {
+      c = s.charAt(i);
+      switch (c) {
+	case '"':
+	  result.append("\\\"");
+	  break;
+	case '\\':
+	  result.append("\\\\");
+	  break;
+	case '\n':
+	  result.append("\\n");
+	  break;
+	case '\r':
+	  result.append("\\r");
+	  break;
+	case '\t':
+	  result.append("\\t");
+	  break;
+	default:
+	  if (c < 0x20)
+	    result.append(String.format("\\u%04x", (int) c));
+	  else
+	    result.append(c);
+      }
+    }
+    result.append("\"");
+
+    return result.toString();
+  }
+
+  /**
+   * Escapes the string for use as Prometheus label value.
+   *
+   * @param s		the string to escape
+   * @return		the quoted and escaped string
+   */
+  protected static String quoteLabel(String s) {
+    if (s == null)
+      s = "";
+    return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+  }
+
+  /**
+   * Generates the JSON report.
+   *
+   * @return		the JSON
+   */
+  public String toJSON() {
+    StringBuilder	result;
+    BuildResult		res;
+    CompileMetrics	metrics;
+    int			i;
+    int			n;
+
+    result = new StringBuilder();
+    result.append("{\n");
+    result.append("  \"timestamp\": ").append(m_Timestamp).append(",\n");
+    result.append("  \"success\": ").append(m_Results.isSuccess()).append(",\n");
+    result.append("  \"num_documents\": ").append(m_Results.size()).append(",\n");
+    result.append("  \"num_failed\": ").append(m_Results.getFailed().size()).append(",\n");
+    result.append("  \"num_skipped\": ").append(m_Results.getNumSkipped()).append(",\n");
+    result.append("  \"num_warned\": ").append(m_Results.getWarned().size()).append(",\n");
+    result.append("  \"documents\": [");
+    for (i = 0; i < m_Results.size(); i++) {
+      res = m_Results.get(i);
+      result.append(i > 0 ? ",\n" : "\n");
+      result.append("    {\n");
+      result.append("      \"index\": ").append(res.getIndex()).append(",\n");
+      result.append("      \"document\": ").append(quoteJSON(res.getDocument().getFile())).append(",\n");
+      result.append("      \"compiler\": ").append(quoteJSON(res.getDocument().getCompiler())).append(",\n");
+      result.append("      \"success\": ").append(res.isSuccess()).append(",\n");
+      result.append("      \"skipped\": ").append(res.isSkipped()).append(",\n");
+      result.append("      \"termination\": ").append(quoteJSON(res.getTermination().toString())).append(",\n");
+      result.append("      \"error\": ").append(quoteJSON(res.getError())).append(",\n");
+      result.append("      \"warnings\": [");
+      for (n = 0; n < res.getWarnings().size(); n++)
+	result.append(n > 0 ? ", " : "").append(quoteJSON(res.getWarnings().get(n)));
+      result.append("],\n");
+      result.append("      \"duration_ms\": ").append(res.getDuration()).append(",\n");
+      result.append("      \"passes\": ").append(res.getNumPasses()).append(",\n");
+      result.append("      \"invocations\": [");
+      for (n = 0; n < res.getMetrics().size(); n++) {
+	metrics = res.getMetrics().get(n);
+	result.append(n > 0 ? ",\n" : "\n");
+	result.append("        {");
+	result.append("\"compiler\": ").append(quoteJSON(metrics.getCompiler())).append(", ");
+	result.append("\"pass\": ").append(metrics.getPass()).append(", ");
+	result.append("\"start\": ").append(metrics.getStartTime()).append(", ");
+	result.append("\"wall_ms\": ").append(metrics.getWallTime()).append(", ");
+	result.append("\"cpu_ms\": ").append(metrics.getCPUTime()).append(", ");
+	result.append("\"peak_rss_bytes\": ").append(metrics.getPeakRSS()).append(", ");
+	result.append("\"exit_code\": ").append(metrics.getExitCode()).append(", ");
+	result.append("\"log_size_bytes\": ").append(metrics.getLogSize()).append(", ");
+	result.append("\"termination\": ").append(quoteJSON(metrics.getTermination().toString()));
+	result.append("}");
+      }
+      result.append(res.getMetrics().isEmpty() ? "]\n" : "\n      ]\n");
+      result.append("    }");
+    }
+    result.append(m_Results.isEmpty() ? "],\n" : "\n  ],\n");
+    result.append("  \"steps\": {");
+    n = 0;
+    for (Map.Entry<String,String> entry: m_Results.getSteps().entrySet()) {
+      result.append(n > 0 ? ",\n" : "\n");
+      result.append("    ").append(quoteJSON(entry.getKey())).append(": {\"success\": ").append(entry.getValue() == null);
+      result.append(", \"error\": ").append(quoteJSON(entry.getValue())).append("}");
+      n++;
+    }
+    result.append(n == 0 ? "}\n" : "\n  }\n");
+    result.append("}\n");
+
+    return result.toString();
+  }
+
+  /**
+   * Appends the header of a gauge.
+   *
+   * @param builder	the builder to append to
+   * @param name	the name of the metric (without prefix)
+   * @param help	the help text
+   */
+  protected static void appendGauge(StringBuilder builder, String name, String help) {
+    builder.append("# HELP ").append(PREFIX).append(name).append(" ").append(help).append("\n");
+    builder.append("# TYPE ").append(PREFIX).append(name).append(" gauge\n");
+  }
+
+  /**
+   * Appends a sample.
+   *
+   * @param builder	the builder to append to
+   * @param name	the name of the metric (without prefix)
+   * @param labels	the labels, null if none
+   * @param value	the value
+   */
+  protected static void appendSample(StringBuilder builder, String name, String labels, double value) {
+    builder.append(PREFIX).append(name);
+    if (labels != null)
+      builder.append("{").append(labels).append("}");
+    builder.append(" ").append(value).append("\n");
+  }
+
+  /**
+   * Generates the report in Prometheus text format. Values not available
+   * (eg CPU time of very short invocations) are omitted.
+   *
+   * @return		the metrics
+   */
+  public String toPrometheus() {
+    StringBuilder	result;
+
+    result = new StringBuilder();
+
+    appendGauge(result, "build_documents", "Number of documents in the build.");
+    appendSample(result, "build_documents", null, m_Results.size());
+    appendGauge(result, "build_failed", "Number of documents that failed to build.");
+    appendSample(result, "build_failed", null, m_Results.getFailed().size());
+    appendGauge(result, "build_skipped", "Number of documents that were up-to-date.");
+    appendSample(result, "build_skipped", null, m_Results.getNumSkipped());
+    appendGauge(result, "build_warned", "Number of documents that built with warnings, eg not converging.");
+    appendSample(result, "build_warned", null, m_Results.getWarned().size());
+    appendGauge(result, "build_timestamp_seconds", "Time the build report was generated.");
+    appendSample(result, "build_timestamp_seconds", null, m_Timestamp / 1000.0);
+
+    appendGauge(result, "document_duration_seconds", "Time it took to build the document.");
+    for (BuildResult res: m_Results)
+      appendSample(result, "document_duration_seconds", "document=" + quoteLabel(res.getDocument().getFile()), res.getDuration() / 1000.0);
+    appendGauge(result, "document_passes", "Number of passes required by the document.");
+    for (BuildResult res: m_Results)
+      appendSample(result, "document_passes", "document=" + quoteLabel(res.getDocument().getFile()), res.getNumPasses());
+    appendGauge(result, "document_success", "Whether the document was built successfully (1) or not (0).");
+    for (BuildResult res: m_Results)
+      appendSample(result, "document_success", "document=" + quoteLabel(res.getDocument().getFile()), res.isSuccess() ? 1 : 0);
+
+    appendGauge(result, "compile_wall_seconds", "Wall time of the compiler invocation.");
+    for (BuildResult res: m_Results) {
+      for (CompileMetrics metrics: res.getMetrics())
+	appendSample(result, "compile_wall_seconds", toLabels(metrics), metrics.getWallTime() / 1000.0);
+    }
+    appendGauge(result, "compile_cpu_seconds", "CPU time of the compiler invocation, including child processes.");
+    for (BuildResult res: m_Results) {
+      for (CompileMetrics metrics: res.getMetrics()) {
+	if (metrics.getCPUTime() > -1)
+	  appendSample(result, "compile_cpu_seconds", toLabels(metrics), metrics.getCPUTime() / 1000.0);
+      }
+    }
+    appendGauge(result, "compile_peak_rss_bytes", "Peak resident set size of the compiler invocation.");
+    for (BuildResult res: m_Results) {
+      for (CompileMetrics metrics: res.getMetrics()) {
+	if (metrics.getPeakRSS() > -1)
+	  appendSample(result, "compile_peak_rss_bytes", toLabels(metrics), metrics.getPeakRSS());
+      }
+    }
+    appendGauge(result, "compile_exit_code", "Exit code of the compiler invocation.");
+    for (BuildResult res: m_Results) {
+      for (CompileMetrics metrics: res.getMetrics())
+	appendSample(result, "compile_exit_code", toLabels(metrics), metrics.getExitCode());
+    }
+    appendGauge(result, "compile_log_bytes", "Size of the log file after the compiler invocation.");
+    for (BuildResult res: m_Results) {
+      for (CompileMetrics metrics: res.getMetrics()) {
+	if (metrics.getLogSize() > -1)
+	  appendSample(result, "compile_log_bytes", toLabels(metrics), metrics.getLogSize());
+      }
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Generates the labels for the invocation.
+   *
+   * @param metrics	the metrics of the invocation
+   * @return		the labels
+   */
+  protected static String toLabels(CompileMetrics metrics) {
+    return "document=" + quoteLabel(metrics.getDocument())
+      + ",compiler=" + quoteLabel(metrics.getCompiler())
+      + ",pass=" + quoteLabel("" + metrics.getPass());
+  }
+
+  /**
+   * Writes the content atomically to the file, ie scrapers never see a
+   * partially written file.
+   *
+   * @param content	the content to write
+   * @param file	the file to write to
+   * @throws IOException	if writing fails
+   */
+  protected static void write(String content, File file) throws IOException {
+    File	tmp;
+
+    tmp = new File(file.getPath() + ".tmp");
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+      writer.write(content);
+    }
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Writes the JSON report to the file.
+   *
+   * @param file	the file to write to
+   * @throws IOException	if writing fails
+   */
+  public void writeJSON(File file) throws IOException {
+    write(toJSON(), file);
+  }
+
+  /**
+   * Writes the Prometheus report to the file.
+   *
+   * @param file	the file to write to
+   * @throws IOException	if writing fails
+   */
+  public void writePrometheus(File file) throws IOException {
+    write(toPrometheus(), file);
+  }
+}
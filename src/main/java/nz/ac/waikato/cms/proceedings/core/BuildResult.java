@@ -0,0 +1,235 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * BuildResult.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.core.Utils;
+import nz.ac.waikato.cms.proceedings.core.CompileHandle.Termination;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The outcome of building a single document.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class BuildResult {
+
+  /** the position of the document in the list of documents. */
+  protected int m_Index;
+
+  /** the document that was built. */
+  protected Document m_Document;
+
+  /** the error message, null if successful. */
+  protected String m_Error;
+
+  /** the time in msec that the build took. */
+  protected long m_Duration;
+
+  /** whether the build was skipped as the document was up-to-date. */
+  protected boolean m_Skipped;
+
+  /** how the build got terminated prematurely. */
+  protected Termination m_Termination;
+
+  /** the metrics of the compiler invocations. */
+  protected List<CompileMetrics> m_Metrics;
+
+  /** the warnings of the build. */
+  protected List<String> m_Warnings;
+
+  /**
+   * Initializes the result.
+   *
+   * @param index	the position of the document
+   * @param document	the document
+   * @param error	the error message, null if successful
+   * @param duration	the duration in msec
+   */
+  public BuildResult(int index, Document document, String error, long duration) {
+    this(index, document, error, duration, false);
+  }
+
+  /**
+   * Initializes the result.
+   *
+   * @param index	the position of the document
+   * @param document	the document
+   * @param error	the error message, null if successful
+   * @param duration	the duration in msec
+   * @param skipped	whether the document was up-to-date and not compiled
+   */
+  public BuildResult(int index, Document document, String error, long duration, boolean skipped) {
+    m_Index       = index;
+    m_Document    = document;
+    m_Error       = error;
+    m_Duration    = duration;
+    m_Skipped     = skipped;
+    m_Termination = Termination.NONE;
+    m_Metrics     = new ArrayList<>();
+    m_Warnings    = new ArrayList<>();
+  }
+
+  /**
+   * Returns the position of the document in the list of documents.
+   *
+   * @return		the index
+   */
+  public int getIndex() {
+    return m_Index;
+  }
+
+  /**
+   * Returns the document.
+   *
+   * @return		the document
+   */
+  public Document getDocument() {
+    return m_Document;
+  }
+
+  /**
+   * Returns the error message.
+   *
+   * @return		the error, null if successful
+   */
+  public String getError() {
+    return m_Error;
+  }
+
+  /**
+   * Returns whether the build was successful.
+   *
+   * @return		true if successful
+   */
+  public boolean isSuccess() {
+    return (m_Error == null);
+  }
+
+  /**
+   * Returns whether the document was up-to-date and therefore not compiled.
+   *
+   * @return		true if skipped
+   */
+  public boolean isSkipped() {
+    return m_Skipped;
+  }
+
+  /**
+   * Sets how the build got terminated prematurely.
+   *
+   * @param value	the termination
+   */
+  public void setTermination(Termination value) {
+    m_Termination = value;
+  }
+
+  /**
+   * Returns how the build got terminated prematurely, eg timeout or
+   * cancellation.
+   *
+   * @return		the termination
+   */
+  public Termination getTermination() {
+    return m_Termination;
+  }
+
+  /**
+   * Sets the metrics of the compiler invocations.
+   *
+   * @param value	the metrics
+   */
+  public void setMetrics(List<CompileMetrics> value) {
+    m_Metrics = new ArrayList<>(value);
+  }
+
+  /**
+   * Returns the metrics of the compiler invocations.
+   *
+   * @return		the metrics, in order of invocation
+   */
+  public List<CompileMetrics> getMetrics() {
+    return m_Metrics;
+  }
+
+  /**
+   * Sets the warnings of the build, eg the document not converging.
+   *
+   * @param value	the warnings
+   */
+  public void setWarnings(List<String> value) {
+    m_Warnings = new ArrayList<>(value);
+  }
+
+  /**
+   * Returns the warnings of the build.
+   *
+   * @return		the warnings
+   */
+  public List<String> getWarnings() {
+    return m_Warnings;
+  }
+
+  /**
+   * Returns whether the build produced warnings.
+   *
+   * @return		true if warnings present
+   */
+  public boolean hasWarnings() {
+    return !m_Warnings.isEmpty();
+  }
+
+  /**
+   * Returns the number of passes, ie the maximum number of invocations of
+   * any one compiler.
+   *
+   * @return		the number of passes
+   */
+  public int getNumPasses() {
+    int		result;
+
+    result = 0;
+    for (CompileMetrics metrics: m_Metrics)
+      result = Math.max(result, metrics.getPass());
+
+    return result;
+  }
+
+  /**
+   * Returns the time the build took.
+   *
+   * @return		the duration in msec
+   */
+  public long getDuration() {
+    return m_Duration;
+  }
+
+  /**
+   * Returns a short string representation.
+   *
+   * @return		the representation
+   */
+  public String toString() {
+    return (m_Index + 1) + ". " + m_Document.getFile() + ": " + (isSuccess() ? (m_Skipped ? "up-to-date" : "OK") + (hasWarnings() ? ", warning: " + Utils.flatten(m_Warnings, "; ") : "") : (m_Termination != Termination.NONE ? m_Termination + ": " : "") + m_Error) + " (" + m_Duration + "ms)";
+  }
+}
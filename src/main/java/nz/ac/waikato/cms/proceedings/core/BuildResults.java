@@ -0,0 +1,166 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * BuildResults.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The results of building a list of documents, in the order of the documents.
+ * Also records the outcome of build steps that aren't tied to a single
+ * document, like assembling the volume.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class BuildResults
+  extends ArrayList<BuildResult> {
+
+  /** the outcome of the other steps (step - null if successful, otherwise error message). */
+  protected Map<String,String> m_Steps = new LinkedHashMap<>();
+
+  /**
+   * Records the outcome of a step.
+   *
+   * @param step	the name of the step
+   * @param error	null if successful, otherwise error message
+   */
+  public void addStep(String step, String error) {
+    m_Steps.put(step, error);
+  }
+
+  /**
+   * Returns the outcome of the other steps.
+   *
+   * @return		the outcome (step - null if successful, otherwise error message)
+   */
+  public Map<String,String> getSteps() {
+    return m_Steps;
+  }
+
+  /**
+   * Returns the other steps that failed.
+   *
+   * @return		the failed steps (step - error message)
+   */
+  public Map<String,String> getFailedSteps() {
+    Map<String,String>	result;
+
+    result = new LinkedHashMap<>();
+    for (Map.Entry<String,String> entry: m_Steps.entrySet()) {
+      if (entry.getValue() != null)
+	result.put(entry.getKey(), entry.getValue());
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the results of the builds that failed.
+   *
+   * @return		the failed builds
+   */
+  public List<BuildResult> getFailed() {
+    List<BuildResult>	result;
+
+    result = new ArrayList<>();
+    for (BuildResult res: this) {
+      if (!res.isSuccess())
+	result.add(res);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the builds that succeeded, but with warnings (eg not converging).
+   *
+   * @return		the builds with warnings
+   */
+  public List<BuildResult> getWarned() {
+    List<BuildResult>	result;
+
+    result = new ArrayList<>();
+    for (BuildResult res: this) {
+      if (res.isSuccess() && res.hasWarnings())
+	result.add(res);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the number of documents that were skipped as they were up-to-date.
+   *
+   * @return		the number of skipped documents
+   */
+  public int getNumSkipped() {
+    int		result;
+
+    result = 0;
+    for (BuildResult res: this) {
+      if (res.isSkipped())
+	result++;
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns whether all documents and steps were built successfully.
+   *
+   * @return		true if no failures
+   */
+  public boolean isSuccess() {
+    return getFailed().isEmpty() && getFailedSteps().isEmpty();
+  }
+
+  /**
+   * Returns a summary of the failed builds and the ones with warnings,
+   * listed in document order.
+   *
+   * @return		the summary
+   */
+  public String toSummary() {
+    StringBuilder	result;
+    List<BuildResult>	failed;
+    List<BuildResult>	warned;
+
+    failed = getFailed();
+    warned = getWarned();
+    result = new StringBuilder();
+    result.append("Documents: ").append(size());
+    result.append(", succeeded: ").append(size() - failed.size());
+    result.append(", failed: ").append(failed.size());
+    result.append(", up-to-date: ").append(getNumSkipped());
+    result.append(", warnings: ").append(warned.size());
+    for (BuildResult res: failed)
+      result.append("\n").append(res);
+    for (BuildResult res: warned)
+      result.append("\n").append(res);
+    for (Map.Entry<String,String> entry: getFailedSteps().entrySet())
+      result.append("\n").append(entry.getKey()).append(": ").append(entry.getValue());
+
+    return result.toString();
+  }
+}
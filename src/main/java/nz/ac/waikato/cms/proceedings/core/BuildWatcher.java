@@ -0,0 +1,269 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * BuildWatcher.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.core.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the files that the documents depend on and rebuilds the affected
+ * documents (plus table of contents and volume, if configured) whenever
+ * they change. Bursts of changes (eg editors writing backup and target
+ * file) get collected until no further change occurs within the debounce
+ * interval. Changes to files that no document depends on (eg the aux/log
+ * files written by the compiles themselves) are ignored.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class BuildWatcher {
+
+  /** the default debounce interval in msec. */
+  public final static int DEFAULT_DEBOUNCE = 500;
+
+  /** the engine for building the documents. */
+  protected BuildEngine m_Engine;
+
+  /** the debounce interval in msec. */
+  protected int m_Debounce;
+
+  /** the index of the dependencies. */
+  protected DependencyIndex m_Index;
+
+  /** the watch service. */
+  protected WatchService m_Service;
+
+  /** the watched directories (directory - key). */
+  protected Map<Path,WatchKey> m_Watched;
+
+  /** whether events got lost and all documents need rebuilding. */
+  protected boolean m_Overflow;
+
+  /** whether the watcher has been stopped. */
+  protected volatile boolean m_Stopped;
+
+  /**
+   * Initializes the watcher.
+   *
+   * @param engine	the configured engine to build with
+   */
+  public BuildWatcher(BuildEngine engine) {
+    m_Engine   = engine;
+    m_Debounce = DEFAULT_DEBOUNCE;
+    m_Watched  = new HashMap<>();
+  }
+
+  /**
+   * Returns the engine used for building.
+   *
+   * @return		the engine
+   */
+  public BuildEngine getEngine() {
+    return m_Engine;
+  }
+
+  /**
+   * Sets the interval without changes to wait for before rebuilding.
+   *
+   * @param value	the interval in msec
+   */
+  public void setDebounce(int value) {
+    m_Debounce = value;
+  }
+
+  /**
+   * Returns the interval without changes to wait for before rebuilding.
+   *
+   * @return		the interval in msec
+   */
+  public int getDebounce() {
+    return m_Debounce;
+  }
+
+  /**
+   * Determines the directories containing the dependencies of all documents
+   * (incl referenced files that don't exist yet) and watches them.
+   * Directories no longer needed get unwatched.
+   *
+   * @throws IOException	if registering fails
+   */
+  protected void register() throws IOException {
+    Set<Path>	dirs;
+
+    dirs = new HashSet<>();
+    for (Document doc: m_Engine.getDocuments()) {
+      dirs.add(new File(DependencyIndex.key(new File(doc.getFile()))).getParentFile().toPath());
+      for (String dep: m_Index.getDependencies(doc.getFile()))
+	dirs.add(new File(dep).getParentFile().toPath());
+      for (String dep: m_Index.getMissing(doc.getFile()))
+	dirs.add(new File(dep).getParentFile().toPath());
+    }
+
+    for (Path dir: new HashSet<>(m_Watched.keySet())) {
+      if (!dirs.contains(dir))
+	m_Watched.remove(dir).cancel();
+    }
+    for (Path dir: dirs) {
+      if (m_Watched.containsKey(dir) || !dir.toFile().isDirectory())
+	continue;
+      m_Watched.put(dir, dir.register(m_Service,
+	StandardWatchEventKinds.ENTRY_CREATE,
+	StandardWatchEventKinds.ENTRY_MODIFY,
+	StandardWatchEventKinds.ENTRY_DELETE));
+    }
+  }
+
+  /**
+   * Collects the changed files from the key's events and resets the key.
+   *
+   * @param key		the key with events
+   * @param changed	for collecting the changed files
+   */
+  protected void collect(WatchKey key, Set<File> changed) {
+    Path	dir;
+
+    dir = (Path) key.watchable();
+    for (WatchEvent<?> event: key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+	m_Overflow = true;
+      else
+	changed.add(dir.resolve((Path) event.context()).toFile());
+    }
+    if (!key.reset())
+      m_Watched.remove(dir);
+  }
+
+  /**
+   * Determines the documents to rebuild.
+   *
+   * @param changed	the changed files
+   * @return		the positions of the documents
+   */
+  protected Set<Integer> determineAffected(Set<File> changed) {
+    Set<Integer>	result;
+    Set<String>		affected;
+    Documents		docs;
+    int			i;
+
+    result = new TreeSet<>();
+    docs   = m_Engine.getDocuments();
+    // don't react to the generated files, otherwise documents including them keep rebuilding
+    if (m_Engine.getTOC() != null)
+      changed.remove(new File(DependencyIndex.key(m_Engine.getTOC())));
+    if (m_Engine.getVolume() != null)
+      changed.remove(new File(DependencyIndex.key(m_Engine.getVolume())));
+    affected = m_Index.getAffected(changed);
+    for (i = 0; i < docs.size(); i++) {
+      if (m_Overflow || affected.contains(DependencyIndex.key(new File(docs.get(i).getFile()))))
+	result.add(i);
+    }
+    m_Overflow = false;
+
+    return result;
+  }
+
+  /**
+   * Watches the dependencies and rebuilds the affected documents, until
+   * stopped. Does not perform an initial build.
+   *
+   * @throws IOException	if watching fails
+   * @throws InterruptedException	if interrupted while waiting for changes
+   */
+  public void run() throws IOException, InterruptedException {
+    WatchKey		key;
+    Set<File>		changed;
+    Set<Integer>	affected;
+    BuildResults	results;
+
+    m_Index = m_Engine.getDependencyIndex();
+    if (m_Index == null) {
+      m_Index = new DependencyIndex(null);
+      m_Engine.setDependencyIndex(m_Index);
+    }
+    m_Index.load();
+    m_Index.update(m_Engine.getDocuments());
+
+    m_Stopped = false;
+    m_Service = FileSystems.getDefault().newWatchService();
+    try {
+      register();
+      while (!m_Stopped) {
+	changed = new HashSet<>();
+	key     = m_Service.take();
+	collect(key, changed);
+	while ((key = m_Service.poll(m_Debounce, TimeUnit.MILLISECONDS)) != null)
+	  collect(key, changed);
+
+	affected = determineAffected(changed);
+	if (affected.isEmpty())
+	  continue;
+
+	System.err.println("Rebuilding " + affected.size() + " document(s)...");
+	results = m_Engine.build(affected);
+	System.err.println(results.toSummary());
+	register();
+      }
+    }
+    catch (ClosedWatchServiceException e) {
+      if (!m_Stopped)
+	throw e;
+    }
+    finally {
+      m_Watched.clear();
+      try {
+	m_Service.close();
+      }
+      catch (Exception e) {
+	System.err.println("Failed to close watch service!\n" + Utils.throwableToString(e));
+      }
+    }
+  }
+
+  /**
+   * Stops watching. A running build gets cancelled.
+   */
+  public void stop() {
+    m_Stopped = true;
+    m_Engine.cancel();
+    try {
+      if (m_Service != null)
+	m_Service.close();
+    }
+    catch (Exception e) {
+      // ignored
+    }
+  }
+}
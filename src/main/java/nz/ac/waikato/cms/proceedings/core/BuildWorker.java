@@ -0,0 +1,448 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * BuildWorker.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.Namespace;
+import nz.ac.waikato.cms.core.FileUtils;
+import nz.ac.waikato.cms.core.Utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Worker that connects to a {@link BuildCoordinator}, compiles the
+ * documents it receives in a temporary directory and sends back the
+ * outputs. While compiling, heartbeats get sent to the coordinator, which
+ * re-dispatches the job if the worker goes silent.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class BuildWorker
+  implements Runnable {
+
+  /** the default interval in msec to wait before asking for a job again. */
+  public final static int DEFAULT_RETRY_INTERVAL = 500;
+
+  /** the host of the coordinator. */
+  protected String m_Host;
+
+  /** the port of the coordinator. */
+  protected int m_Port;
+
+  /** the name of the worker. */
+  protected String m_Name;
+
+  /** the token to send to the coordinator, null if none. */
+  protected String m_Token;
+
+  /** the sandbox providing the directory for the jobs. */
+  protected Sandbox m_Sandbox;
+
+  /** the interval in msec to wait before asking for a job again. */
+  protected int m_RetryInterval;
+
+  /** the connection to the coordinator. */
+  protected Socket m_Socket;
+
+  /** the handle of the current compile. */
+  protected CompileHandle m_Handle;
+
+  /** whether the worker got stopped. */
+  protected volatile boolean m_Stopped;
+
+  /**
+   * Initializes the worker.
+   *
+   * @param host	the host of the coordinator
+   * @param port	the port of the coordinator
+   */
+  public BuildWorker(String host, int port) {
+    m_Host          = host;
+    m_Port          = port;
+    m_Name          = defaultName();
+    m_Sandbox       = new Sandbox();
+    m_RetryInterval = DEFAULT_RETRY_INTERVAL;
+  }
+
+  /**
+   * Returns the default name of the worker (host name and id).
+   *
+   * @return		the name
+   */
+  protected static String defaultName() {
+    try {
+      return InetAddress.getLocalHost().getHostName() + "-" + ProcessHandle.current().pid();
+    }
+    catch (Exception e) {
+      return "worker-" + ProcessHandle.current().pid();
+    }
+  }
+
+  /**
+   * Sets the name of the worker.
+   *
+   * @param value	the name
+   */
+  public void setName(String value) {
+    m_Name = value;
+  }
+
+  /**
+   * Returns the name of the worker.
+   *
+   * @return		the name
+   */
+  public String getName() {
+    return m_Name;
+  }
+
+  /**
+   * Sets the token to send to the coordinator.
+   *
+   * @param value	the token, null if none
+   */
+  public void setToken(String value) {
+    m_Token = value;
+  }
+
+  /**
+   * Returns the token to send to the coordinator.
+   *
+   * @return		the token, null if none
+   */
+  public String getToken() {
+    return m_Token;
+  }
+
+  /**
+   * Sets the sandbox providing the directory for the jobs.
+   *
+   * @param value	the sandbox
+   */
+  public void setSandbox(Sandbox value) {
+    m_Sandbox = value;
+  }
+
+  /**
+   * Returns the sandbox providing the directory for the jobs.
+   *
+   * @return		the sandbox
+   */
+  public Sandbox getSandbox() {
+    return m_Sandbox;
+  }
+
+  /**
+   * Sets the interval to wait before asking for a job again.
+   *
+   * @param value	the interval in msec
+   */
+  public void setRetryInterval(int value) {
+    m_RetryInterval = value;
+  }
+
+  /**
+   * Returns the interval to wait before asking for a job again.
+   *
+   * @return		the interval in msec
+   */
+  public int getRetryInterval() {
+    return m_RetryInterval;
+  }
+
+  /**
+   * Compiles the document of the job.
+   *
+   * @param dir		the directory of the job
+   * @param compilers	the compilers
+   * @param name	the name of the compiler to use
+   * @param document	the document, relative to the directory
+   * @param timeout	the timeout in seconds, &lt;= 0 for none
+   * @param maxPasses	the maximum number of LaTeX passes
+   * @return		null if successful, otherwise error message
+   */
+  protected String compile(File dir, Compilers compilers, String name, String document, int timeout, int maxPasses) {
+    BuildEngine		engine;
+    AbstractCompiler	compiler;
+
+    compiler = compilers.find(name);
+    if (compiler == null)
+      return "Unknown compiler: " + name;
+
+    engine = new BuildEngine();
+    engine.setCompilers(compilers);
+    engine.setMaxPasses(maxPasses);
+    m_Handle.setTimeout(timeout * 1000L);
+    try {
+      return engine.compile(BuildProtocol.resolve(dir, document).getPath(), compiler, m_Handle);
+    }
+    catch (Exception e) {
+      return Utils.throwableToString(e);
+    }
+  }
+
+  /**
+   * Sends heartbeats until interrupted. Once interrupted, no further heartbeat
+   * gets written, so the thread can be stopped before sending the result.
+   *
+   * @param out		the stream to send them to
+   * @return		the thread sending the heartbeats
+   */
+  protected Thread startHeartbeat(final DataOutputStream out) {
+    Thread	result;
+
+    result = new Thread(m_Name + "-heartbeat") {
+      @Override
+      public void run() {
+	while (!isInterrupted()) {
+	  try {
+	    Thread.sleep(BuildProtocol.HEARTBEAT_INTERVAL);
+	    synchronized(out) {
+	      // stopped while sleeping, RESULT may already have been sent
+	      if (isInterrupted())
+		return;
+	      out.writeUTF(BuildProtocol.ALIVE);
+	      out.flush();
+	    }
+	  }
+	  catch (InterruptedException e) {
+	    return;
+	  }
+	  catch (IOException e) {
+	    // connection gone, reported by main loop
+	    return;
+	  }
+	}
+      }
+    };
+    result.setDaemon(true);
+    result.start();
+
+    return result;
+  }
+
+  /**
+   * Receives a job, compiles it and sends back the result.
+   *
+   * @param in		the stream to read the job from
+   * @param out		the stream to send the result to
+   * @throws IOException	if communication fails
+   */
+  protected void process(DataInputStream in, DataOutputStream out) throws IOException {
+    int			id;
+    String		yaml;
+    String		name;
+    String		document;
+    int			timeout;
+    int			maxPasses;
+    File		dir;
+    Compilers		compilers;
+    String		error;
+    long		start;
+    Thread		heartbeat;
+    List<File>		outputs;
+    File		output;
+
+    id        = in.readInt();
+    yaml      = BuildProtocol.readString(in);
+    name      = in.readUTF();
+    document  = in.readUTF();
+    timeout   = in.readInt();
+    maxPasses = in.readInt();
+    Files.createDirectories(m_Sandbox.getRoot().toPath());
+    dir = Files.createTempDirectory(m_Sandbox.getRoot().toPath(), "proceedings-worker-").toFile();
+    try {
+      BuildProtocol.commit(BuildProtocol.readFiles(in, dir, ".tmp"));
+      start     = System.currentTimeMillis();
+      m_Handle  = new CompileHandle();
+      heartbeat = startHeartbeat(out);
+      try {
+	compilers = Compilers.read(new StringReader(yaml));
+	error     = compile(dir, compilers, name, document, timeout, maxPasses);
+      }
+      catch (Exception e) {
+	error = Utils.throwableToString(e);
+      }
+      finally {
+	heartbeat.interrupt();
+	try {
+	  heartbeat.join();
+	}
+	catch (InterruptedException e) {
+	  Thread.currentThread().interrupt();
+	}
+      }
+
+      outputs = new ArrayList<>();
+      for (String ext: Sandbox.DEFAULT_COPY_BACK) {
+	output = new File(FileUtils.replaceExtension(BuildProtocol.resolve(dir, document).getPath(), ext));
+	if (output.isFile())
+	  outputs.add(output);
+      }
+      synchronized(out) {
+	out.writeUTF(BuildProtocol.RESULT);
+	out.writeInt(id);
+	BuildProtocol.writeString(out, error);
+	out.writeLong(System.currentTimeMillis() - start);
+	out.writeUTF(m_Handle.getTermination().name());
+	out.writeInt(m_Handle.getWarnings().size());
+	for (String warning: m_Handle.getWarnings())
+	  BuildProtocol.writeString(out, warning);
+	BuildProtocol.writeFiles(out, dir, outputs);
+	out.flush();
+      }
+    }
+    finally {
+      m_Sandbox.delete(dir.toPath());
+      // entries are specific to the deleted directory
+      BibTeX.clearLocated();
+    }
+  }
+
+  /**
+   * Connects to the coordinator and processes jobs until the coordinator
+   * has no more jobs or the worker gets stopped.
+   */
+  @Override
+  public void run() {
+    DataInputStream	in;
+    DataOutputStream	out;
+    String		cmd;
+
+    m_Stopped = false;
+    try {
+      m_Socket = new Socket(m_Host, m_Port);
+      in       = new DataInputStream(new BufferedInputStream(m_Socket.getInputStream()));
+      out      = new DataOutputStream(new BufferedOutputStream(m_Socket.getOutputStream()));
+      out.writeUTF(BuildProtocol.HELLO);
+      out.writeUTF(m_Name);
+      BuildProtocol.writeString(out, m_Token);
+      while (!m_Stopped) {
+	out.writeUTF(BuildProtocol.READY);
+	out.flush();
+	cmd = in.readUTF();
+	switch (cmd) {
+	  case BuildProtocol.DONE:
+	    return;
+	  case BuildProtocol.WAIT:
+	    Thread.sleep(m_RetryInterval);
+	    break;
+	  case BuildProtocol.JOB:
+	    process(in, out);
+	    break;
+	  default:
+	    throw new IOException("Unexpected command: " + cmd);
+	}
+      }
+    }
+    catch (Exception e) {
+      if (!m_Stopped)
+	System.err.println("Worker '" + m_Name + "' failed!\n" + Utils.throwableToString(e));
+    }
+    finally {
+      close();
+    }
+  }
+
+  /**
+   * Closes the connection.
+   */
+  protected void close() {
+    try {
+      if (m_Socket != null)
+	m_Socket.close();
+    }
+    catch (IOException e) {
+      // ignored
+    }
+  }
+
+  /**
+   * Stops the worker, killing the current compile. The coordinator
+   * re-dispatches the job.
+   */
+  public void stop() {
+    m_Stopped = true;
+    if (m_Handle != null)
+      m_Handle.cancel();
+    close();
+  }
+
+  /**
+   * Starts a worker from the commandline.
+   *
+   * @param args	the commandline options, use -h for help
+   */
+  public static void main(String[] args) {
+    ArgumentParser parser = ArgumentParsers.newArgumentParser(BuildWorker.class.getName());
+    parser.description("Compiles documents sent by a build coordinator.");
+    parser.addArgument("--host").dest("host").setDefault("localhost").help("the host of the coordinator");
+    parser.addArgument("--port").dest("port").type(Integer.class).setDefault(BuildProtocol.DEFAULT_PORT).help("the port of the coordinator");
+    parser.addArgument("--name").dest("name").help("the name of the worker, defaults to host name and process ID");
+    parser.addArgument("--token-file").dest("tokenfile").help("the file with the token required by the coordinator");
+    parser.addArgument("--sandbox").dest("sandbox").help("the directory to compile the jobs in, defaults to " + Sandbox.DEFAULT_ROOT + " or the temp directory");
+    Namespace ns;
+    try {
+      ns = parser.parseArgs(args);
+    }
+    catch (ArgumentParserException e) {
+      parser.handleError(e);
+      System.exit(1);
+      return;
+    }
+
+    final BuildWorker worker = new BuildWorker(ns.getString("host"), ns.getInt("port"));
+    if (ns.getString("name") != null)
+      worker.setName(ns.getString("name"));
+    if (ns.getString("tokenfile") != null) {
+      try {
+	worker.setToken(BuildProtocol.readToken(new File(ns.getString("tokenfile"))));
+      }
+      catch (IOException e) {
+	System.err.println("Failed to read token!\n" + Utils.throwableToString(e));
+	System.exit(1);
+      }
+    }
+    if (ns.getString("sandbox") != null)
+      worker.setSandbox(new Sandbox(new File(ns.getString("sandbox"))));
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      @Override
+      public void run() {
+	worker.stop();
+      }
+    });
+    worker.run();
+  }
+}
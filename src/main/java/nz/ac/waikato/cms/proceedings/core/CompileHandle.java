@@ -0,0 +1,281 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * CompileHandle.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Handle for a running compile, allowing it to be cancelled and limiting
+ * its wall-clock time. A handle can span several compiler invocations
+ * (eg multiple LaTeX passes), with the deadline applying to all of them.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class CompileHandle {
+
+  /**
+   * How a compile got terminated prematurely.
+   */
+  public enum Termination {
+    /** not terminated. */
+    NONE,
+    /** the time limit was exceeded. */
+    TIMEOUT,
+    /** cancelled by the user. */
+    CANCELLED,
+    /** aborted by the compiler itself, eg due to a fatal error. */
+    ABORTED
+  }
+
+  /** the deadline (msec since epoch), &lt;= 0 for none. */
+  protected long m_Deadline;
+
+  /** how the compile got terminated. */
+  protected Termination m_Termination;
+
+  /** the reason for the termination. */
+  protected String m_Reason;
+
+  /** the currently running process, null if none. */
+  protected Process m_Process;
+
+  /** the metrics of the invocations so far. */
+  protected List<CompileMetrics> m_Metrics;
+
+  /** the warnings of the compile, eg not converging. */
+  protected List<String> m_Warnings;
+
+  /** the original file of the document (rather than a staged copy), null if not set. */
+  protected String m_Document;
+
+  /**
+   * Initializes the handle without deadline.
+   */
+  public CompileHandle() {
+    m_Termination = Termination.NONE;
+    m_Metrics     = new ArrayList<>();
+    m_Warnings    = new ArrayList<>();
+  }
+
+  /**
+   * Sets the time limit, starting from now.
+   *
+   * @param value	the limit in msec, &lt;= 0 for no limit
+   */
+  public synchronized void setTimeout(long value) {
+    if (value > 0)
+      m_Deadline = System.currentTimeMillis() + value;
+    else
+      m_Deadline = 0;
+  }
+
+  /**
+   * Returns the deadline.
+   *
+   * @return		the deadline (msec since epoch), &lt;= 0 for none
+   */
+  public synchronized long getDeadline() {
+    return m_Deadline;
+  }
+
+  /**
+   * Returns the time that an invocation may take.
+   *
+   * @param timeout	the time limit of the invocation in msec, &lt;= 0 for none
+   * @return		the time in msec, &lt;= 0 for unlimited
+   */
+  public synchronized long remaining(long timeout) {
+    long	result;
+
+    result = timeout;
+    if (m_Deadline > 0) {
+      result = Math.max(1, m_Deadline - System.currentTimeMillis());
+      if ((timeout > 0) && (timeout < result))
+	result = timeout;
+    }
+
+    return result;
+  }
+
+  /**
+   * Cancels the compile, killing any running process.
+   */
+  public void cancel() {
+    terminate(Termination.CANCELLED, "Cancelled");
+  }
+
+  /**
+   * Terminates the compile, killing any running process. Only the first
+   * termination gets recorded.
+   *
+   * @param termination	the type of termination
+   * @param reason	the reason
+   */
+  public synchronized void terminate(Termination termination, String reason) {
+    if (m_Termination == Termination.NONE) {
+      m_Termination = termination;
+      m_Reason      = reason;
+    }
+    if (m_Process != null)
+      destroy(m_Process);
+  }
+
+  /**
+   * Returns whether the compile got terminated.
+   *
+   * @return		true if terminated
+   */
+  public synchronized boolean isTerminated() {
+    return (m_Termination != Termination.NONE);
+  }
+
+  /**
+   * Returns how the compile got terminated.
+   *
+   * @return		the termination
+   */
+  public synchronized Termination getTermination() {
+    return m_Termination;
+  }
+
+  /**
+   * Returns the reason for the termination.
+   *
+   * @return		the reason, null if not terminated
+   */
+  public synchronized String getReason() {
+    return m_Reason;
+  }
+
+  /**
+   * Sets the currently running process. Gets killed immediately if the
+   * compile has been terminated already.
+   *
+   * @param value	the process, null if finished
+   */
+  public synchronized void setProcess(Process value) {
+    m_Process = value;
+    if ((m_Process != null) && isTerminated())
+      destroy(m_Process);
+  }
+
+  /**
+   * Returns the currently running process.
+   *
+   * @return		the process, null if none
+   */
+  public synchronized Process getProcess() {
+    return m_Process;
+  }
+
+  /**
+   * Records the metrics of an invocation. Sets the pass, ie the number of
+   * invocations of the same compiler so far.
+   *
+   * @param metrics	the metrics to add
+   */
+  public synchronized void addMetrics(CompileMetrics metrics) {
+    int		pass;
+
+    pass = 1;
+    for (CompileMetrics m: m_Metrics) {
+      if (m.getCompiler().equals(metrics.getCompiler()))
+	pass++;
+    }
+    metrics.setPass(pass);
+    m_Metrics.add(metrics);
+  }
+
+  /**
+   * Returns the metrics of the invocations so far.
+   *
+   * @return		the metrics, in order of invocation
+   */
+  public synchronized List<CompileMetrics> getMetrics() {
+    return new ArrayList<>(m_Metrics);
+  }
+
+  /**
+   * Returns the metrics of the most recent invocation.
+   *
+   * @return		the metrics, null if none
+   */
+  public synchronized CompileMetrics getLastMetrics() {
+    if (m_Metrics.isEmpty())
+      return null;
+    return m_Metrics.get(m_Metrics.size() - 1);
+  }
+
+  /**
+   * Records a warning, ie a problem that doesn't fail the compile.
+   *
+   * @param warning	the warning
+   */
+  public synchronized void addWarning(String warning) {
+    m_Warnings.add(warning);
+  }
+
+  /**
+   * Returns the warnings recorded so far.
+   *
+   * @return		the warnings
+   */
+  public synchronized List<String> getWarnings() {
+    return new ArrayList<>(m_Warnings);
+  }
+
+  /**
+   * Sets the original file of the document, ie not the staged copy that
+   * gets compiled in a sandbox or by a worker.
+   *
+   * @param value	the file, null if not set
+   */
+  public synchronized void setDocument(String value) {
+    m_Document = value;
+  }
+
+  /**
+   * Returns the original file of the document.
+   *
+   * @return		the file, null if not set
+   */
+  public synchronized String getDocument() {
+    return m_Document;
+  }
+
+  /**
+   * Kills the process and all its descendants.
+   *
+   * @param process	the process to kill
+   */
+  public static void destroy(Process process) {
+    List<ProcessHandle>	children;
+
+    // determine children before parent is gone and they get re-parented
+    children = process.descendants().collect(Collectors.toList());
+    process.destroyForcibly();
+    for (ProcessHandle child: children)
+      child.destroyForcibly();
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * CompileMetrics.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.proceedings.core.CompileHandle.Termination;
+
+/**
+ * The resource usage of a single compiler invocation. CPU time and peak
+ * memory get sampled while the process is running, i.e., very short
+ * invocations may not report them.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class CompileMetrics {
+
+  /** the name of the compiler. */
+  protected String m_Compiler;
+
+  /** the document. */
+  protected String m_Document;
+
+  /** the pass of the compiler for this document (1-based). */
+  protected int m_Pass;
+
+  /** the start time (msec since epoch). */
+  protected long m_StartTime;
+
+  /** the wall time in msec. */
+  protected long m_WallTime;
+
+  /** the CPU time in msec (incl waited-for children), -1 if unknown. */
+  protected long m_CPUTime;
+
+  /** the peak resident set size in bytes, -1 if unknown. */
+  protected long m_PeakRSS;
+
+  /** the exit code, -1 if unknown. */
+  protected int m_ExitCode;
+
+  /** the size of the log file in bytes, -1 if unknown. */
+  protected long m_LogSize;
+
+  /** how the invocation got terminated. */
+  protected Termination m_Termination;
+
+  /**
+   * Initializes the metrics.
+   *
+   * @param compiler	the name of the compiler
+   * @param document	the document
+   */
+  public CompileMetrics(String compiler, String document) {
+    m_Compiler    = compiler;
+    m_Document    = document;
+    m_StartTime   = System.currentTimeMillis();
+    m_CPUTime     = -1;
+    m_PeakRSS     = -1;
+    m_ExitCode    = -1;
+    m_LogSize     = -1;
+    m_Termination = Termination.NONE;
+  }
+
+  /**
+   * Returns the name of the compiler.
+   *
+   * @return		the name
+   */
+  public String getCompiler() {
+    return m_Compiler;
+  }
+
+  /**
+   * Returns the document.
+   *
+   * @return		the document
+   */
+  public String getDocument() {
+    return m_Document;
+  }
+
+  /**
+   * Sets the pass of the compiler for the document.
+   *
+   * @param value	the pass (1-based)
+   */
+  public void setPass(int value) {
+    m_Pass = value;
+  }
+
+  /**
+   * Returns the pass of the compiler for the document.
+   *
+   * @return		the pass (1-based)
+   */
+  public int getPass() {
+    return m_Pass;
+  }
+
+  /**
+   * Returns the start time.
+   *
+   * @return		the start time (msec since epoch)
+   */
+  public long getStartTime() {
+    return m_StartTime;
+  }
+
+  /**
+   * Sets the wall time.
+   *
+   * @param value	the time in msec
+   */
+  public void setWallTime(long value) {
+    m_WallTime = value;
+  }
+
+  /**
+   * Returns the wall time.
+   *
+   * @return		the time in msec
+   */
+  public long getWallTime() {
+    return m_WallTime;
+  }
+
+  /**
+   * Updates the CPU time with a newer sample.
+   *
+   * @param value	the time in msec
+   */
+  public void updateCPUTime(long value) {
+    m_CPUTime = Math.max(m_CPUTime, value);
+  }
+
+  /**
+   * Returns the CPU time.
+   *
+   * @return		the time in msec, -1 if unknown
+   */
+  public long getCPUTime() {
+    return m_CPUTime;
+  }
+
+  /**
+   * Updates the peak resident set size with a newer sample.
+   *
+   * @param value	the size in bytes
+   */
+  public void updatePeakRSS(long value) {
+    m_PeakRSS = Math.max(m_PeakRSS, value);
+  }
+
+  /**
+   * Returns the peak resident set size.
+   *
+   * @return		the size in bytes, -1 if unknown
+   */
+  public long getPeakRSS() {
+    return m_PeakRSS;
+  }
+
+  /**
+   * Sets the exit code.
+   *
+   * @param value	the exit code
+   */
+  public void setExitCode(int value) {
+    m_ExitCode = value;
+  }
+
+  /**
+   * Returns the exit code.
+   *
+   * @return		the exit code, -1 if unknown
+   */
+  public int getExitCode() {
+    return m_ExitCode;
+  }
+
+  /**
+   * Sets the size of the log file.
+   *
+   * @param value	the size in bytes
+   */
+  public void setLogSize(long value) {
+    m_LogSize = value;
+  }
+
+  /**
+   * Returns the size of the log file.
+   *
+   * @return		the size in bytes, -1 if unknown
+   */
+  public long getLogSize() {
+    return m_LogSize;
+  }
+
+  /**
+   * Sets how the invocation got terminated.
+   *
+   * @param value	the termination
+   */
+  public void setTermination(Termination value) {
+    m_Termination = value;
+  }
+
+  /**
+   * Returns how the invocation got terminated.
+   *
+   * @return		the termination
+   */
+  public Termination getTermination() {
+    return m_Termination;
+  }
+
+  /**
+   * Returns a short string representation.
+   *
+   * @return		the representation
+   */
+  public String toString() {
+    return m_Compiler + "#" + m_Pass + ": wall=" + m_WallTime + "ms, cpu=" + m_CPUTime + "ms, rss=" + m_PeakRSS + ", exit=" + m_ExitCode;
+  }
+}
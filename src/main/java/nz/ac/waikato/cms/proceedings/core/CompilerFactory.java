@@ -0,0 +1,46 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * CompilerFactory.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+/**
+ * Factory for creating compilers of a specific type. Implementations get
+ * discovered via {@link java.util.ServiceLoader}, by listing them in
+ * <code>META-INF/services/nz.ac.waikato.cms.proceedings.core.CompilerFactory</code>.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public interface CompilerFactory {
+
+  /**
+   * Returns the type of compiler that this factory creates.
+   *
+   * @return		the compiler class
+   */
+  public Class<? extends AbstractCompiler> getCompilerClass();
+
+  /**
+   * Creates a new instance of the compiler.
+   *
+   * @return		the compiler
+   */
+  public AbstractCompiler newInstance();
+}
@@ -0,0 +1,93 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * CompilerRegistry.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Registry of the available compiler types, discovered via the
+ * {@link CompilerFactory} services on the classpath.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class CompilerRegistry {
+
+  /** the factories (classname - factory). */
+  protected static Map<String,CompilerFactory> m_Factories;
+
+  /**
+   * Returns the factories, discovering them on first call.
+   *
+   * @return		the factories (classname - factory)
+   */
+  public static synchronized Map<String,CompilerFactory> getFactories() {
+    Map<String,CompilerFactory>	factories;
+
+    if (m_Factories == null) {
+      factories = new HashMap<>();
+      for (CompilerFactory factory: ServiceLoader.load(CompilerFactory.class))
+	factories.put(factory.getCompilerClass().getName(), factory);
+      m_Factories = Collections.unmodifiableMap(factories);
+    }
+
+    return m_Factories;
+  }
+
+  /**
+   * Returns whether the compiler type is registered.
+   *
+   * @param classname	the class of the compiler
+   * @return		true if registered
+   */
+  public static boolean isRegistered(String classname) {
+    return getFactories().containsKey(classname);
+  }
+
+  /**
+   * Creates a new compiler of the specified type.
+   *
+   * @param classname	the class of the compiler
+   * @return		the compiler, null if not registered
+   */
+  public static AbstractCompiler newInstance(String classname) {
+    CompilerFactory	factory;
+
+    factory = getFactories().get(classname);
+    if (factory == null)
+      return null;
+
+    return factory.newInstance();
+  }
+
+  /**
+   * Outputs the registered compiler types.
+   *
+   * @param args	ignored
+   */
+  public static void main(String[] args) {
+    for (String classname: getFactories().keySet())
+      System.out.println(classname);
+  }
+}
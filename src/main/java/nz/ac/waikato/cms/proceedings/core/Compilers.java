@@ -24,9 +24,14 @@ import org.yaml.snakeyaml.DumperOptions.FlowStyle;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.nodes.Tag;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Collection of available compilers.
@@ -38,6 +43,169 @@ public class Compilers
   extends ArrayList<AbstractCompiler>
   implements YamlObject<List<Map>> {
 
+  /** the index of the compilers (name - compiler). */
+  protected transient Map<String,AbstractCompiler> m_Index;
+
+  /** the modification count that the index was built for. */
+  protected transient int m_IndexModCount;
+
+  /**
+   * Replaces the compiler at the specified position.
+   *
+   * @param index	the position
+   * @param element	the new compiler
+   * @return		the previous compiler
+   */
+  @Override
+  public AbstractCompiler set(int index, AbstractCompiler element) {
+    AbstractCompiler	result;
+
+    result = super.set(index, element);
+    invalidateIndex();
+
+    return result;
+  }
+
+  /**
+   * Invalidates the name index, eg after a compiler was renamed.
+   */
+  public synchronized void invalidateIndex() {
+    m_Index = null;
+  }
+
+  /**
+   * Returns the index of the compilers, rebuilding it if the list has
+   * changed. In case of duplicate names, the first compiler wins.
+   *
+   * @return		the index (name - compiler)
+   */
+  protected synchronized Map<String,AbstractCompiler> getIndex() {
+    if ((m_Index == null) || (m_IndexModCount != modCount)) {
+      m_Index = new HashMap<>();
+      for (AbstractCompiler comp: this) {
+	if ((comp != null) && (comp.getName() != null) && !m_Index.containsKey(comp.getName()))
+	  m_Index.put(comp.getName(), comp);
+      }
+      m_IndexModCount = modCount;
+    }
+    return m_Index;
+  }
+
+  /**
+   * Returns the compiler with the specified name.
+   *
+   * @param name	the name of the compiler
+   * @return		the compiler, null if not found
+   */
+  public AbstractCompiler find(String name) {
+    return getIndex().get(name);
+  }
+
+  /**
+   * Validates the executables of all the compilers.
+   *
+   * @return		the errors (compiler name - error), empty if all valid
+   */
+  public Map<String,String> validate() {
+    Map<String,String>	result;
+    String		error;
+
+    result = new HashMap<>();
+    for (AbstractCompiler comp: this) {
+      if (comp == null)
+	continue;
+      error = comp.validate();
+      if (error != null)
+	result.put(comp.getName(), error);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the first compiler of the specified type.
+   *
+   * @param cls		the type of compiler
+   * @param <T>		the type of compiler
+   * @return		the compiler, null if not found
+   */
+  public <T extends AbstractCompiler> T find(Class<T> cls) {
+    for (AbstractCompiler comp: this) {
+      if (cls.isInstance(comp))
+	return cls.cast(comp);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the compiler of the most specific subtype of the specified type,
+   * ie the one furthest down the class hierarchy. Ties are resolved by
+   * order.
+   *
+   * @param cls		the type of compiler
+   * @param <T>		the type of compiler
+   * @return		the compiler, null if not found
+   */
+  public <T extends AbstractCompiler> T findMostSpecific(Class<T> cls) {
+    T		result;
+    int		depth;
+    int		max;
+    Class<?>	c;
+
+    result = null;
+    max    = -1;
+    for (AbstractCompiler comp: this) {
+      if (!cls.isInstance(comp))
+	continue;
+      depth = 0;
+      for (c = comp.getClass(); c != cls; c = c.getSuperclass())
+	depth++;
+      if (depth > max) {
+	result = cls.cast(comp);
+	max    = depth;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the BibTeX compiler to interleave with the passes of the LaTeX
+   * compiler: either the one configured by name or the most specific one.
+   *
+   * @param latex	the LaTeX compiler
+   * @return		the BibTeX compiler, null if none available or the configured one not found
+   * @see		LaTeX#getBibTeX()
+   */
+  public BibTeX findBibTeX(LaTeX latex) {
+    if (latex.getBibTeX() == null)
+      return findMostSpecific(BibTeX.class);
+    if (find(latex.getBibTeX()) instanceof BibTeX)
+      return (BibTeX) find(latex.getBibTeX());
+    return null;
+  }
+
+  /**
+   * Returns the auxiliary compilers that get used when compiling documents
+   * with the specified compiler, ie BibTeX and figure converter for LaTeX.
+   *
+   * @param compiler	the compiler of the documents
+   * @return		the auxiliary compilers, empty if none
+   */
+  public List<AbstractCompiler> getAuxiliary(AbstractCompiler compiler) {
+    List<AbstractCompiler>	result;
+
+    result = new ArrayList<>();
+    if (!(compiler instanceof LaTeX))
+      return result;
+    if (findBibTeX((LaTeX) compiler) != null)
+      result.add(findBibTeX((LaTeX) compiler));
+    if (find(FigureConverter.class) != null)
+      result.add(find(FigureConverter.class));
+
+    return result;
+  }
+
   /**
    * Returns the compiler objects as map objects for yaml.
    *
@@ -70,6 +238,44 @@ public class Compilers
     return result;
   }
 
+  /**
+   * Reads the compilers from the yaml stream entry by entry, without building
+   * the complete yaml tree first.
+   *
+   * @param reader	the reader to read from
+   * @return		the compilers
+   * @throws IOException	if reading fails
+   * @see		YamlStreamReader
+   */
+  public static Compilers read(Reader reader) throws IOException {
+    final Compilers	result;
+
+    result = new Compilers();
+    YamlStreamReader.readCompilers(reader, new Consumer<AbstractCompiler>() {
+      @Override
+      public void accept(AbstractCompiler value) {
+	result.add(value);
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * Writes the compilers as yaml entry by entry, without building the
+   * complete yaml tree first. Closes the writer.
+   *
+   * @param writer	the writer to write to
+   * @throws IOException	if writing fails
+   * @see		YamlStreamWriter
+   */
+  public void write(Writer writer) throws IOException {
+    try (YamlStreamWriter stream = new YamlStreamWriter(writer)) {
+      for (AbstractCompiler item: this)
+	stream.write(item);
+    }
+  }
+
   /**
    * For testing only.
    *
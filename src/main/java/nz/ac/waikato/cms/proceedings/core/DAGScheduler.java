@@ -0,0 +1,193 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * DAGScheduler.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.core.Utils;
+import nz.ac.waikato.cms.proceedings.core.BuildGraph.Task;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Executes the tasks of a build graph on a pool of workers, respecting
+ * their dependencies. Whenever a worker becomes available, the ready task
+ * with the longest critical path gets started (ties are broken by the order
+ * in which tasks were added), so long-running documents don't end up
+ * delaying the end of the build. Tasks depending on a failed task don't
+ * get executed.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class DAGScheduler {
+
+  /** the error message for tasks that didn't run due to an interrupt. */
+  public final static String INTERRUPTED = "Build interrupted";
+
+  /** the prefix of the error message for tasks whose dependency failed. */
+  public final static String DEPENDENCY_FAILED = "Dependency failed: ";
+
+  /** the pool to execute the tasks with. */
+  protected ExecutorService m_Pool;
+
+  /** the maximum number of tasks to run at the same time. */
+  protected int m_NumSlots;
+
+  /**
+   * Initializes the scheduler.
+   *
+   * @param pool	the pool to execute the tasks with
+   * @param numSlots	the maximum number of tasks to run at the same time,
+   * 			should not exceed the number of threads of the pool
+   */
+  public DAGScheduler(ExecutorService pool, int numSlots) {
+    m_Pool     = pool;
+    m_NumSlots = Math.max(1, numSlots);
+  }
+
+  /**
+   * Returns the comparator for ordering the ready tasks: longest critical
+   * path first, then in the order they were added.
+   *
+   * @return		the comparator
+   */
+  protected Comparator<Task> newComparator() {
+    return new Comparator<Task>() {
+      @Override
+      public int compare(Task o1, Task o2) {
+	int result = Long.compare(o2.getCriticalPath(), o1.getCriticalPath());
+	if (result == 0)
+	  result = Integer.compare(o1.getIndex(), o2.getIndex());
+	return result;
+      }
+    };
+  }
+
+  /**
+   * Marks the task and all the tasks depending on it as not executed.
+   *
+   * @param task	the task to skip
+   * @param reason	the error message
+   * @param outcome	the outcome to update
+   */
+  protected void skip(Task task, String reason, Map<String,String> outcome) {
+    if (outcome.containsKey(task.getName()))
+      return;
+    outcome.put(task.getName(), reason);
+    for (Task dependent: task.getDependents())
+      skip(dependent, DEPENDENCY_FAILED + task.getName(), outcome);
+  }
+
+  /**
+   * Executes the tasks of the graph. If the calling thread gets interrupted,
+   * running tasks get cancelled and the interrupted flag is set again
+   * before returning.
+   *
+   * @param graph	the graph to execute
+   * @return		the outcome (task name - null if successful, otherwise error message),
+   * 			in the order the tasks finished
+   * @throws IllegalStateException	if the graph contains a cycle
+   */
+  public Map<String,String> execute(BuildGraph graph) {
+    Map<String,String>		result;
+    Map<Task,Integer>		pending;
+    PriorityQueue<Task>		ready;
+    CompletionService<String>	completion;
+    Map<Future<String>,Task>	running;
+    Future<String>		future;
+    Task			task;
+    String			error;
+    boolean			interrupted;
+
+    graph.computeCriticalPaths();
+
+    result      = new LinkedHashMap<>();
+    pending     = new HashMap<>();
+    ready       = new PriorityQueue<>(newComparator());
+    completion  = new ExecutorCompletionService<>(m_Pool);
+    running     = new HashMap<>();
+    interrupted = false;
+    for (Task t: graph.getTasks()) {
+      pending.put(t, t.getDependencies().size());
+      if (t.getDependencies().isEmpty())
+	ready.add(t);
+    }
+
+    while (!ready.isEmpty() || !running.isEmpty()) {
+      while (!ready.isEmpty() && (running.size() < m_NumSlots)) {
+	task = ready.poll();
+	running.put(completion.submit(task.getWork()), task);
+      }
+
+      try {
+	future = completion.take();
+      }
+      catch (InterruptedException e) {
+	interrupted = true;
+	break;
+      }
+
+      task = running.remove(future);
+      try {
+	error = future.get();
+      }
+      catch (ExecutionException e) {
+	error = Utils.throwableToString(e.getCause());
+      }
+      catch (CancellationException | InterruptedException e) {
+	error = INTERRUPTED;
+      }
+      result.put(task.getName(), error);
+
+      for (Task dependent: task.getDependents()) {
+	if (error != null) {
+	  skip(dependent, DEPENDENCY_FAILED + task.getName(), result);
+	}
+	else {
+	  pending.put(dependent, pending.get(dependent) - 1);
+	  if ((pending.get(dependent) == 0) && !result.containsKey(dependent.getName()))
+	    ready.add(dependent);
+	}
+      }
+    }
+
+    if (interrupted) {
+      for (Future<String> f: running.keySet())
+	f.cancel(true);
+      for (Task t: graph.getTasks()) {
+	if (!result.containsKey(t.getName()))
+	  result.put(t.getName(), INTERRUPTED);
+      }
+      Thread.currentThread().interrupt();
+    }
+
+    return result;
+  }
+}
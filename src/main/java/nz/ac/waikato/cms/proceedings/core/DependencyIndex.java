@@ -0,0 +1,581 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * DependencyIndex.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Persistent index of the files that documents depend on. For every tex
+ * file, the references found by the {@link DependencyScanner} are stored
+ * along with the file's timestamp and size, so that updating the index only
+ * rescans files that have changed. A reverse map from files to documents
+ * allows looking up the documents affected by a change in constant time.
+ * Referenced files that don't exist (yet) are kept in the reverse map as
+ * well, so that creating them affects the documents referencing them.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class DependencyIndex {
+
+  /** the key for the scanned files. */
+  public final static String KEY_FILES = "files";
+
+  /** the key for the documents. */
+  public final static String KEY_DOCUMENTS = "documents";
+
+  /** the key for the referenced files of the documents that don't exist. */
+  public final static String KEY_MISSING = "missing";
+
+  /** the key for the timestamp of a file. */
+  public final static String KEY_MODIFIED = "modified";
+
+  /** the key for the size of a file. */
+  public final static String KEY_SIZE = "size";
+
+  /** the key for the directory the references were resolved against. */
+  public final static String KEY_DIR = "dir";
+
+  /** the key for the included files. */
+  public final static String KEY_INCLUDES = "includes";
+
+  /** the key for the other referenced files. */
+  public final static String KEY_RESOURCES = "resources";
+
+  /**
+   * The references of a scanned file.
+   */
+  protected static class Entry {
+
+    /** the timestamp of the file when scanned. */
+    protected long m_Modified;
+
+    /** the size of the file when scanned. */
+    protected long m_Size;
+
+    /** the directory the references were resolved against. */
+    protected String m_Dir;
+
+    /** the included files (get scanned as well). */
+    protected List<String> m_Includes = new ArrayList<>();
+
+    /** the other referenced files. */
+    protected List<String> m_Resources = new ArrayList<>();
+
+    /**
+     * Returns whether the entry is outdated.
+     *
+     * @param file	the file the entry belongs to
+     * @param dir	the directory of the document
+     * @return		true if the file needs rescanning
+     */
+    public boolean isStale(File file, File dir) {
+      return (file.lastModified() != m_Modified) || (file.length() != m_Size) || !dir.getPath().equals(m_Dir);
+    }
+
+    /**
+     * Returns the entry as map for yaml.
+     *
+     * @return		the map
+     */
+    public Map<String,Object> toYaml() {
+      Map<String,Object>	result;
+
+      result = new HashMap<>();
+      result.put(KEY_MODIFIED, m_Modified);
+      result.put(KEY_SIZE, m_Size);
+      result.put(KEY_DIR, m_Dir);
+      result.put(KEY_INCLUDES, m_Includes);
+      result.put(KEY_RESOURCES, m_Resources);
+
+      return result;
+    }
+
+    /**
+     * Restores the entry from the map.
+     *
+     * @param value	the map
+     * @return		the entry, null if invalid
+     */
+    public static Entry fromYaml(Map<String,Object> value) {
+      Entry	result;
+
+      if (!(value.get(KEY_MODIFIED) instanceof Number) || !(value.get(KEY_SIZE) instanceof Number))
+	return null;
+
+      result            = new Entry();
+      result.m_Modified = ((Number) value.get(KEY_MODIFIED)).longValue();
+      result.m_Size     = ((Number) value.get(KEY_SIZE)).longValue();
+      result.m_Dir      = (String) value.get(KEY_DIR);
+      if (value.get(KEY_INCLUDES) instanceof List)
+	result.m_Includes.addAll((List<String>) value.get(KEY_INCLUDES));
+      if (value.get(KEY_RESOURCES) instanceof List)
+	result.m_Resources.addAll((List<String>) value.get(KEY_RESOURCES));
+
+      return result;
+    }
+  }
+
+  /** the file to store the index in. */
+  protected File m_File;
+
+  /** the scanner for parsing the files. */
+  protected DependencyScanner m_Scanner;
+
+  /** the scanned files (absolute path - references). */
+  protected Map<String,Entry> m_Files;
+
+  /** the dependencies of the documents (absolute path - absolute paths of dependencies). */
+  protected Map<String,Set<String>> m_Documents;
+
+  /** the referenced files of the documents that don't exist (absolute path - absolute paths of files). */
+  protected Map<String,Set<String>> m_Missing;
+
+  /** the documents affected by files, incl missing ones (absolute path - absolute paths of documents). */
+  protected Map<String,Set<String>> m_Affected;
+
+  /** the number of files that were (re)scanned since loading. */
+  protected int m_NumScanned;
+
+  /**
+   * Initializes the index.
+   *
+   * @param file	the file to store the index in, null for keeping it in memory only
+   */
+  public DependencyIndex(File file) {
+    m_File      = file;
+    m_Scanner   = new DependencyScanner();
+    m_Files     = new HashMap<>();
+    m_Documents = new HashMap<>();
+    m_Missing   = new HashMap<>();
+    m_Affected  = new HashMap<>();
+  }
+
+  /**
+   * Returns the file the index is stored in.
+   *
+   * @return		the file, null if kept in memory only
+   */
+  public File getFile() {
+    return m_File;
+  }
+
+  /**
+   * Returns the number of files that were (re)scanned since loading.
+   *
+   * @return		the number of files
+   */
+  public synchronized int getNumScanned() {
+    return m_NumScanned;
+  }
+
+  /**
+   * Returns the key for the file.
+   *
+   * @param file	the file
+   * @return		the key
+   */
+  protected static String key(File file) {
+    return file.getAbsoluteFile().toPath().normalize().toString();
+  }
+
+  /**
+   * Returns the references of the file, rescanning it if it has changed.
+   *
+   * @param file	the file
+   * @param dir		the directory of the document
+   * @return		the references
+   * @throws IOException	if scanning fails
+   */
+  protected Entry getEntry(File file, File dir) throws IOException {
+    Entry	result;
+    List<File>	includes;
+    List<File>	resources;
+
+    result = m_Files.get(key(file));
+    if ((result != null) && !result.isStale(file, dir))
+      return result;
+
+    includes  = new ArrayList<>();
+    resources = new ArrayList<>();
+    result    = new Entry();
+    // timestamp before scanning, so changes while scanning trigger a rescan
+    result.m_Modified = file.lastModified();
+    result.m_Size     = file.length();
+    result.m_Dir      = dir.getPath();
+    m_Scanner.parse(dir, file, includes, resources);
+    for (File include: includes)
+      result.m_Includes.add(key(include));
+    for (File resource: resources)
+      result.m_Resources.add(key(resource));
+    m_Files.put(key(file), result);
+    m_NumScanned++;
+
+    return result;
+  }
+
+  /**
+   * Replaces the dependencies of the document, updating the reverse map.
+   *
+   * @param document	the key of the document
+   * @param deps	the new dependencies, null to remove the document
+   * @param missing	the referenced files that don't exist, null if none
+   */
+  protected void setDependencies(String document, Set<String> deps, Set<String> missing) {
+    Set<String>	old;
+    Set<String>	refs;
+    Set<String>	affected;
+
+    old = new HashSet<>();
+    if (m_Documents.containsKey(document))
+      old.addAll(m_Documents.remove(document));
+    if (m_Missing.containsKey(document))
+      old.addAll(m_Missing.remove(document));
+    for (String dep: old) {
+      affected = m_Affected.get(dep);
+      if (affected == null)
+	continue;
+      affected.remove(document);
+      if (affected.isEmpty())
+	m_Affected.remove(dep);
+    }
+
+    if (deps == null)
+      return;
+
+    m_Documents.put(document, deps);
+    if ((missing != null) && !missing.isEmpty())
+      m_Missing.put(document, missing);
+    refs = new HashSet<>(deps);
+    if (missing != null)
+      refs.addAll(missing);
+    for (String dep: refs) {
+      affected = m_Affected.get(dep);
+      if (affected == null) {
+	affected = new HashSet<>();
+	m_Affected.put(dep, affected);
+      }
+      affected.add(document);
+    }
+  }
+
+  /**
+   * Updates the dependencies of the document, rescanning only files that
+   * have changed since they were last scanned.
+   *
+   * @param document	the tex document
+   * @return		the files that the document depends on, including the
+   * 			document itself; sorted, referenced files that don't
+   * 			exist are omitted (see {@link #getMissing(String)})
+   * @throws IOException	if scanning fails
+   */
+  public synchronized List<File> update(String document) throws IOException {
+    List<File>		result;
+    File		doc;
+    File		dir;
+    Set<String>		deps;
+    Set<String>		missing;
+    Set<String>		visited;
+    Deque<File>		pending;
+    File		file;
+    Entry		entry;
+
+    doc     = new File(key(new File(document)));
+    dir     = doc.getParentFile();
+    deps    = new TreeSet<>();
+    missing = new TreeSet<>();
+    visited = new HashSet<>();
+    pending = new ArrayDeque<>();
+    deps.add(key(doc));
+    pending.add(doc);
+
+    while (!pending.isEmpty()) {
+      file = pending.poll();
+      if (!visited.add(key(file)))
+	continue;
+      entry = getEntry(file, dir);
+      for (String include: entry.m_Includes) {
+	if (new File(include).isFile()) {
+	  deps.add(include);
+	  pending.add(new File(include));
+	}
+	else {
+	  missing.add(include);
+	}
+      }
+      for (String resource: entry.m_Resources) {
+	if (new File(resource).isFile())
+	  deps.add(resource);
+	else
+	  missing.add(resource);
+      }
+    }
+
+    setDependencies(key(doc), deps, missing);
+
+    result = new ArrayList<>();
+    for (String dep: deps)
+      result.add(new File(dep));
+
+    return result;
+  }
+
+  /**
+   * Updates the dependencies of all the documents and removes documents
+   * that are no longer listed.
+   *
+   * @param documents	the documents
+   * @throws IOException	if scanning fails
+   */
+  public synchronized void update(Documents documents) throws IOException {
+    Set<String>		keys;
+
+    keys = new HashSet<>();
+    for (Document document: documents) {
+      update(document.getFile());
+      keys.add(key(new File(document.getFile())));
+    }
+    for (String document: new ArrayList<>(m_Documents.keySet())) {
+      if (!keys.contains(document))
+	setDependencies(document, null, null);
+    }
+  }
+
+  /**
+   * Removes the document from the index.
+   *
+   * @param document	the document
+   */
+  public synchronized void remove(String document) {
+    setDependencies(key(new File(document)), null, null);
+  }
+
+  /**
+   * Returns the dependencies of the document as recorded by the last update.
+   *
+   * @param document	the document
+   * @return		the absolute paths of the files, empty if not indexed
+   */
+  public synchronized Set<String> getDependencies(String document) {
+    if (!m_Documents.containsKey(key(new File(document))))
+      return Collections.emptySet();
+    return new TreeSet<>(m_Documents.get(key(new File(document))));
+  }
+
+  /**
+   * Returns the referenced files of the document that didn't exist at the
+   * last update.
+   *
+   * @param document	the document
+   * @return		the absolute paths of the files, empty if none or not indexed
+   */
+  public synchronized Set<String> getMissing(String document) {
+    if (!m_Missing.containsKey(key(new File(document))))
+      return Collections.emptySet();
+    return new TreeSet<>(m_Missing.get(key(new File(document))));
+  }
+
+  /**
+   * Returns the documents that depend on the file (or reference it, if it
+   * doesn't exist), as recorded by the last update.
+   *
+   * @param file	the file
+   * @return		the absolute paths of the documents, empty if none
+   */
+  public synchronized Set<String> getAffected(File file) {
+    if (!m_Affected.containsKey(key(file)))
+      return Collections.emptySet();
+    return new TreeSet<>(m_Affected.get(key(file)));
+  }
+
+  /**
+   * Returns the documents that depend on any of the files.
+   *
+   * @param files	the files
+   * @return		the absolute paths of the documents, empty if none
+   */
+  public synchronized Set<String> getAffected(Collection<File> files) {
+    Set<String>	result;
+
+    result = new TreeSet<>();
+    for (File file: files) {
+      if (m_Affected.containsKey(key(file)))
+	result.addAll(m_Affected.get(key(file)));
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns whether the file is a dependency of any document (or
+   * referenced by one, if it doesn't exist).
+   *
+   * @param file	the file
+   * @return		true if a dependency
+   */
+  public synchronized boolean isDependency(File file) {
+    return m_Affected.containsKey(key(file));
+  }
+
+  /**
+   * Loads the index from disk, if the file exists. Does nothing if the
+   * index is kept in memory only.
+   *
+   * @throws IOException	if loading fails
+   */
+  public synchronized void load() throws IOException {
+    Object			loaded;
+    Map<String,Object>		map;
+    Map<String,List<String>>	missing;
+    Entry			entry;
+
+    if (m_File == null)
+      return;
+
+    m_Files.clear();
+    m_Documents.clear();
+    m_Missing.clear();
+    m_Affected.clear();
+    m_NumScanned = 0;
+    if (!m_File.exists())
+      return;
+
+    try (Reader reader = new InputStreamReader(new FileInputStream(m_File), StandardCharsets.UTF_8)) {
+      loaded = new Yaml().load(reader);
+    }
+    catch (Exception e) {
+      throw new IOException("Failed to load dependency index: " + m_File, e);
+    }
+    if (!(loaded instanceof Map))
+      return;
+
+    map = (Map<String,Object>) loaded;
+    if (map.get(KEY_FILES) instanceof Map) {
+      for (Map.Entry<String,Map<String,Object>> e: ((Map<String,Map<String,Object>>) map.get(KEY_FILES)).entrySet()) {
+	entry = Entry.fromYaml(e.getValue());
+	if (entry != null)
+	  m_Files.put(e.getKey(), entry);
+      }
+    }
+    missing = new HashMap<>();
+    if (map.get(KEY_MISSING) instanceof Map)
+      missing = (Map<String,List<String>>) map.get(KEY_MISSING);
+    if (map.get(KEY_DOCUMENTS) instanceof Map) {
+      for (Map.Entry<String,List<String>> e: ((Map<String,List<String>>) map.get(KEY_DOCUMENTS)).entrySet())
+	setDependencies(e.getKey(), new TreeSet<>(e.getValue()), missing.containsKey(e.getKey()) ? new TreeSet<>(missing.get(e.getKey())) : null);
+    }
+  }
+
+  /**
+   * Saves the index to disk. Files no longer referenced by any document get
+   * dropped. Writes to a temporary file first, which then replaces the
+   * index file. Does nothing if the index is kept in memory only.
+   *
+   * @throws IOException	if saving fails
+   */
+  public synchronized void save() throws IOException {
+    Map<String,Object>			data;
+    Map<String,Map<String,Object>>	files;
+    Map<String,List<String>>		documents;
+    Map<String,List<String>>		missing;
+    File				tmp;
+
+    if (m_File == null)
+      return;
+
+    files = new TreeMap<>();
+    for (Map.Entry<String,Entry> e: m_Files.entrySet()) {
+      if (m_Affected.containsKey(e.getKey()))
+	files.put(e.getKey(), e.getValue().toYaml());
+    }
+    documents = new TreeMap<>();
+    for (Map.Entry<String,Set<String>> e: m_Documents.entrySet())
+      documents.put(e.getKey(), new ArrayList<>(e.getValue()));
+    missing = new TreeMap<>();
+    for (Map.Entry<String,Set<String>> e: m_Missing.entrySet())
+      missing.put(e.getKey(), new ArrayList<>(e.getValue()));
+    data = new TreeMap<>();
+    data.put(KEY_FILES, files);
+    data.put(KEY_DOCUMENTS, documents);
+    data.put(KEY_MISSING, missing);
+
+    tmp = new File(m_File.getPath() + ".tmp");
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+      new Yaml().dump(data, writer);
+    }
+    Files.move(tmp.toPath(), m_File.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Updates the index for the documents and outputs the documents affected
+   * by the specified files.
+   *
+   * @param args	the index file, the yaml file with the documents and
+   * 			optional files to determine the affected documents for
+   * @throws Exception	if updating fails
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("Usage: DependencyIndex <index.yaml> <documents.yaml> [file...]");
+      System.exit(1);
+    }
+
+    DependencyIndex index = new DependencyIndex(new File(args[0]));
+    Documents documents;
+    try (Reader reader = new FileReader(args[1])) {
+      documents = Documents.read(reader);
+    }
+    index.load();
+    index.update(documents);
+    index.save();
+    System.err.println("Files rescanned: " + index.getNumScanned());
+    for (int i = 2; i < args.length; i++) {
+      System.out.println(args[i] + ":");
+      for (String document: index.getAffected(new File(args[i])))
+	System.out.println("  " + document);
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * DependencyScanner.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Determines the files that a tex document depends on, by following
+ * \input, \include, \includegraphics, \bibliography, \bibliographystyle
+ * and local classes/packages (documentclass, usepackage, RequirePackage)
+ * recursively. References get resolved relative to the directory of the
+ * document, as TeX does.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class DependencyScanner {
+
+  /** the pattern for included tex files. */
+  public final static Pattern INCLUDE = Pattern.compile("\\\\(?:input|include)\\s*\\{([^}]+)\\}");
+
+  /** the pattern for bibliographies. */
+  public final static Pattern BIBLIOGRAPHY = Pattern.compile("\\\\bibliography\\s*\\{([^}]+)\\}");
+
+  /** the pattern for bibliography styles. */
+  public final static Pattern BIBLIOGRAPHYSTYLE = Pattern.compile("\\\\bibliographystyle\\s*\\{([^}]+)\\}");
+
+  /** the pattern for graphics. */
+  public final static Pattern INCLUDEGRAPHICS = Pattern.compile("\\\\includegraphics\\s*\\*?\\s*(?:\\[[^\\]]*\\]\\s*)*\\{([^}]+)\\}");
+
+  /** the pattern for the graphics search path. */
+  public final static Pattern GRAPHICSPATH = Pattern.compile("\\\\graphicspath\\s*\\{((?:\\s*\\{[^}]*\\})+)\\s*\\}");
+
+  /** the extensions tried for graphics referenced without extension. */
+  public final static String[] GRAPHICS_EXTENSIONS = {".pdf", ".png", ".jpg", ".jpeg", ".eps"};
+
+  /**
+   * Removes the comment from the line, if any.
+   *
+   * @param line	the line to process
+   * @return		the line without comment
+   */
+  protected String stripComment(String line) {
+    int		i;
+
+    for (i = 0; i < line.length(); i++) {
+      if (line.charAt(i) == '\\')
+	i++;
+      else if (line.charAt(i) == '%')
+	return line.substring(0, i);
+    }
+
+    return line;
+  }
+
+  /**
+   * Resolves the referenced file.
+   *
+   * @param dir		the directory of the document
+   * @param name	the name as used in the document
+   * @param ext		the default extension to add
+   * @return		the file (normalized)
+   */
+  protected File resolve(File dir, String name, String ext) {
+    File	result;
+
+    name   = name.trim();
+    result = new File(name);
+    if (!result.isAbsolute())
+      result = new File(dir, name);
+    if (!result.exists() && !name.toLowerCase().endsWith(ext))
+      result = new File(result.getPath() + ext);
+
+    return result.toPath().normalize().toFile();
+  }
+
+  /**
+   * Resolves a referenced graphic, trying the graphics path and the
+   * default extensions.
+   *
+   * @param dir		the directory of the document
+   * @param name	the name as used in the document
+   * @param paths	the graphics search path
+   * @return		the file, the first candidate if none exists
+   */
+  protected File resolveGraphic(File dir, String name, List<String> paths) {
+    List<File>	dirs;
+    File	file;
+
+    name = name.trim();
+    if (new File(name).isAbsolute())
+      return resolve(dir, name, GRAPHICS_EXTENSIONS[0]);
+
+    dirs = new ArrayList<>();
+    dirs.add(dir);
+    for (String path: paths)
+      dirs.add(new File(path).isAbsolute() ? new File(path) : new File(dir, path));
+    for (File d: dirs) {
+      file = new File(d, name);
+      if (file.isFile())
+	return file.toPath().normalize().toFile();
+      for (String ext: GRAPHICS_EXTENSIONS) {
+	file = new File(d, name + ext);
+	if (file.isFile())
+	  return file.toPath().normalize().toFile();
+      }
+    }
+
+    return resolve(dir, name, GRAPHICS_EXTENSIONS[0]);
+  }
+
+  /**
+   * Parses a single file for references to other files. The referenced
+   * files may not exist. A \graphicspath only applies to the graphics of
+   * the file it is declared in.
+   *
+   * @param dir		the directory of the document
+   * @param file	the file to parse
+   * @param includes	for collecting the referenced tex files, classes and packages
+   * @param resources	for collecting the other referenced files (bibliographies, styles, graphics)
+   * @throws IOException	if reading fails
+   */
+  public void parse(File dir, File file, List<File> includes, List<File> resources) throws IOException {
+    String		line;
+    Matcher		matcher;
+    List<String>	paths;
+
+    paths = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.ISO_8859_1))) {
+      while ((line = reader.readLine()) != null) {
+	line = stripComment(line);
+	if (line.indexOf('\\') == -1)
+	  continue;
+	matcher = INCLUDE.matcher(line);
+	while (matcher.find())
+	  includes.add(resolve(dir, matcher.group(1), ".tex"));
+	matcher = PreambleFormat.DOCUMENTCLASS.matcher(line);
+	while (matcher.find())
+	  includes.add(resolve(dir, matcher.group(1), ".cls"));
+	matcher = PreambleFormat.USEPACKAGE.matcher(line);
+	while (matcher.find()) {
+	  for (String pkg: matcher.group(1).split(","))
+	    includes.add(resolve(dir, pkg, ".sty"));
+	}
+	matcher = BIBLIOGRAPHY.matcher(line);
+	while (matcher.find()) {
+	  for (String bib: matcher.group(1).split(","))
+	    resources.add(resolve(dir, bib, ".bib"));
+	}
+	matcher = BIBLIOGRAPHYSTYLE.matcher(line);
+	while (matcher.find())
+	  resources.add(resolve(dir, matcher.group(1), ".bst"));
+	matcher = GRAPHICSPATH.matcher(line);
+	while (matcher.find()) {
+	  for (String path: matcher.group(1).split("\\}\\s*\\{"))
+	    paths.add(path.replace("{", "").replace("}", "").trim());
+	}
+	matcher = INCLUDEGRAPHICS.matcher(line);
+	while (matcher.find())
+	  resources.add(resolveGraphic(dir, matcher.group(1), paths));
+      }
+    }
+  }
+
+  /**
+   * Scans the file for references to other files.
+   *
+   * @param dir		the directory of the document
+   * @param file	the file to scan
+   * @param files	for collecting the dependencies
+   * @throws IOException	if reading fails
+   */
+  protected void scan(File dir, File file, Set<File> files) throws IOException {
+    List<File>	includes;
+    List<File>	resources;
+
+    includes  = new ArrayList<>();
+    resources = new ArrayList<>();
+    parse(dir, file, includes, resources);
+    for (File resource: resources) {
+      if (resource.isFile())
+	files.add(resource);
+    }
+    for (File include: includes) {
+      if (include.isFile() && files.add(include))
+	scan(dir, include, files);
+    }
+  }
+
+  /**
+   * Returns the files that the document depends on, including the document
+   * itself. Referenced files that don't exist are omitted.
+   *
+   * @param document	the tex document
+   * @return		the files, sorted
+   * @throws IOException	if reading fails
+   */
+  public List<File> scan(String document) throws IOException {
+    Set<File>	result;
+    File	file;
+
+    file   = new File(document).getAbsoluteFile();
+    result = new TreeSet<>();
+    result.add(file);
+    scan(file.getParentFile(), file, result);
+
+    return new ArrayList<>(result);
+  }
+}
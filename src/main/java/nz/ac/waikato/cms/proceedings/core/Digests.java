@@ -0,0 +1,166 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Digests.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Helper methods for computing content hashes.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class Digests {
+
+  /** the hashing algorithm. */
+  public final static String ALGORITHM = "SHA-256";
+
+  /** the buffer size for reading files. */
+  public final static int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Returns a new message digest.
+   *
+   * @return		the digest
+   */
+  public static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Hashing algorithm not available: " + ALGORITHM, e);
+    }
+  }
+
+  /**
+   * Adds the string to the digest.
+   *
+   * @param digest	the digest to update
+   * @param value	the string to add
+   */
+  public static void update(MessageDigest digest, String value) {
+    digest.update(value.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+  }
+
+  /**
+   * Adds the content of the file to the digest.
+   *
+   * @param digest	the digest to update
+   * @param file	the file to add
+   * @throws IOException	if reading of the file fails
+   */
+  public static void update(MessageDigest digest, File file) throws IOException {
+    byte[]	buffer;
+    int		read;
+
+    buffer = new byte[BUFFER_SIZE];
+    try (InputStream in = new FileInputStream(file)) {
+      while ((read = in.read(buffer)) != -1)
+	digest.update(buffer, 0, read);
+    }
+  }
+
+  /**
+   * Adds the compiler configuration to the digest, using the sorted keys of
+   * its yaml representation.
+   *
+   * @param digest	the digest to update
+   * @param compiler	the compiler to add
+   */
+  public static void update(MessageDigest digest, AbstractCompiler compiler) {
+    Map<String,Object>	sorted;
+    Object		value;
+
+    sorted = new TreeMap<>(compiler.toYaml());
+    for (String key: sorted.keySet()) {
+      value = sorted.get(key);
+      update(digest, key);
+      if (value instanceof Object[])
+	update(digest, Arrays.deepToString((Object[]) value));
+      else
+	update(digest, "" + value);
+    }
+  }
+
+  /**
+   * Adds the configuration that the outputs of documents compiled with the
+   * compiler depend on: the compiler configuration, the preamble of the
+   * precompiled format (if any) and the configuration of the auxiliary
+   * compilers (see {@link Compilers#getAuxiliary(AbstractCompiler)}).
+   *
+   * @param digest	the digest to update
+   * @param compiler	the compiler of the documents
+   * @param compilers	all compilers, null to ignore auxiliary compilers
+   * @throws IOException	if reading of the preamble fails
+   */
+  public static void update(MessageDigest digest, AbstractCompiler compiler, Compilers compilers) throws IOException {
+    update(digest, compiler);
+    if ((compiler instanceof LaTeX) && (((LaTeX) compiler).getFormat() != null))
+      ((LaTeX) compiler).getFormat().update(digest);
+    if (compilers == null)
+      return;
+    for (AbstractCompiler aux: compilers.getAuxiliary(compiler))
+      update(digest, aux);
+  }
+
+  /**
+   * Returns the hash of the file content.
+   *
+   * @param file	the file to hash
+   * @return		the hash as hex string
+   * @throws IOException	if reading of the file fails
+   */
+  public static String hash(File file) throws IOException {
+    MessageDigest	digest;
+
+    digest = newDigest();
+    update(digest, file);
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Turns the bytes into a hex string.
+   *
+   * @param bytes	the bytes to convert
+   * @return		the hex string
+   */
+  public static String toHex(byte[] bytes) {
+    StringBuilder	result;
+
+    result = new StringBuilder(bytes.length * 2);
+    for (byte b: bytes) {
+      result.append(Character.forDigit((b >> 4) & 0x0F, 16));
+      result.append(Character.forDigit(b & 0x0F, 16));
+    }
+
+    return result.toString();
+  }
+}
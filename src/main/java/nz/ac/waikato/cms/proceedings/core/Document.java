@@ -41,6 +41,9 @@ public class Document
   /** whether it is a supplemental document. */
   protected boolean m_Supplemental;
 
+  /** the time limit in seconds for building the document, &lt;= 0 for none. */
+  protected int m_Timeout;
+
   /**
    * Sets the name of the compiler to use.
    *
@@ -95,6 +98,24 @@ public class Document
     return m_Supplemental;
   }
 
+  /**
+   * Sets the time limit for building the document (all passes).
+   *
+   * @param value	the limit in seconds, &lt;= 0 for none
+   */
+  public void setTimeout(int value) {
+    m_Timeout = value;
+  }
+
+  /**
+   * Returns the time limit for building the document (all passes).
+   *
+   * @return		the limit in seconds, &lt;= 0 for none
+   */
+  public int getTimeout() {
+    return m_Timeout;
+  }
+
   /**
    * Returns the document in yaml notation.
    *
@@ -108,6 +129,8 @@ public class Document
     result.put("compiler", getCompiler());
     result.put("file", getFile());
     result.put("supplemental", getSupplemental());
+    if (getTimeout() > 0)
+      result.put("timeout", getTimeout());
 
     return result;
   }
@@ -131,6 +154,8 @@ public class Document
     result.setFile((String) value.get("file"));
     if (value.containsKey("supplemental"))
       result.setSupplemental((Boolean) value.get("supplemental"));
+    if (value.containsKey("timeout"))
+      result.setTimeout(((Number) value.get("timeout")).intValue());
 
     return result;
   }
@@ -20,9 +20,13 @@
 
 package nz.ac.waikato.cms.proceedings.core;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Collection of documents for proceedings.
@@ -65,4 +69,42 @@ public class Documents
 
     return result;
   }
+
+  /**
+   * Reads the documents from the yaml stream entry by entry, without building
+   * the complete yaml tree first.
+   *
+   * @param reader	the reader to read from
+   * @return		the documents
+   * @throws IOException	if reading fails
+   * @see		YamlStreamReader
+   */
+  public static Documents read(Reader reader) throws IOException {
+    final Documents	result;
+
+    result = new Documents();
+    YamlStreamReader.readDocuments(reader, new Consumer<Document>() {
+      @Override
+      public void accept(Document value) {
+	result.add(value);
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * Writes the documents as yaml entry by entry, without building the
+   * complete yaml tree first. Closes the writer.
+   *
+   * @param writer	the writer to write to
+   * @throws IOException	if writing fails
+   * @see		YamlStreamWriter
+   */
+  public void write(Writer writer) throws IOException {
+    try (YamlStreamWriter stream = new YamlStreamWriter(writer)) {
+      for (Document item: this)
+	stream.write(item);
+    }
+  }
 }
@@ -0,0 +1,765 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * FigureConverter.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.core.FileUtils;
+import nz.ac.waikato.cms.core.Utils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepares the figures of a document before the LaTeX passes: EPS figures
+ * get converted to PDF (using epstopdf as executable) and PNG/JPEG figures
+ * that exceed the maximum size get downsampled. The figures get processed
+ * in parallel and the results are cached by content hash, ie identical
+ * figures (eg logos) shared across documents get converted only once,
+ * even if documents are built concurrently.
+ * <br>
+ * The results are placed in the output directory of the document, using
+ * the same relative paths as the originals. EPS figures are available both
+ * as .pdf and under the name the epstopdf package looks for. The output
+ * directory needs to be listed in the texinputs of the {@link LaTeX}
+ * compiler, so that TeX finds the converted figures first.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class FigureConverter
+  extends AbstractCompiler {
+
+  /**
+   * Factory for figure converters.
+   */
+  public static class Factory
+    implements CompilerFactory {
+
+    /**
+     * Returns the type of compiler that this factory creates.
+     *
+     * @return		the compiler class
+     */
+    @Override
+    public Class<? extends AbstractCompiler> getCompilerClass() {
+      return FigureConverter.class;
+    }
+
+    /**
+     * Creates a new instance of the compiler.
+     *
+     * @return		the compiler
+     */
+    @Override
+    public AbstractCompiler newInstance() {
+      return new FigureConverter();
+    }
+  }
+
+  /** the default output directory, relative to the document. */
+  public final static String DEFAULT_OUTPUT = ".figures";
+
+  /** the default maximum width/height of raster figures in pixels. */
+  public final static int DEFAULT_MAX_SIZE = 2400;
+
+  /** the name of the default cache directory (in the tmp directory). */
+  public final static String DEFAULT_CACHE = "figure-cache";
+
+  /** the suffix that the epstopdf package uses for converted EPS figures. */
+  public final static String EPS_CONVERTED = "-eps-converted-to.pdf";
+
+  /** the raster extensions (extension - ImageIO format). */
+  public final static String[][] RASTER = {{".png", "png"}, {".jpg", "jpeg"}, {".jpeg", "jpeg"}};
+
+  /** the output directory, relative ones are relative to the document. */
+  protected String m_Output;
+
+  /** the cache directory, null for default. */
+  protected String m_Cache;
+
+  /** the maximum width/height of raster figures in pixels, &lt;= 0 for no downsampling. */
+  protected int m_MaxSize;
+
+  /** the number of threads for converting, &lt;= 0 for number of cores. */
+  protected int m_NumThreads;
+
+  /** the thread pool. */
+  protected transient ExecutorService m_Pool;
+
+  /** the conversions in progress (cache key - conversion). */
+  protected transient Map<String,FutureTask<File>> m_Pending;
+
+  /** the cache keys of the figures (path - timestamp, size, key). */
+  protected transient Map<String,String[]> m_Keys;
+
+  /**
+   * Initializes the converter.
+   */
+  public FigureConverter() {
+    super();
+    m_Output     = DEFAULT_OUTPUT;
+    m_MaxSize    = DEFAULT_MAX_SIZE;
+    m_NumThreads = -1;
+    m_Pending    = new ConcurrentHashMap<>();
+    m_Keys       = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Sets the output directory for the converted figures.
+   *
+   * @param value	the directory, relative ones are relative to the document
+   */
+  public void setOutput(String value) {
+    m_Output = value;
+  }
+
+  /**
+   * Returns the output directory for the converted figures.
+   *
+   * @return		the directory, relative ones are relative to the document
+   */
+  public String getOutput() {
+    return m_Output;
+  }
+
+  /**
+   * Sets the directory for caching converted figures.
+   *
+   * @param value	the directory, null for default
+   */
+  public void setCache(String value) {
+    m_Cache = value;
+  }
+
+  /**
+   * Returns the directory for caching converted figures.
+   *
+   * @return		the directory, null for default
+   */
+  public String getCache() {
+    return m_Cache;
+  }
+
+  /**
+   * Sets the maximum width/height of raster figures.
+   *
+   * @param value	the maximum in pixels, &lt;= 0 for no downsampling
+   */
+  public void setMaxSize(int value) {
+    m_MaxSize = value;
+  }
+
+  /**
+   * Returns the maximum width/height of raster figures.
+   *
+   * @return		the maximum in pixels, &lt;= 0 for no downsampling
+   */
+  public int getMaxSize() {
+    return m_MaxSize;
+  }
+
+  /**
+   * Sets the number of threads for converting figures.
+   *
+   * @param value	the number of threads, &lt;= 0 for number of cores
+   */
+  public synchronized void setNumThreads(int value) {
+    m_NumThreads = value;
+    if (m_Pool != null) {
+      m_Pool.shutdown();
+      m_Pool = null;
+    }
+  }
+
+  /**
+   * Returns the number of threads for converting figures.
+   *
+   * @return		the number of threads, &lt;= 0 for number of cores
+   */
+  public int getNumThreads() {
+    return m_NumThreads;
+  }
+
+  /**
+   * Returns the thread pool, creating it if necessary.
+   *
+   * @return		the pool
+   */
+  protected synchronized ExecutorService getPool() {
+    final AtomicInteger	count;
+    int			numThreads;
+
+    if (m_Pool == null) {
+      numThreads = m_NumThreads;
+      if (numThreads <= 0)
+	numThreads = Runtime.getRuntime().availableProcessors();
+      count  = new AtomicInteger();
+      m_Pool = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+	@Override
+	public Thread newThread(Runnable r) {
+	  Thread result = new Thread(r, "figure-converter-" + count.incrementAndGet());
+	  result.setDaemon(true);
+	  return result;
+	}
+      });
+    }
+
+    return m_Pool;
+  }
+
+  /**
+   * Returns the output directory for the document.
+   *
+   * @param document	the tex document
+   * @return		the directory
+   */
+  public File getOutputDir(String document) {
+    File	result;
+
+    result = new File(m_Output);
+    if (!result.isAbsolute())
+      result = new File(new File(document).getAbsoluteFile().getParentFile(), m_Output);
+
+    return result;
+  }
+
+  /**
+   * Returns the cache directory.
+   *
+   * @return		the directory
+   */
+  public File getCacheDir() {
+    if (m_Cache == null)
+      return new File(System.getProperty("java.io.tmpdir"), DEFAULT_CACHE);
+    return new File(m_Cache);
+  }
+
+  /**
+   * Returns the ImageIO format for the raster figure.
+   *
+   * @param file	the figure
+   * @return		the format, null if not a raster figure
+   */
+  protected String getRasterFormat(File file) {
+    for (String[] raster: RASTER) {
+      if (file.getName().toLowerCase().endsWith(raster[0]))
+	return raster[1];
+    }
+    return null;
+  }
+
+  /**
+   * Returns whether the figure is an EPS figure.
+   *
+   * @param file	the figure
+   * @return		true if EPS
+   */
+  protected boolean isEPS(File file) {
+    return file.getName().toLowerCase().endsWith(".eps");
+  }
+
+  /**
+   * Returns the figures of the document that may require converting, ie
+   * EPS and raster figures located below the directory of the document.
+   * Larger figures come first.
+   *
+   * @param document	the tex document
+   * @return		the figures
+   * @throws IOException	if scanning the document fails
+   */
+  protected List<File> figures(String document) throws IOException {
+    List<File>	result;
+    File	dir;
+
+    result = new ArrayList<>();
+    dir    = new File(document).getAbsoluteFile().getParentFile().toPath().normalize().toFile();
+    for (File file: new DependencyScanner().scan(document)) {
+      if (!isEPS(file) && (getRasterFormat(file) == null))
+	continue;
+      if (!file.toPath().startsWith(dir.toPath()))
+	continue;
+      result.add(file);
+    }
+    Collections.sort(result, new Comparator<File>() {
+      @Override
+      public int compare(File o1, File o2) {
+	return Long.compare(o2.length(), o1.length());
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * Returns the cache key for the figure: its content hash plus the
+   * settings that influence the conversion. Keys are remembered as long as
+   * timestamp and size of the figure stay the same.
+   *
+   * @param figure	the figure
+   * @return		the key
+   * @throws IOException	if reading the figure fails
+   */
+  protected String key(File figure) throws IOException {
+    String[]		cached;
+    String		modified;
+    String		size;
+    MessageDigest	digest;
+
+    modified = "" + figure.lastModified();
+    size     = "" + figure.length();
+    cached   = m_Keys.get(figure.getPath());
+    if ((cached != null) && cached[0].equals(modified) && cached[1].equals(size))
+      return cached[2];
+
+    digest = Digests.newDigest();
+    Digests.update(digest, figure);
+    if (isEPS(figure)) {
+      Digests.update(digest, m_Executable);
+      if (m_Options != null)
+	Digests.update(digest, Arrays.toString(m_Options));
+    }
+    else {
+      Digests.update(digest, "" + m_MaxSize);
+    }
+    cached = new String[]{modified, size, Digests.toHex(digest.digest())};
+    m_Keys.put(figure.getPath(), cached);
+
+    return cached[2];
+  }
+
+  /**
+   * Returns the dimensions of the raster figure, without decoding it.
+   *
+   * @param figure	the figure
+   * @return		width and height, null if not readable
+   * @throws IOException	if reading fails
+   */
+  protected int[] dimensions(File figure) throws IOException {
+    Iterator<ImageReader>	readers;
+    ImageReader			reader;
+
+    try (ImageInputStream in = ImageIO.createImageInputStream(figure)) {
+      if (in == null)
+	return null;
+      readers = ImageIO.getImageReaders(in);
+      if (!readers.hasNext())
+	return null;
+      reader = readers.next();
+      try {
+	reader.setInput(in);
+	return new int[]{reader.getWidth(0), reader.getHeight(0)};
+      }
+      finally {
+	reader.dispose();
+      }
+    }
+  }
+
+  /**
+   * Downsamples the raster figure to fit the maximum size, halving it in
+   * steps for better quality.
+   *
+   * @param figure	the figure
+   * @param target	the file to write to
+   * @throws IOException	if reading or writing fails
+   */
+  protected void downsample(File figure, File target) throws IOException {
+    BufferedImage	current;
+    BufferedImage	scaled;
+    Graphics2D		g;
+    String		format;
+    double		scale;
+    int			width;
+    int			height;
+    int			w;
+    int			h;
+    boolean		opaque;
+
+    current = ImageIO.read(figure);
+    if (current == null)
+      throw new IOException("Unsupported image format: " + figure);
+
+    format = getRasterFormat(figure);
+    opaque = format.equals("jpeg");
+    scale  = (double) m_MaxSize / Math.max(current.getWidth(), current.getHeight());
+    width  = Math.max(1, (int) Math.round(current.getWidth() * scale));
+    height = Math.max(1, (int) Math.round(current.getHeight() * scale));
+    do {
+      w      = Math.max(width, current.getWidth() / 2);
+      h      = Math.max(height, current.getHeight() / 2);
+      scaled = new BufferedImage(w, h, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+      g      = scaled.createGraphics();
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      if (opaque) {
+	g.setColor(Color.WHITE);
+	g.fillRect(0, 0, w, h);
+      }
+      g.drawImage(current, 0, 0, w, h, null);
+      g.dispose();
+      current = scaled;
+    }
+    while ((w != width) || (h != height));
+
+    if (!ImageIO.write(current, format, target))
+      throw new IOException("No writer available for format: " + format);
+  }
+
+  /**
+   * Converts the figure into the cache.
+   *
+   * @param figure	the figure to convert
+   * @param cached	the file in the cache
+   * @param handle	the handle of the conversion
+   * @return		the file in the cache
+   * @throws IOException	if conversion fails
+   */
+  protected File convert(File figure, File cached, CompileHandle handle) throws IOException {
+    File		tmp;
+    List<String>	args;
+    String		error;
+
+    if (!cached.getParentFile().exists() && !cached.getParentFile().mkdirs() && !cached.getParentFile().isDirectory())
+      throw new IOException("Failed to create cache directory: " + cached.getParentFile());
+
+    tmp = File.createTempFile(FileUtils.replaceExtension(cached.getName(), "") + "-", cached.getName().substring(cached.getName().lastIndexOf('.')), cached.getParentFile());
+    try {
+      if (isEPS(figure)) {
+	args = new ArrayList<>();
+	args.add(m_Executable);
+	if (m_Options != null)
+	  args.addAll(Arrays.asList(m_Options));
+	args.add("--outfile=" + tmp.getAbsolutePath());
+	args.add(figure.getAbsolutePath());
+	error = execute(figure.getPath(), args, figure.getParentFile(), new OutputBuffer(m_MaxOutputLines), handle);
+	if (error != null)
+	  throw new IOException(error);
+      }
+      else {
+	downsample(figure, tmp);
+      }
+      Files.move(tmp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally {
+      tmp.delete();
+    }
+
+    return cached;
+  }
+
+  /**
+   * Returns the converted figure from the cache, converting it if necessary.
+   * Concurrent requests for the same figure wait for the conversion already
+   * in progress.
+   *
+   * @param figure	the figure
+   * @param key		the cache key of the figure
+   * @param ext		the extension of the converted figure
+   * @param handle	the handle of the conversion
+   * @param retry	whether to convert again if a conversion started by another document failed
+   * @return		the file in the cache
+   * @throws IOException	if conversion fails
+   */
+  protected File obtain(final File figure, String key, String ext, final CompileHandle handle, boolean retry) throws IOException {
+    final File		cached;
+    FutureTask<File>	task;
+    FutureTask<File>	pending;
+
+    cached = new File(getCacheDir(), key + ext);
+    if (cached.isFile())
+      return cached;
+
+    task = new FutureTask<>(new Callable<File>() {
+      @Override
+      public File call() throws Exception {
+	return convert(figure, cached, handle);
+      }
+    });
+    pending = m_Pending.putIfAbsent(key, task);
+    if (pending == null) {
+      try {
+	task.run();
+      }
+      finally {
+	m_Pending.remove(key, task);
+      }
+      pending = task;
+    }
+
+    try {
+      return pending.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while converting: " + figure);
+    }
+    catch (ExecutionException e) {
+      // the other document may have been cancelled
+      if ((pending != task) && retry)
+	return obtain(figure, key, ext, handle, false);
+      if (e.getCause() instanceof IOException)
+	throw (IOException) e.getCause();
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Copies the converted figure to the output directory, unless already
+   * present.
+   *
+   * @param cached	the converted figure in the cache
+   * @param target	the file in the output directory
+   * @throws IOException	if copying fails
+   */
+  protected void install(File cached, File target) throws IOException {
+    File	tmp;
+
+    if ((target.length() == cached.length()) && (target.lastModified() == cached.lastModified()))
+      return;
+
+    if (!target.getParentFile().exists() && !target.getParentFile().mkdirs() && !target.getParentFile().isDirectory())
+      throw new IOException("Failed to create output directory: " + target.getParentFile());
+    tmp = new File(target.getPath() + ".tmp");
+    Files.copy(cached.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+    Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Converts the figure, if necessary, and places it in the output
+   * directory.
+   *
+   * @param figure	the figure
+   * @param dir		the directory of the document
+   * @param output	the output directory
+   * @param handle	the handle of the conversion
+   * @return		null if successful, otherwise error message
+   */
+  protected String process(File figure, File dir, File output, CompileHandle handle) {
+    String	relative;
+    int[]	dims;
+    File	cached;
+
+    relative = dir.toPath().relativize(figure.toPath()).toString();
+    try {
+      if (isEPS(figure)) {
+	cached   = obtain(figure, key(figure), ".pdf", handle, true);
+	relative = FileUtils.replaceExtension(relative, "");
+	install(cached, new File(output, relative + ".pdf"));
+	install(cached, new File(output, relative + EPS_CONVERTED));
+      }
+      else {
+	if (m_MaxSize <= 0)
+	  return null;
+	dims = dimensions(figure);
+	if (dims == null) {
+	  System.err.println("Unsupported image format, not downsampling: " + figure);
+	  return null;
+	}
+	if (Math.max(dims[0], dims[1]) <= m_MaxSize)
+	  return null;
+	cached = obtain(figure, key(figure), figure.getName().substring(figure.getName().lastIndexOf('.')).toLowerCase(), handle, true);
+	install(cached, new File(output, relative));
+      }
+    }
+    catch (Exception e) {
+      return "Failed to convert figure: " + figure + "\n" + Utils.throwableToString(e);
+    }
+
+    return null;
+  }
+
+  /**
+   * Converts the figures of the specified document in parallel.
+   *
+   * @param document	the document to convert the figures for
+   * @param handle	the handle of the compile
+   * @return		null if successful, otherwise error message
+   */
+  @Override
+  protected String doCompile(String document, CompileHandle handle) {
+    StringBuilder		errors;
+    final File			dir;
+    final File			output;
+    List<File>			figures;
+    List<Future<String>>	futures;
+    final List<CompileHandle>	handles;
+    String			error;
+    int				i;
+
+    try {
+      figures = figures(document);
+    }
+    catch (IOException e) {
+      return "Failed to determine figures of: " + document + "\n" + Utils.throwableToString(e);
+    }
+    if (figures.isEmpty())
+      return null;
+
+    dir     = new File(document).getAbsoluteFile().getParentFile().toPath().normalize().toFile();
+    output  = getOutputDir(document);
+    futures = new ArrayList<>();
+    handles = new ArrayList<>();
+    for (final File figure: figures) {
+      // separate handles, as the conversions run concurrently
+      final CompileHandle figureHandle = new CompileHandle();
+      figureHandle.setTimeout(handle.remaining(0));
+      handles.add(figureHandle);
+      futures.add(getPool().submit(new Callable<String>() {
+	@Override
+	public String call() {
+	  return process(figure, dir, output, figureHandle);
+	}
+      }));
+    }
+
+    errors = new StringBuilder();
+    for (i = 0; i < futures.size(); i++) {
+      error = null;
+      while (true) {
+	try {
+	  error = futures.get(i).get(SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+	  break;
+	}
+	catch (TimeoutException e) {
+	  if (handle.isTerminated()) {
+	    for (CompileHandle h: handles)
+	      h.terminate(handle.getTermination(), handle.getReason());
+	  }
+	}
+	catch (InterruptedException e) {
+	  handle.cancel();
+	  for (CompileHandle h: handles)
+	    h.cancel();
+	  Thread.currentThread().interrupt();
+	  return handle.getReason();
+	}
+	catch (ExecutionException e) {
+	  error = Utils.throwableToString(e.getCause());
+	  break;
+	}
+      }
+      if (error != null) {
+	if (errors.length() > 0)
+	  errors.append("\n");
+	errors.append(error);
+      }
+    }
+
+    for (CompileHandle h: handles) {
+      for (CompileMetrics metrics: h.getMetrics())
+	handle.addMetrics(metrics);
+    }
+
+    if (handle.isTerminated())
+      return handle.getReason();
+    if (errors.length() > 0)
+      return errors.toString();
+
+    return null;
+  }
+
+  /**
+   * Returns the compiler as map object for yaml.
+   *
+   * @return		the map representation
+   */
+  @Override
+  public Map<String,Object> toYaml() {
+    Map<String,Object>	result;
+
+    result = super.toYaml();
+    if (!m_Output.equals(DEFAULT_OUTPUT))
+      result.put("output", m_Output);
+    if (m_Cache != null)
+      result.put("cache", m_Cache);
+    if (m_MaxSize != DEFAULT_MAX_SIZE)
+      result.put("max-size", m_MaxSize);
+    if (m_NumThreads > 0)
+      result.put("num-threads", m_NumThreads);
+
+    return result;
+  }
+
+  /**
+   * Initializes the compiler from the map representation.
+   *
+   * @param value	the map representation
+   */
+  @Override
+  protected void initFromYaml(Map<String,Object> value) {
+    super.initFromYaml(value);
+    if (value.containsKey("output"))
+      setOutput((String) value.get("output"));
+    if (value.containsKey("cache"))
+      setCache((String) value.get("cache"));
+    if (value.containsKey("max-size"))
+      setMaxSize(((Number) value.get("max-size")).intValue());
+    if (value.containsKey("num-threads"))
+      setNumThreads(((Number) value.get("num-threads")).intValue());
+  }
+
+  /**
+   * Runs the converter from commandline.
+   *
+   * @param args	the commandline options
+   * @throws Exception	if conversion fails
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("Usage: FigureConverter <executable> [additional options] <document>");
+      System.exit(1);
+    }
+
+    FigureConverter converter = new FigureConverter();
+    converter.setExecutable(args[0]);
+    String document = args[args.length - 1];
+    converter.setOptions(Arrays.copyOfRange(args, 1, args.length - 1));
+    String result = converter.compile(document);
+    if (result != null)
+      System.err.println(result);
+  }
+}
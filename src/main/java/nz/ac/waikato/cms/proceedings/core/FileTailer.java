@@ -0,0 +1,138 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * FileTailer.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.proceedings.core.CompileHandle.Termination;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Follows a file that a process writes to while running (eg the log of
+ * LaTeX in batchmode, which outputs nothing on stdout), checking each
+ * complete line with the compiler, which can abort the compile. Content
+ * from a previous run is ignored: tailing only starts once the file got
+ * rewritten.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class FileTailer {
+
+  /** the compiler that writes the file. */
+  protected AbstractCompiler m_Compiler;
+
+  /** the file to follow. */
+  protected File m_File;
+
+  /** the handle of the compile. */
+  protected CompileHandle m_Handle;
+
+  /** the timestamp of the file before the process started, 0 if not present. */
+  protected long m_Initial;
+
+  /** whether the file got rewritten by the process. */
+  protected boolean m_Started;
+
+  /** the position up to which the file has been read. */
+  protected long m_Offset;
+
+  /** the incomplete last line. */
+  protected StringBuilder m_Line;
+
+  /**
+   * Initializes the tailer. Must be created before the process starts.
+   *
+   * @param compiler	the compiler that writes the file
+   * @param file	the file to follow
+   * @param handle	the handle of the compile
+   */
+  public FileTailer(AbstractCompiler compiler, File file, CompileHandle handle) {
+    m_Compiler = compiler;
+    m_File     = file;
+    m_Handle   = handle;
+    m_Initial  = file.lastModified();
+    m_Line     = new StringBuilder();
+  }
+
+  /**
+   * Checks the line with the compiler.
+   *
+   * @param line	the line to check
+   */
+  protected void process(String line) {
+    String	reason;
+
+    if (m_Handle.isTerminated())
+      return;
+    reason = m_Compiler.checkOutput(line, false);
+    if (reason != null)
+      m_Handle.terminate(Termination.ABORTED, reason);
+  }
+
+  /**
+   * Reads the content appended since the last call and checks the
+   * complete lines.
+   */
+  public void poll() {
+    byte[]	buffer;
+    String	content;
+    int		read;
+    int		i;
+    char	c;
+
+    if (!m_Started) {
+      if (!m_File.exists() || (m_File.lastModified() == m_Initial))
+	return;
+      m_Started = true;
+    }
+    if (m_File.length() < m_Offset) {
+      m_Offset = 0;
+      m_Line.setLength(0);
+    }
+    if (m_File.length() == m_Offset)
+      return;
+
+    buffer = new byte[Digests.BUFFER_SIZE];
+    try (RandomAccessFile file = new RandomAccessFile(m_File, "r")) {
+      file.seek(m_Offset);
+      while ((read = file.read(buffer)) != -1) {
+	m_Offset += read;
+	content   = new String(buffer, 0, read, StandardCharsets.ISO_8859_1);
+	for (i = 0; i < content.length(); i++) {
+	  c = content.charAt(i);
+	  if (c == '\n') {
+	    process(m_Line.toString());
+	    m_Line.setLength(0);
+	  }
+	  else if ((c != '\r') && (m_Line.length() < StreamDrainer.MAX_LINE_LENGTH)) {
+	    m_Line.append(c);
+	  }
+	}
+      }
+    }
+    catch (IOException e) {
+      // file being replaced, try again with next poll
+    }
+  }
+}
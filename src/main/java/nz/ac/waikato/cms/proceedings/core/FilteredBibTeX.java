@@ -0,0 +1,218 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * FilteredBibTeX.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.core.FileUtils;
+import nz.ac.waikato.cms.core.Utils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * BibTeX compiler that only hands BibTeX the entries that a document cites.
+ * Large shared .bib files get parsed once into a {@link BibIndex}, which is
+ * shared by all documents, and the cited entries (plus the entries they
+ * cross-reference and all @string/@preamble entries) are written to a
+ * temporary .bib file that BibTeX processes instead. The .bbl and .blg
+ * files end up under the usual names.
+ * <br>
+ * Falls back to plain BibTeX when all entries are cited (\nocite{*}) or a
+ * database isn't present next to the document (eg in the TeX distribution).
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class FilteredBibTeX
+  extends BibTeX {
+
+  /**
+   * Factory for filtered BibTeX compilers.
+   */
+  public static class Factory
+    implements CompilerFactory {
+
+    /**
+     * Returns the type of compiler that this factory creates.
+     *
+     * @return		the compiler class
+     */
+    @Override
+    public Class<? extends AbstractCompiler> getCompilerClass() {
+      return FilteredBibTeX.class;
+    }
+
+    /**
+     * Creates a new instance of the compiler.
+     *
+     * @return		the compiler
+     */
+    @Override
+    public AbstractCompiler newInstance() {
+      return new FilteredBibTeX();
+    }
+  }
+
+  /** the suffix for the temporary files. */
+  public final static String SUFFIX = "-filtered";
+
+  /**
+   * Adds the file referenced in the aux file to the digest. Uses the
+   * (cached) hash of the shared index for .bib files.
+   *
+   * @param digest	the digest to update
+   * @param dir		the directory of the aux file
+   * @param name	the name of the file, without extension
+   * @param ext		the extension to add
+   * @return		false if the file could not be located
+   * @throws IOException	if reading of the file fails
+   */
+  @Override
+  protected boolean update(MessageDigest digest, File dir, String name, String ext) throws IOException {
+    File	file;
+
+    file = locate(dir, name, ext);
+    if (!ext.equals(".bib") || !file.isFile())
+      return super.update(digest, dir, name, ext);
+    Digests.update(digest, name.trim());
+    Digests.update(digest, BibIndex.get(file).getHash());
+
+    return true;
+  }
+
+  /**
+   * Renames the file, if present.
+   *
+   * @param source	the file to rename
+   * @param target	the new name
+   * @throws IOException	if renaming fails
+   */
+  protected void rename(File source, File target) throws IOException {
+    if (source.isFile())
+      Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Runs BibTeX on the filtered bibliography of the aux file.
+   *
+   * @param aux		the aux file
+   * @param handle	the handle of the compile
+   * @return		null if successful, otherwise error message
+   */
+  @Override
+  protected String run(String aux, CompileHandle handle) {
+    String		result;
+    File		file;
+    File		dir;
+    File		bib;
+    File		filteredAux;
+    List<String>	lines;
+    List<String>	filtered;
+    List<BibIndex>	indices;
+    Set<String>		keys;
+    String		arg;
+    String		base;
+    boolean		bibdata;
+
+    file = new File(aux).getAbsoluteFile();
+    dir  = file.getParentFile();
+
+    // collect citations and databases
+    keys    = new LinkedHashSet<>();
+    indices = new ArrayList<>();
+    try {
+      lines = AuxFile.readBibLines(file);
+      for (String line: lines) {
+	arg = AuxFile.getArgument(line, AuxFile.CITATION);
+	if (arg != null) {
+	  for (String key: arg.split(",")) {
+	    if (key.trim().equals("*"))
+	      return super.run(aux, handle);
+	    keys.add(key.trim());
+	  }
+	}
+	arg = AuxFile.getArgument(line, AuxFile.BIBDATA);
+	if (arg != null) {
+	  for (String name: arg.split(",")) {
+	    bib = locate(dir, name, ".bib");
+	    if (!bib.isFile())
+	      return super.run(aux, handle);
+	    indices.add(BibIndex.get(bib));
+	  }
+	}
+      }
+    }
+    catch (IOException e) {
+      System.err.println("Failed to index bibliography of: " + aux + "\n" + Utils.throwableToString(e));
+      return super.run(aux, handle);
+    }
+    if (indices.isEmpty())
+      return super.run(aux, handle);
+
+    base        = FileUtils.replaceExtension(file.getName(), "");
+    bib         = new File(dir, base + SUFFIX + ".bib");
+    filteredAux = new File(dir, base + SUFFIX + ".aux");
+    try {
+      // subset of the databases
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(bib))) {
+	BibIndex.subset(indices, keys, out);
+      }
+
+      // aux file referencing the subset
+      filtered = new ArrayList<>();
+      bibdata  = false;
+      for (String line: lines) {
+	if (line.startsWith(AuxFile.BIBDATA)) {
+	  if (!bibdata)
+	    filtered.add(AuxFile.BIBDATA + base + SUFFIX + "}");
+	  bibdata = true;
+	}
+	else {
+	  filtered.add(line);
+	}
+      }
+      Files.write(filteredAux.toPath(), filtered, StandardCharsets.ISO_8859_1);
+
+      result = super.run(filteredAux.getPath(), handle);
+      rename(new File(dir, base + SUFFIX + ".bbl"), new File(dir, base + ".bbl"));
+      rename(new File(dir, base + SUFFIX + ".blg"), new File(dir, base + ".blg"));
+    }
+    catch (IOException e) {
+      result = "Failed to filter bibliography of: " + aux + "\n" + Utils.throwableToString(e);
+    }
+    finally {
+      bib.delete();
+      filteredAux.delete();
+    }
+
+    return result;
+  }
+}
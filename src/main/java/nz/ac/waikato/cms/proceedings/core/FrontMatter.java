@@ -0,0 +1,442 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * FrontMatter.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.core.FileUtils;
+import nz.ac.waikato.cms.core.Utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Generates the table of contents for the proceedings from the lightweight
+ * text files of the compiled documents: the page counts come from the .log
+ * files, the titles and authors from the .aux files or, as fallback, from
+ * the \title and \author commands of the .tex files. The table of contents
+ * gets compiled as front matter of the volume, with the start page of the
+ * papers derived from its length. The page offsets can be fed back into the
+ * documents with a final LaTeX pass that sets the page counter.
+ * <br>
+ * Document classes can record title and authors in the .aux file as
+ * follows:
+ * <pre>
+ * \immediate\write\@auxout{\string\proceedingstitle{\@title}}
+ * \immediate\write\@auxout{\string\proceedingsauthor{\@author}}
+ * </pre>
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class FrontMatter {
+
+  /** the aux command for the title. */
+  public final static String AUX_TITLE = "\\proceedingstitle{";
+
+  /** the aux command for the authors. */
+  public final static String AUX_AUTHOR = "\\proceedingsauthor{";
+
+  /** the tex command for the title. */
+  public final static String TEX_TITLE = "\\title";
+
+  /** the tex command for the authors. */
+  public final static String TEX_AUTHOR = "\\author";
+
+  /** the macro used for the entries in the generated table of contents. */
+  public final static String TOC_MACRO = "\\proceedingstocentry";
+
+  /** the suffix for the tex file of the front matter, replacing the extension of the toc. */
+  public final static String FRONT_MATTER_SUFFIX = "-front.tex";
+
+  /** the maximum number of compiles for the page numbers in the front matter to settle. */
+  public final static int MAX_FRONT_MATTER_COMPILES = 3;
+
+  /** the assembler for laying out the volume. */
+  protected VolumeAssembler m_Assembler;
+
+  /**
+   * Initializes the front matter.
+   */
+  public FrontMatter() {
+    m_Assembler = new VolumeAssembler();
+  }
+
+  /**
+   * Sets the assembler that determines the layout of the volume.
+   *
+   * @param value	the assembler
+   */
+  public void setAssembler(VolumeAssembler value) {
+    m_Assembler = value;
+  }
+
+  /**
+   * Returns the assembler that determines the layout of the volume.
+   *
+   * @return		the assembler
+   */
+  public VolumeAssembler getAssembler() {
+    return m_Assembler;
+  }
+
+  /**
+   * Returns the brace-delimited argument starting at the specified position.
+   *
+   * @param content	the content to extract the argument from
+   * @param start	the position to start looking for the opening brace
+   * @return		the argument, null if none found
+   */
+  protected String extractArgument(CharSequence content, int start) {
+    int		i;
+    int		level;
+    int		open;
+
+    open = -1;
+    for (i = start; i < content.length(); i++) {
+      if (content.charAt(i) == '{') {
+	open = i;
+	break;
+      }
+      // skip optional argument, eg \title[short]{long}
+      if ((content.charAt(i) != ' ') && (content.charAt(i) != '[') && (content.charAt(i) != ']') && (i == start))
+	return null;
+    }
+    if (open == -1)
+      return null;
+
+    level = 0;
+    for (i = open; i < content.length(); i++) {
+      if (content.charAt(i) == '\\') {
+	i++;
+	continue;
+      }
+      if (content.charAt(i) == '{')
+	level++;
+      else if (content.charAt(i) == '}')
+	level--;
+      if (level == 0)
+	return content.subSequence(open + 1, i).toString().replaceAll("\\s+", " ").trim();
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the argument of the first occurrence of the command.
+   *
+   * @param content	the content to search
+   * @param command	the command (incl backslash)
+   * @return		the argument, null if not found
+   */
+  protected String findArgument(StringBuilder content, String command) {
+    String	result;
+    int		pos;
+
+    result = null;
+    pos    = content.indexOf(command);
+    while ((result == null) && (pos > -1)) {
+      result = extractArgument(content, pos + command.length());
+      pos    = content.indexOf(command, pos + 1);
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads title and authors from the .aux file of the document.
+   *
+   * @param document	the document
+   * @param entry	the entry to update
+   * @throws IOException	if reading fails
+   */
+  protected void readAux(Document document, VolumeEntry entry) throws IOException {
+    File	aux;
+    String	line;
+
+    aux = AuxFile.getAuxFile(document.getFile());
+    if (!aux.isFile())
+      return;
+
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(aux), StandardCharsets.UTF_8))) {
+      while ((line = reader.readLine()) != null) {
+	if ((entry.getTitle() == null) && line.startsWith(AUX_TITLE))
+	  entry.setTitle(extractArgument(line, AUX_TITLE.length() - 1));
+	else if ((entry.getAuthors() == null) && line.startsWith(AUX_AUTHOR))
+	  entry.setAuthors(extractArgument(line, AUX_AUTHOR.length() - 1));
+      }
+    }
+  }
+
+  /**
+   * Reads title and authors from the preamble of the .tex file.
+   *
+   * @param document	the document
+   * @param entry	the entry to update
+   * @throws IOException	if reading fails
+   */
+  protected void readTeX(Document document, VolumeEntry entry) throws IOException {
+    StringBuilder	preamble;
+    String		line;
+    int			pos;
+
+    preamble = new StringBuilder();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(document.getFile()), StandardCharsets.UTF_8))) {
+      while ((line = reader.readLine()) != null) {
+	pos = line.indexOf('%');
+	if ((pos > -1) && ((pos == 0) || (line.charAt(pos - 1) != '\\')))
+	  line = line.substring(0, pos);
+	preamble.append(line).append('\n');
+	if (line.contains("\\maketitle"))
+	  break;
+      }
+    }
+
+    if (entry.getTitle() == null)
+      entry.setTitle(findArgument(preamble, TEX_TITLE));
+    if (entry.getAuthors() == null)
+      entry.setAuthors(findArgument(preamble, TEX_AUTHOR));
+  }
+
+  /**
+   * Determines the layout of the volume, including titles and authors.
+   *
+   * @param documents	the documents
+   * @return		the entries
+   * @throws IOException	if reading of the aux or tex files fails
+   */
+  public List<VolumeEntry> collect(Documents documents) throws IOException {
+    List<VolumeEntry>	result;
+
+    result = m_Assembler.layout(documents);
+    for (VolumeEntry entry: result) {
+      readAux(entry.getDocument(), entry);
+      if ((entry.getTitle() == null) || (entry.getAuthors() == null))
+	readTeX(entry.getDocument(), entry);
+    }
+
+    return result;
+  }
+
+  /**
+   * Writes the table of contents.
+   *
+   * @param entries	the entries of the volume
+   * @param toc		the tex file to write
+   * @throws IOException	if writing fails
+   */
+  public void writeTOC(List<VolumeEntry> entries, File toc) throws IOException {
+    try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(toc), StandardCharsets.UTF_8))) {
+      writer.println("% generated by " + getClass().getName());
+      writer.println("% " + TOC_MACRO + "{title}{authors}{page}");
+      writer.println("\\providecommand{" + TOC_MACRO + "}[3]{\\noindent #1\\dotfill #3\\\\\\hspace*{1em}\\emph{#2}\\par\\medskip}");
+      for (VolumeEntry entry: entries) {
+	writer.println(TOC_MACRO
+	  + "{" + (entry.getTitle() == null ? entry.getDocument().getFile() : entry.getTitle()) + "}"
+	  + "{" + (entry.getAuthors() == null ? "" : entry.getAuthors()) + "}"
+	  + "{" + entry.getStartPage() + "}");
+      }
+    }
+  }
+
+  /**
+   * Returns the tex file of the front matter for the table of contents.
+   *
+   * @param toc		the tex file of the table of contents
+   * @return		the tex file of the front matter
+   */
+  public File getFrontMatter(File toc) {
+    return new File(FileUtils.replaceExtension(toc.getAbsolutePath(), FRONT_MATTER_SUFFIX));
+  }
+
+  /**
+   * Writes the LaTeX document of the front matter, which includes the
+   * table of contents.
+   *
+   * @param toc		the tex file of the table of contents
+   * @param front	the tex file to write
+   * @throws IOException	if writing fails
+   */
+  protected void writeFrontMatter(File toc, File front) throws IOException {
+    try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(front), StandardCharsets.UTF_8))) {
+      writer.println("% generated by " + getClass().getName());
+      writer.println("\\documentclass{article}");
+      writer.println("\\begin{document}");
+      writer.println("\\setcounter{page}{" + m_Assembler.getFirstPage() + "}");
+      writer.println("\\input{" + toc.getAbsolutePath().replace(File.separatorChar, '/') + "}");
+      writer.println("\\end{document}");
+    }
+  }
+
+  /**
+   * Generates the table of contents and compiles it as front matter. As the
+   * start page of the papers depends on the length of the front matter,
+   * the table of contents gets regenerated and compiled until its page
+   * count no longer changes. Afterwards, the assembler uses the front matter.
+   *
+   * @param documents	the documents
+   * @param toc		the tex file of the table of contents
+   * @param handle	the handle of the compile
+   * @return		null if successful, otherwise error message
+   */
+  public String generate(Documents documents, File toc, CompileHandle handle) {
+    String	result;
+    File	front;
+    LaTeX	compiler;
+    int		pages;
+    int		i;
+
+    if (m_Assembler.getLaTeX() == null)
+      return "No LaTeX compiler defined!";
+
+    front    = getFrontMatter(toc);
+    compiler = m_Assembler.getVolumeCompiler();
+    try {
+      // provisional page numbers, as length of front matter not known yet
+      m_Assembler.setFrontMatter(null);
+      writeTOC(collect(documents), toc);
+      writeFrontMatter(toc, front);
+      m_Assembler.setFrontMatter(front);
+      pages = -1;
+      for (i = 0; i < MAX_FRONT_MATTER_COMPILES; i++) {
+	result = compiler.compile(front.getAbsolutePath(), handle);
+	if (result != null)
+	  return result;
+	if (m_Assembler.getNumFrontMatterPages() == pages)
+	  return null;
+	pages = m_Assembler.getNumFrontMatterPages();
+	writeTOC(collect(documents), toc);
+      }
+    }
+    catch (Exception e) {
+      return "Failed to generate front matter: " + front + "\n" + Utils.throwableToString(e);
+    }
+
+    return "Page count of front matter did not settle after " + MAX_FRONT_MATTER_COMPILES + " compiles: " + front;
+  }
+
+  /**
+   * Returns the TeX code for setting the page counter to the start page of
+   * the entry, to execute before the document gets loaded.
+   *
+   * @param entry	the entry of the volume
+   * @return		the code
+   * @see		LaTeX#compile(String, String, CompileHandle)
+   */
+  public String getPageOffsetCode(VolumeEntry entry) {
+    return "\\AtBeginDocument{\\setcounter{page}{" + entry.getStartPage() + "}}";
+  }
+
+  /**
+   * Recompiles the document with the page counter set to its start page
+   * in the volume. An additional pass is performed if LaTeX requests a rerun.
+   *
+   * @param entry	the entry of the volume
+   * @param latex	the compiler of the document
+   * @param handle	the handle of the compile
+   * @return		null if successful, otherwise error message
+   */
+  public String applyPageOffset(VolumeEntry entry, LaTeX latex, CompileHandle handle) {
+    String	result;
+    String	code;
+    String	file;
+
+    file   = entry.getDocument().getFile();
+    code   = getPageOffsetCode(entry);
+    result = latex.compile(file, code, handle);
+    if ((result == null) && latex.requiresRecompile(file))
+      result = latex.compile(file, code, handle);
+
+    return result;
+  }
+
+  /**
+   * Recompiles the documents with the page counter set to their start page
+   * in the volume, each with its own compiler. A failing document doesn't
+   * stop the remaining ones.
+   *
+   * @param entries	the entries of the volume
+   * @param compilers	the compilers of the documents
+   * @param handle	the handle of the compile
+   * @return		null if successful, otherwise the error messages of the failed documents
+   * @see		#applyPageOffset(VolumeEntry, LaTeX, CompileHandle)
+   */
+  public String applyPageOffsets(List<VolumeEntry> entries, Compilers compilers, CompileHandle handle) {
+    StringBuilder	result;
+    AbstractCompiler	compiler;
+    String		error;
+
+    result = new StringBuilder();
+    for (VolumeEntry entry: entries) {
+      compiler = compilers.find(entry.getDocument().getCompiler());
+      if (compiler instanceof LaTeX)
+	error = applyPageOffset(entry, (LaTeX) compiler, handle);
+      else
+	error = "Not a LaTeX compiler: " + entry.getDocument().getCompiler();
+      if (error != null)
+	result.append(result.length() > 0 ? "\n" : "").append(entry.getDocument().getFile()).append(": ").append(error);
+    }
+
+    return (result.length() == 0) ? null : result.toString();
+  }
+
+  /**
+   * Generates the table of contents and front matter, and applies the page
+   * offsets from the commandline.
+   *
+   * @param args	the yaml files with the compilers and the documents, and the toc tex file
+   * @throws Exception	if loading of the configuration fails
+   */
+  public static void main(String[] args) throws Exception {
+    if ((args.length < 3) || (args.length > 4)) {
+      System.err.println("Usage: FrontMatter <compilers.yaml> <documents.yaml> <toc.tex> [first-page]");
+      System.exit(1);
+    }
+
+    Compilers compilers;
+    Documents documents;
+    try (Reader reader = new FileReader(args[0])) {
+      compilers = Compilers.read(reader);
+    }
+    try (Reader reader = new FileReader(args[1])) {
+      documents = Documents.read(reader);
+    }
+    FrontMatter front = new FrontMatter();
+    front.getAssembler().setLaTeX(compilers.find(LaTeX.class));
+    if (args.length > 3)
+      front.getAssembler().setFirstPage(Integer.parseInt(args[3]));
+    String result = front.generate(documents, new File(args[2]), new CompileHandle());
+    if (result == null)
+      result = front.applyPageOffsets(front.collect(documents), compilers, new CompileHandle());
+    if (result != null) {
+      System.err.println(result);
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * HttpArtifactStore.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Stores artifacts on a remote server via HTTP: GET retrieves an artifact
+ * (404 if not present), PUT stores it. The artifacts are located at the
+ * base URL with the key appended, eg with a {@link ArtifactServer}.
+ * If a token is set, it gets sent as bearer token with each request.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class HttpArtifactStore
+  extends AbstractArtifactStore {
+
+  /** the default connect timeout in msec. */
+  public final static int DEFAULT_CONNECT_TIMEOUT = 5000;
+
+  /** the default read timeout in msec. */
+  public final static int DEFAULT_READ_TIMEOUT = 60000;
+
+  /** the base URL. */
+  protected String m_URL;
+
+  /** the connect timeout in msec. */
+  protected int m_ConnectTimeout;
+
+  /** the read timeout in msec. */
+  protected int m_ReadTimeout;
+
+  /** the token to send, null if none. */
+  protected String m_Token;
+
+  /**
+   * Initializes the store.
+   *
+   * @param url		the base URL
+   */
+  public HttpArtifactStore(String url) {
+    if (!url.endsWith("/"))
+      url += "/";
+    m_URL            = url;
+    m_ConnectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    m_ReadTimeout    = DEFAULT_READ_TIMEOUT;
+  }
+
+  /**
+   * Returns the base URL.
+   *
+   * @return		the URL
+   */
+  public String getURL() {
+    return m_URL;
+  }
+
+  /**
+   * Sets the connect timeout.
+   *
+   * @param value	the timeout in msec
+   */
+  public void setConnectTimeout(int value) {
+    m_ConnectTimeout = value;
+  }
+
+  /**
+   * Returns the connect timeout.
+   *
+   * @return		the timeout in msec
+   */
+  public int getConnectTimeout() {
+    return m_ConnectTimeout;
+  }
+
+  /**
+   * Sets the read timeout.
+   *
+   * @param value	the timeout in msec
+   */
+  public void setReadTimeout(int value) {
+    m_ReadTimeout = value;
+  }
+
+  /**
+   * Returns the read timeout.
+   *
+   * @return		the timeout in msec
+   */
+  public int getReadTimeout() {
+    return m_ReadTimeout;
+  }
+
+  /**
+   * Sets the token to send with the requests.
+   *
+   * @param value	the token, null if none
+   */
+  public void setToken(String value) {
+    m_Token = value;
+  }
+
+  /**
+   * Returns the token to send with the requests.
+   *
+   * @return		the token, null if none
+   */
+  public String getToken() {
+    return m_Token;
+  }
+
+  /**
+   * Opens a connection for the artifact.
+   *
+   * @param key		the key of the artifact
+   * @param method	the HTTP method
+   * @return		the connection
+   * @throws IOException	if opening fails
+   */
+  protected HttpURLConnection open(String key, String method) throws IOException {
+    HttpURLConnection	result;
+
+    checkKey(key);
+    result = (HttpURLConnection) new URL(m_URL + key).openConnection();
+    result.setRequestMethod(method);
+    result.setConnectTimeout(m_ConnectTimeout);
+    result.setReadTimeout(m_ReadTimeout);
+    result.setUseCaches(false);
+    if (m_Token != null)
+      result.setRequestProperty(ArtifactServer.HEADER_AUTHORIZATION, ArtifactServer.BEARER + m_Token);
+
+    return result;
+  }
+
+  /**
+   * Retrieves the artifact.
+   *
+   * @param key		the key of the artifact
+   * @param target	the file to write the artifact to
+   * @return		true if found, false if not in store
+   * @throws IOException	if retrieval fails
+   */
+  @Override
+  public boolean fetch(String key, File target) throws IOException {
+    HttpURLConnection	conn;
+    int			code;
+
+    conn = open(key, "GET");
+    try {
+      code = conn.getResponseCode();
+      if (code == HttpURLConnection.HTTP_NOT_FOUND)
+	return false;
+      if (code != HttpURLConnection.HTTP_OK)
+	throw new IOException("Failed to fetch artifact " + key + ": " + code + " " + conn.getResponseMessage());
+      try (InputStream in = conn.getInputStream()) {
+	Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    finally {
+      conn.disconnect();
+    }
+
+    return true;
+  }
+
+  /**
+   * Stores the artifact.
+   *
+   * @param key		the key of the artifact
+   * @param source	the file with the artifact
+   * @throws IOException	if storing fails
+   */
+  @Override
+  public void store(String key, File source) throws IOException {
+    HttpURLConnection	conn;
+    int			code;
+
+    conn = open(key, "PUT");
+    try {
+      conn.setDoOutput(true);
+      conn.setFixedLengthStreamingMode(source.length());
+      try (OutputStream out = conn.getOutputStream()) {
+	Files.copy(source.toPath(), out);
+      }
+      code = conn.getResponseCode();
+      if ((code != HttpURLConnection.HTTP_OK) && (code != HttpURLConnection.HTTP_CREATED) && (code != HttpURLConnection.HTTP_NO_CONTENT))
+	throw new IOException("Failed to store artifact " + key + ": " + code + " " + conn.getResponseMessage());
+    }
+    finally {
+      conn.disconnect();
+    }
+  }
+
+  /**
+   * Returns a short description of the store.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return m_URL;
+  }
+}
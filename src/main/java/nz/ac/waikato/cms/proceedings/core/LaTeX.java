@@ -24,10 +24,12 @@ import nz.ac.waikato.cms.core.FileUtils;
 import nz.ac.waikato.cms.core.Utils;
 
 import java.io.File;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 /**
  * LaTeX-based compiler (eg pdflatex, luatex, xetex).
@@ -38,6 +40,265 @@ import java.util.List;
 public class LaTeX
   extends AbstractCompiler {
 
+  /**
+   * Factory for LaTeX compilers.
+   */
+  public static class Factory
+    implements CompilerFactory {
+
+    /**
+     * Returns the type of compiler that this factory creates.
+     *
+     * @return		the compiler class
+     */
+    @Override
+    public Class<? extends AbstractCompiler> getCompilerClass() {
+      return LaTeX.class;
+    }
+
+    /**
+     * Creates a new instance of the compiler.
+     *
+     * @return		the compiler
+     */
+    @Override
+    public AbstractCompiler newInstance() {
+      return new LaTeX();
+    }
+  }
+
+  /** the regular expression for fatal errors. */
+  protected String m_Fatal;
+
+  /** whether to abort as soon as a fatal error shows up in the output. */
+  protected boolean m_AbortOnFatal;
+
+  /** the shared preamble to precompile into a format, null if not used. */
+  protected String m_Preamble;
+
+  /** additional files the precompiled format depends on. */
+  protected String[] m_FormatDependencies;
+
+  /** the directories to search before the default TeX input path. */
+  protected String[] m_TexInputs;
+
+  /** the name of the BibTeX compiler to use, null for the most specific one available. */
+  protected String m_BibTeX;
+
+  /** the precompiled format, null if not used. */
+  protected PreambleFormat m_Format;
+
+  /** the scanner for the log files. */
+  protected LogScanner m_LogScanner;
+
+  /** the compiled patterns used by {@link #checkLog(String, String)}. */
+  protected Map<String,Pattern> m_Patterns;
+
+  /** the most recent log reports (log file - report). */
+  protected Map<String,LogReport> m_LogReports;
+
+  /**
+   * Initializes the compiler.
+   */
+  public LaTeX() {
+    super();
+    m_Fatal        = LogScanner.DEFAULT_FATAL;
+    m_AbortOnFatal = true;
+    m_LogScanner   = new LogScanner(m_Fatal);
+    m_Patterns     = new ConcurrentHashMap<>();
+    m_LogReports   = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Sets the regular expression for detecting fatal errors in the
+   * output and the log (full line match).
+   *
+   * @param value	the regular expression
+   */
+  public void setFatal(String value) {
+    m_Fatal      = value;
+    m_LogScanner = new LogScanner(value);
+    m_LogReports.clear();
+  }
+
+  /**
+   * Returns the regular expression for detecting fatal errors in the
+   * output and the log (full line match).
+   *
+   * @return		the regular expression
+   */
+  public String getFatal() {
+    return m_Fatal;
+  }
+
+  /**
+   * Sets whether to kill the compile as soon as a fatal error shows up in
+   * the output or the log (eg in batchmode), rather than waiting for the
+   * process to give up.
+   *
+   * @param value	true if to abort early
+   */
+  public void setAbortOnFatal(boolean value) {
+    m_AbortOnFatal = value;
+  }
+
+  /**
+   * Returns whether to kill the compile as soon as a fatal error shows up
+   * in the output, rather than waiting for the process to give up.
+   *
+   * @return		true if to abort early
+   */
+  public boolean getAbortOnFatal() {
+    return m_AbortOnFatal;
+  }
+
+  /**
+   * Sets the preamble shared by all documents. If set, the preamble gets
+   * dumped into a format file (using mylatexformat) once and every compile
+   * loads that format instead of processing the preamble again.
+   *
+   * @param value	the preamble file, null to turn off
+   */
+  public synchronized void setPreamble(String value) {
+    m_Preamble = value;
+    m_Format   = null;
+  }
+
+  /**
+   * Returns the preamble shared by all documents.
+   *
+   * @return		the preamble file, null if not used
+   */
+  public String getPreamble() {
+    return m_Preamble;
+  }
+
+  /**
+   * Sets additional files that the precompiled format depends on. Local
+   * class and package files loaded by the preamble are detected automatically.
+   *
+   * @param value	the files, relative ones are relative to the preamble
+   */
+  public synchronized void setFormatDependencies(String[] value) {
+    m_FormatDependencies = value;
+    m_Format             = null;
+  }
+
+  /**
+   * Returns additional files that the precompiled format depends on.
+   *
+   * @return		the files, null if none
+   */
+  public String[] getFormatDependencies() {
+    return m_FormatDependencies;
+  }
+
+  /**
+   * Sets the directories that TeX searches for input files (incl graphics)
+   * before the default search path, eg the output directory of a
+   * {@link FigureConverter}.
+   *
+   * @param value	the directories, relative ones are relative to the document; null for none
+   */
+  public void setTexInputs(String[] value) {
+    m_TexInputs = value;
+  }
+
+  /**
+   * Returns the directories that TeX searches for input files (incl
+   * graphics) before the default search path.
+   *
+   * @return		the directories, null if none
+   */
+  public String[] getTexInputs() {
+    return m_TexInputs;
+  }
+
+  /**
+   * Sets the name of the BibTeX compiler to interleave with the LaTeX passes.
+   *
+   * @param value	the name, null for the most specific one available (see {@link Compilers#findMostSpecific(Class)})
+   */
+  public void setBibTeX(String value) {
+    m_BibTeX = value;
+  }
+
+  /**
+   * Returns the name of the BibTeX compiler to interleave with the LaTeX passes.
+   *
+   * @return		the name, null for the most specific one available
+   */
+  public String getBibTeX() {
+    return m_BibTeX;
+  }
+
+  /**
+   * Returns the precompiled format.
+   *
+   * @return		the format, null if not used
+   */
+  protected synchronized PreambleFormat getFormat() {
+    if ((m_Format == null) && (m_Preamble != null))
+      m_Format = new PreambleFormat(this, m_Preamble, m_FormatDependencies);
+    return m_Format;
+  }
+
+  /**
+   * Prepends the additional input directories to TEXINPUTS. The trailing
+   * separator makes TeX append its default search path.
+   *
+   * @param document	the document being compiled
+   * @param env		the environment to update
+   */
+  @Override
+  protected void updateEnvironment(String document, Map<String,String> env) {
+    StringBuilder	inputs;
+    File		dir;
+
+    if ((m_TexInputs == null) || (m_TexInputs.length == 0))
+      return;
+
+    inputs = new StringBuilder();
+    for (String input: m_TexInputs) {
+      dir = new File(input);
+      if (!dir.isAbsolute())
+	dir = new File(new File(document).getAbsoluteFile().getParentFile(), input);
+      inputs.append(dir.getPath()).append(File.pathSeparator);
+    }
+    if (env.containsKey("TEXINPUTS"))
+      inputs.append(env.get("TEXINPUTS"));
+    env.put("TEXINPUTS", inputs.toString());
+  }
+
+  /**
+   * Returns the log file of the document if aborting on fatal errors, as
+   * in batchmode the errors only show up in the log, not in the output.
+   *
+   * @param document	the document being compiled
+   * @return		the log file, null if not aborting early
+   */
+  @Override
+  protected File getProgressFile(String document) {
+    if (!m_AbortOnFatal)
+      return null;
+    return new File(FileUtils.replaceExtension(document, ".log")).getAbsoluteFile();
+  }
+
+  /**
+   * Checks a line of output (or of the log) for fatal errors while the
+   * process is running.
+   *
+   * @param line	the line of output
+   * @param stderr	whether from stderr or stdout
+   * @return		null if ok to continue, otherwise the reason for aborting
+   */
+  @Override
+  protected String checkOutput(String line, boolean stderr) {
+    if (m_AbortOnFatal && m_LogScanner.getFatal().matcher(line).matches())
+      return "Compilation aborted!\n" + line;
+    return null;
+  }
+
   /**
    * Checks the log using the specified regular expression.
    *
@@ -47,20 +308,17 @@ public class LaTeX
    */
   protected boolean checkLog(String document, String regExp) {
     String	log;
-    File	file;
-    String[]	lines;
+    Pattern	pattern;
 
-    log    = FileUtils.replaceExtension(document, ".log");
-    file   = new File(log);
-    if (!file.exists())
-      return false;
+    pattern = m_Patterns.get(regExp);
+    if (pattern == null) {
+      pattern = Pattern.compile(regExp);
+      m_Patterns.put(regExp, pattern);
+    }
 
+    log = FileUtils.replaceExtension(document, ".log");
     try {
-      lines = new String(Files.readAllBytes(file.toPath())).split("\n");
-      for (String line: lines) {
-	if (line.matches(regExp))
-	  return true;
-      }
+      return m_LogScanner.matches(new File(log), pattern);
     }
     catch (Exception e) {
       System.err.println("Failed to check log: " + log + "\n" + Utils.throwableToString(e));
@@ -69,46 +327,120 @@ public class LaTeX
     return false;
   }
 
+  /**
+   * Analyzes the log file associated with the specified tex document.
+   * The report is cached as long as the log file doesn't change.
+   *
+   * @param document 	the tex document
+   * @return		the report, null if no log available or failed to read
+   */
+  public LogReport analyzeLog(String document) {
+    LogReport	result;
+    File	log;
+
+    log    = new File(FileUtils.replaceExtension(document, ".log")).getAbsoluteFile();
+    result = m_LogReports.get(log.getPath());
+    if ((result != null) && (result.getSize() == log.length()) && (result.getLastModified() == log.lastModified()))
+      return result;
+
+    try {
+      result = m_LogScanner.scan(log);
+    }
+    catch (Exception e) {
+      System.err.println("Failed to analyze log: " + log + "\n" + Utils.throwableToString(e));
+      result = null;
+    }
+    if (result == null)
+      m_LogReports.remove(log.getPath());
+    else
+      m_LogReports.put(log.getPath(), result);
+
+    return result;
+  }
+
   /**
    * Compiles the specified document.
    *
    * @param document	the document to compile
+   * @param handle	the handle of the compile
    * @return		null if successful, otherwise error message
    */
   @Override
-  protected String doCompile(String document) {
+  protected String doCompile(String document, CompileHandle handle) {
+    return doCompile(document, null, handle);
+  }
+
+  /**
+   * Compiles the specified document, executing the TeX code before the
+   * document gets loaded.
+   *
+   * @param document	the document to compile
+   * @param code	the TeX code to execute first, null if none
+   * @param handle	the handle of the compile
+   * @return		null if successful, otherwise error message
+   */
+  protected String doCompile(String document, String code, CompileHandle handle) {
     String		result;
-    ProcessBuilder	pb;
     List<String>	args;
-    Process		proc;
-    int			code;
+    OutputBuffer	buffer;
+    LogReport		report;
+    PreambleFormat	format;
+    CompileMetrics	metrics;
 
-    result = null;
+    format = getFormat();
+    if (format != null) {
+      result = format.prepare(handle);
+      if (result != null)
+	return result;
+    }
 
     args = new ArrayList<>();
     args.add(m_Executable);
+    if (format != null)
+      args.add("-fmt=" + format.getFormatFile().getAbsolutePath());
     if (m_Options != null)
       args.addAll(Arrays.asList(m_Options));
-    args.add(document);
-    pb = new ProcessBuilder(args);
-    pb.directory(new File(document).getParentFile());
-    try {
-      proc = pb.start();
-      code = proc.waitFor();
-      if (code != 0)
-	result = "Process exited with: " + code;
+    if (code == null) {
+      args.add(document);
     }
-    catch (Exception e) {
-      result = Utils.throwableToString(e);
+    else {
+      args.add("-jobname=" + FileUtils.replaceExtension(new File(document).getName(), ""));
+      args.add(code + "\\input{" + new File(document).getName() + "}");
     }
+    buffer = new OutputBuffer(m_MaxOutputLines);
+    result = execute(document, args, new File(document).getParentFile(), buffer, handle);
 
     if (result == null) {
-      if (checkLog(document, ".*Emergency stop.*"))
-	result = "Compilation failed!";
+      report  = analyzeLog(document);
+      metrics = handle.getLastMetrics();
+      if ((report != null) && (metrics != null))
+	metrics.setLogSize(report.getSize());
+      if ((report != null) && report.hasFatalError())
+	result = "Failed to execute: " + Utils.flatten(args, " ") + "\n"
+	  + "Compilation failed!\n" + report.getFatalError() + toOutput(buffer);
     }
 
-    if (result != null)
-      result = "Failed to execute: " + Utils.flatten(args, " ") + "\n" + result;
+    return result;
+  }
+
+  /**
+   * Compiles the specified document, executing the TeX code before the
+   * document gets loaded, eg for setting the page counter.
+   *
+   * @param document	the document to compile
+   * @param code	the TeX code to execute first
+   * @param handle	the handle for cancelling the compile
+   * @return		null if successful, otherwise error message
+   */
+  public String compile(String document, String code, CompileHandle handle) {
+    String	result;
+
+    if (handle.isTerminated())
+      return handle.getReason();
+
+    result = check(document);
+    if (result == null)
+      result = doCompile(document, code, handle);
 
     return result;
   }
@@ -121,7 +453,58 @@ public class LaTeX
    * @return		true if requires recompile
    */
   public boolean requiresRecompile(String document) {
-    return checkLog(document, ".*(Rerun to get citations correct|Rerun to get cross-references right).*");
+    LogReport	report;
+
+    report = analyzeLog(document);
+    return (report != null) && report.isRerunRequested();
+  }
+
+  /**
+   * Returns the compiler as map object for yaml.
+   *
+   * @return		the map representation
+   */
+  @Override
+  public Map<String,Object> toYaml() {
+    Map<String,Object>	result;
+
+    result = super.toYaml();
+    if (!m_Fatal.equals(LogScanner.DEFAULT_FATAL))
+      result.put("fatal", m_Fatal);
+    if (!m_AbortOnFatal)
+      result.put("abort-on-fatal", false);
+    if (m_Preamble != null)
+      result.put("preamble", m_Preamble);
+    if (m_FormatDependencies != null)
+      result.put("format-dependencies", m_FormatDependencies);
+    if (m_TexInputs != null)
+      result.put("texinputs", m_TexInputs);
+    if (m_BibTeX != null)
+      result.put("bibtex", m_BibTeX);
+
+    return result;
+  }
+
+  /**
+   * Initializes the compiler from the map representation.
+   *
+   * @param value	the map representation
+   */
+  @Override
+  protected void initFromYaml(Map<String,Object> value) {
+    super.initFromYaml(value);
+    if (value.containsKey("fatal"))
+      setFatal((String) value.get("fatal"));
+    if (value.containsKey("abort-on-fatal"))
+      setAbortOnFatal((Boolean) value.get("abort-on-fatal"));
+    if (value.containsKey("preamble"))
+      setPreamble((String) value.get("preamble"));
+    if (value.containsKey("format-dependencies"))
+      setFormatDependencies(toStringArray(value.get("format-dependencies")));
+    if (value.containsKey("texinputs"))
+      setTexInputs(toStringArray(value.get("texinputs")));
+    if (value.containsKey("bibtex"))
+      setBibTeX((String) value.get("bibtex"));
   }
 
   /**
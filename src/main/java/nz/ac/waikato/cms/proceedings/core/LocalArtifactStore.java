@@ -0,0 +1,273 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * LocalArtifactStore.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Stores artifacts in a directory, which can be shared between builds on
+ * the same machine (or via a network file system). The size of the store
+ * is bounded by evicting the least recently used artifacts, with the
+ * timestamps of the files recording their last use. The total size gets
+ * tracked while storing, the store only gets scanned when it exceeds its
+ * maximum size (and then shrunk below it, see {@link #EVICTION_TARGET}).
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class LocalArtifactStore
+  extends AbstractArtifactStore {
+
+  /** the default maximum size in bytes. */
+  public final static long DEFAULT_MAX_SIZE = 1024L * 1024L * 1024L;
+
+  /** the extension of temporary files. */
+  public final static String TMP = ".tmp";
+
+  /** the fraction of the maximum size to evict down to, so evictions don't happen with every store. */
+  public final static double EVICTION_TARGET = 0.9;
+
+  /** the directory of the store. */
+  protected File m_Dir;
+
+  /** the maximum size in bytes, &lt;= 0 for unbounded. */
+  protected long m_MaxSize;
+
+  /** the total size of the artifacts in bytes, -1 if not determined yet. */
+  protected long m_Size;
+
+  /**
+   * Initializes the store with the default maximum size.
+   *
+   * @param dir		the directory of the store
+   */
+  public LocalArtifactStore(File dir) {
+    this(dir, DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * Initializes the store.
+   *
+   * @param dir		the directory of the store
+   * @param maxSize	the maximum size in bytes, &lt;= 0 for unbounded
+   */
+  public LocalArtifactStore(File dir, long maxSize) {
+    m_Dir     = dir;
+    m_MaxSize = maxSize;
+    m_Size    = -1;
+  }
+
+  /**
+   * Returns the directory of the store.
+   *
+   * @return		the directory
+   */
+  public File getDir() {
+    return m_Dir;
+  }
+
+  /**
+   * Returns the maximum size.
+   *
+   * @return		the maximum size in bytes, &lt;= 0 for unbounded
+   */
+  public long getMaxSize() {
+    return m_MaxSize;
+  }
+
+  /**
+   * Returns the file for the artifact, spreading the artifacts across sub
+   * directories.
+   *
+   * @param key		the key of the artifact
+   * @return		the file
+   */
+  protected File file(String key) {
+    return new File(new File(m_Dir, key.substring(0, 2)), key);
+  }
+
+  /**
+   * Retrieves the artifact, marking it as recently used.
+   *
+   * @param key		the key of the artifact
+   * @param target	the file to write the artifact to
+   * @return		true if found, false if not in store
+   * @throws IOException	if retrieval fails
+   */
+  @Override
+  public boolean fetch(String key, File target) throws IOException {
+    File	file;
+
+    checkKey(key);
+    file = file(key);
+    if (!file.isFile())
+      return false;
+    try {
+      file.setLastModified(System.currentTimeMillis());
+      Files.copy(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (NoSuchFileException e) {
+      // evicted concurrently
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Stores the artifact and evicts the least recently used ones if the
+   * store exceeds its maximum size.
+   *
+   * @param key		the key of the artifact
+   * @param source	the file with the artifact
+   * @throws IOException	if storing fails
+   */
+  @Override
+  public void store(String key, File source) throws IOException {
+    File	file;
+    Path	tmp;
+    long	replaced;
+
+    checkKey(key);
+    file = file(key);
+    Files.createDirectories(file.getParentFile().toPath());
+    tmp = Files.createTempFile(file.getParentFile().toPath(), key, TMP);
+    try {
+      Files.copy(source.toPath(), tmp, StandardCopyOption.REPLACE_EXISTING);
+      replaced = file.length();
+      Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally {
+      Files.deleteIfExists(tmp);
+    }
+    added(file.length() - replaced);
+  }
+
+  /**
+   * Updates the total size after storing an artifact and evicts artifacts
+   * if the store exceeds its maximum size.
+   *
+   * @param delta	the change in size in bytes
+   * @throws IOException	if determining the size or evicting fails
+   */
+  protected synchronized void added(long delta) throws IOException {
+    if (m_MaxSize <= 0)
+      return;
+
+    if (m_Size == -1)
+      m_Size = getSize();
+    else
+      m_Size += delta;
+    if (m_Size > m_MaxSize)
+      evict();
+  }
+
+  /**
+   * Returns all artifacts in the store.
+   *
+   * @return		the artifacts
+   * @throws IOException	if listing fails
+   */
+  protected List<File> list() throws IOException {
+    final List<File>	result;
+
+    result = new ArrayList<>();
+    if (!m_Dir.isDirectory())
+      return result;
+    Files.walkFileTree(m_Dir.toPath(), new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+	if (attrs.isRegularFile() && KEY.matcher(file.getFileName().toString()).matches())
+	  result.add(file.toFile());
+	return FileVisitResult.CONTINUE;
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * Returns the total size of the artifacts.
+   *
+   * @return		the size in bytes
+   * @throws IOException	if listing fails
+   */
+  public long getSize() throws IOException {
+    long	result;
+
+    result = 0;
+    for (File file: list())
+      result += file.length();
+
+    return result;
+  }
+
+  /**
+   * Removes the least recently used artifacts until the store is below
+   * its maximum size (see {@link #EVICTION_TARGET}), if it exceeds it.
+   * Scans the store, as other builds may share it.
+   *
+   * @throws IOException	if listing fails
+   */
+  public synchronized void evict() throws IOException {
+    List<File>	files;
+    long	size;
+    long	target;
+
+    if (m_MaxSize <= 0)
+      return;
+
+    files = list();
+    size  = 0;
+    for (File file: files)
+      size += file.length();
+    m_Size = size;
+    if (size <= m_MaxSize)
+      return;
+
+    files.sort(new Comparator<File>() {
+      @Override
+      public int compare(File o1, File o2) {
+	return Long.compare(o1.lastModified(), o2.lastModified());
+      }
+    });
+    target = (long) (m_MaxSize * EVICTION_TARGET);
+    for (File file: files) {
+      if (size <= target)
+	break;
+      size -= file.length();
+      if (!file.delete())
+	System.err.println("Failed to evict artifact: " + file);
+    }
+    m_Size = size;
+  }
+}
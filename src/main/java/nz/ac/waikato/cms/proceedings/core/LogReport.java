@@ -0,0 +1,200 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * LogReport.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+/**
+ * The findings of scanning a LaTeX log file.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class LogReport {
+
+  /** the log file size at the time of scanning. */
+  protected long m_Size;
+
+  /** the log file timestamp at the time of scanning. */
+  protected long m_LastModified;
+
+  /** the first fatal error, null if none. */
+  protected String m_FatalError;
+
+  /** the number of errors ("! ..." lines). */
+  protected int m_NumErrors;
+
+  /** whether LaTeX requested a rerun. */
+  protected boolean m_RerunRequested;
+
+  /** the number of undefined references. */
+  protected int m_NumUndefinedReferences;
+
+  /** the number of undefined citations. */
+  protected int m_NumUndefinedCitations;
+
+  /** the number of overfull boxes. */
+  protected int m_NumOverfullBoxes;
+
+  /** the number of pages in the output, -1 if no output written. */
+  protected int m_NumPages;
+
+  /** the size of the output in bytes, -1 if no output written. */
+  protected long m_OutputSize;
+
+  /** the name of the output file, null if none written. */
+  protected String m_Output;
+
+  /**
+   * Initializes the report.
+   *
+   * @param size	the size of the log file
+   * @param lastModified	the timestamp of the log file
+   */
+  public LogReport(long size, long lastModified) {
+    m_Size         = size;
+    m_LastModified = lastModified;
+    m_NumPages     = -1;
+    m_OutputSize   = -1;
+  }
+
+  /**
+   * Returns the size of the log file at the time of scanning.
+   *
+   * @return		the size in bytes
+   */
+  public long getSize() {
+    return m_Size;
+  }
+
+  /**
+   * Returns the timestamp of the log file at the time of scanning.
+   *
+   * @return		the timestamp
+   */
+  public long getLastModified() {
+    return m_LastModified;
+  }
+
+  /**
+   * Returns whether a fatal error occurred.
+   *
+   * @return		true if fatal error
+   */
+  public boolean hasFatalError() {
+    return (m_FatalError != null);
+  }
+
+  /**
+   * Returns the first fatal error.
+   *
+   * @return		the error line, null if none
+   */
+  public String getFatalError() {
+    return m_FatalError;
+  }
+
+  /**
+   * Returns the number of errors.
+   *
+   * @return		the number of errors
+   */
+  public int getNumErrors() {
+    return m_NumErrors;
+  }
+
+  /**
+   * Returns whether LaTeX requested a rerun.
+   *
+   * @return		true if rerun requested
+   */
+  public boolean isRerunRequested() {
+    return m_RerunRequested;
+  }
+
+  /**
+   * Returns the number of undefined references.
+   *
+   * @return		the number
+   */
+  public int getNumUndefinedReferences() {
+    return m_NumUndefinedReferences;
+  }
+
+  /**
+   * Returns the number of undefined citations.
+   *
+   * @return		the number
+   */
+  public int getNumUndefinedCitations() {
+    return m_NumUndefinedCitations;
+  }
+
+  /**
+   * Returns the number of overfull boxes.
+   *
+   * @return		the number
+   */
+  public int getNumOverfullBoxes() {
+    return m_NumOverfullBoxes;
+  }
+
+  /**
+   * Returns the number of pages of the output.
+   *
+   * @return		the number of pages, -1 if no output written
+   */
+  public int getNumPages() {
+    return m_NumPages;
+  }
+
+  /**
+   * Returns the size of the output.
+   *
+   * @return		the size in bytes, -1 if no output written
+   */
+  public long getOutputSize() {
+    return m_OutputSize;
+  }
+
+  /**
+   * Returns the name of the output file, as recorded in the log.
+   *
+   * @return		the output, null if no output written
+   */
+  public String getOutput() {
+    return m_Output;
+  }
+
+  /**
+   * Returns a short string representation.
+   *
+   * @return		the representation
+   */
+  public String toString() {
+    return "fatal=" + m_FatalError
+      + ", errors=" + m_NumErrors
+      + ", rerun=" + m_RerunRequested
+      + ", undefinedRefs=" + m_NumUndefinedReferences
+      + ", undefinedCites=" + m_NumUndefinedCitations
+      + ", overfull=" + m_NumOverfullBoxes
+      + ", pages=" + m_NumPages
+      + ", output=" + m_Output;
+  }
+}
@@ -0,0 +1,313 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * LogScanner.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Analyzes LaTeX log files in a single streaming pass, using precompiled
+ * patterns. Lines that TeX wrapped (at max_print_line characters) get
+ * joined again before matching. Memory usage is bounded by the maximum
+ * line length.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class LogScanner {
+
+  /** the line length at which TeX wraps lines in the log. */
+  public final static int MAX_PRINT_LINE = 79;
+
+  /** the maximum length of a (joined) line, any excess is dropped. */
+  public final static int MAX_LINE_LENGTH = 8192;
+
+  /** the default pattern for fatal errors. */
+  public final static String DEFAULT_FATAL = ".*(Emergency stop|Fatal error occurred|==> Fatal error).*";
+
+  /** the pattern for rerun requests. */
+  public final static Pattern RERUN = Pattern.compile(".*(Rerun to get citations correct|Rerun to get cross-references right|Rerun to get outlines right|Please rerun LaTeX).*");
+
+  /** the pattern for undefined references. */
+  public final static Pattern UNDEFINED_REFERENCE = Pattern.compile(".*Warning: Reference `.*' on page .* undefined.*");
+
+  /** the pattern for undefined citations. */
+  public final static Pattern UNDEFINED_CITATION = Pattern.compile(".*Warning: Citation `.*' on page .* undefined.*");
+
+  /** the pattern for overfull boxes. */
+  public final static Pattern OVERFULL = Pattern.compile("^Overfull \\\\[hv]box.*");
+
+  /** the pattern for the output summary. */
+  public final static Pattern OUTPUT = Pattern.compile("^Output written on (.*) \\((\\d+) pages?, (\\d+) bytes\\)\\..*");
+
+  /** the pattern for fatal errors. */
+  protected Pattern m_Fatal;
+
+  /**
+   * Initializes the scanner with the default pattern for fatal errors.
+   */
+  public LogScanner() {
+    this(DEFAULT_FATAL);
+  }
+
+  /**
+   * Initializes the scanner.
+   *
+   * @param fatal	the regular expression for fatal errors (full line match)
+   */
+  public LogScanner(String fatal) {
+    m_Fatal = Pattern.compile(fatal);
+  }
+
+  /**
+   * Returns the pattern for fatal errors.
+   *
+   * @return		the pattern
+   */
+  public Pattern getFatal() {
+    return m_Fatal;
+  }
+
+  /**
+   * Reads lines from a log, joining lines that were wrapped by TeX.
+   */
+  public static class LineReader {
+
+    /** the underlying reader. */
+    protected Reader m_Reader;
+
+    /** the buffer. */
+    protected char[] m_Buffer;
+
+    /** the position in the buffer. */
+    protected int m_Pos;
+
+    /** the number of chars in the buffer. */
+    protected int m_Count;
+
+    /**
+     * Initializes the reader.
+     *
+     * @param reader	the reader to read from
+     */
+    public LineReader(Reader reader) {
+      m_Reader = reader;
+      m_Buffer = new char[Digests.BUFFER_SIZE];
+    }
+
+    /**
+     * Reads the next line.
+     *
+     * @param line	the buffer to fill
+     * @return		false if end of stream reached and no data read
+     * @throws IOException	if reading fails
+     */
+    public boolean readLine(StringBuilder line) throws IOException {
+      char	c;
+      int	len;
+      boolean	read;
+
+      line.setLength(0);
+      len  = 0;
+      read = false;
+      while (true) {
+	if (m_Pos == m_Count) {
+	  m_Count = m_Reader.read(m_Buffer);
+	  m_Pos   = 0;
+	  if (m_Count == -1) {
+	    m_Count = 0;
+	    return read;
+	  }
+	}
+	c = m_Buffer[m_Pos++];
+	read = true;
+	if (c == '\r')
+	  continue;
+	if (c == '\n') {
+	  if (len == MAX_PRINT_LINE) {
+	    len = 0;
+	    continue;
+	  }
+	  return true;
+	}
+	len++;
+	if (line.length() < MAX_LINE_LENGTH)
+	  line.append(c);
+      }
+    }
+  }
+
+  /**
+   * Checks whether the sequence starts with the prefix.
+   *
+   * @param seq		the sequence to check
+   * @param prefix	the prefix to look for
+   * @return		true if starting with prefix
+   */
+  protected static boolean startsWith(CharSequence seq, String prefix) {
+    int		i;
+
+    if (seq.length() < prefix.length())
+      return false;
+    for (i = 0; i < prefix.length(); i++) {
+      if (seq.charAt(i) != prefix.charAt(i))
+	return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Checks whether the line matches the pattern.
+   *
+   * @param pattern	the pattern to use
+   * @param line	the line to check
+   * @return		true if matching
+   */
+  protected boolean matches(Pattern pattern, CharSequence line) {
+    return pattern.matcher(line).matches();
+  }
+
+  /**
+   * Analyzes the line and updates the report.
+   *
+   * @param line	the line to analyze
+   * @param report	the report to update
+   */
+  protected void analyze(StringBuilder line, LogReport report) {
+    Matcher	matcher;
+
+    if (line.length() == 0)
+      return;
+
+    if ((line.charAt(0) == '!') && (line.length() > 1) && (line.charAt(1) == ' '))
+      report.m_NumErrors++;
+    if ((report.m_FatalError == null) && matches(m_Fatal, line))
+      report.m_FatalError = line.toString();
+
+    switch (line.charAt(0)) {
+      case 'O':
+	if (matches(OVERFULL, line)) {
+	  report.m_NumOverfullBoxes++;
+	  return;
+	}
+	matcher = OUTPUT.matcher(line);
+	if (matcher.matches()) {
+	  report.m_Output     = matcher.group(1);
+	  report.m_NumPages   = Integer.parseInt(matcher.group(2));
+	  report.m_OutputSize = Long.parseLong(matcher.group(3));
+	  return;
+	}
+	break;
+      case 'N':
+	// "No pages of output."
+	if (startsWith(line, "No pages of output")) {
+	  report.m_NumPages = 0;
+	  return;
+	}
+	break;
+    }
+
+    if (!report.m_RerunRequested && (line.indexOf("erun") > -1) && matches(RERUN, line)) {
+      report.m_RerunRequested = true;
+      return;
+    }
+
+    // only warnings can contain the remaining messages
+    if (line.indexOf("arning") == -1)
+      return;
+    if (matches(UNDEFINED_REFERENCE, line))
+      report.m_NumUndefinedReferences++;
+    else if (matches(UNDEFINED_CITATION, line))
+      report.m_NumUndefinedCitations++;
+  }
+
+  /**
+   * Scans the log file.
+   *
+   * @param log		the log file to scan
+   * @return		the report, null if the log doesn't exist
+   * @throws IOException	if reading fails
+   */
+  public LogReport scan(File log) throws IOException {
+    LogReport		result;
+    StringBuilder	line;
+    LineReader		reader;
+
+    if (!log.isFile())
+      return null;
+
+    result = new LogReport(log.length(), log.lastModified());
+    line   = new StringBuilder();
+    try (Reader in = new InputStreamReader(new FileInputStream(log), StandardCharsets.ISO_8859_1)) {
+      reader = new LineReader(in);
+      while (reader.readLine(line))
+	analyze(line, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Checks whether any line in the log matches the pattern.
+   *
+   * @param log		the log file to scan
+   * @param pattern	the pattern to use (full line match)
+   * @return		true if at least one line matched
+   * @throws IOException	if reading fails
+   */
+  public boolean matches(File log, Pattern pattern) throws IOException {
+    StringBuilder	line;
+    LineReader		reader;
+
+    if (!log.isFile())
+      return false;
+
+    line = new StringBuilder();
+    try (Reader in = new InputStreamReader(new FileInputStream(log), StandardCharsets.ISO_8859_1)) {
+      reader = new LineReader(in);
+      while (reader.readLine(line)) {
+	if (matches(pattern, line))
+	  return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Outputs the report for the specified log files.
+   *
+   * @param args	the log files
+   * @throws Exception	if scanning fails
+   */
+  public static void main(String[] args) throws Exception {
+    LogScanner scanner = new LogScanner();
+    for (String arg: args)
+      System.out.println(arg + ": " + scanner.scan(new File(arg)));
+  }
+}
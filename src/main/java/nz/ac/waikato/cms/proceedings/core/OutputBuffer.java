@@ -0,0 +1,93 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * OutputBuffer.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+/**
+ * Ring buffer that keeps the most recent lines of output.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class OutputBuffer {
+
+  /** the lines. */
+  protected String[] m_Lines;
+
+  /** the position for the next line. */
+  protected int m_Next;
+
+  /** the total number of lines added. */
+  protected long m_Count;
+
+  /**
+   * Initializes the buffer.
+   *
+   * @param maxLines	the maximum number of lines to keep
+   */
+  public OutputBuffer(int maxLines) {
+    m_Lines = new String[Math.max(1, maxLines)];
+  }
+
+  /**
+   * Adds the line, replacing the oldest one if the buffer is full.
+   *
+   * @param line	the line to add
+   */
+  public synchronized void add(String line) {
+    m_Lines[m_Next] = line;
+    m_Next = (m_Next + 1) % m_Lines.length;
+    m_Count++;
+  }
+
+  /**
+   * Returns the total number of lines that were added.
+   *
+   * @return		the number of lines
+   */
+  public synchronized long getCount() {
+    return m_Count;
+  }
+
+  /**
+   * Returns the most recent lines, oldest first.
+   *
+   * @return		the lines, separated by new lines
+   */
+  public synchronized String getTail() {
+    StringBuilder	result;
+    int			num;
+    int			i;
+    int			start;
+
+    result = new StringBuilder();
+    num    = (int) Math.min(m_Count, m_Lines.length);
+    start  = (m_Next - num + m_Lines.length) % m_Lines.length;
+    if (m_Count > num)
+      result.append("[... ").append(m_Count - num).append(" lines omitted]\n");
+    for (i = 0; i < num; i++) {
+      if (i > 0)
+	result.append("\n");
+      result.append(m_Lines[(start + i) % m_Lines.length]);
+    }
+
+    return result.toString();
+  }
+}
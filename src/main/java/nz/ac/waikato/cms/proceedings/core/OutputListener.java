@@ -0,0 +1,41 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * OutputListener.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+/**
+ * Interface for classes that want to receive the output of compiler
+ * processes as it gets generated.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public interface OutputListener {
+
+  /**
+   * Gets called when a line of output was received.
+   *
+   * @param compiler	the compiler that generated the output
+   * @param document	the document being compiled
+   * @param line	the line of output
+   * @param stderr	true if from stderr, false if stdout
+   */
+  public void outputReceived(AbstractCompiler compiler, String document, String line, boolean stderr);
+}
@@ -0,0 +1,306 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * PassDriver.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.core.FileUtils;
+import nz.ac.waikato.cms.core.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Runs the LaTeX, BibTeX, LaTeX sequence until the auxiliary files
+ * (.aux, .toc, .bbl, etc) no longer change. BibTeX only gets run if the
+ * citations or bibliography databases listed in the .aux file changed.
+ * Figures get converted once before the first pass, if a figure converter
+ * is set.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class PassDriver {
+
+  /** the default maximum number of LaTeX passes. */
+  public final static int DEFAULT_MAX_PASSES = 5;
+
+  /** the extensions of the files that have to reach a fixed point. */
+  public final static String[] STATE_EXTENSIONS = {".aux", ".toc", ".lof", ".lot", ".out", ".bbl"};
+
+  /**
+   * Container for the outcome of the passes.
+   */
+  public static class PassResult {
+
+    /** the error message, null if successful. */
+    protected String m_Error;
+
+    /** the number of LaTeX passes. */
+    protected int m_Passes;
+
+    /** the number of BibTeX runs. */
+    protected int m_BibTeXRuns;
+
+    /** whether the auxiliary files reached a fixed point. */
+    protected boolean m_Converged;
+
+    /**
+     * Returns the error message.
+     *
+     * @return		the error, null if successful
+     */
+    public String getError() {
+      return m_Error;
+    }
+
+    /**
+     * Returns the number of LaTeX passes that were run.
+     *
+     * @return		the number of passes
+     */
+    public int getPasses() {
+      return m_Passes;
+    }
+
+    /**
+     * Returns the number of times BibTeX was run.
+     *
+     * @return		the number of runs
+     */
+    public int getBibTeXRuns() {
+      return m_BibTeXRuns;
+    }
+
+    /**
+     * Returns whether the auxiliary files reached a fixed point.
+     *
+     * @return		true if converged
+     */
+    public boolean hasConverged() {
+      return m_Converged;
+    }
+
+    /**
+     * Returns a short string representation.
+     *
+     * @return		the representation
+     */
+    public String toString() {
+      return "passes=" + m_Passes + ", bibtex=" + m_BibTeXRuns + ", converged=" + m_Converged + (m_Error != null ? ", error=" + m_Error : "");
+    }
+  }
+
+  /** the LaTeX compiler. */
+  protected LaTeX m_LaTeX;
+
+  /** the BibTeX compiler, null if not used. */
+  protected BibTeX m_BibTeX;
+
+  /** the figure converter, null if not used. */
+  protected FigureConverter m_FigureConverter;
+
+  /** the maximum number of LaTeX passes. */
+  protected int m_MaxPasses;
+
+  /**
+   * Initializes the driver.
+   */
+  public PassDriver() {
+    m_MaxPasses = DEFAULT_MAX_PASSES;
+  }
+
+  /**
+   * Sets the LaTeX compiler to use.
+   *
+   * @param value	the compiler
+   */
+  public void setLaTeX(LaTeX value) {
+    m_LaTeX = value;
+  }
+
+  /**
+   * Returns the LaTeX compiler in use.
+   *
+   * @return		the compiler
+   */
+  public LaTeX getLaTeX() {
+    return m_LaTeX;
+  }
+
+  /**
+   * Sets the BibTeX compiler to use.
+   *
+   * @param value	the compiler, null if not to run BibTeX
+   */
+  public void setBibTeX(BibTeX value) {
+    m_BibTeX = value;
+  }
+
+  /**
+   * Returns the BibTeX compiler in use.
+   *
+   * @return		the compiler, null if not run
+   */
+  public BibTeX getBibTeX() {
+    return m_BibTeX;
+  }
+
+  /**
+   * Sets the figure converter to run before the LaTeX passes.
+   *
+   * @param value	the converter, null if not to convert figures
+   */
+  public void setFigureConverter(FigureConverter value) {
+    m_FigureConverter = value;
+  }
+
+  /**
+   * Returns the figure converter run before the LaTeX passes.
+   *
+   * @return		the converter, null if not used
+   */
+  public FigureConverter getFigureConverter() {
+    return m_FigureConverter;
+  }
+
+  /**
+   * Sets the maximum number of LaTeX passes.
+   *
+   * @param value	the maximum
+   */
+  public void setMaxPasses(int value) {
+    m_MaxPasses = value;
+  }
+
+  /**
+   * Returns the maximum number of LaTeX passes.
+   *
+   * @return		the maximum
+   */
+  public int getMaxPasses() {
+    return m_MaxPasses;
+  }
+
+  /**
+   * Computes the hash over the auxiliary files of the document.
+   *
+   * @param document	the tex document
+   * @return		the hash
+   * @throws IOException	if reading fails
+   */
+  protected String hashState(String document) throws IOException {
+    MessageDigest	digest;
+    File		file;
+
+    digest = Digests.newDigest();
+    for (String ext: STATE_EXTENSIONS) {
+      file = new File(FileUtils.replaceExtension(document, ext));
+      Digests.update(digest, ext);
+      if (file.isFile())
+	Digests.update(digest, file);
+    }
+
+    return Digests.toHex(digest.digest());
+  }
+
+  /**
+   * Compiles the document until the auxiliary files reach a fixed point or
+   * the maximum number of passes has been reached.
+   *
+   * @param document	the tex document
+   * @return		the result
+   */
+  public PassResult run(String document) {
+    return run(document, new CompileHandle());
+  }
+
+  /**
+   * Compiles the document until the auxiliary files reach a fixed point or
+   * the maximum number of passes has been reached.
+   *
+   * @param document	the tex document
+   * @param handle	the handle for cancelling the compile
+   * @return		the result
+   */
+  public PassResult run(String document, CompileHandle handle) {
+    PassResult		result;
+    String		before;
+    String		after;
+    String		citations;
+    String		bibCitations;
+    List<String>	bibLines;
+
+    result = new PassResult();
+    if (m_LaTeX == null) {
+      result.m_Error = "No LaTeX compiler defined!";
+      return result;
+    }
+
+    if (m_FigureConverter != null) {
+      result.m_Error = m_FigureConverter.compile(document, handle);
+      if (result.m_Error != null)
+	return result;
+    }
+
+    try {
+      before       = hashState(document);
+      bibCitations = null;
+
+      while (result.m_Passes < m_MaxPasses) {
+	result.m_Error = m_LaTeX.compile(document, handle);
+	result.m_Passes++;
+	if (result.m_Error != null)
+	  return result;
+
+	if (m_BibTeX != null) {
+	  bibLines  = AuxFile.readBibLines(AuxFile.getAuxFile(document));
+	  citations = AuxFile.hash(bibLines);
+	  // bibliography from previous build still valid as long as citations and databases don't change
+	  if (AuxFile.hasBibData(bibLines) && !citations.equals(bibCitations)) {
+	    if (!m_BibTeX.isUpToDate(document)) {
+	      result.m_Error = m_BibTeX.compile(document, handle);
+	      result.m_BibTeXRuns++;
+	      if (result.m_Error != null)
+		return result;
+	    }
+	    bibCitations = citations;
+	  }
+	}
+
+	after = hashState(document);
+	if (after.equals(before) && !m_LaTeX.requiresRecompile(document)) {
+	  result.m_Converged = true;
+	  break;
+	}
+	before = after;
+      }
+      // output may still contain wrong references or page numbers
+      if (!result.m_Converged)
+	handle.addWarning("Auxiliary files did not converge within " + m_MaxPasses + " passes");
+    }
+    catch (Exception e) {
+      result.m_Error = "Failed to determine state of auxiliary files for: " + document + "\n" + Utils.throwableToString(e);
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,294 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * PreambleFormat.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.core.FileUtils;
+import nz.ac.waikato.cms.core.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Manages a custom format file (.fmt) that is dumped from the preamble
+ * shared by all documents (mylatexformat-style), so that LaTeX doesn't have
+ * to load the class and packages on every pass. The format gets rebuilt
+ * whenever the preamble, the local class/package files it uses or the
+ * additional dependencies change.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class PreambleFormat {
+
+  /** the extension of the file storing the hash of the inputs. */
+  public final static String HASH_EXTENSION = ".fmt.sha256";
+
+  /** the pattern for the document class. */
+  public final static Pattern DOCUMENTCLASS = Pattern.compile("\\\\documentclass\\s*(?:\\[[^\\]]*\\])?\\s*\\{([^}]+)\\}");
+
+  /** the pattern for packages. */
+  public final static Pattern USEPACKAGE = Pattern.compile("\\\\(?:usepackage|RequirePackage)\\s*(?:\\[[^\\]]*\\])?\\s*\\{([^}]+)\\}");
+
+  /** the compiler to use for dumping the format. */
+  protected LaTeX m_Compiler;
+
+  /** the preamble file. */
+  protected File m_Preamble;
+
+  /** additional files that the format depends on. */
+  protected String[] m_Dependencies;
+
+  /** the timestamps of the inputs at the time of the last check. */
+  protected Map<File,Long> m_Verified;
+
+  /**
+   * Initializes the format.
+   *
+   * @param compiler	the compiler to dump the format with
+   * @param preamble	the preamble file
+   * @param dependencies	additional files the format depends on, can be null
+   */
+  public PreambleFormat(LaTeX compiler, String preamble, String[] dependencies) {
+    m_Compiler     = compiler;
+    m_Preamble     = new File(preamble).getAbsoluteFile();
+    m_Dependencies = (dependencies == null) ? new String[0] : dependencies;
+    m_Verified     = new HashMap<>();
+  }
+
+  /**
+   * Returns the preamble file.
+   *
+   * @return		the preamble
+   */
+  public File getPreamble() {
+    return m_Preamble;
+  }
+
+  /**
+   * Returns the name of the format.
+   *
+   * @return		the name (without extension)
+   */
+  public String getName() {
+    return FileUtils.replaceExtension(m_Preamble.getName(), "");
+  }
+
+  /**
+   * Returns the format file.
+   *
+   * @return		the format file
+   */
+  public File getFormatFile() {
+    return new File(m_Preamble.getParentFile(), getName() + ".fmt");
+  }
+
+  /**
+   * Returns the file storing the hash of the inputs the format was built from.
+   *
+   * @return		the hash file
+   */
+  protected File getHashFile() {
+    return new File(m_Preamble.getParentFile(), getName() + HASH_EXTENSION);
+  }
+
+  /**
+   * Returns the inputs of the format: the preamble, the local class and
+   * package files it loads and the additional dependencies.
+   *
+   * @return		the files
+   * @throws IOException	if reading of the preamble fails
+   */
+  protected List<File> getInputs() throws IOException {
+    Set<File>	result;
+    File	dir;
+    File	file;
+    Matcher	matcher;
+    String	content;
+
+    dir     = m_Preamble.getParentFile();
+    result  = new TreeSet<>();
+    content = new String(Files.readAllBytes(m_Preamble.toPath()), StandardCharsets.ISO_8859_1);
+    matcher = DOCUMENTCLASS.matcher(content);
+    while (matcher.find()) {
+      file = new File(dir, matcher.group(1).trim() + ".cls");
+      if (file.isFile())
+	result.add(file);
+    }
+    matcher = USEPACKAGE.matcher(content);
+    while (matcher.find()) {
+      for (String pkg: matcher.group(1).split(",")) {
+	file = new File(dir, pkg.trim() + ".sty");
+	if (file.isFile())
+	  result.add(file);
+      }
+    }
+    for (String dep: m_Dependencies) {
+      file = new File(dep);
+      if (!file.isAbsolute())
+	file = new File(dir, dep);
+      result.add(file.getAbsoluteFile());
+    }
+
+    return new ArrayList<>(result);
+  }
+
+  /**
+   * Adds the names and content of the preamble and the other inputs of the
+   * format to the digest, eg for fingerprinting documents that get compiled
+   * with the format. The locations of the files don't get added.
+   *
+   * @param digest	the digest to update
+   * @throws IOException	if reading fails
+   */
+  public void update(MessageDigest digest) throws IOException {
+    Digests.update(digest, m_Preamble.getName());
+    Digests.update(digest, m_Preamble);
+    for (File input: getInputs()) {
+      Digests.update(digest, input.getName());
+      if (input.isFile())
+	Digests.update(digest, input);
+    }
+  }
+
+  /**
+   * Computes the hash over the compiler and the inputs.
+   *
+   * @param inputs	the input files
+   * @return		the hash
+   * @throws IOException	if reading fails
+   */
+  protected String hash(List<File> inputs) throws IOException {
+    MessageDigest	digest;
+
+    digest = Digests.newDigest();
+    Digests.update(digest, "" + m_Compiler.getExecutable());
+    Digests.update(digest, m_Preamble.getPath());
+    Digests.update(digest, m_Preamble);
+    for (File input: inputs) {
+      Digests.update(digest, input.getPath());
+      if (input.isFile())
+	Digests.update(digest, input);
+    }
+
+    return Digests.toHex(digest.digest());
+  }
+
+  /**
+   * Returns the timestamps of the inputs.
+   *
+   * @param inputs	the inputs
+   * @return		the timestamps
+   */
+  protected Map<File,Long> timestamps(List<File> inputs) {
+    Map<File,Long>	result;
+
+    result = new HashMap<>();
+    result.put(m_Preamble, m_Preamble.lastModified());
+    for (File input: inputs)
+      result.put(input, input.lastModified());
+    result.put(getFormatFile(), getFormatFile().lastModified());
+
+    return result;
+  }
+
+  /**
+   * Checks whether the inputs are unchanged since the last verification,
+   * just using the timestamps.
+   *
+   * @return		true if unchanged
+   */
+  protected boolean isVerified() {
+    if (m_Verified.isEmpty())
+      return false;
+    for (File file: m_Verified.keySet()) {
+      if (file.lastModified() != m_Verified.get(file))
+	return false;
+    }
+    return true;
+  }
+
+  /**
+   * Makes sure that the format file is up-to-date, rebuilding it if
+   * necessary. As long as the timestamps of the inputs don't change, the
+   * hashes get computed only once.
+   *
+   * @param handle	the handle of the compile
+   * @return		null if successful, otherwise error message
+   */
+  public synchronized String prepare(CompileHandle handle) {
+    String		result;
+    List<File>		inputs;
+    String		hash;
+    File		hashFile;
+    List<String>	args;
+
+    if (isVerified())
+      return null;
+
+    m_Verified.clear();
+    try {
+      if (!m_Preamble.isFile())
+	return "Preamble does not exist: " + m_Preamble;
+      inputs   = getInputs();
+      hash     = hash(inputs);
+      hashFile = getHashFile();
+      if (getFormatFile().isFile() && hashFile.isFile()
+	&& hash.equals(new String(Files.readAllBytes(hashFile.toPath()), StandardCharsets.UTF_8).trim())) {
+	m_Verified.putAll(timestamps(inputs));
+	return null;
+      }
+
+      hashFile.delete();
+      args = new ArrayList<>();
+      args.add(m_Compiler.getExecutable());
+      args.add("-ini");
+      args.add("-interaction=nonstopmode");
+      args.add("-jobname=" + getName());
+      args.add("&" + FileUtils.replaceExtension(new File(m_Compiler.getExecutable()).getName(), ""));
+      args.add("mylatexformat.ltx");
+      args.add(m_Preamble.getName());
+      result = m_Compiler.execute(m_Preamble.getPath(), args, m_Preamble.getParentFile(), new OutputBuffer(m_Compiler.getMaxOutputLines()), handle);
+      if (result != null)
+	return result;
+      if (!getFormatFile().isFile())
+	return "Failed to dump format: " + getFormatFile();
+
+      Files.write(hashFile.toPath(), hash.getBytes(StandardCharsets.UTF_8));
+      m_Verified.putAll(timestamps(inputs));
+    }
+    catch (Exception e) {
+      return "Failed to prepare format for preamble: " + m_Preamble + "\n" + Utils.throwableToString(e);
+    }
+
+    return null;
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * ProcessSampler.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Samples CPU time and memory of running processes. Uses /proc on Linux
+ * and falls back on {@link ProcessHandle.Info} elsewhere (CPU time only).
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class ProcessSampler {
+
+  /** the assumed clock ticks per second (USER_HZ). */
+  public final static int CLOCK_TICKS = 100;
+
+  /** the proc file system. */
+  public final static String PROC = "/proc";
+
+  /**
+   * Reads the CPU time from /proc/[pid]/stat, including the time of
+   * children that were waited for.
+   *
+   * @param pid		the process ID
+   * @return		the time in msec, -1 if not available
+   */
+  protected static long readCPUTime(long pid) {
+    String	stat;
+    String[]	fields;
+    long	ticks;
+    int		i;
+
+    try {
+      stat = new String(Files.readAllBytes(new File(PROC + "/" + pid + "/stat").toPath()), StandardCharsets.US_ASCII);
+      // command name may contain spaces, fields are counted after the closing parenthesis
+      fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+      ticks  = 0;
+      // utime, stime, cutime, cstime (fields 14-17, i.e., 11-14 after state)
+      for (i = 11; i <= 14; i++)
+	ticks += Long.parseLong(fields[i]);
+      return ticks * 1000 / CLOCK_TICKS;
+    }
+    catch (Exception e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Reads a memory value from /proc/[pid]/status.
+   *
+   * @param pid		the process ID
+   * @param key		the key to read, eg VmHWM or VmRSS
+   * @return		the size in bytes, -1 if not available
+   */
+  protected static long readMemory(long pid, String key) {
+    try {
+      for (String line: Files.readAllLines(new File(PROC + "/" + pid + "/status").toPath(), StandardCharsets.US_ASCII)) {
+	if (line.startsWith(key + ":"))
+	  return Long.parseLong(line.substring(key.length() + 1).replace("kB", "").trim()) * 1024;
+      }
+    }
+    catch (Exception e) {
+      // ignored
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the CPU time of the process.
+   *
+   * @param process	the process to sample
+   * @return		the time in msec, -1 if not available
+   */
+  protected static long getCPUTime(ProcessHandle process) {
+    long		result;
+    Optional<Duration>	total;
+
+    result = readCPUTime(process.pid());
+    if (result == -1) {
+      total = process.info().totalCpuDuration();
+      if (total.isPresent())
+	result = total.get().toMillis();
+    }
+
+    return result;
+  }
+
+  /**
+   * Samples the process and its running descendants (eg the actual tool
+   * behind a wrapper script) and updates the metrics. CPU times get summed
+   * up, as do the current resident set sizes of the process tree.
+   *
+   * @param process	the process to sample
+   * @param metrics	the metrics to update
+   */
+  public static void sample(Process process, CompileMetrics metrics) {
+    List<ProcessHandle>	handles;
+    long		cpu;
+    long		rss;
+    long		total;
+    long		value;
+
+    handles = new ArrayList<>();
+    handles.add(process.toHandle());
+    process.descendants().forEach(handles::add);
+
+    cpu   = -1;
+    rss   = -1;
+    total = 0;
+    for (ProcessHandle handle: handles) {
+      value = getCPUTime(handle);
+      if (value > -1)
+	cpu = Math.max(cpu, 0) + value;
+      value = readMemory(handle.pid(), "VmRSS");
+      if (value > -1)
+	total += value;
+    }
+    if (total > 0)
+      rss = total;
+    // the high-water mark of the process itself may exceed the sampled tree
+    rss = Math.max(rss, readMemory(process.pid(), "VmHWM"));
+
+    if (cpu > -1)
+      metrics.updateCPUTime(cpu);
+    metrics.updatePeakRSS(rss);
+  }
+}
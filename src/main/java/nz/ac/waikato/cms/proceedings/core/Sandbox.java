@@ -0,0 +1,359 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Sandbox.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.core.FileUtils;
+import nz.ac.waikato.cms.core.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stages documents in a private directory on fast local storage (by
+ * default /dev/shm, if available) for compilation. Only the files that the
+ * document depends on (as determined by the {@link DependencyScanner}) and
+ * the auxiliary files of previous builds get staged. Known read-only inputs
+ * (sources, styles, bibliographies, graphics) get hard linked where
+ * possible, everything else gets copied, as TeX would otherwise write
+ * through the links into the originals. After compilation only selected
+ * outputs get copied back.
+ * <br>
+ * Files outside the directory of the document (eg ../common/proc.cls) get
+ * staged under the same relative path, ie the sandbox mirrors the tree
+ * from the closest directory containing all the files.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class Sandbox {
+
+  /** the default directory for the sandboxes (tmpfs). */
+  public final static String DEFAULT_ROOT = "/dev/shm";
+
+  /** the extensions of the auxiliary files of previous builds to stage. */
+  public final static String[] GENERATED = {".aux", ".bbl", ".blg", ".toc", ".lof", ".lot", ".out", ".log", ".fls", ".idx", ".ind", ".ilg", ".nav", ".snm", BibTeX.BIBHASH};
+
+  /** the extensions of the inputs that are read-only and can be hard linked. */
+  public final static String[] READ_ONLY = {".tex", ".cls", ".sty", ".clo", ".bst", ".bib", ".pdf", ".png", ".jpg", ".jpeg", ".eps"};
+
+  /** the default extensions of the outputs to copy back. */
+  public final static String[] DEFAULT_COPY_BACK = {".pdf", ".log", ".blg", ".aux", ".bbl", ".toc", ".lof", ".lot", ".out", BibTeX.BIBHASH};
+
+  /** the directory to create the sandboxes in. */
+  protected File m_Root;
+
+  /** the extensions of the outputs to copy back. */
+  protected String[] m_CopyBack;
+
+  /** the read-only extensions. */
+  protected Set<String> m_ReadOnly;
+
+  /** the scanner for determining the dependencies. */
+  protected DependencyScanner m_Scanner;
+
+  /** the index of the dependencies, null to always scan. */
+  protected DependencyIndex m_Index;
+
+  /**
+   * Initializes the sandbox with the default root directory.
+   */
+  public Sandbox() {
+    this(defaultRoot());
+  }
+
+  /**
+   * Initializes the sandbox.
+   *
+   * @param root	the directory to create the sandboxes in
+   */
+  public Sandbox(File root) {
+    m_Root      = root;
+    m_CopyBack  = DEFAULT_COPY_BACK.clone();
+    m_ReadOnly  = new HashSet<>(Arrays.asList(READ_ONLY));
+    m_Scanner   = new DependencyScanner();
+  }
+
+  /**
+   * Returns the default root directory: /dev/shm if available, otherwise
+   * the temp directory.
+   *
+   * @return		the directory
+   */
+  public static File defaultRoot() {
+    File	result;
+
+    result = new File(DEFAULT_ROOT);
+    if (result.isDirectory() && result.canWrite())
+      return result;
+
+    return new File(System.getProperty("java.io.tmpdir"));
+  }
+
+  /**
+   * Returns the directory the sandboxes get created in.
+   *
+   * @return		the directory
+   */
+  public File getRoot() {
+    return m_Root;
+  }
+
+  /**
+   * Sets the extensions of the outputs to copy back.
+   *
+   * @param value	the extensions (incl dot)
+   */
+  public void setCopyBack(String[] value) {
+    m_CopyBack = value;
+  }
+
+  /**
+   * Returns the extensions of the outputs to copy back.
+   *
+   * @return		the extensions (incl dot)
+   */
+  public String[] getCopyBack() {
+    return m_CopyBack;
+  }
+
+  /**
+   * Sets the index to obtain the dependencies from, rather than scanning
+   * all files of a document each time.
+   *
+   * @param value	the index, null to always scan
+   */
+  public void setIndex(DependencyIndex value) {
+    m_Index = value;
+  }
+
+  /**
+   * Returns the index to obtain the dependencies from.
+   *
+   * @return		the index, null if always scanning
+   */
+  public DependencyIndex getIndex() {
+    return m_Index;
+  }
+
+  /**
+   * Returns the extension of the file.
+   *
+   * @param file	the file
+   * @return		the lower case extension (incl dot), empty string if none
+   */
+  protected String getExtension(Path file) {
+    String	name;
+    int		pos;
+
+    name = file.getFileName().toString();
+    pos  = name.lastIndexOf('.');
+    if (pos == -1)
+      return "";
+
+    return name.substring(pos).toLowerCase();
+  }
+
+  /**
+   * Mirrors the file into the sandbox.
+   *
+   * @param source	the file to mirror
+   * @param target	the file in the sandbox
+   * @throws IOException	if mirroring fails
+   */
+  protected void mirror(Path source, Path target) throws IOException {
+    if (m_ReadOnly.contains(getExtension(source))) {
+      try {
+	Files.createLink(target, source);
+	return;
+      }
+      catch (IOException | UnsupportedOperationException e) {
+	// eg different file system, fall back to copying
+      }
+    }
+    Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
+  }
+
+  /**
+   * Returns the files to stage for the document: the files it depends on
+   * (incl the document itself) and the auxiliary files from previous
+   * builds.
+   *
+   * @param document	the tex document
+   * @return		the files
+   * @throws IOException	if scanning fails
+   */
+  protected List<File> sources(String document) throws IOException {
+    List<File>	result;
+    File	file;
+
+    if (m_Index != null)
+      result = new ArrayList<>(m_Index.update(document));
+    else
+      result = m_Scanner.scan(document);
+    for (String ext: GENERATED) {
+      file = new File(FileUtils.replaceExtension(new File(document).getAbsolutePath(), ext));
+      if (file.isFile() && !result.contains(file))
+	result.add(file);
+    }
+
+    return result;
+  }
+
+  /**
+   * Stages the document in a new sandbox.
+   *
+   * @param document	the tex document
+   * @return		the document in the sandbox
+   * @throws IOException	if staging fails
+   */
+  public String stage(String document) throws IOException {
+    Path	source;
+    Path	target;
+    Path	output;
+    Path	path;
+    Path	staged;
+    File	doc;
+    List<Path>	paths;
+
+    doc    = new File(document).getAbsoluteFile();
+    source = doc.getParentFile().toPath().normalize();
+    output = new File(FileUtils.replaceExtension(doc.getPath(), ".pdf")).toPath().normalize();
+    paths  = new ArrayList<>();
+    for (File file: sources(doc.getPath())) {
+      path = file.getAbsoluteFile().toPath().normalize();
+      if (path.equals(output) || !Files.isRegularFile(path))
+	continue;
+      paths.add(path);
+      // mirror the tree from the directory containing all the files
+      while (!path.startsWith(source))
+	source = source.getParent();
+    }
+
+    Files.createDirectories(m_Root.toPath());
+    target = Files.createTempDirectory(m_Root.toPath(), "proceedings-");
+    try {
+      for (Path p: paths) {
+	staged = target.resolve(source.relativize(p));
+	Files.createDirectories(staged.getParent());
+	mirror(p, staged);
+      }
+    }
+    catch (IOException e) {
+      delete(target);
+      throw e;
+    }
+
+    return target.resolve(source.relativize(doc.toPath().normalize())).toString();
+  }
+
+  /**
+   * Returns the sandbox directory of the staged document, which may be
+   * several levels up if files outside the directory of the document got
+   * staged as well.
+   *
+   * @param staged	the document in the sandbox
+   * @return		the sandbox directory
+   */
+  protected Path getSandbox(String staged) {
+    Path	root;
+    Path	path;
+
+    root = m_Root.getAbsoluteFile().toPath().normalize();
+    path = new File(staged).getAbsoluteFile().toPath().normalize();
+    if (path.startsWith(root) && (root.relativize(path).getNameCount() > 1))
+      return root.resolve(root.relativize(path).getName(0));
+
+    return path.getParent();
+  }
+
+  /**
+   * Copies the selected outputs of the staged document back to the
+   * original location. Each file gets copied to a temporary file first,
+   * which then replaces the original.
+   *
+   * @param staged	the document in the sandbox
+   * @param document	the original document
+   * @throws IOException	if copying fails
+   */
+  public void copyBack(String staged, String document) throws IOException {
+    Path	source;
+    Path	target;
+    Path	tmp;
+
+    for (String ext: m_CopyBack) {
+      source = new File(FileUtils.replaceExtension(staged, ext)).toPath();
+      if (!Files.isRegularFile(source))
+	continue;
+      target = new File(FileUtils.replaceExtension(new File(document).getAbsolutePath(), ext)).toPath();
+      tmp    = target.resolveSibling(target.getFileName() + ".tmp");
+      Files.copy(source, tmp, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+
+  /**
+   * Removes the sandbox of the staged document.
+   *
+   * @param staged	the document in the sandbox
+   */
+  public void remove(String staged) {
+    try {
+      delete(getSandbox(staged));
+    }
+    catch (IOException e) {
+      System.err.println("Failed to remove sandbox of: " + staged + "\n" + Utils.throwableToString(e));
+    }
+  }
+
+  /**
+   * Deletes the directory recursively.
+   *
+   * @param dir		the directory to delete
+   * @throws IOException	if deleting fails
+   */
+  protected void delete(Path dir) throws IOException {
+    if (!Files.exists(dir))
+      return;
+    Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+	Files.delete(file);
+	return FileVisitResult.CONTINUE;
+      }
+      @Override
+      public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+	Files.delete(d);
+	return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+}
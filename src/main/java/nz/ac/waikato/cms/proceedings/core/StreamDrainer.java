@@ -0,0 +1,144 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * StreamDrainer.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.proceedings.core.CompileHandle.Termination;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * Reads the output stream of a process until it is closed, storing
+ * the lines in a buffer and forwarding them to an optional listener.
+ * Each line is also checked by the compiler, which can abort the compile.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class StreamDrainer
+  implements Runnable {
+
+  /** the maximum length of a line, any excess is dropped. */
+  public final static int MAX_LINE_LENGTH = 4096;
+
+  /** the compiler that generated the output. */
+  protected AbstractCompiler m_Compiler;
+
+  /** the document being compiled. */
+  protected String m_Document;
+
+  /** the stream to read. */
+  protected InputStream m_Stream;
+
+  /** whether this is stderr. */
+  protected boolean m_Stderr;
+
+  /** the buffer for the output. */
+  protected OutputBuffer m_Buffer;
+
+  /** the listener to notify, can be null. */
+  protected OutputListener m_Listener;
+
+  /** the handle of the compile. */
+  protected CompileHandle m_Handle;
+
+  /**
+   * Initializes the drainer.
+   *
+   * @param compiler	the compiler that generated the output
+   * @param document	the document being compiled
+   * @param stream	the stream to read
+   * @param stderr	whether stderr or stdout
+   * @param buffer	the buffer for storing the output
+   * @param listener	the listener to notify, can be null
+   * @param handle	the handle of the compile
+   */
+  public StreamDrainer(AbstractCompiler compiler, String document, InputStream stream, boolean stderr, OutputBuffer buffer, OutputListener listener, CompileHandle handle) {
+    m_Compiler = compiler;
+    m_Document = document;
+    m_Stream   = stream;
+    m_Stderr   = stderr;
+    m_Buffer   = buffer;
+    m_Listener = listener;
+    m_Handle   = handle;
+  }
+
+  /**
+   * Stores the line and notifies the listener.
+   *
+   * @param line	the line to process
+   */
+  protected void process(String line) {
+    String	reason;
+
+    m_Buffer.add(line);
+    if (!m_Handle.isTerminated()) {
+      reason = m_Compiler.checkOutput(line, m_Stderr);
+      if (reason != null)
+	m_Handle.terminate(Termination.ABORTED, reason);
+    }
+    if (m_Listener != null) {
+      try {
+	m_Listener.outputReceived(m_Compiler, m_Document, line, m_Stderr);
+      }
+      catch (Exception e) {
+	// a misbehaving listener must not stop the draining
+      }
+    }
+  }
+
+  /**
+   * Reads the stream until it is closed.
+   */
+  @Override
+  public void run() {
+    char[]		buffer;
+    StringBuilder	line;
+    int			read;
+    int			i;
+    char		c;
+
+    buffer = new char[Digests.BUFFER_SIZE];
+    line   = new StringBuilder();
+    try (Reader reader = new InputStreamReader(m_Stream, Charset.defaultCharset())) {
+      while ((read = reader.read(buffer)) != -1) {
+	for (i = 0; i < read; i++) {
+	  c = buffer[i];
+	  if (c == '\n') {
+	    process(line.toString());
+	    line.setLength(0);
+	  }
+	  else if ((c != '\r') && (line.length() < MAX_LINE_LENGTH)) {
+	    line.append(c);
+	  }
+	}
+      }
+      if (line.length() > 0)
+	process(line.toString());
+    }
+    catch (IOException e) {
+      // stream gets closed when process is destroyed
+    }
+  }
+}
@@ -0,0 +1,363 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * SystemResources.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Determines the CPU and memory available to the build: the limits of
+ * the cgroup (v2, with fallback to v1) the JVM runs in and the live memory
+ * statistics from /proc/meminfo. Values that cannot be determined (eg on
+ * non-Linux systems) fall back to what the JVM reports.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class SystemResources {
+
+  /** the default proc directory. */
+  public final static String DEFAULT_PROC = "/proc";
+
+  /** the default cgroup mount point. */
+  public final static String DEFAULT_CGROUP = "/sys/fs/cgroup";
+
+  /** the proc directory. */
+  protected File m_Proc;
+
+  /** the cgroup mount point. */
+  protected File m_CGroup;
+
+  /** the cgroup v2 directory of the process, null if not available. */
+  protected File m_V2;
+
+  /** the cgroup v1 cpu directory of the process, null if not available. */
+  protected File m_V1CPU;
+
+  /** the cgroup v1 memory directory of the process, null if not available. */
+  protected File m_V1Memory;
+
+  /**
+   * Initializes with the default directories.
+   */
+  public SystemResources() {
+    this(new File(DEFAULT_PROC), new File(DEFAULT_CGROUP));
+  }
+
+  /**
+   * Initializes with the specified directories.
+   *
+   * @param proc	the proc directory
+   * @param cgroup	the cgroup mount point
+   */
+  public SystemResources(File proc, File cgroup) {
+    m_Proc   = proc;
+    m_CGroup = cgroup;
+    locate();
+  }
+
+  /**
+   * Returns the directory of the cgroup, falling back to the mount point
+   * if the cgroup's directory isn't visible (eg within a container).
+   *
+   * @param mount	the mount point of the hierarchy
+   * @param path	the path of the cgroup
+   * @return		the directory, null if the hierarchy isn't mounted
+   */
+  protected File locate(File mount, String path) {
+    File	result;
+
+    if (!mount.isDirectory())
+      return null;
+    result = new File(mount, path);
+    if (!result.isDirectory())
+      result = mount;
+
+    return result;
+  }
+
+  /**
+   * Determines the cgroup directories of the process from
+   * /proc/self/cgroup.
+   */
+  protected void locate() {
+    List<String>	lines;
+    String[]		parts;
+
+    try {
+      lines = Files.readAllLines(new File(m_Proc, "self/cgroup").toPath(), StandardCharsets.UTF_8);
+    }
+    catch (IOException e) {
+      return;
+    }
+
+    for (String line: lines) {
+      // hierarchy-ID:controller-list:cgroup-path
+      parts = line.split(":", 3);
+      if (parts.length != 3)
+	continue;
+      if (parts[0].equals("0") && parts[1].isEmpty()) {
+	if (new File(m_CGroup, "cgroup.controllers").exists())
+	  m_V2 = locate(m_CGroup, parts[2]);
+      }
+      for (String controller: parts[1].split(",")) {
+	if (controller.equals("cpu"))
+	  m_V1CPU = locate(new File(m_CGroup, "cpu"), parts[2]);
+	else if (controller.equals("memory"))
+	  m_V1Memory = locate(new File(m_CGroup, "memory"), parts[2]);
+      }
+    }
+  }
+
+  /**
+   * Reads the first line of the file.
+   *
+   * @param dir		the directory, can be null
+   * @param name	the name of the file
+   * @return		the trimmed line, null if not available
+   */
+  protected String read(File dir, String name) {
+    List<String>	lines;
+
+    if (dir == null)
+      return null;
+    try {
+      lines = Files.readAllLines(new File(dir, name).toPath(), StandardCharsets.UTF_8);
+    }
+    catch (IOException e) {
+      return null;
+    }
+    if (lines.isEmpty())
+      return null;
+
+    return lines.get(0).trim();
+  }
+
+  /**
+   * Parses the number.
+   *
+   * @param value	the value to parse, can be null
+   * @return		the number, -1 if not available, unlimited or invalid
+   */
+  protected long parse(String value) {
+    long	result;
+
+    if ((value == null) || value.equals("max"))
+      return -1;
+    try {
+      result = Long.parseLong(value);
+    }
+    catch (NumberFormatException e) {
+      return -1;
+    }
+    // v1 reports unlimited as (close to) Long.MAX_VALUE
+    if (result >= Long.MAX_VALUE / 2)
+      return -1;
+
+    return result;
+  }
+
+  /**
+   * Reads a value from /proc/meminfo.
+   *
+   * @param key		the key of the value, eg MemAvailable
+   * @return		the value in bytes, -1 if not available
+   */
+  public long readMemInfo(String key) {
+    List<String>	lines;
+    String[]		parts;
+
+    try {
+      lines = Files.readAllLines(new File(m_Proc, "meminfo").toPath(), StandardCharsets.UTF_8);
+    }
+    catch (IOException e) {
+      return -1;
+    }
+    for (String line: lines) {
+      if (!line.startsWith(key + ":"))
+	continue;
+      parts = line.substring(key.length() + 1).trim().split("\\s+");
+      try {
+	return Long.parseLong(parts[0]) * 1024;
+      }
+      catch (NumberFormatException e) {
+	return -1;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Returns the number of CPUs the build may use, ie the CPU quota of the
+   * cgroup, capped by the number of processors.
+   *
+   * @return		the number of CPUs (can be fractional)
+   */
+  public double getCPULimit() {
+    double	result;
+    String	max;
+    String[]	parts;
+    long	quota;
+    long	period;
+
+    result = Runtime.getRuntime().availableProcessors();
+    quota  = -1;
+    period = -1;
+    max    = read(m_V2, "cpu.max");
+    if (max != null) {
+      // quota period
+      parts = max.split("\\s+");
+      quota = parse(parts[0]);
+      if (parts.length > 1)
+	period = parse(parts[1]);
+    }
+    else {
+      quota  = parse(read(m_V1CPU, "cpu.cfs_quota_us"));
+      period = parse(read(m_V1CPU, "cpu.cfs_period_us"));
+    }
+    if ((quota > 0) && (period > 0))
+      result = Math.min(result, (double) quota / period);
+
+    return result;
+  }
+
+  /**
+   * Returns the memory limit of the cgroup, capped by the physical memory.
+   *
+   * @return		the limit in bytes, -1 if not available
+   */
+  public long getMemoryLimit() {
+    long	result;
+    long	total;
+
+    if (read(m_V2, "memory.max") != null)
+      result = parse(read(m_V2, "memory.max"));
+    else
+      result = parse(read(m_V1Memory, "memory.limit_in_bytes"));
+    total = readMemInfo("MemTotal");
+    if ((result == -1) || ((total > -1) && (total < result)))
+      result = total;
+
+    return result;
+  }
+
+  /**
+   * Returns the current memory usage of the cgroup.
+   *
+   * @return		the usage in bytes, -1 if not available
+   */
+  public long getMemoryUsage() {
+    if (read(m_V2, "memory.current") != null)
+      return parse(read(m_V2, "memory.current"));
+    return parse(read(m_V1Memory, "memory.usage_in_bytes"));
+  }
+
+  /**
+   * Reads a value from a flat keyed file (lines of "key value").
+   *
+   * @param dir		the directory, can be null
+   * @param name	the name of the file
+   * @param key		the key of the value
+   * @return		the value, -1 if not available
+   */
+  protected long readKeyed(File dir, String name, String key) {
+    List<String>	lines;
+    String[]		parts;
+
+    if (dir == null)
+      return -1;
+    try {
+      lines = Files.readAllLines(new File(dir, name).toPath(), StandardCharsets.UTF_8);
+    }
+    catch (IOException e) {
+      return -1;
+    }
+    for (String line: lines) {
+      parts = line.trim().split("\\s+");
+      if ((parts.length == 2) && parts[0].equals(key))
+	return parse(parts[1]);
+    }
+
+    return -1;
+  }
+
+  /**
+   * Returns the number of processes that the OOM killer killed within the
+   * cgroup so far.
+   *
+   * @return		the number of kills, -1 if not available
+   */
+  public long getOOMKills() {
+    if (m_V2 != null)
+      return readKeyed(m_V2, "memory.events", "oom_kill");
+    return readKeyed(m_V1Memory, "memory.oom_control", "oom_kill");
+  }
+
+  /**
+   * Returns the memory currently available for new processes: the
+   * available memory of the system, capped by what is left within the
+   * cgroup's limit.
+   *
+   * @return		the memory in bytes, -1 if not available
+   */
+  public long getAvailableMemory() {
+    long	result;
+    long	limit;
+    long	usage;
+
+    result = readMemInfo("MemAvailable");
+    limit  = getMemoryLimit();
+    usage  = getMemoryUsage();
+    if ((limit > -1) && (usage > -1)) {
+      if ((result == -1) || (limit - usage < result))
+	result = Math.max(0, limit - usage);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns a short description of the resources.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "cpus=" + getCPULimit()
+      + ", memory-limit=" + getMemoryLimit()
+      + ", memory-usage=" + getMemoryUsage()
+      + ", memory-available=" + getAvailableMemory()
+      + ", oom-kills=" + getOOMKills();
+  }
+
+  /**
+   * Outputs the determined resources.
+   *
+   * @param args	ignored
+   */
+  public static void main(String[] args) {
+    System.out.println(new SystemResources());
+  }
+}
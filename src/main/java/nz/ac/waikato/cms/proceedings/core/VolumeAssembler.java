@@ -0,0 +1,369 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * VolumeAssembler.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import nz.ac.waikato.cms.core.FileUtils;
+import nz.ac.waikato.cms.core.Utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Combines the PDFs of the compiled documents into a single proceedings
+ * volume, in the order of the documents. The volume is a generated LaTeX
+ * document that includes the papers via pdfpages, so that the papers get
+ * streamed into the volume by LaTeX rather than loaded into memory.
+ * The page counts are taken from the LaTeX logs of the documents. The
+ * compiled front matter (eg the table of contents), if any, gets placed
+ * before the papers.
+ * Supplemental documents are kept out of the main volume.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class VolumeAssembler {
+
+  /** the LaTeX compiler. */
+  protected LaTeX m_LaTeX;
+
+  /** the page number of the first page of the volume. */
+  protected int m_FirstPage;
+
+  /** the tex file of the front matter, null if none. */
+  protected File m_FrontMatter;
+
+  /** whether papers have to start on odd pages. */
+  protected boolean m_StartOnOddPage;
+
+  /** whether to assemble the supplemental documents instead of the main ones. */
+  protected boolean m_Supplemental;
+
+  /**
+   * Initializes the assembler.
+   */
+  public VolumeAssembler() {
+    m_FirstPage = 1;
+  }
+
+  /**
+   * Sets the LaTeX compiler to use for reading logs and compiling the volume.
+   *
+   * @param value	the compiler
+   */
+  public void setLaTeX(LaTeX value) {
+    m_LaTeX = value;
+  }
+
+  /**
+   * Returns the LaTeX compiler to use for reading logs and compiling the volume.
+   *
+   * @return		the compiler
+   */
+  public LaTeX getLaTeX() {
+    return m_LaTeX;
+  }
+
+  /**
+   * Sets the page number of the first page of the volume. The papers start
+   * after the front matter, if any.
+   *
+   * @param value	the page number
+   */
+  public void setFirstPage(int value) {
+    m_FirstPage = value;
+  }
+
+  /**
+   * Returns the page number of the first page of the volume.
+   *
+   * @return		the page number
+   */
+  public int getFirstPage() {
+    return m_FirstPage;
+  }
+
+  /**
+   * Sets the tex file of the front matter to place before the papers. It
+   * must have been compiled already, as the start page of the papers is
+   * derived from its page count.
+   *
+   * @param value	the tex file, null for none
+   */
+  public void setFrontMatter(File value) {
+    m_FrontMatter = value;
+  }
+
+  /**
+   * Returns the tex file of the front matter to place before the papers.
+   *
+   * @return		the tex file, null if none
+   */
+  public File getFrontMatter() {
+    return m_FrontMatter;
+  }
+
+  /**
+   * Sets whether papers have to start on odd (right-hand) pages. Blank
+   * pages get inserted as required.
+   *
+   * @param value	true if to start on odd pages
+   */
+  public void setStartOnOddPage(boolean value) {
+    m_StartOnOddPage = value;
+  }
+
+  /**
+   * Returns whether papers have to start on odd (right-hand) pages.
+   *
+   * @return		true if to start on odd pages
+   */
+  public boolean getStartOnOddPage() {
+    return m_StartOnOddPage;
+  }
+
+  /**
+   * Sets whether to assemble the supplemental documents rather than the
+   * main ones.
+   *
+   * @param value	true for supplemental documents
+   */
+  public void setSupplemental(boolean value) {
+    m_Supplemental = value;
+  }
+
+  /**
+   * Returns whether to assemble the supplemental documents rather than the
+   * main ones.
+   *
+   * @return		true for supplemental documents
+   */
+  public boolean getSupplemental() {
+    return m_Supplemental;
+  }
+
+  /**
+   * Returns the number of pages of the compiled document.
+   *
+   * @param document	the document
+   * @return		the number of pages, -1 if not available
+   */
+  protected int getNumPages(Document document) {
+    LogReport	report;
+
+    report = m_LaTeX.analyzeLog(document.getFile());
+    if (report == null)
+      return -1;
+
+    return report.getNumPages();
+  }
+
+  /**
+   * Returns the number of pages of the compiled front matter.
+   *
+   * @return		the number of pages, 0 if no front matter
+   * @throws IllegalStateException	if the page count of the front matter is not available
+   */
+  public int getNumFrontMatterPages() {
+    LogReport	report;
+
+    if (m_FrontMatter == null)
+      return 0;
+
+    report = m_LaTeX.analyzeLog(m_FrontMatter.getAbsolutePath());
+    if ((report == null) || (report.getNumPages() < 0))
+      throw new IllegalStateException("No page count available (not compiled?): " + m_FrontMatter);
+
+    return report.getNumPages();
+  }
+
+  /**
+   * Determines the placement of the documents in the volume, following
+   * the front matter.
+   *
+   * @param documents	the documents
+   * @return		the entries
+   * @throws IllegalStateException	if the page count of a document or the front matter is not available
+   */
+  public List<VolumeEntry> layout(Documents documents) {
+    List<VolumeEntry>	result;
+    int			page;
+    int			pages;
+    int			padding;
+
+    result = new ArrayList<>();
+    page   = m_FirstPage + getNumFrontMatterPages();
+    for (Document doc: documents) {
+      if (doc.getSupplemental() != m_Supplemental)
+	continue;
+      pages = getNumPages(doc);
+      if (pages < 0)
+	throw new IllegalStateException("No page count available (not compiled?): " + doc.getFile());
+      padding = 0;
+      if (m_StartOnOddPage && (page % 2 == 0))
+	padding = 1;
+      page += padding;
+      result.add(new VolumeEntry(doc, pages, page, padding));
+      page += pages;
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the path to use in LaTeX for the file.
+   *
+   * @param file	the file
+   * @return		the path
+   */
+  protected String toTeXPath(File file) {
+    return file.getAbsolutePath().replace(File.separatorChar, '/');
+  }
+
+  /**
+   * Writes the LaTeX document for the volume.
+   *
+   * @param entries	the entries of the volume
+   * @param volume	the tex file to write
+   * @throws Exception	if writing fails
+   */
+  protected void write(List<VolumeEntry> entries, File volume) throws Exception {
+    File	pdf;
+    int		i;
+
+    try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(volume), StandardCharsets.UTF_8))) {
+      writer.println("% generated by " + getClass().getName());
+      writer.println("\\documentclass{article}");
+      writer.println("\\usepackage{pdfpages}");
+      writer.println("\\begin{document}");
+      if (m_FrontMatter != null) {
+	writer.println("% front matter");
+	writer.println("\\includepdf[pages=-]{" + toTeXPath(new File(FileUtils.replaceExtension(m_FrontMatter.getAbsolutePath(), ".pdf"))) + "}");
+      }
+      for (VolumeEntry entry: entries) {
+	for (i = 0; i < entry.getPadding(); i++)
+	  writer.println("\\null\\thispagestyle{empty}\\newpage");
+	pdf = new File(FileUtils.replaceExtension(entry.getDocument().getFile(), ".pdf"));
+	writer.println("% " + entry);
+	writer.println("\\includepdf[pages=-]{" + toTeXPath(pdf) + "}");
+      }
+      writer.println("\\end{document}");
+    }
+  }
+
+  /**
+   * Returns the compiler for the volume itself. The precompiled format of
+   * the papers' preamble cannot be used for the volume.
+   *
+   * @return		the compiler
+   */
+  protected LaTeX getVolumeCompiler() {
+    LaTeX	result;
+
+    if (m_LaTeX.getPreamble() == null)
+      return m_LaTeX;
+
+    result = new LaTeX();
+    result.setName(m_LaTeX.getName());
+    result.setExecutable(m_LaTeX.getExecutable());
+    result.setOptions(m_LaTeX.getOptions());
+    result.setTimeout(m_LaTeX.getTimeout());
+    result.setOutputListener(m_LaTeX.getOutputListener());
+    result.setAdmissionController(m_LaTeX.getAdmissionController());
+
+    return result;
+  }
+
+  /**
+   * Assembles the volume from the compiled documents.
+   *
+   * @param documents	the documents
+   * @param volume	the tex file for the volume, the PDF gets placed alongside
+   * @param handle	the handle of the compile
+   * @return		null if successful, otherwise error message
+   */
+  public String assemble(Documents documents, File volume, CompileHandle handle) {
+    List<VolumeEntry>	entries;
+    File		pdf;
+
+    if (m_LaTeX == null)
+      return "No LaTeX compiler defined!";
+
+    try {
+      entries = layout(documents);
+      if (entries.isEmpty())
+	return "No documents to assemble!";
+      if (m_FrontMatter != null) {
+	pdf = new File(FileUtils.replaceExtension(m_FrontMatter.getAbsolutePath(), ".pdf"));
+	if (!pdf.isFile())
+	  return "PDF does not exist: " + pdf;
+      }
+      for (VolumeEntry entry: entries) {
+	pdf = new File(FileUtils.replaceExtension(entry.getDocument().getFile(), ".pdf"));
+	if (!pdf.isFile())
+	  return "PDF does not exist: " + pdf;
+      }
+      write(entries, volume.getAbsoluteFile());
+    }
+    catch (Exception e) {
+      return "Failed to generate volume: " + volume + "\n" + Utils.throwableToString(e);
+    }
+
+    return getVolumeCompiler().compile(volume.getAbsolutePath(), handle);
+  }
+
+  /**
+   * Assembles the volume from the commandline.
+   *
+   * @param args	the yaml files with the compilers and the documents, and the volume tex file
+   * @throws Exception	if loading of the configuration fails
+   */
+  public static void main(String[] args) throws Exception {
+    if ((args.length < 3) || (args.length > 4)) {
+      System.err.println("Usage: VolumeAssembler <compilers.yaml> <documents.yaml> <volume.tex> [front-matter.tex]");
+      System.exit(1);
+    }
+
+    Compilers compilers;
+    Documents documents;
+    try (Reader reader = new FileReader(args[0])) {
+      compilers = Compilers.read(reader);
+    }
+    try (Reader reader = new FileReader(args[1])) {
+      documents = Documents.read(reader);
+    }
+    VolumeAssembler assembler = new VolumeAssembler();
+    assembler.setLaTeX(compilers.find(LaTeX.class));
+    if (args.length > 3)
+      assembler.setFrontMatter(new File(args[3]));
+    String result = assembler.assemble(documents, new File(args[2]), new CompileHandle());
+    if (result != null) {
+      System.err.println(result);
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * VolumeEntry.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+/**
+ * The placement of a document within the proceedings volume.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class VolumeEntry {
+
+  /** the document. */
+  protected Document m_Document;
+
+  /** the number of pages of the document. */
+  protected int m_NumPages;
+
+  /** the first page of the document in the volume (1-based). */
+  protected int m_StartPage;
+
+  /** the number of blank pages inserted before the document. */
+  protected int m_Padding;
+
+  /** the title, null if unknown. */
+  protected String m_Title;
+
+  /** the authors, null if unknown. */
+  protected String m_Authors;
+
+  /**
+   * Initializes the entry.
+   *
+   * @param document	the document
+   * @param numPages	the number of pages of the document
+   * @param startPage	the first page in the volume (1-based)
+   * @param padding	the number of blank pages inserted before the document
+   */
+  public VolumeEntry(Document document, int numPages, int startPage, int padding) {
+    m_Document  = document;
+    m_NumPages  = numPages;
+    m_StartPage = startPage;
+    m_Padding   = padding;
+  }
+
+  /**
+   * Returns the document.
+   *
+   * @return		the document
+   */
+  public Document getDocument() {
+    return m_Document;
+  }
+
+  /**
+   * Returns the number of pages of the document.
+   *
+   * @return		the number of pages
+   */
+  public int getNumPages() {
+    return m_NumPages;
+  }
+
+  /**
+   * Returns the first page of the document in the volume.
+   *
+   * @return		the page (1-based)
+   */
+  public int getStartPage() {
+    return m_StartPage;
+  }
+
+  /**
+   * Returns the last page of the document in the volume.
+   *
+   * @return		the page (1-based)
+   */
+  public int getEndPage() {
+    return m_StartPage + m_NumPages - 1;
+  }
+
+  /**
+   * Returns the number of blank pages inserted before the document.
+   *
+   * @return		the number of pages
+   */
+  public int getPadding() {
+    return m_Padding;
+  }
+
+  /**
+   * Sets the title of the document.
+   *
+   * @param value	the title, null if unknown
+   */
+  public void setTitle(String value) {
+    m_Title = value;
+  }
+
+  /**
+   * Returns the title of the document.
+   *
+   * @return		the title, null if unknown
+   */
+  public String getTitle() {
+    return m_Title;
+  }
+
+  /**
+   * Sets the authors of the document.
+   *
+   * @param value	the authors, null if unknown
+   */
+  public void setAuthors(String value) {
+    m_Authors = value;
+  }
+
+  /**
+   * Returns the authors of the document.
+   *
+   * @return		the authors, null if unknown
+   */
+  public String getAuthors() {
+    return m_Authors;
+  }
+
+  /**
+   * Returns a short string representation.
+   *
+   * @return		the representation
+   */
+  public String toString() {
+    return m_Document.getFile() + ": pages " + getStartPage() + "-" + getEndPage();
+  }
+}
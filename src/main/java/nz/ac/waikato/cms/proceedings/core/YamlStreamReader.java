@@ -0,0 +1,282 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * YamlStreamReader.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.Construct;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reads a yaml list of objects (eg documents or compilers) entry by entry,
+ * using the event-based parser of SnakeYAML. Only the entry currently being
+ * parsed is held in memory, rather than the complete tree of the list.
+ * Anchors and aliases are not supported.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class YamlStreamReader {
+
+  /**
+   * Constructs scalars the same way as {@link Yaml#load(Reader)}, ie with
+   * the constructors of {@link SafeConstructor}.
+   */
+  protected static class ScalarConstructor
+    extends SafeConstructor {
+
+    /**
+     * Initializes the constructor.
+     */
+    public ScalarConstructor() {
+      super(new LoaderOptions());
+    }
+
+    /**
+     * Constructs the value of the scalar.
+     *
+     * @param node	the scalar
+     * @return		the value, the string value for unknown tags
+     */
+    public Object constructValue(ScalarNode node) {
+      Construct	construct;
+
+      construct = yamlConstructors.get(node.getTag());
+      if (construct == null)
+	return node.getValue();
+
+      return construct.construct(node);
+    }
+  }
+
+  /** for resolving the types of plain scalars. */
+  protected final static Resolver RESOLVER = new Resolver();
+
+  /** the reader to read from. */
+  protected Reader m_Reader;
+
+  /** the events of the parser. */
+  protected Iterator<Event> m_Events;
+
+  /** for constructing the scalars (not thread-safe, hence per reader). */
+  protected ScalarConstructor m_Constructor;
+
+  /**
+   * Initializes the stream reader.
+   *
+   * @param reader	the reader to read from
+   */
+  public YamlStreamReader(Reader reader) {
+    m_Reader      = reader;
+    m_Constructor = new ScalarConstructor();
+  }
+
+  /**
+   * Returns the next event.
+   *
+   * @return		the event
+   * @throws IOException	if the stream ended prematurely
+   */
+  protected Event next() throws IOException {
+    if (!m_Events.hasNext())
+      throw new IOException("Unexpected end of yaml stream!");
+    return m_Events.next();
+  }
+
+  /**
+   * Turns the scalar into a string, number, boolean, null etc, the same
+   * way as loading the complete tree would.
+   *
+   * @param event	the scalar event
+   * @return		the value
+   * @throws IOException	if the scalar can't be constructed, eg an invalid binary
+   */
+  protected Object toValue(ScalarEvent event) throws IOException {
+    String	value;
+    Tag		tag;
+
+    value = event.getValue();
+    if ((event.getTag() != null) && !event.getTag().equals("!"))
+      tag = new Tag(event.getTag());
+    else if (event.getImplicit().canOmitTagInPlainScalar())
+      tag = RESOLVER.resolve(NodeId.scalar, value, true);
+    else
+      tag = Tag.STR;
+
+    try {
+      return m_Constructor.constructValue(new ScalarNode(tag, value, event.getStartMark(), event.getEndMark(), event.getScalarStyle()));
+    }
+    catch (Exception e) {
+      throw new IOException("Failed to construct " + tag + " scalar: " + event.getStartMark(), e);
+    }
+  }
+
+  /**
+   * Reads the value that starts with the specified event.
+   *
+   * @param event	the first event of the value
+   * @return		the value (scalar, list or map)
+   * @throws IOException	if an unsupported or unexpected event is encountered
+   */
+  protected Object readValue(Event event) throws IOException {
+    List<Object>	list;
+    Map<String,Object>	map;
+    Object		key;
+
+    switch (event.getEventId()) {
+      case Scalar:
+	return toValue((ScalarEvent) event);
+
+      case SequenceStart:
+	list = new ArrayList<>();
+	while (!(event = next()).is(Event.ID.SequenceEnd))
+	  list.add(readValue(event));
+	return list;
+
+      case MappingStart:
+	map = new LinkedHashMap<>();
+	while (!(event = next()).is(Event.ID.MappingEnd)) {
+	  key = readValue(event);
+	  map.put(String.valueOf(key), readValue(next()));
+	}
+	return map;
+
+      case Alias:
+	throw new IOException("Aliases are not supported: " + event.getStartMark());
+
+      default:
+	throw new IOException("Unexpected event " + event.getEventId() + ": " + event.getStartMark());
+    }
+  }
+
+  /**
+   * Reads the entries of the list one by one, converts them and passes them
+   * on to the consumer. Entries that aren't maps or that the converter
+   * rejects (ie returns null for) are skipped with an error message.
+   *
+   * @param converter	turns the map of an entry into an object
+   * @param consumer	receives the objects
+   * @param <T>		the type of objects
+   * @return		the number of objects passed on to the consumer
+   * @throws IOException	if reading fails or the yaml isn't a list
+   */
+  public <T> int read(Function<Map<String,Object>,T> converter, Consumer<T> consumer) throws IOException {
+    int			result;
+    int			index;
+    Event		event;
+    Object		value;
+    T			obj;
+    LoaderOptions	options;
+
+    // the size limit guards against building huge trees, which streaming avoids
+    options  = new LoaderOptions();
+    options.setCodePointLimit(Integer.MAX_VALUE);
+    result   = 0;
+    m_Events = new Yaml(options).parse(m_Reader).iterator();
+    try {
+      next();  // stream start
+      event = next();
+      if (event.is(Event.ID.StreamEnd))
+	return result;
+      if (!event.is(Event.ID.DocumentStart))
+	throw new IOException("Unexpected event " + event.getEventId() + ": " + event.getStartMark());
+      event = next();
+      // empty document
+      if (event.is(Event.ID.Scalar) && (toValue((ScalarEvent) event) == null))
+	return result;
+      if (!event.is(Event.ID.SequenceStart))
+	throw new IOException("Expected a list: " + event.getStartMark());
+
+      index = 0;
+      while (!(event = next()).is(Event.ID.SequenceEnd)) {
+	index++;
+	value = readValue(event);
+	obj   = null;
+	if (value instanceof Map)
+	  obj = converter.apply((Map<String,Object>) value);
+	if (obj == null) {
+	  System.err.println("Skipping invalid entry #" + index + ": " + value);
+	  continue;
+	}
+	consumer.accept(obj);
+	result++;
+      }
+    }
+    catch (IOException e) {
+      throw e;
+    }
+    catch (Exception e) {
+      throw new IOException("Failed to parse yaml!", e);
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads the documents one by one.
+   *
+   * @param reader	the reader to read from
+   * @param consumer	receives the documents
+   * @return		the number of documents read
+   * @throws IOException	if reading fails
+   */
+  public static int readDocuments(Reader reader, Consumer<Document> consumer) throws IOException {
+    return new YamlStreamReader(reader).read(new Function<Map<String,Object>,Document>() {
+      @Override
+      public Document apply(Map<String,Object> value) {
+	return Document.fromYaml(value);
+      }
+    }, consumer);
+  }
+
+  /**
+   * Reads the compilers one by one.
+   *
+   * @param reader	the reader to read from
+   * @param consumer	receives the compilers
+   * @return		the number of compilers read
+   * @throws IOException	if reading fails
+   */
+  public static int readCompilers(Reader reader, Consumer<AbstractCompiler> consumer) throws IOException {
+    return new YamlStreamReader(reader).read(new Function<Map<String,Object>,AbstractCompiler>() {
+      @Override
+      public AbstractCompiler apply(Map<String,Object> value) {
+	return AbstractCompiler.fromYaml(value);
+      }
+    }, consumer);
+  }
+}
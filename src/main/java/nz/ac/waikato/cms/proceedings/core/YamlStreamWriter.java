@@ -0,0 +1,183 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * YamlStreamWriter.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package nz.ac.waikato.cms.proceedings.core;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.DumperOptions.FlowStyle;
+import org.yaml.snakeyaml.DumperOptions.ScalarStyle;
+import org.yaml.snakeyaml.emitter.Emitter;
+import org.yaml.snakeyaml.events.DocumentEndEvent;
+import org.yaml.snakeyaml.events.DocumentStartEvent;
+import org.yaml.snakeyaml.events.ImplicitTuple;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.events.StreamStartEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Writes a yaml list of objects (eg documents or compilers) entry by entry,
+ * emitting SnakeYAML events directly. Only the representation of the entry
+ * currently being written is held in memory. The list gets terminated when
+ * closing the writer.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @version $Revision$
+ */
+public class YamlStreamWriter
+  implements Closeable {
+
+  /** for determining whether strings can be written as plain scalars. */
+  protected final static Resolver RESOLVER = new Resolver();
+
+  /** the writer to write to. */
+  protected Writer m_Writer;
+
+  /** the emitter. */
+  protected Emitter m_Emitter;
+
+  /** the number of entries written. */
+  protected int m_Count;
+
+  /** whether the writer has been closed. */
+  protected boolean m_Closed;
+
+  /**
+   * Initializes the stream writer and starts the list.
+   *
+   * @param writer	the writer to write to, gets closed when closing the stream writer
+   * @throws IOException	if writing fails
+   */
+  public YamlStreamWriter(Writer writer) throws IOException {
+    DumperOptions	options;
+
+    options = new DumperOptions();
+    options.setDefaultFlowStyle(FlowStyle.BLOCK);
+    m_Writer  = writer;
+    m_Emitter = new Emitter(writer, options);
+    m_Emitter.emit(new StreamStartEvent(null, null));
+    m_Emitter.emit(new DocumentStartEvent(null, null, false, null, null));
+    m_Emitter.emit(new SequenceStartEvent(null, null, true, null, null, FlowStyle.BLOCK));
+  }
+
+  /**
+   * Emits a scalar.
+   *
+   * @param value	the value, null for yaml null
+   * @throws IOException	if writing fails
+   */
+  protected void writeScalar(Object value) throws IOException {
+    String	str;
+    boolean	plain;
+
+    if (value == null) {
+      m_Emitter.emit(new ScalarEvent(null, null, new ImplicitTuple(true, false), "null", null, null, ScalarStyle.PLAIN));
+    }
+    else if ((value instanceof Number) || (value instanceof Boolean)) {
+      m_Emitter.emit(new ScalarEvent(null, null, new ImplicitTuple(true, false), value.toString(), null, null, ScalarStyle.PLAIN));
+    }
+    else {
+      str = value.toString();
+      // strings that look like numbers, booleans etc get quoted by the emitter
+      plain = RESOLVER.resolve(NodeId.scalar, str, true).equals(Tag.STR);
+      m_Emitter.emit(new ScalarEvent(null, null, new ImplicitTuple(plain, true), str, null, null, ScalarStyle.PLAIN));
+    }
+  }
+
+  /**
+   * Emits the value.
+   *
+   * @param value	the value (map, collection, array or scalar)
+   * @throws IOException	if writing fails
+   */
+  protected void writeValue(Object value) throws IOException {
+    if (value instanceof Map) {
+      m_Emitter.emit(new MappingStartEvent(null, null, true, null, null, FlowStyle.BLOCK));
+      for (Map.Entry<?,?> entry: ((Map<?,?>) value).entrySet()) {
+	writeScalar(entry.getKey());
+	writeValue(entry.getValue());
+      }
+      m_Emitter.emit(new MappingEndEvent(null, null));
+    }
+    else if ((value instanceof Collection) || (value instanceof Object[])) {
+      m_Emitter.emit(new SequenceStartEvent(null, null, true, null, null, FlowStyle.BLOCK));
+      for (Object item: (value instanceof Collection) ? ((Collection<?>) value).toArray() : (Object[]) value)
+	writeValue(item);
+      m_Emitter.emit(new SequenceEndEvent(null, null));
+    }
+    else {
+      writeScalar(value);
+    }
+  }
+
+  /**
+   * Writes the object as next entry of the list.
+   *
+   * @param obj		the object to write
+   * @throws IOException	if writing fails or the writer has been closed already
+   */
+  public void write(YamlObject<? extends Map<String,?>> obj) throws IOException {
+    if (m_Closed)
+      throw new IOException("Stream writer has been closed already!");
+    writeValue(obj.toYaml());
+    m_Count++;
+  }
+
+  /**
+   * Returns the number of entries written so far.
+   *
+   * @return		the number of entries
+   */
+  public int getCount() {
+    return m_Count;
+  }
+
+  /**
+   * Terminates the list and closes the underlying writer.
+   *
+   * @throws IOException	if writing fails
+   */
+  @Override
+  public void close() throws IOException {
+    if (m_Closed)
+      return;
+    m_Closed = true;
+    try {
+      m_Emitter.emit(new SequenceEndEvent(null, null));
+      m_Emitter.emit(new DocumentEndEvent(null, null, false));
+      m_Emitter.emit(new StreamEndEvent(null, null));
+    }
+    finally {
+      m_Writer.close();
+    }
+  }
+}